@@ -0,0 +1,385 @@
+/**
+ * Standalone admin HTTP server serving "/metrics", "/health" and "/threads" on its own port, independent of Spring MVC and of request threads of the
+ * container, so that metrics are available even when the application is saturated.<br>
+ * Single selector thread accepts connections, reads requests and writes responses, responses are built by small pool of worker threads. Built
+ * responses (headers and body) are cached as direct buffers for configured time and every connection writes its own view of cached buffer, so
+ * frequent probes neither serialize again nor copy the response. Every response closes connection.<br>
+ * Responses are served without authentication, outside of security of the application, so server listens on loopback unless configured
+ * otherwise.<br>
+ */
+package webmetrics.admin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.json.MetricsModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import webmetrics.admin.HealthCheckManager.HealthCheckResponse;
+
+public class AdminServer {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final int WORKERS = 2;
+	// request line and headers of GET requests fit easily
+	private static final int MAX_REQUEST = 8192;
+	private static final long IDLE_TIMEOUT_NANO = TimeUnit.SECONDS.toNanos(10);
+	private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+	private final MetricRegistry registry;
+	private final String bindAddress;
+	private final int port;
+	private final long cacheNano;
+	private final ObjectMapper mapper = new ObjectMapper().registerModule(new MetricsModule(TimeUnit.SECONDS, TimeUnit.SECONDS, false));
+	private final ThreadDumpManager threadDumpManager = new ThreadDumpManager();
+	// key is path
+	private final ConcurrentMap<String, CachedResponse> cache = new ConcurrentHashMap<String, CachedResponse>();
+	// connections with built response waiting to be switched to writing by selector thread
+	private final Queue<SelectionKey> ready = new ConcurrentLinkedQueue<SelectionKey>();
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private ExecutorService workers;
+	private Thread selectorThread;
+	private volatile boolean running;
+
+	/**
+	 *
+	 * @param registry
+	 *            - registry served as "/metrics", required
+	 * @param bindAddress
+	 *            - address to listen on, i.e. 127.0.0.1, required
+	 * @param port
+	 *            - port to listen on
+	 * @param cacheMillis
+	 *            - how long built responses are served from cache
+	 */
+	public AdminServer(MetricRegistry registry, String bindAddress, int port, int cacheMillis) {
+		if (registry == null || bindAddress == null)
+			throw new IllegalArgumentException("registry and bindAddress are required parameters");
+		this.registry = registry;
+		this.bindAddress = bindAddress;
+		this.port = port;
+		this.cacheNano = TimeUnit.MILLISECONDS.toNanos(cacheMillis);
+	}
+
+	/**
+	 * Binds the port and starts selector thread and workers.<br>
+	 *
+	 * @throws IOException
+	 *             if port cannot be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (running)
+			return;
+		try {
+			selector = Selector.open();
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.configureBlocking(false);
+			serverChannel.socket().setReuseAddress(true);
+			serverChannel.socket().bind(new InetSocketAddress(bindAddress, port));
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException | RuntimeException e) {
+			// port in use or address not resolved, nothing may stay open
+			closeQuietly(serverChannel);
+			closeQuietly(selector);
+			serverChannel = null;
+			selector = null;
+			throw e;
+		}
+		workers = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "webmetrics-admin-worker-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		running = true;
+		selectorThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "webmetrics-admin");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+		logger.info("Admin server listening on " + bindAddress + ":" + getPort());
+	}
+
+	/**
+	 * Stops accepting connections, closes open connections and waits for selector thread to end.<br>
+	 */
+	public synchronized void stop() {
+		if (!running)
+			return;
+		running = false;
+		selector.wakeup();
+		try {
+			selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		workers.shutdownNow();
+		logger.info("Admin server stopped");
+	}
+
+	/**
+	 *
+	 * @return port server listens on, useful if configured port is 0
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	private void serve() {
+		try {
+			while (running) {
+				selector.select(SELECT_TIMEOUT_MILLIS);
+				SelectionKey readyKey;
+				while ((readyKey = ready.poll()) != null) {
+					if (readyKey.isValid())
+						readyKey.interestOps(SelectionKey.OP_WRITE);
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if (!key.isValid())
+							continue;
+						if (key.isAcceptable())
+							accept();
+						else if (key.isReadable())
+							read(key);
+						else if (key.isWritable())
+							write(key);
+					} catch (IOException e) {
+						// client went away
+						close(key);
+					}
+				}
+				closeIdle();
+			}
+		} catch (IOException e) {
+			logger.error("Admin server failed", e);
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				close(key);
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				logger.warn("Cannot close admin server selector", e);
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null)
+			return;
+		channel.configureBlocking(false);
+		channel.register(selector, SelectionKey.OP_READ, new Connection());
+	}
+
+	private void read(final SelectionKey key) throws IOException {
+		final Connection connection = (Connection) key.attachment();
+		connection.lastActiveNano = System.nanoTime();
+		if (((SocketChannel) key.channel()).read(connection.request) < 0) {
+			close(key);
+			return;
+		}
+		final String request = connection.getRequest();
+		if (request == null) {
+			if (!connection.request.hasRemaining()) {
+				key.interestOps(0);
+				respond(key, connection, response(431, "text/plain", "Request too large"));
+			}
+			return;
+		}
+		key.interestOps(0);
+		try {
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					respond(key, connection, handle(request));
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			close(key); // stopping
+		}
+	}
+
+	private void respond(SelectionKey key, Connection connection, ByteBuffer response) {
+		connection.response = response;
+		ready.add(key);
+		selector.wakeup();
+	}
+
+	private void write(SelectionKey key) throws IOException {
+		Connection connection = (Connection) key.attachment();
+		connection.lastActiveNano = System.nanoTime();
+		((SocketChannel) key.channel()).write(connection.response);
+		if (!connection.response.hasRemaining())
+			close(key);
+	}
+
+	private void closeQuietly(Closeable closeable) {
+		if (closeable == null)
+			return;
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			logger.debug("Cannot close admin server channel", e);
+		}
+	}
+
+	private void closeIdle() {
+		long now = System.nanoTime();
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof Connection && now - ((Connection) key.attachment()).lastActiveNano > IDLE_TIMEOUT_NANO)
+				close(key);
+		}
+	}
+
+	private void close(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			logger.debug("Cannot close admin connection", e);
+		}
+	}
+
+	/**
+	 * Builds response of request line or returns cached one.<br>
+	 *
+	 * @param requestLine
+	 *            - i.e. "GET /metrics HTTP/1.1"
+	 * @return view of response buffer owned by caller
+	 */
+	ByteBuffer handle(String requestLine) {
+		String[] parts = requestLine.split(" ");
+		if (parts.length < 2)
+			return response(400, "text/plain", "Bad request");
+		if (!"GET".equals(parts[0]))
+			return response(405, "text/plain", "Method not allowed");
+		String path = parts[1];
+		int query = path.indexOf('?');
+		if (query >= 0)
+			path = path.substring(0, query);
+		CachedResponse cached = cache.get(path);
+		long now = System.nanoTime();
+		if (cached == null || now - cached.expiresNano > 0) {
+			ByteBuffer built = build(path);
+			if (built == null)
+				return response(404, "text/plain", "Not found");
+			cached = new CachedResponse(built, now + cacheNano);
+			cache.put(path, cached);
+		}
+		// each connection gets its own position over the same memory
+		return cached.buffer.duplicate();
+	}
+
+	private ByteBuffer build(String path) {
+		try {
+			if ("/metrics".equals(path))
+				return response(200, "application/json", mapper.writeValueAsString(registry));
+			if ("/health".equals(path)) {
+				HealthCheckResponse health = HealthCheckManager.runHealthChecks();
+				// load balancers only look at status
+				int status = health.getHealthCheck().containsValue(String.valueOf(false)) ? 503 : 200;
+				return response(status, "application/json", mapper.writeValueAsString(health));
+			}
+			if ("/threads".equals(path))
+				return response(200, "application/json", mapper.writeValueAsString(threadDumpManager.dumpThreads()));
+		} catch (Exception e) {
+			logger.error("Cannot build admin response for " + path, e);
+			return response(500, "text/plain", "Internal server error");
+		}
+		return null;
+	}
+
+	private static ByteBuffer response(int status, String contentType, String body) {
+		byte[] bodyBytes = body.getBytes(Charset.forName("UTF-8"));
+		byte[] header = ("HTTP/1.1 " + status + " " + reason(status) + "\r\nContent-Type: " + contentType + "; charset=UTF-8\r\nContent-Length: "
+						+ bodyBytes.length + "\r\nCache-Control: no-cache\r\nConnection: close\r\n\r\n").getBytes(ASCII);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(header.length + bodyBytes.length);
+		buffer.put(header).put(bodyBytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static String reason(int status) {
+		switch (status) {
+		case 200:
+			return "OK";
+		case 400:
+			return "Bad Request";
+		case 404:
+			return "Not Found";
+		case 405:
+			return "Method Not Allowed";
+		case 431:
+			return "Request Header Fields Too Large";
+		case 503:
+			return "Service Unavailable";
+		default:
+			return "Internal Server Error";
+		}
+	}
+
+	private static final class Connection {
+		private final ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST);
+		private ByteBuffer response;
+		private long lastActiveNano = System.nanoTime();
+
+		/**
+		 *
+		 * @return request line once whole request head is read, null before
+		 */
+		private String getRequest() {
+			String head = new String(request.array(), 0, request.position(), ASCII);
+			if (!head.contains("\r\n\r\n") && !head.contains("\n\n"))
+				return null;
+			int lineEnd = head.indexOf('\n');
+			return head.substring(0, lineEnd).trim();
+		}
+	}
+
+	private static final class CachedResponse {
+		private final ByteBuffer buffer;
+		private final long expiresNano;
+
+		private CachedResponse(ByteBuffer buffer, long expiresNano) {
+			this.buffer = buffer;
+			this.expiresNano = expiresNano;
+		}
+	}
+
+	private static Logger logger = LoggerFactory.getLogger(AdminServer.class);
+}
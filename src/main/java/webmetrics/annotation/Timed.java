@@ -0,0 +1,30 @@
+/**
+ * Marks method (or all public methods of a class) to be timed.<br>
+ * Timer is registered in the registry of MetricsManager, by default as "methods.[SimpleClassName].[methodName]".<br>
+ * Requires TimedAnnotationBeanPostProcessor, registered by MetricsSpringBootConfiguration.<br>
+ */
+package webmetrics.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface Timed {
+
+	/**
+	 * Metric name, if blank, name is generated as "methods.[SimpleClassName].[methodName]".<br>
+	 */
+	String name() default "";
+
+	/**
+	 * If true, method is also timed under display of the request being processed: "[display].[name]".<br>
+	 */
+	boolean nested() default false;
+}
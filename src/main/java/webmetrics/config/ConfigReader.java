@@ -31,6 +31,8 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import webmetrics.core.UriTemplate;
+import webmetrics.journal.RequestJournal;
 import webmetrics.util.StringUtils;
 
 public class ConfigReader {
@@ -45,6 +47,12 @@ public class ConfigReader {
 	// for each whitelisted URI there can exist whitelisted matching histogram
 	// un-ordered map: key - display name; value - histogram
 	private Map<String, Integer[]> whitelistedResponseBuckets;
+	// display names configured with striped (per-thread) recording
+	private Set<String> stripedDisplays;
+	// service level objectives, key is display name
+	private Map<String, SloConfig> slos;
+	// automatic health checks, key is display name
+	private Map<String, HealthConfig> healthChecks;
 	private String nonWhiteListName;
 	private Integer[] responseBuckets;
 	private String domain;
@@ -53,11 +61,43 @@ public class ConfigReader {
 	private Boolean enableNonWhiteListedUri;
 	private Boolean enableHistogram;
 	private Boolean enableStatus;
+	private Integer maxSqlStatements;
+	private Boolean enablePayloadSize;
+	private Boolean enableResponseTiming;
+	private Integer slowRequestCount;
+	private Integer slowRequestWindow;
+	private Boolean enableExemplars;
+	private String traceIdHeader;
+	private Boolean normalizeNonWhiteListedUri;
+	private Integer maxNormalizedUris;
+	private Integer heavyHitterCount;
+	private Integer uniqueConsumerWindow;
+	private Boolean enableInFlight;
+	private Integer inFlightPeakInterval;
+	private Integer containerCapacity;
+	private String loadShedding;
+	private Integer loadSheddingStatus;
+	private Integer healthCheckInterval;
+	private Boolean enableJvmMetrics;
+	private Integer jvmMetricsCache;
+	private Integer adminPort;
+	private Integer adminCache;
+	private String sharedMetricsFile;
+	private Integer sharedMetricsInterval;
+	private Integer sharedMetricsCapacity;
+	private String journalFile;
+	private Integer journalCapacity;
+	private String snapshotFile;
+	private Integer snapshotInterval;
+	private Boolean springNaming;
+	private String adminBindAddress;
 	private String idField;
 	private String idFieldScope;
 	private Boolean enabled;
 	private Map<String, String> consumers;
 	private Set<String> disabledConsumers;
+	// rate limits of consumers, key is consumer alias
+	private Map<String, RateLimitConfig> rateLimits;
 
 	private List<String> parseWarnings;
 	private List<String> parseErrors;
@@ -78,6 +118,36 @@ public class ConfigReader {
 	private final static String NODE_PARAM_ENABLE_HISTOGRAM = "enableHistogram";
 	private final static String NODE_PARAM_ENABLE_STATUS = "enableStatus";
 	private final static String NODE_PARAM_NON_WHITE_NAME = "nonWhiteListName";
+	private final static String NODE_PARAM_MAX_SQL_STATEMENTS = "maxSqlStatements";
+	private final static String NODE_PARAM_ENABLE_PAYLOAD_SIZE = "enablePayloadSize";
+	private final static String NODE_PARAM_ENABLE_RESPONSE_TIMING = "enableResponseTiming";
+	private final static String NODE_PARAM_SLOW_REQUEST_COUNT = "slowRequestCount";
+	private final static String NODE_PARAM_SLOW_REQUEST_WINDOW = "slowRequestWindow";
+	private final static String NODE_PARAM_ENABLE_EXEMPLARS = "enableExemplars";
+	private final static String NODE_PARAM_TRACE_ID_HEADER = "traceIdHeader";
+	private final static String NODE_PARAM_NORMALIZE_NON_WHITE_LISTED_URI = "normalizeNonWhiteListedUri";
+	private final static String NODE_PARAM_MAX_NORMALIZED_URIS = "maxNormalizedUris";
+	private final static String NODE_PARAM_HEAVY_HITTER_COUNT = "heavyHitterCount";
+	private final static String NODE_PARAM_UNIQUE_CONSUMER_WINDOW = "uniqueConsumerWindow";
+	private final static String NODE_PARAM_ENABLE_IN_FLIGHT = "enableInFlight";
+	private final static String NODE_PARAM_IN_FLIGHT_PEAK_INTERVAL = "inFlightPeakInterval";
+	private final static String NODE_PARAM_CONTAINER_CAPACITY = "containerCapacity";
+	private final static String NODE_PARAM_LOAD_SHEDDING = "loadShedding";
+	private final static String NODE_PARAM_LOAD_SHEDDING_STATUS = "loadSheddingStatus";
+	private final static String NODE_PARAM_HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+	private final static String NODE_PARAM_ENABLE_JVM_METRICS = "enableJvmMetrics";
+	private final static String NODE_PARAM_JVM_METRICS_CACHE = "jvmMetricsCache";
+	private final static String NODE_PARAM_ADMIN_PORT = "adminPort";
+	private final static String NODE_PARAM_ADMIN_CACHE = "adminCache";
+	private final static String NODE_PARAM_SHARED_METRICS_FILE = "sharedMetricsFile";
+	private final static String NODE_PARAM_SHARED_METRICS_INTERVAL = "sharedMetricsInterval";
+	private final static String NODE_PARAM_SHARED_METRICS_CAPACITY = "sharedMetricsCapacity";
+	private final static String NODE_PARAM_JOURNAL_FILE = "journalFile";
+	private final static String NODE_PARAM_JOURNAL_CAPACITY = "journalCapacity";
+	private final static String NODE_PARAM_SNAPSHOT_FILE = "snapshotFile";
+	private final static String NODE_PARAM_SNAPSHOT_INTERVAL = "snapshotInterval";
+	private final static String NODE_PARAM_SPRING_NAMING = "springNaming";
+	private final static String NODE_PARAM_ADMIN_BIND_ADDRESS = "adminBindAddress";
 	private final static String NODE_CONSUMERS = "consumers";
 	private final static String NODE_ID_FIELD = "idField";
 	private final static String NODE_ID_FIELD_SCOPE = "idFieldScope";
@@ -86,6 +156,22 @@ public class ConfigReader {
 	private final static String ATTR_ID = "id";
 	private final static String ATTR_ALIAS = "alias";
 	private final static String ATTR_ENABLED = "enabled";
+	private final static String ATTR_RECORDING = "recording";
+	private final static String ATTR_RATE_LIMIT = "rateLimit";
+	private final static String ATTR_BURST = "burst";
+	private final static String NODE_SLO = "slo";
+	private final static String NODE_HEALTH = "health";
+	private final static String ATTR_SLO_THRESHOLD = "threshold";
+	private final static String ATTR_SLO_TARGET = "target";
+	private final static String ATTR_SLO_WINDOWS = "windows";
+	private final static String ATTR_SLO_MAX_BURN_RATE = "maxBurnRate";
+	private final static String ATTR_SLO_HEALTH_CHECK = "healthCheck";
+	private final static String ATTR_HEALTH_WINDOW = "window";
+	private final static String ATTR_HEALTH_ERROR_RATIO = "errorRatio";
+	private final static String ATTR_HEALTH_P99 = "p99";
+	private final static String ATTR_HEALTH_IN_FLIGHT = "inFlight";
+
+	private final static String RECORDING_STRIPED = "striped";
 
 	/**
 	 * Constructor takes schema and content of one configuration file as resource names.<br>
@@ -105,11 +191,12 @@ public class ConfigReader {
 		if (doc == null)
 			return;
 		buildEnabled(doc);
+		// params first, generated display names depend on skipContextName
+		buildMetricParams(doc);
 		buildWhitelistUris(doc);
 		buildGlobalHistogram(doc);
 		buildConsumers(doc);
 		buildDomain(doc);
-		buildMetricParams(doc);
 	}
 
 	/**
@@ -209,7 +296,7 @@ public class ConfigReader {
 	 * @param value
 	 * @return
 	 */
-	private String trimWhiteChar(String value) {
+	private static String trimWhiteChar(String value) {
 		Matcher m = PATTERN_WHITE_CHARS.matcher(value);
 		if (m.matches())
 			return m.group(1);
@@ -229,6 +316,9 @@ public class ConfigReader {
 
 	private void buildWhitelistUris(Document doc) {
 		whitelistedUris = null;
+		stripedDisplays = null;
+		slos = null;
+		healthChecks = null;
 		// there is actually just one whiteListedUris node
 		NodeList whiteListUrisNodes = doc.getElementsByTagName(NODE_WHITELIST_URIS);
 		if (whiteListUrisNodes == null || whiteListUrisNodes.getLength() == 0)
@@ -239,7 +329,7 @@ public class ConfigReader {
 		if (whiteListUriNodes == null || whiteListUriNodes.getLength() == 0)
 			return;
 		for (int i = 0; i < whiteListUriNodes.getLength(); i++) {
-			// each whiteListedUri node will have one or many "uri", single "display" and optional single "histogram" elements
+			// each whiteListedUri node will have one or many "uri", single "display", optional single "histogram" and optional single "slo" elements
 			Node whiteListUriNode = whiteListUriNodes.item(i);
 			if (!NODE_WHITELIST_URI.equals(whiteListUriNode.getNodeName())) {
 				continue;
@@ -248,9 +338,112 @@ public class ConfigReader {
 			if (uriList == null || uriList.getLength() == 0) {
 				continue;
 			}
-			addUrisForDisplay(uriList);
+			String displayName = addUrisForDisplay(uriList);
+			if (displayName != null) {
+				buildRecording(whiteListUriNode, displayName);
+				buildSlo(uriList, displayName);
+				buildHealth(uriList, displayName);
+			}
 		}
 		logger.info("Built following whitelisted uris: " + whitelistedUris);
+		if (stripedDisplays != null)
+			logger.info("Displays with striped recording: " + stripedDisplays);
+		if (slos != null)
+			logger.info("Service level objectives: " + slos);
+		if (healthChecks != null)
+			logger.info("Automatic health checks: " + healthChecks);
+	}
+
+	/**
+	 * Reads optional health element of whiteListedUri node.<br>
+	 * 
+	 * @param uriList
+	 * @param displayName
+	 */
+	private void buildHealth(NodeList uriList, String displayName) {
+		for (int i = 0; i < uriList.getLength(); i++) {
+			Node node = uriList.item(i);
+			if (!NODE_HEALTH.equals(node.getNodeName()))
+				continue;
+			String window = getAttribute(node, ATTR_HEALTH_WINDOW);
+			String errorRatio = getAttribute(node, ATTR_HEALTH_ERROR_RATIO);
+			String p99 = getAttribute(node, ATTR_HEALTH_P99);
+			String inFlight = getAttribute(node, ATTR_HEALTH_IN_FLIGHT);
+			HealthConfig health;
+			try {
+				health = new HealthConfig(window != null ? Integer.parseInt(window) : HealthConfig.DEFAULT_WINDOW,
+								errorRatio != null ? Double.valueOf(errorRatio) : null, p99 != null ? Integer.valueOf(p99) : null,
+								inFlight != null ? Integer.valueOf(inFlight) : null);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid health configuration for display: " + displayName, e);
+			}
+			if (healthChecks == null)
+				healthChecks = new HashMap<String, HealthConfig>();
+			healthChecks.put(displayName, health);
+		}
+	}
+
+	/**
+	 * Reads optional slo element of whiteListedUri node.<br>
+	 * 
+	 * @param uriList
+	 *            - child nodes of whiteListedUri node
+	 * @param displayName
+	 */
+	private void buildSlo(NodeList uriList, String displayName) {
+		for (int i = 0; i < uriList.getLength(); i++) {
+			Node node = uriList.item(i);
+			if (!NODE_SLO.equals(node.getNodeName()))
+				continue;
+			String threshold = getAttribute(node, ATTR_SLO_THRESHOLD);
+			String target = getAttribute(node, ATTR_SLO_TARGET);
+			String windows = getAttribute(node, ATTR_SLO_WINDOWS);
+			String maxBurnRate = getAttribute(node, ATTR_SLO_MAX_BURN_RATE);
+			String healthCheck = getAttribute(node, ATTR_SLO_HEALTH_CHECK);
+			int[] windowMinutes = SloConfig.DEFAULT_WINDOWS;
+			SloConfig slo;
+			try {
+				if (windows != null) {
+					String[] values = windows.split(",");
+					windowMinutes = new int[values.length];
+					for (int w = 0; w < values.length; w++) {
+						windowMinutes[w] = Integer.parseInt(values[w].trim());
+					}
+				}
+				slo = new SloConfig(Integer.parseInt(threshold), Double.parseDouble(target), windowMinutes,
+								maxBurnRate != null ? Double.parseDouble(maxBurnRate) : SloConfig.DEFAULT_MAX_BURN_RATE, Boolean.parseBoolean(healthCheck));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid SLO configuration for display: " + displayName, e);
+			} catch (NullPointerException e) {
+				throw new IllegalArgumentException("SLO threshold and target are required for display: " + displayName, e);
+			}
+			if (slos == null)
+				slos = new HashMap<String, SloConfig>();
+			slos.put(displayName, slo);
+		}
+	}
+
+	private String getAttribute(Node node, String name) {
+		if (node.getAttributes() == null || node.getAttributes().getNamedItem(name) == null)
+			return null;
+		String value = node.getAttributes().getNamedItem(name).getNodeValue().trim();
+		return value.equals("") ? null : value;
+	}
+
+	/**
+	 * Reads optional recording mode of whiteListedUri node.<br>
+	 * 
+	 * @param whiteListUriNode
+	 * @param displayName
+	 */
+	private void buildRecording(Node whiteListUriNode, String displayName) {
+		if (whiteListUriNode.getAttributes() == null || whiteListUriNode.getAttributes().getNamedItem(ATTR_RECORDING) == null)
+			return;
+		if (!RECORDING_STRIPED.equals(whiteListUriNode.getAttributes().getNamedItem(ATTR_RECORDING).getNodeValue()))
+			return;
+		if (stripedDisplays == null)
+			stripedDisplays = new HashSet<String>();
+		stripedDisplays.add(displayName);
 	}
 
 	/**
@@ -258,8 +451,9 @@ public class ConfigReader {
 	 * 
 	 * @param uriList
 	 *            - assumed non-empty
+	 * @return display name or null if configuration for display was not built
 	 */
-	private void addUrisForDisplay(NodeList uriList) {
+	private String addUrisForDisplay(NodeList uriList) {
 		List<String> uris = null; // builds list of URIs/Patterns for single Display Metric
 		String displayName = null;
 		Integer[] histogram = null;
@@ -286,13 +480,19 @@ public class ConfigReader {
 				histogram = buildNodeHistogram(node);
 			}
 		}
+		if (displayName == null && uris != null) {
+			displayName = generateDisplayName(uris.get(0));
+			if (checkDisplayNameExists(displayName))
+				throw new IllegalArgumentException("Generated display name is not unique: " + displayName + ", configure display for uri: " + uris.get(0));
+			logger.info("Generated display name " + displayName + " for uri: " + uris.get(0));
+		}
 		if (displayName == null) {
 			logger.error("Display element is not found");
-			return;
+			return null;
 		}
 		if (uris == null) {
 			logger.error("No uri elements found for display: " + displayName);
-			return;
+			return null;
 		}
 		if (whitelistedUris == null) {
 			whitelistedUris = new LinkedHashMap<String, String>(); // provides uniqueness and order
@@ -308,6 +508,7 @@ public class ConfigReader {
 			}
 			whitelistedResponseBuckets.put(displayName, histogram);
 		}
+		return displayName;
 	}
 
 	/**
@@ -455,6 +656,8 @@ public class ConfigReader {
 			throw new IllegalArgumentException("ID FIELD or ID FIELD SCOPE is not defined for consumers");
 		logger.info("All consumers: " + consumers);
 		logger.info("All disabled consumers: " + disabledConsumers);
+		if (rateLimits != null)
+			logger.info("Consumer rate limits: " + rateLimits);
 	}
 
 	private void buildConsumerNode(Node consumerNode) {
@@ -517,6 +720,38 @@ public class ConfigReader {
 		if (consumers == null)
 			consumers = new HashMap<String, String>();
 		consumers.put(id, alias);
+		buildRateLimit(consumerNode, id, alias);
+	}
+
+	/**
+	 * Reads optional rate limit of consumer node, consumers sharing alias share the limit.<br>
+	 * 
+	 * @param consumerNode
+	 * @param id
+	 * @param alias
+	 */
+	private void buildRateLimit(Node consumerNode, String id, String alias) {
+		String rateLimit = getAttribute(consumerNode, ATTR_RATE_LIMIT);
+		String burst = getAttribute(consumerNode, ATTR_BURST);
+		if (rateLimit == null) {
+			if (burst != null)
+				throw new IllegalArgumentException("Consumer burst requires rateLimit. Consumer id: " + id);
+			return;
+		}
+		RateLimitConfig rateLimitConfig;
+		try {
+			double requestsPerSecond = Double.parseDouble(rateLimit);
+			// by default consumer may send requests of one second at once
+			rateLimitConfig = new RateLimitConfig(requestsPerSecond,
+							burst != null ? Integer.parseInt(burst) : (int) Math.max(1, Math.ceil(requestsPerSecond)));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid rate limit of consumer id: " + id, e);
+		}
+		if (rateLimits == null)
+			rateLimits = new HashMap<String, RateLimitConfig>();
+		RateLimitConfig existing = rateLimits.put(alias, rateLimitConfig);
+		if (existing != null && !existing.equals(rateLimitConfig))
+			throw new IllegalArgumentException("Consumers sharing alias must have the same rate limit. Consumer id: " + id + ", alias: " + alias);
 	}
 
 	private static final String REGEX_APLHANUMERIC_UNDERSCORE = "[a-zA-Z0-9_]+";
@@ -546,6 +781,36 @@ public class ConfigReader {
 		enableHistogram = null;
 		enableStatus = null;
 		nonWhiteListName = null;
+		maxSqlStatements = null;
+		enablePayloadSize = null;
+		enableResponseTiming = null;
+		slowRequestCount = null;
+		slowRequestWindow = null;
+		enableExemplars = null;
+		traceIdHeader = null;
+		normalizeNonWhiteListedUri = null;
+		maxNormalizedUris = null;
+		heavyHitterCount = null;
+		uniqueConsumerWindow = null;
+		enableInFlight = null;
+		inFlightPeakInterval = null;
+		containerCapacity = null;
+		loadShedding = null;
+		loadSheddingStatus = null;
+		healthCheckInterval = null;
+		enableJvmMetrics = null;
+		jvmMetricsCache = null;
+		adminPort = null;
+		adminCache = null;
+		sharedMetricsFile = null;
+		sharedMetricsInterval = null;
+		sharedMetricsCapacity = null;
+		journalFile = null;
+		journalCapacity = null;
+		snapshotFile = null;
+		snapshotInterval = null;
+		springNaming = null;
+		adminBindAddress = null;
 		NodeList nodes = doc.getElementsByTagName(NODE_METRIC_PARAMS);
 		if (nodes == null || nodes.getLength() == 0)
 			return;
@@ -612,11 +877,224 @@ public class ConfigReader {
 			} catch (Exception e) {
 				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ENABLE_STATUS);
 			}
+		} else if (paramName.equals(NODE_PARAM_MAX_SQL_STATEMENTS)) {
+			try {
+				maxSqlStatements = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_MAX_SQL_STATEMENTS);
+			}
+		} else if (paramName.equals(NODE_PARAM_ENABLE_PAYLOAD_SIZE)) {
+			try {
+				enablePayloadSize = Boolean.parseBoolean(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ENABLE_PAYLOAD_SIZE);
+			}
+		} else if (paramName.equals(NODE_PARAM_ENABLE_RESPONSE_TIMING)) {
+			try {
+				enableResponseTiming = Boolean.parseBoolean(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ENABLE_RESPONSE_TIMING);
+			}
+		} else if (paramName.equals(NODE_PARAM_SLOW_REQUEST_COUNT)) {
+			try {
+				slowRequestCount = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_SLOW_REQUEST_COUNT);
+			}
+		} else if (paramName.equals(NODE_PARAM_SLOW_REQUEST_WINDOW)) {
+			try {
+				slowRequestWindow = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_SLOW_REQUEST_WINDOW);
+			}
+		} else if (paramName.equals(NODE_PARAM_ENABLE_EXEMPLARS)) {
+			try {
+				enableExemplars = Boolean.parseBoolean(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ENABLE_EXEMPLARS);
+			}
+		} else if (paramName.equals(NODE_PARAM_TRACE_ID_HEADER)) {
+			traceIdHeader = paramValue;
+		} else if (paramName.equals(NODE_PARAM_NORMALIZE_NON_WHITE_LISTED_URI)) {
+			try {
+				normalizeNonWhiteListedUri = Boolean.parseBoolean(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_NORMALIZE_NON_WHITE_LISTED_URI);
+			}
+		} else if (paramName.equals(NODE_PARAM_MAX_NORMALIZED_URIS)) {
+			try {
+				maxNormalizedUris = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_MAX_NORMALIZED_URIS);
+			}
+		} else if (paramName.equals(NODE_PARAM_HEAVY_HITTER_COUNT)) {
+			try {
+				heavyHitterCount = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_HEAVY_HITTER_COUNT);
+			}
+		} else if (paramName.equals(NODE_PARAM_UNIQUE_CONSUMER_WINDOW)) {
+			try {
+				uniqueConsumerWindow = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_UNIQUE_CONSUMER_WINDOW);
+			}
+			// rolling window is kept in quarters, other windows would be reported under name of window they do not cover
+			if (uniqueConsumerWindow % 4 != 0)
+				throw new IllegalArgumentException(NODE_PARAM_UNIQUE_CONSUMER_WINDOW + " must be multiple of 4 minutes, but got: " + uniqueConsumerWindow);
+		} else if (paramName.equals(NODE_PARAM_ENABLE_IN_FLIGHT)) {
+			try {
+				enableInFlight = Boolean.parseBoolean(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ENABLE_IN_FLIGHT);
+			}
+		} else if (paramName.equals(NODE_PARAM_IN_FLIGHT_PEAK_INTERVAL)) {
+			try {
+				inFlightPeakInterval = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_IN_FLIGHT_PEAK_INTERVAL);
+			}
+		} else if (paramName.equals(NODE_PARAM_CONTAINER_CAPACITY)) {
+			try {
+				containerCapacity = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_CONTAINER_CAPACITY);
+			}
+		} else if (paramName.equals(NODE_PARAM_LOAD_SHEDDING)) {
+			loadShedding = paramValue;
+		} else if (paramName.equals(NODE_PARAM_LOAD_SHEDDING_STATUS)) {
+			try {
+				loadSheddingStatus = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_LOAD_SHEDDING_STATUS);
+			}
+		} else if (paramName.equals(NODE_PARAM_HEALTH_CHECK_INTERVAL)) {
+			try {
+				healthCheckInterval = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_HEALTH_CHECK_INTERVAL);
+			}
+		} else if (paramName.equals(NODE_PARAM_ENABLE_JVM_METRICS)) {
+			try {
+				enableJvmMetrics = Boolean.parseBoolean(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ENABLE_JVM_METRICS);
+			}
+		} else if (paramName.equals(NODE_PARAM_JVM_METRICS_CACHE)) {
+			try {
+				jvmMetricsCache = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_JVM_METRICS_CACHE);
+			}
+		} else if (paramName.equals(NODE_PARAM_ADMIN_PORT)) {
+			try {
+				adminPort = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ADMIN_PORT);
+			}
+		} else if (paramName.equals(NODE_PARAM_ADMIN_CACHE)) {
+			try {
+				adminCache = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_ADMIN_CACHE);
+			}
+		} else if (paramName.equals(NODE_PARAM_SHARED_METRICS_FILE)) {
+			sharedMetricsFile = paramValue;
+		} else if (paramName.equals(NODE_PARAM_SHARED_METRICS_INTERVAL)) {
+			try {
+				sharedMetricsInterval = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_SHARED_METRICS_INTERVAL);
+			}
+		} else if (paramName.equals(NODE_PARAM_SHARED_METRICS_CAPACITY)) {
+			try {
+				sharedMetricsCapacity = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_SHARED_METRICS_CAPACITY);
+			}
+		} else if (paramName.equals(NODE_PARAM_JOURNAL_FILE)) {
+			journalFile = paramValue;
+		} else if (paramName.equals(NODE_PARAM_JOURNAL_CAPACITY)) {
+			try {
+				journalCapacity = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_JOURNAL_CAPACITY);
+			}
+			// the whole journal is mapped by single buffer
+			if (journalCapacity < RequestJournal.MIN_CAPACITY || journalCapacity > RequestJournal.MAX_CAPACITY)
+				throw new IllegalArgumentException(NODE_PARAM_JOURNAL_CAPACITY + " must be from " + RequestJournal.MIN_CAPACITY + " to "
+						+ RequestJournal.MAX_CAPACITY + ", but got: " + journalCapacity);
+		} else if (paramName.equals(NODE_PARAM_SNAPSHOT_FILE)) {
+			snapshotFile = paramValue;
+		} else if (paramName.equals(NODE_PARAM_SNAPSHOT_INTERVAL)) {
+			try {
+				snapshotInterval = Integer.parseInt(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_SNAPSHOT_INTERVAL);
+			}
+		} else if (paramName.equals(NODE_PARAM_SPRING_NAMING)) {
+			try {
+				springNaming = Boolean.parseBoolean(paramValue);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Invalid parameter value for " + NODE_PARAM_SPRING_NAMING);
+			}
+		} else if (paramName.equals(NODE_PARAM_ADMIN_BIND_ADDRESS)) {
+			adminBindAddress = paramValue;
 		} else if (paramName.equals(NODE_PARAM_NON_WHITE_NAME)) {
 			nonWhiteListName = paramValue;
 		}
 	}
 
+	/**
+	 * Generates display name from URI or URI template: context is skipped if skipContextName is true (default), template variables are replaced by
+	 * their names, wild cards are skipped and path elements are joined by dots.<br>
+	 * I.e. /ctx/users/{id}/orders/{orderId:[0-9]+} becomes users.id.orders.orderId<br>
+	 * 
+	 * @param uri
+	 * @return
+	 */
+	private String generateDisplayName(String uri) {
+		return generateDisplayName(uri, skipContextName != null ? skipContextName : true);
+	}
+
+	/**
+	 * Generates display name from URI or URI template the same way as for white listed URIs without display, see generateDisplayName(String).<br>
+	 * Also used for handler patterns of Spring naming, which never contain context.<br>
+	 * 
+	 * @param uri
+	 * @param skipContext
+	 *            - true if the first path element is context and is left out
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if URI has no element display name can be generated from, i.e. "/" or "/**"
+	 */
+	public static String generateDisplayName(String uri, boolean skipContext) {
+		// "/" within regex of variable does not split path element
+		List<String> elements = UriTemplate.splitPath(trimWhiteChar(uri));
+		StringBuilder displayName = new StringBuilder();
+		boolean contextSkipped = false;
+		for (String element : elements) {
+			if (element.equals(""))
+				continue;
+			if (skipContext && !contextSkipped) {
+				contextSkipped = true;
+				continue;
+			}
+			if (element.equals("*") || element.equals("**") || element.equals("?"))
+				continue;
+			if (element.startsWith("{") && element.endsWith("}")) {
+				int colon = element.indexOf(':');
+				element = element.substring(1, colon < 0 ? element.length() - 1 : colon);
+			}
+			if (displayName.length() > 0)
+				displayName.append('.');
+			displayName.append(element.replace('*', '_'));
+		}
+		if (displayName.length() == 0)
+			throw new IllegalArgumentException("Cannot generate display name, configure display for uri: " + uri);
+		return displayName.toString();
+	}
+
 	/**
 	 * Converts any forward slash to dot: "/" -> "."<br>
 	 * Trims any trailing or leading dots.<br>
@@ -642,6 +1120,18 @@ public class ConfigReader {
 		return whitelistedUris;
 	}
 
+	public Map<String, SloConfig> getSlos() {
+		return slos;
+	}
+
+	public Map<String, HealthConfig> getHealthChecks() {
+		return healthChecks;
+	}
+
+	public Set<String> getStripedDisplays() {
+		return stripedDisplays;
+	}
+
 	public String getNonWhiteListName() {
 		return nonWhiteListName;
 	}
@@ -678,6 +1168,126 @@ public class ConfigReader {
 		return enableStatus;
 	}
 
+	public Integer getMaxSqlStatements() {
+		return maxSqlStatements;
+	}
+
+	public Boolean isEnablePayloadSize() {
+		return enablePayloadSize;
+	}
+
+	public Boolean isEnableResponseTiming() {
+		return enableResponseTiming;
+	}
+
+	public Integer getSlowRequestCount() {
+		return slowRequestCount;
+	}
+
+	public Integer getSlowRequestWindow() {
+		return slowRequestWindow;
+	}
+
+	public Boolean isEnableExemplars() {
+		return enableExemplars;
+	}
+
+	public String getTraceIdHeader() {
+		return traceIdHeader;
+	}
+
+	public Boolean isNormalizeNonWhiteListedUri() {
+		return normalizeNonWhiteListedUri;
+	}
+
+	public Integer getMaxNormalizedUris() {
+		return maxNormalizedUris;
+	}
+
+	public Integer getHeavyHitterCount() {
+		return heavyHitterCount;
+	}
+
+	public Integer getUniqueConsumerWindow() {
+		return uniqueConsumerWindow;
+	}
+
+	public Boolean isEnableInFlight() {
+		return enableInFlight;
+	}
+
+	public Integer getInFlightPeakInterval() {
+		return inFlightPeakInterval;
+	}
+
+	public Integer getContainerCapacity() {
+		return containerCapacity;
+	}
+
+	public String getLoadShedding() {
+		return loadShedding;
+	}
+
+	public Integer getLoadSheddingStatus() {
+		return loadSheddingStatus;
+	}
+
+	public Integer getHealthCheckInterval() {
+		return healthCheckInterval;
+	}
+
+	public Boolean isEnableJvmMetrics() {
+		return enableJvmMetrics;
+	}
+
+	public Integer getJvmMetricsCache() {
+		return jvmMetricsCache;
+	}
+
+	public Integer getAdminPort() {
+		return adminPort;
+	}
+
+	public Integer getAdminCache() {
+		return adminCache;
+	}
+
+	public String getSharedMetricsFile() {
+		return sharedMetricsFile;
+	}
+
+	public Integer getSharedMetricsInterval() {
+		return sharedMetricsInterval;
+	}
+
+	public Integer getSharedMetricsCapacity() {
+		return sharedMetricsCapacity;
+	}
+
+	public String getJournalFile() {
+		return journalFile;
+	}
+
+	public Integer getJournalCapacity() {
+		return journalCapacity;
+	}
+
+	public String getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public Integer getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	public Boolean isSpringNaming() {
+		return springNaming;
+	}
+
+	public String getAdminBindAddress() {
+		return adminBindAddress;
+	}
+
 	public String getIdField() {
 		return idField;
 	}
@@ -690,6 +1300,10 @@ public class ConfigReader {
 		return consumers;
 	}
 
+	public Map<String, RateLimitConfig> getRateLimits() {
+		return rateLimits;
+	}
+
 	public Set<String> getDisabledConsumers() {
 		return disabledConsumers;
 	}
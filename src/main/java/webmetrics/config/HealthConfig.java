@@ -0,0 +1,65 @@
+/**
+ * Thresholds of automatic health check of single display as configured by "health" element of whiteListedUri.<br>
+ * Health check fails if share of 5xx responses or 99th percentile of durations over the window exceeds its threshold, or if number of requests in
+ * progress stays above its threshold for the whole window. Thresholds that are not configured are not checked.<br>
+ */
+package webmetrics.config;
+
+public class HealthConfig {
+
+	static final int DEFAULT_WINDOW = 1;
+
+	private final int windowMinutes;
+	private final Double errorRatio;
+	private final Integer p99Millis;
+	private final Integer inFlight;
+
+	/**
+	 *
+	 * @param windowMinutes
+	 *            - window in minutes, must be positive
+	 * @param errorRatio
+	 *            - maximum share of 5xx responses, between 0 and 1, null if not checked
+	 * @param p99Millis
+	 *            - maximum 99th percentile in milliseconds, null if not checked
+	 * @param inFlight
+	 *            - maximum number of requests in progress, null if not checked
+	 */
+	public HealthConfig(int windowMinutes, Double errorRatio, Integer p99Millis, Integer inFlight) {
+		if (windowMinutes <= 0)
+			throw new IllegalArgumentException("Health window must be positive: " + windowMinutes);
+		if (errorRatio == null && p99Millis == null && inFlight == null)
+			throw new IllegalArgumentException("At least one of errorRatio, p99 or inFlight is required");
+		if (errorRatio != null && (errorRatio <= 0 || errorRatio >= 1))
+			throw new IllegalArgumentException("Health errorRatio must be between 0 and 1: " + errorRatio);
+		if (p99Millis != null && p99Millis <= 0)
+			throw new IllegalArgumentException("Health p99 must be positive: " + p99Millis);
+		if (inFlight != null && inFlight <= 0)
+			throw new IllegalArgumentException("Health inFlight must be positive: " + inFlight);
+		this.windowMinutes = windowMinutes;
+		this.errorRatio = errorRatio;
+		this.p99Millis = p99Millis;
+		this.inFlight = inFlight;
+	}
+
+	public int getWindowMinutes() {
+		return windowMinutes;
+	}
+
+	public Double getErrorRatio() {
+		return errorRatio;
+	}
+
+	public Integer getP99Millis() {
+		return p99Millis;
+	}
+
+	public Integer getInFlight() {
+		return inFlight;
+	}
+
+	@Override
+	public String toString() {
+		return "window=" + windowMinutes + "m, errorRatio=" + errorRatio + ", p99=" + p99Millis + "ms, inFlight=" + inFlight;
+	}
+}
@@ -1,7 +1,9 @@
 package webmetrics.config;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class MetricConfig {
 
@@ -66,6 +68,21 @@ public class MetricConfig {
 		return customConfigReader.getWhitelistedResponseBuckets();
 	}
 
+	public Set<String> getStripedDisplays() {
+		// only custom uris are processed, not default
+		return customConfigReader.getStripedDisplays();
+	}
+
+	public Map<String, SloConfig> getSlos() {
+		// only custom uris are processed, not default
+		return customConfigReader.getSlos();
+	}
+
+	public Map<String, HealthConfig> getHealthChecks() {
+		// only custom uris are processed, not default
+		return customConfigReader.getHealthChecks();
+	}
+
 	public String getDomain() {
 		String domain = customConfigReader.getDomain();
 		if (domain != null)
@@ -108,6 +125,242 @@ public class MetricConfig {
 		return defaultConfigReader.isEnableStatus() != null ? defaultConfigReader.isEnableStatus() : true;
 	}
 
+	public Integer getMaxSqlStatements() {
+		Integer value = customConfigReader.getMaxSqlStatements();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getMaxSqlStatements() != null ? defaultConfigReader.getMaxSqlStatements() : 500;
+	}
+
+	public Boolean isEnablePayloadSize() {
+		Boolean value = customConfigReader.isEnablePayloadSize();
+		if (value != null)
+			return value;
+		return defaultConfigReader.isEnablePayloadSize() != null ? defaultConfigReader.isEnablePayloadSize() : false;
+	}
+
+	public Boolean isEnableResponseTiming() {
+		Boolean value = customConfigReader.isEnableResponseTiming();
+		if (value != null)
+			return value;
+		return defaultConfigReader.isEnableResponseTiming() != null ? defaultConfigReader.isEnableResponseTiming() : false;
+	}
+
+	public Integer getSlowRequestCount() {
+		Integer value = customConfigReader.getSlowRequestCount();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getSlowRequestCount() != null ? defaultConfigReader.getSlowRequestCount() : 0;
+	}
+
+	public Integer getSlowRequestWindow() {
+		Integer value = customConfigReader.getSlowRequestWindow();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getSlowRequestWindow() != null ? defaultConfigReader.getSlowRequestWindow() : 60;
+	}
+
+	public Boolean isEnableExemplars() {
+		Boolean value = customConfigReader.isEnableExemplars();
+		if (value != null)
+			return value;
+		return defaultConfigReader.isEnableExemplars() != null ? defaultConfigReader.isEnableExemplars() : false;
+	}
+
+	public String getTraceIdHeader() {
+		String value = customConfigReader.getTraceIdHeader();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getTraceIdHeader() != null ? defaultConfigReader.getTraceIdHeader() : "X-Request-Id";
+	}
+
+	public Boolean isNormalizeNonWhiteListedUri() {
+		Boolean value = customConfigReader.isNormalizeNonWhiteListedUri();
+		if (value != null)
+			return value;
+		return defaultConfigReader.isNormalizeNonWhiteListedUri() != null ? defaultConfigReader.isNormalizeNonWhiteListedUri() : false;
+	}
+
+	public Integer getMaxNormalizedUris() {
+		Integer value = customConfigReader.getMaxNormalizedUris();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getMaxNormalizedUris() != null ? defaultConfigReader.getMaxNormalizedUris() : 100;
+	}
+
+	public Integer getHeavyHitterCount() {
+		Integer value = customConfigReader.getHeavyHitterCount();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getHeavyHitterCount() != null ? defaultConfigReader.getHeavyHitterCount() : 0;
+	}
+
+	public Integer getUniqueConsumerWindow() {
+		Integer value = customConfigReader.getUniqueConsumerWindow();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getUniqueConsumerWindow() != null ? defaultConfigReader.getUniqueConsumerWindow() : 0;
+	}
+
+	public Boolean isEnableInFlight() {
+		Boolean value = customConfigReader.isEnableInFlight();
+		if (value != null)
+			return value;
+		return defaultConfigReader.isEnableInFlight() != null ? defaultConfigReader.isEnableInFlight() : false;
+	}
+
+	public Integer getInFlightPeakInterval() {
+		Integer value = customConfigReader.getInFlightPeakInterval();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getInFlightPeakInterval() != null ? defaultConfigReader.getInFlightPeakInterval() : 60;
+	}
+
+	public Integer getContainerCapacity() {
+		Integer value = customConfigReader.getContainerCapacity();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getContainerCapacity() != null ? defaultConfigReader.getContainerCapacity() : 200;
+	}
+
+	public String getLoadShedding() {
+		String value = customConfigReader.getLoadShedding();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getLoadShedding();
+	}
+
+	public Integer getLoadSheddingStatus() {
+		Integer value = customConfigReader.getLoadSheddingStatus();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getLoadSheddingStatus() != null ? defaultConfigReader.getLoadSheddingStatus() : 503;
+	}
+
+	public Integer getHealthCheckInterval() {
+		Integer value = customConfigReader.getHealthCheckInterval();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getHealthCheckInterval() != null ? defaultConfigReader.getHealthCheckInterval() : 5;
+	}
+
+	public Boolean isEnableJvmMetrics() {
+		Boolean value = customConfigReader.isEnableJvmMetrics();
+		if (value != null)
+			return value;
+		return defaultConfigReader.isEnableJvmMetrics() != null ? defaultConfigReader.isEnableJvmMetrics() : false;
+	}
+
+	public Integer getJvmMetricsCache() {
+		Integer value = customConfigReader.getJvmMetricsCache();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getJvmMetricsCache() != null ? defaultConfigReader.getJvmMetricsCache() : 5;
+	}
+
+	public Integer getAdminPort() {
+		Integer value = customConfigReader.getAdminPort();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getAdminPort();
+	}
+
+	public Integer getAdminCache() {
+		Integer value = customConfigReader.getAdminCache();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getAdminCache() != null ? defaultConfigReader.getAdminCache() : 1000;
+	}
+
+	public String getSharedMetricsFile() {
+		String value = customConfigReader.getSharedMetricsFile();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getSharedMetricsFile();
+	}
+
+	public Integer getSharedMetricsInterval() {
+		Integer value = customConfigReader.getSharedMetricsInterval();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getSharedMetricsInterval() != null ? defaultConfigReader.getSharedMetricsInterval() : 1000;
+	}
+
+	public Integer getSharedMetricsCapacity() {
+		Integer value = customConfigReader.getSharedMetricsCapacity();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getSharedMetricsCapacity() != null ? defaultConfigReader.getSharedMetricsCapacity() : 4096;
+	}
+
+	public String getJournalFile() {
+		String value = customConfigReader.getJournalFile();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getJournalFile();
+	}
+
+	public Integer getJournalCapacity() {
+		Integer value = customConfigReader.getJournalCapacity();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getJournalCapacity() != null ? defaultConfigReader.getJournalCapacity() : 1048576;
+	}
+
+	public String getSnapshotFile() {
+		String value = customConfigReader.getSnapshotFile();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getSnapshotFile();
+	}
+
+	public Integer getSnapshotInterval() {
+		Integer value = customConfigReader.getSnapshotInterval();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getSnapshotInterval() != null ? defaultConfigReader.getSnapshotInterval() : 60;
+	}
+
+	/**
+	 * Returns version of settings metric names depend on (white listed URIs, non-white listed name, URI pattern version, histogram buckets,
+	 * consumers and Spring naming).<br>
+	 * Version changes whenever configuration changes so that metrics of old configuration would not be created again, i.e. when restoring
+	 * snapshot.<br>
+	 * 
+	 * @return
+	 */
+	public String getMetricNamesVersion() {
+		StringBuilder settings = new StringBuilder();
+		settings.append(sorted(getWhiteListedUris())).append('|').append(getNonWhiteListName()).append('|').append(getUriPatternVersion());
+		settings.append('|').append(isEnableHistogram()).append('|').append(Arrays.toString(getResponseBuckets()));
+		Map<String, Integer[]> responseBuckets = getWhitelistedResponseBuckets();
+		if (responseBuckets != null) {
+			for (Map.Entry<String, Integer[]> entry : new TreeMap<String, Integer[]>(responseBuckets).entrySet()) {
+				settings.append('|').append(entry.getKey()).append('=').append(Arrays.toString(entry.getValue()));
+			}
+		}
+		settings.append('|').append(sorted(getConsumers())).append('|').append(isSpringNaming());
+		return Integer.toHexString(settings.toString().hashCode());
+	}
+
+	private static <V> Map<String, V> sorted(Map<String, V> map) {
+		return map == null ? null : new TreeMap<String, V>(map);
+	}
+
+	public Boolean isSpringNaming() {
+		Boolean value = customConfigReader.isSpringNaming();
+		if (value != null)
+			return value;
+		return defaultConfigReader.isSpringNaming() != null ? defaultConfigReader.isSpringNaming() : false;
+	}
+
+	public String getAdminBindAddress() {
+		String value = customConfigReader.getAdminBindAddress();
+		if (value != null)
+			return value;
+		return defaultConfigReader.getAdminBindAddress() != null ? defaultConfigReader.getAdminBindAddress() : "127.0.0.1";
+	}
+
 	public String getIdField() {
 		// only custom consumer are processed, not default
 		return customConfigReader.getIdField();
@@ -123,6 +376,11 @@ public class MetricConfig {
 		return customConfigReader.getConsumers();
 	}
 
+	public Map<String, RateLimitConfig> getRateLimits() {
+		// only custom consumer are processed, not default
+		return customConfigReader.getRateLimits();
+	}
+
 	public Set<String> getDisabledConsumers() {
 		// only custom consumer are processed, not default
 		return customConfigReader.getDisabledConsumers();
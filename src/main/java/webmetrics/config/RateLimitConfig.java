@@ -0,0 +1,53 @@
+/**
+ * Rate limit of single consumer as configured by "rateLimit" and "burst" attributes of consumer element.<br>
+ * Consumer may send up to burst requests at once and then rateLimit requests per second on average, requests over the limit are rejected.<br>
+ */
+package webmetrics.config;
+
+public class RateLimitConfig {
+
+	private final double requestsPerSecond;
+	private final int burst;
+
+	/**
+	 *
+	 * @param requestsPerSecond
+	 *            - average allowed rate, must be positive
+	 * @param burst
+	 *            - number of requests allowed at once, must be positive
+	 */
+	public RateLimitConfig(double requestsPerSecond, int burst) {
+		if (requestsPerSecond <= 0)
+			throw new IllegalArgumentException("Rate limit must be positive: " + requestsPerSecond);
+		if (burst <= 0)
+			throw new IllegalArgumentException("Burst must be positive: " + burst);
+		this.requestsPerSecond = requestsPerSecond;
+		this.burst = burst;
+	}
+
+	public double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof RateLimitConfig))
+			return false;
+		RateLimitConfig other = (RateLimitConfig) obj;
+		return requestsPerSecond == other.requestsPerSecond && burst == other.burst;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (int) Double.doubleToLongBits(requestsPerSecond) + burst;
+	}
+
+	@Override
+	public String toString() {
+		return "rateLimit=" + requestsPerSecond + "/s, burst=" + burst;
+	}
+}
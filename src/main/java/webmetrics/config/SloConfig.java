@@ -0,0 +1,79 @@
+/**
+ * Service level objective of single display as configured by "slo" element of whiteListedUri.<br>
+ * Request is satisfied if it takes up to threshold, tolerating if it takes up to 4 x threshold (Apdex). Request is bad if response status is 5xx,
+ * target is expected share of good requests.<br>
+ */
+package webmetrics.config;
+
+import java.util.Arrays;
+
+public class SloConfig {
+
+	static final int[] DEFAULT_WINDOWS = { 5, 60 };
+	static final double DEFAULT_MAX_BURN_RATE = 14.4;
+
+	private final int thresholdMillis;
+	private final double target;
+	private final int[] windowMinutes;
+	private final double maxBurnRate;
+	private final boolean healthCheck;
+
+	/**
+	 * 
+	 * @param thresholdMillis
+	 *            - Apdex threshold T in milliseconds, must be positive
+	 * @param target
+	 *            - target availability, i.e. 0.999, must be greater than 0 and less than 1
+	 * @param windowMinutes
+	 *            - burn rate windows in minutes, at least one, all positive
+	 * @param maxBurnRate
+	 *            - health check fails if burn rates of all windows exceed this value
+	 * @param healthCheck
+	 *            - true if health check should be registered for display
+	 */
+	public SloConfig(int thresholdMillis, double target, int[] windowMinutes, double maxBurnRate, boolean healthCheck) {
+		if (thresholdMillis <= 0)
+			throw new IllegalArgumentException("SLO threshold must be positive: " + thresholdMillis);
+		if (target <= 0 || target >= 1)
+			throw new IllegalArgumentException("SLO target must be between 0 and 1: " + target);
+		if (windowMinutes == null || windowMinutes.length == 0)
+			throw new IllegalArgumentException("At least one SLO window is required");
+		for (int window : windowMinutes) {
+			if (window <= 0)
+				throw new IllegalArgumentException("SLO window must be positive: " + Arrays.toString(windowMinutes));
+		}
+		if (maxBurnRate <= 0)
+			throw new IllegalArgumentException("SLO maxBurnRate must be positive: " + maxBurnRate);
+		this.thresholdMillis = thresholdMillis;
+		this.target = target;
+		this.windowMinutes = windowMinutes.clone();
+		this.maxBurnRate = maxBurnRate;
+		this.healthCheck = healthCheck;
+	}
+
+	public int getThresholdMillis() {
+		return thresholdMillis;
+	}
+
+	public double getTarget() {
+		return target;
+	}
+
+	public int[] getWindowMinutes() {
+		return windowMinutes.clone();
+	}
+
+	public double getMaxBurnRate() {
+		return maxBurnRate;
+	}
+
+	public boolean isHealthCheck() {
+		return healthCheck;
+	}
+
+	@Override
+	public String toString() {
+		return "threshold=" + thresholdMillis + "ms, target=" + target + ", windows=" + Arrays.toString(windowMinutes) + "m, maxBurnRate="
+						+ maxBurnRate + ", healthCheck=" + healthCheck;
+	}
+}
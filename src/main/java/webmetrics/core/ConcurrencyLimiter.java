@@ -0,0 +1,131 @@
+/**
+ * Adaptive limit of concurrently processed requests used for load shedding.<br>
+ * Limit follows gradient of latency: durations of finished requests are summed over short sample windows, mean of the window is compared with
+ * no-load latency (the shortest request seen in recent windows, request that did not wait for anything). While mean stays within tolerance of
+ * no-load latency, limit grows by a fraction of its square root per window (only if the limit is actually used), once requests queue up and mean
+ * rises, limit is reduced in proportion, down to one half per window.<br>
+ * Requests pay one CAS to acquire and two atomic additions to release. Limit is recomputed once per window by single thread that wins the end of
+ * window.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrencyLimiter {
+
+	private static final long WINDOW_NANO = TimeUnit.MILLISECONDS.toNanos(100);
+	// windows with less requests do not change the limit, their samples are carried over
+	private static final int MIN_WINDOW_SAMPLES = 10;
+	// number of windows after which no-load latency is measured again, so that it can follow service that got slower
+	private static final int NO_LOAD_WINDOWS = 100;
+	// mean latency up to 1.5 times no-load latency is not considered queueing
+	private static final double TOLERANCE = 1.5;
+	// weight of new limit, smooths the changes
+	private static final double SMOOTHING = 0.2;
+	static final int MIN_LIMIT = 4;
+	private static final int INITIAL_LIMIT = 20;
+
+	private final int maxLimit;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int limit;
+	// highest in-flight count of current window
+	private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+	private final AtomicLong windowSum = new AtomicLong();
+	private final AtomicLong windowCount = new AtomicLong();
+	private final AtomicLong windowMin = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong windowEndNano;
+	// guarded by this, only accessed by thread that ended window
+	private double estimatedLimit;
+	private long noLoadLatency = Long.MAX_VALUE;
+	private int noLoadAge;
+
+	/**
+	 *
+	 * @param maxLimit
+	 *            - the highest allowed limit, must be positive
+	 */
+	public ConcurrencyLimiter(int maxLimit) {
+		if (maxLimit <= 0)
+			throw new IllegalArgumentException("maxLimit must be positive: " + maxLimit);
+		this.maxLimit = maxLimit;
+		this.estimatedLimit = Math.min(INITIAL_LIMIT, maxLimit);
+		this.limit = (int) estimatedLimit;
+		this.windowEndNano = new AtomicLong(System.nanoTime() + WINDOW_NANO);
+	}
+
+	/**
+	 * Takes one slot if limit is not reached.<br>
+	 *
+	 * @return false if request should be rejected
+	 */
+	public boolean tryAcquire() {
+		int current;
+		do {
+			current = inFlight.get();
+			if (current >= limit)
+				return false;
+		} while (!inFlight.compareAndSet(current, current + 1));
+		int max;
+		while (current + 1 > (max = windowMaxInFlight.get()) && !windowMaxInFlight.compareAndSet(max, current + 1))
+			;
+		return true;
+	}
+
+	/**
+	 * Returns slot taken by tryAcquire.<br>
+	 *
+	 * @param durationNano
+	 *            - duration of the request
+	 * @param nowNano
+	 *            - nano time request ended
+	 */
+	public void release(long durationNano, long nowNano) {
+		inFlight.decrementAndGet();
+		windowSum.addAndGet(durationNano);
+		windowCount.incrementAndGet();
+		long min;
+		while (durationNano < (min = windowMin.get()) && !windowMin.compareAndSet(min, durationNano))
+			;
+		long end = windowEndNano.get();
+		if (nowNano - end >= 0 && windowEndNano.compareAndSet(end, nowNano + WINDOW_NANO))
+			update();
+	}
+
+	private synchronized void update() {
+		long count = windowCount.getAndSet(0);
+		long sum = windowSum.getAndSet(0);
+		if (count < MIN_WINDOW_SAMPLES) {
+			windowCount.addAndGet(count);
+			windowSum.addAndGet(sum);
+			return;
+		}
+		int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+		long currentMin = windowMin.getAndSet(Long.MAX_VALUE);
+		if (++noLoadAge >= NO_LOAD_WINDOWS) {
+			noLoadLatency = currentMin;
+			noLoadAge = 0;
+		} else {
+			noLoadLatency = Math.min(noLoadLatency, currentMin);
+		}
+		double meanLatency = (double) sum / count;
+		if (meanLatency <= 0)
+			return;
+		double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadLatency / meanLatency));
+		// limit that is not used is not raised, there is no evidence that more requests can be processed
+		if (gradient == 1.0 && maxInFlight < estimatedLimit / 2)
+			return;
+		double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+		estimatedLimit = Math.min(maxLimit, Math.max(MIN_LIMIT, estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+		limit = (int) estimatedLimit;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+}
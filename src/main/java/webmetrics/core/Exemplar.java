@@ -0,0 +1,33 @@
+/**
+ * Latest request counted by histogram bucket, links bucket to logs or traces of that request.<br>
+ */
+package webmetrics.core;
+
+public class Exemplar {
+
+	private final String traceId;
+	private final long durationNano;
+	private final long timestamp;
+
+	public Exemplar(String traceId, long durationNano, long timestamp) {
+		this.traceId = traceId;
+		this.durationNano = durationNano;
+		this.timestamp = timestamp;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public double getDurationMillis() {
+		return durationNano / 1000000.0;
+	}
+
+	/**
+	 * 
+	 * @return time request ended, in milliseconds since epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Evaluates automatic health checks of displays in background and keeps their latest results.<br>
+ * Every interval the evaluator samples counters that are already aggregated while recording requests: request count of display timer, count of
+ * 5xx status meter, counts of histogram buckets and number of requests in progress. Window values are differences between the latest sample and
+ * the sample taken one window ago, no reservoir snapshot is created. 99th percentile is interpolated within histogram bucket it falls into, so its
+ * precision depends on configured buckets.<br>
+ * Registered health checks "health.[display]" only return cached result, so running them costs the same as reading a field.<br>
+ */
+package webmetrics.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheck.Result;
+
+import webmetrics.admin.HealthCheckManager;
+import webmetrics.config.HealthConfig;
+
+public class HealthEvaluator {
+
+	public static final String HEALTH_NAME_PREFIX = "health";
+
+	// error ratio of windows with less requests is not checked, single failed request should not fail the check
+	static final int MIN_WINDOW_REQUESTS = 10;
+	private static final double PERCENTILE = 0.99;
+
+	private final MetricsManager manager;
+	private final MetricRegistry registry;
+	private final int intervalSeconds;
+	private final List<DisplayHealth> displays = new ArrayList<DisplayHealth>();
+	private ScheduledExecutorService executor;
+
+	/**
+	 *
+	 * @param manager
+	 *            - manager of displays, required
+	 * @param healthChecks
+	 *            - thresholds of displays, key is display name, required
+	 * @param intervalSeconds
+	 *            - interval of evaluation, must be positive
+	 */
+	public HealthEvaluator(MetricsManager manager, Map<String, HealthConfig> healthChecks, int intervalSeconds) {
+		if (intervalSeconds <= 0)
+			throw new IllegalArgumentException("intervalSeconds must be positive: " + intervalSeconds);
+		this.manager = manager;
+		this.registry = manager.getMetricsRegistry();
+		this.intervalSeconds = intervalSeconds;
+		for (Entry<String, HealthConfig> entry : healthChecks.entrySet()) {
+			DisplayHealth display = new DisplayHealth(entry.getKey(), entry.getValue());
+			displays.add(display);
+			HealthCheckManager.addHealthCheck(HEALTH_NAME_PREFIX + "." + entry.getKey(), display);
+		}
+	}
+
+	/**
+	 * Starts background evaluation, does nothing if already started.<br>
+	 */
+	public synchronized void start() {
+		if (executor != null)
+			return;
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "webmetrics-health");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evaluate();
+			}
+		}, 0, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	public synchronized void stop() {
+		if (executor == null)
+			return;
+		executor.shutdownNow();
+		executor = null;
+	}
+
+	/**
+	 * Samples counters of all displays and updates results.<br>
+	 */
+	void evaluate() {
+		for (DisplayHealth display : displays) {
+			try {
+				display.evaluate(sample(display.displayName));
+			} catch (RuntimeException e) {
+				// one display must not stop evaluation of others or kill the scheduled task
+				logger.error("Health evaluation failed for display: " + display.displayName, e);
+			}
+		}
+	}
+
+	private Sample sample(String displayName) {
+		Sample sample = new Sample();
+		sample.requests = manager.getRequestCount(displayName);
+		sample.errors = manager.getServerErrorCount(displayName);
+		sample.inFlight = manager.getInFlightCount(displayName);
+		HistogramBucket[] buckets = manager.getHistogramBuckets(displayName);
+		if (buckets != null) {
+			sample.buckets = buckets;
+			sample.bucketCounts = new long[buckets.length];
+			for (int i = 0; i < buckets.length; i++) {
+				sample.bucketCounts[i] = registry.counter(buckets[i].getMetricName()).getCount();
+			}
+		}
+		return sample;
+	}
+
+	private static final class Sample {
+		private long requests;
+		private long errors;
+		// -1 if in-flight requests are not tracked
+		private long inFlight;
+		// null until display has its first request or if histogram is not enabled
+		private HistogramBucket[] buckets;
+		private long[] bucketCounts;
+	}
+
+	private final class DisplayHealth extends HealthCheck {
+		private final String displayName;
+		private final HealthConfig config;
+		// samples of one window plus the sample window starts with, written only by evaluator thread
+		private final Sample[] samples;
+		private int next;
+		private int count;
+		private volatile Result result = Result.healthy("Not evaluated yet");
+
+		private DisplayHealth(String displayName, HealthConfig config) {
+			this.displayName = displayName;
+			this.config = config;
+			this.samples = new Sample[(int) Math.max(1, TimeUnit.MINUTES.toSeconds(config.getWindowMinutes()) / intervalSeconds) + 1];
+		}
+
+		@Override
+		protected Result check() {
+			return result;
+		}
+
+		private void evaluate(Sample latest) {
+			samples[next] = latest;
+			next = (next + 1) % samples.length;
+			count = Math.min(count + 1, samples.length);
+			// until window is full, window starts with the first sample
+			Sample first = samples[count < samples.length ? 0 : next];
+			List<String> failures = new ArrayList<String>();
+			StringBuilder values = new StringBuilder();
+			long requests = latest.requests - first.requests;
+			if (config.getErrorRatio() != null) {
+				double errorRatio = requests == 0 ? 0 : (double) (latest.errors - first.errors) / requests;
+				values.append("errorRatio=").append(String.format("%.4f", errorRatio));
+				if (requests >= MIN_WINDOW_REQUESTS && errorRatio > config.getErrorRatio())
+					failures.add("errorRatio " + String.format("%.4f", errorRatio) + " > " + config.getErrorRatio());
+			}
+			if (config.getP99Millis() != null) {
+				double p99 = getP99(first, latest);
+				values.append(values.length() == 0 ? "" : ", ").append("p99=").append(String.format("%.1f", p99)).append("ms");
+				if (p99 > config.getP99Millis())
+					failures.add("p99 " + String.format("%.1f", p99) + "ms > " + config.getP99Millis() + "ms");
+			}
+			if (config.getInFlight() != null && latest.inFlight >= 0) {
+				long minInFlight = Long.MAX_VALUE;
+				for (Sample sample : samples) {
+					if (sample != null)
+						minInFlight = Math.min(minInFlight, sample.inFlight);
+				}
+				values.append(values.length() == 0 ? "" : ", ").append("inFlight=").append(latest.inFlight);
+				// only full window of samples above threshold shows that requests pile up
+				if (count == samples.length && minInFlight > config.getInFlight())
+					failures.add("inFlight above " + config.getInFlight() + " for " + config.getWindowMinutes() + "m, at least " + minInFlight);
+			}
+			result = failures.isEmpty() ? Result.healthy(values.toString()) : Result.unhealthy(failures.toString());
+		}
+
+		/**
+		 *
+		 * @param first
+		 * @param latest
+		 * @return estimated 99th percentile of window in milliseconds, 0 if there were no requests
+		 */
+		private double getP99(Sample first, Sample latest) {
+			if (latest.buckets == null)
+				return 0;
+			long[] counts = new long[latest.bucketCounts.length];
+			long total = 0;
+			for (int i = 0; i < counts.length; i++) {
+				// buckets created after first sample started from zero
+				counts[i] = latest.bucketCounts[i] - (first.bucketCounts != null ? first.bucketCounts[i] : 0);
+				total += counts[i];
+			}
+			if (total == 0)
+				return 0;
+			double rank = Math.ceil(PERCENTILE * total);
+			long cumulative = 0;
+			for (int i = 0; i < counts.length; i++) {
+				if (cumulative + counts[i] >= rank) {
+					HistogramBucket bucket = latest.buckets[i];
+					// last bucket has no upper boundary, its lower boundary is the best estimate
+					if (bucket.getHigh() == Integer.MAX_VALUE)
+						return bucket.getLow();
+					return bucket.getLow() + (bucket.getHigh() - bucket.getLow()) * (rank - cumulative) / counts[i];
+				}
+				cumulative += counts[i];
+			}
+			return 0;
+		}
+	}
+
+	private static Logger logger = LoggerFactory.getLogger(HealthEvaluator.class);
+}
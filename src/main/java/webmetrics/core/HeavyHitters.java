@@ -0,0 +1,187 @@
+/**
+ * Tracks most frequent non-white listed URIs with fixed memory using Space-Saving algorithm.<br>
+ * Fixed number of counters is split between stripes chosen by hash of URI, every stripe is updated under its own lock so threads offering
+ * different URIs rarely contend. When URI is not monitored, counter with the lowest count of its stripe is taken over: new URI inherits that count
+ * (recorded as error, maximum overestimation of its count).<br>
+ * Space-Saving guarantee holds per stripe: URI is guaranteed to be monitored only if it was seen more often than the number of offers of its
+ * stripe divided by the number of counters of the stripe (capacity / stripes). Offers are spread over stripes by hash, so the bound is close to
+ * total / capacity on average, but a stripe that received more than its share of offers (i.e. one very frequent URI) has a higher bound. Reported
+ * count minus error is lower bound of actual count within its stripe.<br>
+ * URIs are counted even if non-white listed URIs are not measured. Time of requests is added only if they are measured (nonWhiteListName is
+ * configured) and only to monitored URIs, time of URI before it was monitored is not known.<br>
+ */
+package webmetrics.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HeavyHitters {
+
+	private static final int STRIPES = 16;
+
+	private static final Comparator<HeavyHitter> MOST_FREQUENT_FIRST = new Comparator<HeavyHitter>() {
+		@Override
+		public int compare(HeavyHitter h1, HeavyHitter h2) {
+			return h1.count < h2.count ? 1 : h1.count > h2.count ? -1 : 0;
+		}
+	};
+
+	private final Stripe[] stripes;
+
+	/**
+	 *
+	 * @param capacity
+	 *            - total number of monitored URIs, must be positive
+	 */
+	public HeavyHitters(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		int stripeCount = Math.min(STRIPES, capacity);
+		stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			// spreading remainder over first stripes
+			stripes[i] = new Stripe(capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0));
+		}
+	}
+
+	private Stripe stripe(String uri) {
+		int hash = uri.hashCode();
+		hash ^= hash >>> 16;
+		return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+	}
+
+	/**
+	 * Counts single occurrence of URI.<br>
+	 *
+	 * @param uri
+	 */
+	public void offer(String uri) {
+		stripe(uri).offer(uri);
+	}
+
+	/**
+	 * Adds request time to URI if it is monitored.<br>
+	 *
+	 * @param uri
+	 * @param durationNano
+	 */
+	public void addTime(String uri, long durationNano) {
+		stripe(uri).addTime(uri, durationNano);
+	}
+
+	/**
+	 *
+	 * @return copies of all monitored URIs, most frequent first
+	 */
+	public List<HeavyHitter> getTop() {
+		List<HeavyHitter> top = new ArrayList<HeavyHitter>();
+		for (Stripe stripe : stripes) {
+			stripe.copyTo(top);
+		}
+		Collections.sort(top, MOST_FREQUENT_FIRST);
+		return top;
+	}
+
+	private static final class Stripe {
+		private final int capacity;
+		// key is URI, guarded by this
+		private final Map<String, HeavyHitter> counters;
+
+		private Stripe(int capacity) {
+			this.capacity = capacity;
+			this.counters = new HashMap<String, HeavyHitter>(capacity * 2);
+		}
+
+		private synchronized void offer(String uri) {
+			HeavyHitter counter = counters.get(uri);
+			if (counter != null) {
+				counter.count++;
+				return;
+			}
+			if (counters.size() < capacity) {
+				counter = new HeavyHitter();
+				counter.uri = uri;
+				counter.count = 1;
+				counters.put(uri, counter);
+				return;
+			}
+			// taking over counter with the lowest count, counters are reused so memory stays fixed
+			HeavyHitter min = null;
+			for (HeavyHitter candidate : counters.values()) {
+				if (min == null || candidate.count < min.count)
+					min = candidate;
+			}
+			counters.remove(min.uri);
+			min.uri = uri;
+			min.error = min.count;
+			min.count++;
+			min.totalNano = 0;
+			min.timedCount = 0;
+			counters.put(uri, min);
+		}
+
+		private synchronized void addTime(String uri, long durationNano) {
+			HeavyHitter counter = counters.get(uri);
+			if (counter != null) {
+				counter.totalNano += durationNano;
+				counter.timedCount++;
+			}
+		}
+
+		private synchronized void copyTo(List<HeavyHitter> top) {
+			for (HeavyHitter counter : counters.values()) {
+				HeavyHitter copy = new HeavyHitter();
+				copy.uri = counter.uri;
+				copy.count = counter.count;
+				copy.error = counter.error;
+				copy.totalNano = counter.totalNano;
+				copy.timedCount = counter.timedCount;
+				top.add(copy);
+			}
+		}
+	}
+
+	public static class HeavyHitter {
+		private String uri;
+		private long count;
+		private long error;
+		private long totalNano;
+		private long timedCount;
+
+		public String getUri() {
+			return uri;
+		}
+
+		/**
+		 *
+		 * @return estimated number of occurrences, never less than actual
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 *
+		 * @return maximum overestimation of count
+		 */
+		public long getError() {
+			return error;
+		}
+
+		/**
+		 *
+		 * @return total time of requests counted since URI is monitored
+		 */
+		public double getTotalMillis() {
+			return totalNano / 1000000.0;
+		}
+
+		public double getMeanMillis() {
+			return timedCount == 0 ? 0 : totalNano / 1000000.0 / timedCount;
+		}
+	}
+}
@@ -4,11 +4,14 @@
  */
 package webmetrics.core;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 public class HistogramBucket {
 
 	private int low; // low boundary for bucket, inclusive
 	private int high; // high boundary for bucket, exclusive
 	private String metricName; // fully generated metric name
+	private final AtomicReference<Exemplar> exemplar = new AtomicReference<Exemplar>(); // latest request counted by bucket
 
 	public int getLow() {
 		return low;
@@ -34,4 +37,13 @@ public class HistogramBucket {
 		this.metricName = metricName;
 	}
 
+	public Exemplar getExemplar() {
+		return exemplar.get();
+	}
+
+	public void setExemplar(Exemplar exemplar) {
+		// readers only need to see eventually latest exemplar
+		this.exemplar.lazySet(exemplar);
+	}
+
 }
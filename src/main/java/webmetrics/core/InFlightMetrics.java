@@ -0,0 +1,274 @@
+/**
+ * Reports requests in progress per display and globally, and saturation of the container.<br>
+ * For every display that had requests: "[display].inFlight.current" (requests in progress), "[display].inFlight.peak" (peak of last complete interval)
+ * and "[display].inFlight.estimated" (average concurrency by Little's law: one minute arrival rate times mean duration).<br>
+ * Mean duration is kept as running sum and count of durations of ended requests, reported mean is the mean of the last complete peak interval in
+ * which requests ended (of the current interval until the first one completes), so reading gauges does not take snapshot of timer reservoir.<br>
+ * Globally the same gauges under "inFlight" and "inFlight.saturation": sum of estimated concurrency of all displays divided by configured container
+ * capacity, values close to 1 mean that worker threads are exhausted and requests wait in the queue of the container.<br>
+ */
+package webmetrics.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+public class InFlightMetrics {
+
+	public static final String IN_FLIGHT_NAME = "inFlight";
+	// key of global statistics, not a valid display name
+	public static final String TOTAL = "*";
+
+	private final MetricRegistry registry;
+	private final long intervalNano;
+	private final int capacity;
+	private final InFlightTracker total;
+	// key is display name
+	private final ConcurrentMap<String, Display> displays = new ConcurrentHashMap<String, Display>();
+
+	/**
+	 *
+	 * @param registry
+	 * @param intervalNano
+	 *            - length of peak interval in nanoseconds, must be positive
+	 * @param capacity
+	 *            - maximum number of concurrently processed requests, saturation is not reported if not positive
+	 */
+	public InFlightMetrics(MetricRegistry registry, long intervalNano, int capacity) {
+		this.registry = registry;
+		this.intervalNano = intervalNano;
+		this.capacity = capacity;
+		this.total = new InFlightTracker(intervalNano);
+		registerGauges(IN_FLIGHT_NAME, total, new Gauge<Double>() {
+			@Override
+			public Double getValue() {
+				return getEstimated();
+			}
+		});
+		if (capacity > 0) {
+			registry.register(MetricRegistry.name(IN_FLIGHT_NAME, "saturation"), new Gauge<Double>() {
+				@Override
+				public Double getValue() {
+					return getSaturation();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Counts started request.<br>
+	 *
+	 * @param timer
+	 *            - started timer
+	 */
+	public void start(UriTimer timer) {
+		Display display = displays.get(timer.getMetricName());
+		if (display == null)
+			display = register(timer.getMetricName(), timer.getTimer());
+		display.tracker.increment(timer.getStartNano());
+		total.increment(timer.getStartNano());
+	}
+
+	/**
+	 * Counts ended request.<br>
+	 *
+	 * @param timer
+	 *            - timer passed to start
+	 * @param durationNano
+	 *            - duration of request in nanoseconds
+	 */
+	public void stop(UriTimer timer, long durationNano) {
+		Display display = displays.get(timer.getMetricName());
+		if (display != null) {
+			display.tracker.decrement();
+			display.duration.add(durationNano, timer.getStartNano() + durationNano);
+		}
+		total.decrement();
+	}
+
+	/**
+	 * Counts request that ended without being measured (rejected), its duration does not count to the mean.<br>
+	 *
+	 * @param timer
+	 *            - timer passed to start
+	 */
+	public void discard(UriTimer timer) {
+		Display display = displays.get(timer.getMetricName());
+		if (display != null)
+			display.tracker.decrement();
+		total.decrement();
+	}
+
+	private Display register(String displayName, Timer timer) {
+		final Display display = new Display(new InFlightTracker(intervalNano), new MeanDuration(intervalNano), timer);
+		Display existing = displays.putIfAbsent(displayName, display);
+		if (existing != null)
+			return existing;
+		registerGauges(MetricRegistry.name(displayName, IN_FLIGHT_NAME), display.tracker, new Gauge<Double>() {
+			@Override
+			public Double getValue() {
+				return display.getEstimated();
+			}
+		});
+		return display;
+	}
+
+	private void registerGauges(String prefix, final InFlightTracker tracker, Gauge<Double> estimated) {
+		registry.register(MetricRegistry.name(prefix, "current"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return tracker.getCount();
+			}
+		});
+		registry.register(MetricRegistry.name(prefix, "peak"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return tracker.getPeak();
+			}
+		});
+		registry.register(MetricRegistry.name(prefix, "estimated"), estimated);
+	}
+
+	/**
+	 *
+	 * @param displayName
+	 * @return number of requests of display in progress
+	 */
+	public long getCount(String displayName) {
+		Display display = displays.get(displayName);
+		return display == null ? 0 : display.tracker.getCount();
+	}
+
+	/**
+	 *
+	 * @return sum of estimated concurrency of all displays
+	 */
+	public double getEstimated() {
+		double estimated = 0;
+		for (Display display : displays.values()) {
+			estimated += display.getEstimated();
+		}
+		return estimated;
+	}
+
+	/**
+	 *
+	 * @return estimated concurrency divided by capacity, 0 if capacity is not configured
+	 */
+	public double getSaturation() {
+		return capacity > 0 ? getEstimated() / capacity : 0;
+	}
+
+	/**
+	 * Returns current, peak and estimated number of requests in progress per display, global values are under the key TOTAL together with
+	 * saturation.<br>
+	 *
+	 * @return
+	 */
+	public Map<String, Map<String, Number>> getStatistics() {
+		Map<String, Map<String, Number>> statistics = new TreeMap<String, Map<String, Number>>();
+		double estimated = 0;
+		for (Entry<String, Display> entry : displays.entrySet()) {
+			Display display = entry.getValue();
+			double displayEstimated = display.getEstimated();
+			estimated += displayEstimated;
+			statistics.put(entry.getKey(), statistics(display.tracker, displayEstimated));
+		}
+		Map<String, Number> totalStatistics = statistics(total, estimated);
+		if (capacity > 0) {
+			totalStatistics.put("capacity", capacity);
+			totalStatistics.put("saturation", estimated / capacity);
+		}
+		statistics.put(TOTAL, totalStatistics);
+		return statistics;
+	}
+
+	private Map<String, Number> statistics(InFlightTracker tracker, double estimated) {
+		Map<String, Number> statistics = new LinkedHashMap<String, Number>();
+		statistics.put("current", tracker.getCount());
+		statistics.put("peak", tracker.getPeak());
+		statistics.put("estimated", estimated);
+		return statistics;
+	}
+
+	private static final class Display {
+		private final InFlightTracker tracker;
+		private final MeanDuration duration;
+		private final Timer timer;
+
+		private Display(InFlightTracker tracker, MeanDuration duration, Timer timer) {
+			this.tracker = tracker;
+			this.duration = duration;
+			this.timer = timer;
+		}
+
+		private double getEstimated() {
+			// Little's law: requests in progress = arrival rate (per second) * mean time in system (seconds)
+			return timer.getOneMinuteRate() * duration.getMean(System.nanoTime()) / TimeUnit.SECONDS.toNanos(1);
+		}
+	}
+
+	/**
+	 * Sum and count of durations of current interval, mean of the last complete interval in which requests ended.<br>
+	 * Interval is rotated by the first add or read after its end. Sum and count are taken one after the other, a request ending at the same time
+	 * may be split between intervals, which moves the mean by at most one request.<br>
+	 */
+	static final class MeanDuration {
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong count = new AtomicLong();
+		private final long intervalNano;
+		private volatile long intervalEndNano;
+		// NaN until the first interval completes
+		private volatile double previousMean = Double.NaN;
+
+		MeanDuration(long intervalNano) {
+			this.intervalNano = intervalNano;
+			this.intervalEndNano = System.nanoTime() + intervalNano;
+		}
+
+		void add(long durationNano, long nowNano) {
+			if (nowNano - intervalEndNano >= 0)
+				rotate(nowNano);
+			sum.addAndGet(durationNano);
+			count.incrementAndGet();
+		}
+
+		/**
+		 *
+		 * @param nowNano
+		 * @return mean duration in nanoseconds of the last complete interval in which requests ended, of the current interval until the first
+		 *         one completes, 0 if no request ended
+		 */
+		double getMean(long nowNano) {
+			if (nowNano - intervalEndNano >= 0)
+				rotate(nowNano);
+			double mean = previousMean;
+			if (Double.isNaN(mean)) {
+				long n = count.get();
+				return n == 0 ? 0 : (double) sum.get() / n;
+			}
+			return mean;
+		}
+
+		private synchronized void rotate(long nowNano) {
+			if (nowNano - intervalEndNano < 0)
+				return;
+			long n = count.getAndSet(0);
+			long s = sum.getAndSet(0);
+			long intervalsPassed = (nowNano - intervalEndNano) / intervalNano + 1;
+			// no request ended, requests longer than interval keep the mean of the interval they ended in
+			if (n > 0)
+				previousMean = (double) s / n;
+			intervalEndNano += intervalsPassed * intervalNano;
+		}
+	}
+}
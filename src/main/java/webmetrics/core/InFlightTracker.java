@@ -0,0 +1,105 @@
+/**
+ * Counts requests in progress and keeps peak count of every interval.<br>
+ * Count is split into stripes chosen by thread, each stripe on its own cache line, so that threads starting and ending requests rarely write the same
+ * memory. Request may end on another thread than it started on (async processing), only sum of stripes is meaningful.<br>
+ * Peak is raised by the thread that starts request after summing stripes, so it may miss short spikes between concurrent increments but never
+ * reports more than was in progress at some moment. Reported peak is the peak of the last complete interval.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class InFlightTracker {
+
+	// longs per 64 byte cache line
+	private static final int PADDING = 8;
+	private static final int MAX_STRIPES = 16;
+	private static final int STRIPES = stripeCount();
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+	private final AtomicLong peak = new AtomicLong();
+	private final long intervalNano;
+	private volatile long intervalEndNano;
+	private volatile long previousPeak;
+
+	/**
+	 *
+	 * @param intervalNano
+	 *            - length of peak interval in nanoseconds, must be positive
+	 */
+	public InFlightTracker(long intervalNano) {
+		if (intervalNano <= 0)
+			throw new IllegalArgumentException("intervalNano must be positive: " + intervalNano);
+		this.intervalNano = intervalNano;
+		this.intervalEndNano = System.nanoTime() + intervalNano;
+	}
+
+	private static int stripeCount() {
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() && stripes < MAX_STRIPES)
+			stripes <<= 1;
+		return stripes;
+	}
+
+	private static int cell() {
+		return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+	}
+
+	/**
+	 * Counts started request.<br>
+	 *
+	 * @param nowNano
+	 *            - nano time request started
+	 */
+	public void increment(long nowNano) {
+		cells.incrementAndGet(cell());
+		if (nowNano - intervalEndNano >= 0)
+			rotate(nowNano);
+		long count = getCount();
+		long current;
+		while (count > (current = peak.get()) && !peak.compareAndSet(current, count))
+			;
+	}
+
+	/**
+	 * Counts ended request.<br>
+	 */
+	public void decrement() {
+		cells.decrementAndGet(cell());
+	}
+
+	/**
+	 *
+	 * @return number of requests in progress
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			count += cells.get(i * PADDING);
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return highest number of requests in progress during last complete interval
+	 */
+	public long getPeak() {
+		long now = System.nanoTime();
+		if (now - intervalEndNano >= 0)
+			rotate(now);
+		return previousPeak;
+	}
+
+	private synchronized void rotate(long nowNano) {
+		if (nowNano - intervalEndNano < 0)
+			return;
+		long intervalsPassed = (nowNano - intervalEndNano) / intervalNano + 1;
+		// new interval starts with requests still in progress
+		long lastPeak = peak.getAndSet(getCount());
+		// if no request started during whole intervals, count did not rise above what was in progress at the end of last interval
+		previousPeak = intervalsPassed == 1 ? lastPeak : getCount();
+		intervalEndNano += intervalsPassed * intervalNano;
+	}
+}
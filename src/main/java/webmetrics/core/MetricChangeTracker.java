@@ -0,0 +1,177 @@
+/**
+ * Tracks which metrics of the registry changed so that reporters can export only changed metrics.<br>
+ * Every export request takes new version. Counting metric (counter, meter, timer, histogram) is stamped with the version when its count differs
+ * from the previous export request. Detecting change costs reading one count per counting metric and nothing is added to recording of requests,
+ * snapshots and serialization are done only for metrics changed since version known to the reporter. Gauges are never read for change detection,
+ * many of them compute their value (snapshots, estimates, JVM beans); they are exported, all of them, only when requested.<br>
+ * Counts of last HISTORY versions are kept per metric, so delta since any of them is exact. Version token starts with epoch of the tracker, random
+ * id taken when it is created. Reporter asking for older version or version of another epoch (application restarted) gets full counts as deltas
+ * and should treat it as a reset.<br>
+ */
+package webmetrics.core;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+public class MetricChangeTracker {
+
+	static final int HISTORY = 16;
+
+	private final MetricRegistry registry;
+	private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+	// key is metric name, guarded by this
+	private final Map<String, Tracked> tracked = new HashMap<String, Tracked>();
+	// guarded by this
+	private long version;
+
+	public MetricChangeTracker(MetricRegistry registry) {
+		if (registry == null)
+			throw new IllegalArgumentException("registry is required parameter");
+		this.registry = registry;
+	}
+
+	/**
+	 * Takes new version and returns counting metrics changed after given version.<br>
+	 *
+	 * @param since
+	 *            - version token returned by previous call, null or empty for all metrics
+	 * @param includeGauges
+	 *            - true if all gauges should be exported as well
+	 * @return
+	 */
+	public synchronized ChangeSet getChangesSince(String since, boolean includeGauges) {
+		long current = ++version;
+		long sinceVersion = parseVersion(since);
+		boolean exact = sinceVersion > 0 && sinceVersion < current && current - sinceVersion < HISTORY;
+		SortedMap<String, Metric> changed = new TreeMap<String, Metric>();
+		SortedMap<String, Long> deltas = new TreeMap<String, Long>();
+		// metrics of unknown version are all exported
+		long base = exact ? sinceVersion : 0;
+		for (Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+			Metric metric = entry.getValue();
+			if (metric instanceof Gauge) {
+				if (includeGauges)
+					changed.put(entry.getKey(), metric);
+				continue;
+			}
+			if (!(metric instanceof Counting))
+				continue;
+			Tracked state = tracked.get(entry.getKey());
+			if (state == null || state.metric != metric) {
+				// new or replaced metric, all versions before it count from zero
+				state = new Tracked((Counting) metric, current);
+				tracked.put(entry.getKey(), state);
+			}
+			state.observe(current);
+			if (state.changedVersion <= base)
+				continue;
+			changed.put(entry.getKey(), metric);
+			long count = state.counts[(int) (current % HISTORY)];
+			long baseCount = exact && sinceVersion >= state.createdVersion ? state.counts[(int) (sinceVersion % HISTORY)] : 0;
+			deltas.put(entry.getKey(), count - baseCount);
+		}
+		// forget removed metrics
+		for (Iterator<String> names = tracked.keySet().iterator(); names.hasNext();) {
+			if (!registry.getMetrics().containsKey(names.next()))
+				names.remove();
+		}
+		return new ChangeSet(epoch + "." + current, exact || sinceVersion == 0, changed, deltas);
+	}
+
+	/**
+	 *
+	 * @param since
+	 * @return version of token, 0 if token is empty, -1 if it is of another epoch or malformed
+	 */
+	private long parseVersion(String since) {
+		if (since == null || since.trim().isEmpty())
+			return 0;
+		int dot = since.lastIndexOf('.');
+		if (dot < 0 || !since.substring(0, dot).equals(epoch))
+			return -1;
+		try {
+			return Long.parseLong(since.substring(dot + 1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static final class Tracked {
+		private final Counting metric;
+		// version metric was first seen with
+		private final long createdVersion;
+		// counts of metric at last HISTORY versions, indexed by version modulo HISTORY
+		private final long[] counts = new long[HISTORY];
+		private long changedVersion;
+		private boolean observed;
+
+		private Tracked(Counting metric, long createdVersion) {
+			this.metric = metric;
+			this.createdVersion = createdVersion;
+		}
+
+		private void observe(long version) {
+			long count = metric.getCount();
+			long previous = counts[(int) ((version - 1) % HISTORY)];
+			counts[(int) (version % HISTORY)] = count;
+			if (!observed || count != previous)
+				changedVersion = version;
+			observed = true;
+		}
+	}
+
+	/**
+	 * Metrics changed since requested version.<br>
+	 */
+	public static class ChangeSet {
+		private final String version;
+		private final boolean exact;
+		private final SortedMap<String, Metric> metrics;
+		private final SortedMap<String, Long> deltas;
+
+		ChangeSet(String version, boolean exact, SortedMap<String, Metric> metrics, SortedMap<String, Long> deltas) {
+			this.version = version;
+			this.exact = exact;
+			this.metrics = metrics;
+			this.deltas = deltas;
+		}
+
+		/**
+		 *
+		 * @return version token to ask for next changes with
+		 */
+		public String getVersion() {
+			return version;
+		}
+
+		/**
+		 *
+		 * @return false if requested version is too old or of another epoch and deltas are full counts
+		 */
+		public boolean isExact() {
+			return exact;
+		}
+
+		public SortedMap<String, Metric> getMetrics() {
+			return metrics;
+		}
+
+		/**
+		 *
+		 * @return increase of count since requested version for counting metrics
+		 */
+		public SortedMap<String, Long> getDeltas() {
+			return deltas;
+		}
+	}
+}
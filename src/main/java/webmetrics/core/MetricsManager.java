@@ -20,19 +20,50 @@
  */
 package webmetrics.core;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 
+import webmetrics.admin.HealthCheckManager;
+import webmetrics.config.ConfigReader;
+import webmetrics.config.HealthConfig;
 import webmetrics.config.MetricConfig;
+import webmetrics.config.RateLimitConfig;
+import webmetrics.config.SloConfig;
+import webmetrics.core.HeavyHitters.HeavyHitter;
+import webmetrics.core.MetricChangeTracker.ChangeSet;
+import webmetrics.executor.InstrumentedExecutorService;
+import webmetrics.http.HttpClientMetrics;
+import webmetrics.http.InstrumentedHttpURLConnection;
+import webmetrics.jdbc.InstrumentedDataSource;
+import webmetrics.jdbc.JdbcMetrics;
+import webmetrics.jdbc.SqlStatistics;
+import webmetrics.journal.RequestJournal;
+import webmetrics.jvm.JvmMetrics;
+import webmetrics.shm.SharedMetricsWriter;
+import webmetrics.snapshot.MetricSnapshot;
 
 public class MetricsManager {
 
@@ -42,7 +73,8 @@ public class MetricsManager {
 	 * Creates new instance of web metric manager with custom web metric
 	 * configuration.<br>
 	 * Only one instance is allowed per application (in current version of
-	 * component).<br>
+	 * component), application gets it by instance(). Constructor is called
+	 * directly only by tests.<br>
 	 * Name of custom file may not be "webmetrics-default.xml" located at the
 	 * root of class path as this is the name and location of default
 	 * configuration.<br>
@@ -55,12 +87,7 @@ public class MetricsManager {
 	 *            - optional, if null is provided, only default configuration
 	 *            will be used
 	 */
-	private MetricsManager(String customWebMetricConfig) {
-		synchronized (MetricsManager.class) {
-			if (instanceCreated)
-				throw new IllegalStateException("Another instance of WebMetricManager already exists");
-			instanceCreated = true;
-		}
+	MetricsManager(String customWebMetricConfig) {
 		webMetricConfig = new MetricConfig(customWebMetricConfig);
 		if (!webMetricConfig.isEnabled()) {
 			logger.info("Metrics component is not enabled");
@@ -73,14 +100,67 @@ public class MetricsManager {
 		case 2:
 			whitelistManager = new UriWhitelistManagerImpl2();
 			break;
+		case 3:
+			whitelistManager = new UriWhitelistManagerImpl3();
+			break;
 		default:
 			throw new IllegalArgumentException(
-					"Allowed pattern versions are only 1 or 2, but got: " + webMetricConfig.getUriPatternVersion());
+					"Allowed pattern versions are only 1, 2 or 3, but got: " + webMetricConfig.getUriPatternVersion());
 		}
 		whitelistManager.setExceptionOnInvalidPattern(true);
 		metricsRegistry = new MetricRegistry();
 		jmxReporter = JmxReporter.forRegistry(metricsRegistry).inDomain(webMetricConfig.getDomain()).build();
+		changeTracker = new MetricChangeTracker(metricsRegistry);
 		buildWhitelistedUri();
+		buildStripedRecorders();
+		// before any other metric is created, restored metrics are then returned by the registry
+		buildSnapshot();
+		buildSloTrackers();
+		if (webMetricConfig.getHeavyHitterCount() > 0) {
+			heavyHitters = new HeavyHitters(webMetricConfig.getHeavyHitterCount());
+		}
+		if (webMetricConfig.isNormalizeNonWhiteListedUri() && webMetricConfig.isEnableNonWhiteListedUri()
+				&& webMetricConfig.getNonWhiteListName() != null) {
+			uriNormalizer = new UriNormalizer(webMetricConfig.getNonWhiteListName(), webMetricConfig.isSkipContextName(),
+					webMetricConfig.getMaxNormalizedUris());
+		}
+		if (webMetricConfig.isEnablePayloadSize()) {
+			payloadMetrics = new PayloadMetrics(metricsRegistry);
+		}
+		if (webMetricConfig.isEnableResponseTiming()) {
+			responseTimingMetrics = new ResponseTimingMetrics(metricsRegistry);
+		}
+		buildLoadShedding();
+		buildRateLimits();
+		if (webMetricConfig.isEnableInFlight()) {
+			inFlightMetrics = new InFlightMetrics(metricsRegistry, TimeUnit.SECONDS.toNanos(webMetricConfig.getInFlightPeakInterval()),
+					webMetricConfig.getContainerCapacity());
+		}
+		if (webMetricConfig.isEnableJvmMetrics()) {
+			jvmMetrics = new JvmMetrics(TimeUnit.SECONDS.toNanos(webMetricConfig.getJvmMetricsCache()));
+			metricsRegistry.registerAll(jvmMetrics);
+		}
+		if (webMetricConfig.getJournalFile() != null) {
+			try {
+				journal = new RequestJournal(new File(webMetricConfig.getJournalFile()), webMetricConfig.getJournalCapacity());
+			} catch (IOException e) {
+				// application can run without journal
+				logger.error("Cannot create request journal " + webMetricConfig.getJournalFile(), e);
+			}
+		}
+		if (webMetricConfig.getSharedMetricsFile() != null) {
+			sharedMetrics = new SharedMetricsWriter(metricsRegistry, new File(webMetricConfig.getSharedMetricsFile()),
+					webMetricConfig.getSharedMetricsCapacity(), webMetricConfig.getSharedMetricsInterval());
+		}
+		Map<String, HealthConfig> healthChecks = webMetricConfig.getHealthChecks();
+		if (healthChecks != null && !healthChecks.isEmpty()) {
+			for (Entry<String, HealthConfig> entry : healthChecks.entrySet()) {
+				// threshold would never be evaluated
+				if (entry.getValue().getInFlight() != null && inFlightMetrics == null)
+					throw new IllegalArgumentException("Health check inFlight of display " + entry.getKey() + " requires enableInFlight");
+			}
+			healthEvaluator = new HealthEvaluator(this, healthChecks, webMetricConfig.getHealthCheckInterval());
+		}
 		// validateHistogramBuckets();
 	}
 
@@ -109,9 +189,20 @@ public class MetricsManager {
 			return null;
 		}
 		// uriTimer.remove();
+		if (webMetricConfig.isSpringNaming()) {
+			// display is set by nameTimer once handler is known
+			UriTimer uriTimerMetric = getUnnamedTimer(uri, consumer);
+			uriTimerMetric.start();
+			return uriTimerMetric;
+		}
 		UriTimer uriTimerMetric = getTimerForURI(uri, consumer);
 		if (uriTimerMetric != null) {
+			RequestContext requestContext = new RequestContext(uriTimerMetric.getMetricName());
+			uriTimerMetric.setRequestContext(requestContext);
+			RequestContext.attach(requestContext);
 			uriTimerMetric.start();
+			if (inFlightMetrics != null)
+				inFlightMetrics.start(uriTimerMetric);
 		}
 		return uriTimerMetric;
 	}
@@ -121,10 +212,462 @@ public class MetricsManager {
 			return;
 		}
 		if (timer != null) {
+			if (!resolveDisplay(timer)) {
+				discardUnnamedTimer(timer);
+				return;
+			}
 			long duration = timer.stop();
+			if (inFlightMetrics != null)
+				inFlightMetrics.stop(timer, duration);
+			if (timer.getLimiter() != null)
+				timer.getLimiter().release(duration, timer.getStartNano() + duration);
+			RequestContext.attach(null);
+			if (jdbcMetrics != null) {
+				jdbcMetrics.recordRequest(timer.getRequestContext());
+			}
+			if (httpClientMetrics != null) {
+				httpClientMetrics.recordRequest(timer.getRequestContext());
+			}
 			markMeterForStatusCode(timer.getMetricName(), responseStatus);
-			addToBucket(timer.getMetricName(), duration);
+			addToBucket(timer.getMetricName(), duration, timer.getTraceId());
+			recordSlowRequest(timer, responseStatus, duration);
+			if (journal != null)
+				journal.append(timer.getMetricName(), timer.getConsumerAlias(), responseStatus, duration, timer.getResponseBytes());
+			if (heavyHitters != null && !timer.isWhiteListed())
+				heavyHitters.addTime(timer.getUri(), duration);
+			if (sloTrackers != null) {
+				SloTracker sloTracker = sloTrackers.get(timer.getMetricName());
+				if (sloTracker != null)
+					sloTracker.record(responseStatus, duration, timer.getStartNano() + duration);
+			}
+		}
+	}
+
+	/**
+	 * Sets display of request started with Spring naming (see metrics-param springNaming) from pattern of handler that matched it, i.e.
+	 * "/orders/{id}". Called by MetricsHandlerInterceptor once handler is known.<br>
+	 * Display of every pattern is resolved once and cached together with its timer, URI of request is never matched against white list: white
+	 * listed pattern is measured as its display, other patterns as non-white listed URIs. With no white list every pattern is its own display,
+	 * generated the same way as for white listed URIs without display, i.e. "/orders/{id}" is measured as "orders.id".<br>
+	 * Does nothing if timer already has display.<br>
+	 * 
+	 * @param timer
+	 *            - timer returned by startTimerForUri, if null nothing is done
+	 * @param pattern
+	 *            - best matching pattern of handler, null if request has no handler
+	 */
+	public void nameTimer(UriTimer timer, String pattern) {
+		if (timer == null || timer.getMetricName() != null) {
+			return;
+		}
+		PatternHandle handle = getPatternHandle(pattern == null ? NO_PATTERN : pattern);
+		if (handle.displayName == null) {
+			return;
+		}
+		Timer consumerTimer = null;
+		if (timer.getConsumerAlias() != null) {
+			consumerTimer = metricsRegistry.timer(handle.displayName + "." + METRIC_CONSUMERS_PREFIX + "." + timer.getConsumerAlias());
+		}
+		timer.bind(handle.timer, consumerTimer, handle.displayName);
+		timer.setWhiteListed(handle.whiteListed);
+		if (heavyHitters != null && !handle.whiteListed)
+			heavyHitters.offer(timer.getUri());
+		if (timer.getConsumer() != null)
+			countUniqueConsumer(handle.displayName, timer.getConsumer());
+		RequestContext requestContext = new RequestContext(handle.displayName);
+		timer.setRequestContext(requestContext);
+		RequestContext.attach(requestContext);
+		if (inFlightMetrics != null)
+			inFlightMetrics.start(timer);
+	}
+
+	/**
+	 * Sets display of timer started with Spring naming whose request did not reach any handler, see nameTimer.<br>
+	 * 
+	 * @param timer
+	 * @return false if timer has no display, request is not measured
+	 */
+	private boolean resolveDisplay(UriTimer timer) {
+		if (timer.getMetricName() == null)
+			nameTimer(timer, null);
+		return timer.getMetricName() != null;
+	}
+
+	/**
+	 * Returns cached display and timer of handler pattern, resolves them for the first request of pattern.<br>
+	 * 
+	 * @param pattern
+	 * @return
+	 */
+	private PatternHandle getPatternHandle(String pattern) {
+		PatternHandle handle = patternHandles.get(pattern);
+		if (handle != null)
+			return handle;
+		Map<String, String> uris = webMetricConfig.getWhiteListedUris();
+		String displayName = null;
+		if (!NO_PATTERN.equals(pattern)) {
+			if (uris == null || uris.isEmpty())
+				displayName = generateDisplayName(pattern);
+			else
+				displayName = uris.get(pattern);
+		}
+		boolean whiteListed = displayName != null;
+		if (!whiteListed) {
+			// as configured, can be null
+			displayName = webMetricConfig.isEnableNonWhiteListedUri() ? webMetricConfig.getNonWhiteListName() : null;
+			whiteListed = false;
+		}
+		handle = new PatternHandle(displayName, displayName == null ? null : metricsRegistry.timer(displayName + "." + METRIC_NAME_PREFIX),
+				whiteListed);
+		PatternHandle existing = patternHandles.putIfAbsent(pattern, handle);
+		return existing != null ? existing : handle;
+	}
+
+	/**
+	 * 
+	 * @param pattern
+	 *            - handler pattern, never contains context
+	 * @return dotted display name of pattern as generated for white listed URIs, i.e. "/orders/{id}" becomes "orders.id", null if pattern has no
+	 *         element to generate it from
+	 */
+	private String generateDisplayName(String pattern) {
+		try {
+			return ConfigReader.generateDisplayName(pattern, false);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns timer without display for Spring naming, display is set later by nameTimer.<br>
+	 * 
+	 * @param uri
+	 * @param consumer
+	 * @return
+	 */
+	private UriTimer getUnnamedTimer(String uri, String consumer) {
+		UriTimer uriTimer = new UriTimer(null, uri, null);
+		if (consumer != null) {
+			uriTimer.setConsumer(consumer);
+			if (webMetricConfig.getConsumers() != null)
+				uriTimer.setConsumerAlias(webMetricConfig.getConsumers().get(consumer));
+		}
+		return uriTimer;
+	}
+
+	/**
+	 * Ends request that is not measured because it has no display, only releases concurrency limit it holds.<br>
+	 * 
+	 * @param timer
+	 */
+	private void discardUnnamedTimer(UriTimer timer) {
+		if (timer.getLimiter() != null) {
+			long duration = System.nanoTime() - timer.getStartNano();
+			timer.getLimiter().release(duration, timer.getStartNano() + duration);
+		}
+		RequestContext.attach(null);
+	}
+
+	/**
+	 * Returns N slowest requests of current and previous window for every display that had requests, key is display name.<br>
+	 * Returns empty map if slow requests are not recorded.<br>
+	 * 
+	 * @return
+	 */
+	public Map<String, SlowRequestRecorder> getSlowRequestRecorders() {
+		return Collections.<String, SlowRequestRecorder> unmodifiableMap(slowRequestRecorders);
+	}
+
+	/**
+	 * Admits started request to processing if concurrency limit of its display (or global limit) is not reached.<br>
+	 * Rejected request is counted by "[display].loadShedding.rejected" and "loadShedding.rejected" meters, its timer is discarded and must not be
+	 * stopped.<br>
+	 * 
+	 * @param timer
+	 *            - timer returned by startTimerForUri, if null request is admitted
+	 * @return false if request should be rejected with status loadSheddingStatus
+	 */
+	public boolean tryAcquire(UriTimer timer) {
+		if (timer == null || (globalLimiter == null && displayLimiters == null)) {
+			return true;
+		}
+		ConcurrencyLimiter limiter = globalLimiter != null ? globalLimiter : getDisplayLimiter(timer.getMetricName());
+		if (limiter.tryAcquire()) {
+			timer.setLimiter(limiter);
+			return true;
+		}
+		// request started with Spring naming has no display yet
+		if (timer.getMetricName() != null)
+			metricsRegistry.meter(MetricRegistry.name(timer.getMetricName(), LOAD_SHEDDING_NAME_PREFIX, "rejected")).mark();
+		rejectedMeter.mark();
+		discardTimer(timer);
+		return false;
+	}
+
+	/**
+	 * Checks rate limit of consumer of started request.<br>
+	 * Throttled request is counted by "[display].consumers.[alias].throttled" and "consumers.[alias].throttled" meters, its timer is discarded and
+	 * must not be stopped.<br>
+	 * 
+	 * @param timer
+	 *            - timer returned by startTimerForUri, if null request is not throttled
+	 * @return true if request should be rejected with status 429
+	 */
+	public boolean isThrottled(UriTimer timer) {
+		if (timer == null || rateLimiters == null || timer.getConsumerAlias() == null) {
+			return false;
+		}
+		TokenBucket bucket = rateLimiters.get(timer.getConsumerAlias());
+		if (bucket == null || bucket.tryAcquire(timer.getStartNano())) {
+			return false;
+		}
+		if (timer.getMetricName() != null)
+			metricsRegistry.meter(MetricRegistry.name(timer.getMetricName(), METRIC_CONSUMERS_PREFIX, timer.getConsumerAlias(), "throttled")).mark();
+		metricsRegistry.meter(MetricRegistry.name(METRIC_CONSUMERS_PREFIX, timer.getConsumerAlias(), "throttled")).mark();
+		discardTimer(timer);
+		return true;
+	}
+
+	/**
+	 * Forgets started request that is rejected without processing.<br>
+	 * 
+	 * @param timer
+	 */
+	private void discardTimer(UriTimer timer) {
+		// in-flight requests are counted once timer has display
+		if (inFlightMetrics != null && timer.getMetricName() != null)
+			inFlightMetrics.discard(timer);
+		RequestContext.attach(null);
+	}
+
+	private ConcurrencyLimiter getDisplayLimiter(String displayName) {
+		ConcurrencyLimiter limiter = displayLimiters.get(displayName);
+		if (limiter == null) {
+			limiter = new ConcurrencyLimiter(webMetricConfig.getContainerCapacity());
+			ConcurrencyLimiter existing = displayLimiters.putIfAbsent(displayName, limiter);
+			if (existing != null)
+				return existing;
+			registerLimitGauge(MetricRegistry.name(displayName, LOAD_SHEDDING_NAME_PREFIX, "limit"), limiter);
+		}
+		return limiter;
+	}
+
+	private void registerLimitGauge(String name, final ConcurrencyLimiter limiter) {
+		metricsRegistry.register(name, new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return limiter.getLimit();
+			}
+		});
+	}
+
+	/**
+	 * Creates token buckets of consumers with configured rate limit.<br>
+	 */
+	private void buildRateLimits() {
+		Map<String, RateLimitConfig> rateLimits = webMetricConfig.getRateLimits();
+		if (rateLimits == null || rateLimits.isEmpty())
+			return;
+		rateLimiters = new HashMap<String, TokenBucket>();
+		for (Entry<String, RateLimitConfig> entry : rateLimits.entrySet()) {
+			rateLimiters.put(entry.getKey(), new TokenBucket(entry.getValue().getRequestsPerSecond(), entry.getValue().getBurst()));
+		}
+	}
+
+	/**
+	 * Creates global limiter or map of display limiters depending on loadShedding parameter.<br>
+	 */
+	private void buildLoadShedding() {
+		String mode = webMetricConfig.getLoadShedding();
+		if (mode == null)
+			return;
+		int status = webMetricConfig.getLoadSheddingStatus();
+		if (status != HttpURLConnection.HTTP_UNAVAILABLE && status != TOO_MANY_REQUESTS)
+			throw new IllegalArgumentException("Allowed load shedding statuses are only 503 or 429, but got: " + status);
+		if (webMetricConfig.getContainerCapacity() <= 0)
+			throw new IllegalArgumentException("Load shedding requires positive containerCapacity, but got: " + webMetricConfig.getContainerCapacity());
+		if (LOAD_SHEDDING_GLOBAL.equals(mode)) {
+			globalLimiter = new ConcurrencyLimiter(webMetricConfig.getContainerCapacity());
+			registerLimitGauge(MetricRegistry.name(LOAD_SHEDDING_NAME_PREFIX, "limit"), globalLimiter);
+		} else if (LOAD_SHEDDING_DISPLAY.equals(mode)) {
+			// with Spring naming display is known only after the request is admitted
+			if (webMetricConfig.isSpringNaming())
+				throw new IllegalArgumentException("Load shedding per display is not supported with springNaming, use global");
+			displayLimiters = new ConcurrentHashMap<String, ConcurrencyLimiter>();
+		} else {
+			throw new IllegalArgumentException("Allowed load shedding modes are only global or display, but got: " + mode);
+		}
+		rejectedMeter = metricsRegistry.meter(MetricRegistry.name(LOAD_SHEDDING_NAME_PREFIX, "rejected"));
+		logger.info("Load shedding enabled with " + mode + " concurrency limit");
+	}
+
+	/**
+	 * Returns current, peak and estimated number of requests in progress per display and globally (see InFlightMetrics).<br>
+	 * Returns empty map if in-flight requests are not tracked.<br>
+	 * 
+	 * @return
+	 */
+	public Map<String, Map<String, Number>> getInFlightStatistics() {
+		if (inFlightMetrics == null)
+			return Collections.emptyMap();
+		return inFlightMetrics.getStatistics();
+	}
+
+	/**
+	 * Reports request and response payload sizes of finished request (see PayloadMetrics).<br>
+	 * Should be called before stopTimer.<br>
+	 * 
+	 * @param timer
+	 *            - timer returned by startTimerForUri, if null or without display nothing is reported
+	 * @param requestBytes
+	 *            - number of bytes of request body read by application
+	 * @param responseBytes
+	 *            - number of bytes of response body written by application
+	 */
+	public void recordPayload(UriTimer timer, long requestBytes, long responseBytes) {
+		if (timer == null || payloadMetrics == null || !resolveDisplay(timer)) {
+			return;
 		}
+		timer.setResponseBytes(responseBytes);
+		payloadMetrics.record(timer.getMetricName(), requestBytes, responseBytes);
+	}
+
+	/**
+	 * Returns true if MetricsFilter should count payload bytes of requests.<br>
+	 * 
+	 * @return
+	 */
+	public boolean isPayloadSizeEnabled() {
+		return payloadMetrics != null;
+	}
+
+	/**
+	 * Reports server think time, time to first byte and response write time of finished request (see ResponseTimingMetrics).<br>
+	 * Should be called right before stopTimer.<br>
+	 * 
+	 * @param timer
+	 *            - timer returned by startTimerForUri, if null or without display nothing is reported
+	 * @param firstWriteNano
+	 *            - nano time of first write of response body, 0 if nothing was written
+	 * @param commitNano
+	 *            - nano time response was committed, 0 if it was not committed yet
+	 */
+	public void recordResponseTiming(UriTimer timer, long firstWriteNano, long commitNano) {
+		if (timer == null || responseTimingMetrics == null || !resolveDisplay(timer)) {
+			return;
+		}
+		responseTimingMetrics.record(timer.getMetricName(), timer.getStartNano(), firstWriteNano, commitNano, System.nanoTime());
+	}
+
+	/**
+	 * Returns true if MetricsFilter should track first write and commit of responses.<br>
+	 * 
+	 * @return
+	 */
+	public boolean isResponseTimingEnabled() {
+		return responseTimingMetrics != null;
+	}
+
+	/**
+	 * Wraps executor service to measure its queue wait time, execution time, active count, queue depth and rejections under
+	 * "executors.[poolName]".<br>
+	 * Each task is also attributed to display of the request that submitted it.<br>
+	 * If metrics are not enabled, returns passed executor AS IS.<br>
+	 * 
+	 * @param poolName
+	 *            - unique name of the pool, required
+	 * @param executor
+	 *            - executor to instrument, required
+	 * @return
+	 */
+	public ExecutorService instrumentExecutor(String poolName, ExecutorService executor) {
+		if (poolName == null || poolName.trim().equals(""))
+			throw new IllegalArgumentException("poolName is required parameter");
+		if (executor == null)
+			throw new IllegalArgumentException("executor is required parameter");
+		if (!isEnabled()) {
+			return executor;
+		}
+		logger.info("Instrumenting executor: " + poolName);
+		return new InstrumentedExecutorService(executor, metricsRegistry, EXECUTORS_NAME_PREFIX + "." + poolName.trim());
+	}
+
+	/**
+	 * Wraps data source to measure connection acquisition, statement execution and result set iteration under "db.*" and, while request is
+	 * processed, under "[display].db.*" (see JdbcMetrics).<br>
+	 * Executed SQL is also grouped by normalized statement, see getSqlStatistics().<br>
+	 * If metrics are not enabled, returns passed data source AS IS.<br>
+	 * 
+	 * @param dataSource
+	 *            - data source to instrument, required
+	 * @return
+	 */
+	public DataSource instrumentDataSource(DataSource dataSource) {
+		if (dataSource == null)
+			throw new IllegalArgumentException("dataSource is required parameter");
+		if (!isEnabled()) {
+			return dataSource;
+		}
+		if (jdbcMetrics == null) {
+			synchronized (this) {
+				if (jdbcMetrics == null)
+					jdbcMetrics = new JdbcMetrics(metricsRegistry, webMetricConfig.getMaxSqlStatements());
+			}
+		}
+		logger.info("Instrumenting data source: " + dataSource);
+		return new InstrumentedDataSource(dataSource, jdbcMetrics);
+	}
+
+	/**
+	 * Returns statistics of executed SQL grouped by normalized statement or null if no data source was instrumented.<br>
+	 * 
+	 * @return
+	 */
+	public SqlStatistics getSqlStatistics() {
+		return jdbcMetrics == null ? null : jdbcMetrics.getSqlStatistics();
+	}
+
+	/**
+	 * Wraps HTTP connection to measure latency, status class and bytes of the outbound call under "http.[hostAlias]" and, while request is
+	 * processed, under "[display].http.[hostAlias]" (see HttpClientMetrics).<br>
+	 * Connection should be wrapped right after it is opened, before request is sent.<br>
+	 * If metrics are not enabled, returns passed connection AS IS.<br>
+	 * 
+	 * @param connection
+	 *            - connection to instrument, required
+	 * @param hostAlias
+	 *            - short name of downstream service, optional, if null alias is derived from host name
+	 * @return
+	 */
+	public HttpURLConnection instrumentConnection(HttpURLConnection connection, String hostAlias) {
+		if (connection == null)
+			throw new IllegalArgumentException("connection is required parameter");
+		HttpClientMetrics clientMetrics = getHttpClientMetrics();
+		if (clientMetrics == null) {
+			return connection;
+		}
+		if (hostAlias == null)
+			hostAlias = HttpClientMetrics.getHostAlias(connection.getURL().getHost());
+		return new InstrumentedHttpURLConnection(connection, clientMetrics.begin(hostAlias));
+	}
+
+	/**
+	 * Returns metrics of outbound HTTP calls to be used by interceptors of HTTP clients other than HttpURLConnection, or null if metrics are not
+	 * enabled.<br>
+	 * 
+	 * @return
+	 */
+	public HttpClientMetrics getHttpClientMetrics() {
+		if (!isEnabled()) {
+			return null;
+		}
+		if (httpClientMetrics == null) {
+			synchronized (this) {
+				if (httpClientMetrics == null)
+					httpClientMetrics = new HttpClientMetrics(metricsRegistry);
+			}
+		}
+		return httpClientMetrics;
 	}
 
 	// -------------------------------------------
@@ -133,19 +676,71 @@ public class MetricsManager {
 	private static final String HISTOGRAM_NAME_PREFIX = "histogram";
 	private static final String STATUS_NAME_PREFIX = "status";
 	private static final String METRIC_CONSUMERS_PREFIX = "consumers";
+	private static final String EXECUTORS_NAME_PREFIX = "executors";
+	private static final String LOAD_SHEDDING_NAME_PREFIX = "loadShedding";
+	private static final String LOAD_SHEDDING_GLOBAL = "global";
+	private static final String LOAD_SHEDDING_DISPLAY = "display";
+	// key of requests without handler in cache of pattern handles
+	private static final String NO_PATTERN = "";
 
-	private static boolean instanceCreated;
 	private MetricConfig webMetricConfig;
 	private MetricRegistry metricsRegistry;
 	private JmxReporter jmxReporter;
 	private WhitelistURIManager whitelistManager;
 	private ConcurrentMap<String, Meter> metersByStatusCode = new ConcurrentHashMap<String, Meter>();
+	// recorders for displays configured with striped recording, key is display name
+	private Map<String, StripedRecorder> stripedRecorders;
+	private StripedTicker stripedTicker;
+	// display names of white listed URIs
+	private Set<String> whitelistedDisplays;
+	// tracks most frequent non-white listed URIs, null if disabled
+	private HeavyHitters heavyHitters;
+	// null if non-white listed URIs are not normalized
+	private UriNormalizer uriNormalizer;
+	// trackers of displays with service level objective, key is display name
+	private Map<String, SloTracker> sloTrackers;
+	// estimates of distinct consumers per display, key is display name
+	private final ConcurrentMap<String, UniqueConsumers> uniqueConsumers = new ConcurrentHashMap<String, UniqueConsumers>();
+	// N slowest requests per display, key is display name
+	private final ConcurrentMap<String, SlowRequestRecorder> slowRequestRecorders = new ConcurrentHashMap<String, SlowRequestRecorder>();
+	// null if payload size metrics are not enabled
+	private PayloadMetrics payloadMetrics;
+	// null if response timing metrics are not enabled
+	private ResponseTimingMetrics responseTimingMetrics;
+	// null if load shedding is not enabled or limit is per display
+	private ConcurrencyLimiter globalLimiter;
+	// null if load shedding is not enabled or limit is global, key is display name
+	private ConcurrentMap<String, ConcurrencyLimiter> displayLimiters;
+	// null if load shedding is not enabled
+	private Meter rejectedMeter;
+	// null if no consumer is rate limited, key is consumer alias
+	private Map<String, TokenBucket> rateLimiters;
+	// null if in-flight requests are not tracked
+	private InFlightMetrics inFlightMetrics;
+	// display and timer of handler patterns, used with Spring naming, key is pattern
+	private final ConcurrentMap<String, PatternHandle> patternHandles = new ConcurrentHashMap<String, PatternHandle>();
+	private MetricChangeTracker changeTracker;
+	// null if JVM metrics are not enabled
+	private JvmMetrics jvmMetrics;
+	// null if request journal is not configured or cannot be created
+	private RequestJournal journal;
+	// null if snapshot file is not configured
+	private MetricSnapshot snapshot;
+	// null if shared metrics file is not configured
+	private SharedMetricsWriter sharedMetrics;
+	// null if there are no automatic health checks
+	private HealthEvaluator healthEvaluator;
+	// created when first data source is instrumented
+	private volatile JdbcMetrics jdbcMetrics;
+	// created when first outbound HTTP call is instrumented
+	private volatile HttpClientMetrics httpClientMetrics;
 	// internally holds actual custom defined buckets
-	private Map<String, HistogramBuckets> uriBuckets;
+	private volatile Map<String, HistogramBuckets> uriBuckets;
 
 	private static final int OK = 200;
 	private static final int BAD_REQUEST = 400;
 	private static final int SERVER_ERROR = 500;
+	private static final int TOO_MANY_REQUESTS = 429;
 
 	// allow in the future to add custom status codes
 	private final static Map<Integer, String> defaultMeterNamesByStatusCode = new HashMap<Integer, String>(6);
@@ -168,7 +763,109 @@ public class MetricsManager {
 		if (uris == null || uris.isEmpty()) {
 			logger.warn("buildWhitelistedUri() returns empty collection");
 		}
-		whitelistManager.initialize(uris);
+		// with Spring naming white listed URIs are handler patterns looked up as they are, i.e. "/orders/{id}", never matched against URIs
+		if (!webMetricConfig.isSpringNaming())
+			whitelistManager.initialize(uris);
+		whitelistedDisplays = uris == null ? new HashSet<String>() : new HashSet<String>(uris.values());
+	}
+
+	/**
+	 * Creates recorders for displays configured with striped recording and registers striped metrics under the same names that direct recording
+	 * would use.<br>
+	 * Registry returns already registered metric, so the regular recording path updates striped metrics without any change.<br>
+	 */
+	private void buildStripedRecorders() {
+		Set<String> stripedDisplays = webMetricConfig.getStripedDisplays();
+		if (stripedDisplays == null || stripedDisplays.isEmpty())
+			return;
+		stripedRecorders = new HashMap<String, StripedRecorder>();
+		for (String displayName : stripedDisplays) {
+			Integer[] boundaries = webMetricConfig.isEnableHistogram() ? getResponseBuckets(displayName) : null;
+			int bucketCount = boundaries == null || boundaries.length == 0 ? 0 : boundaries.length + 1;
+			StripedRecorder recorder = new StripedRecorder(bucketCount + defaultMeterNamesByStatusCode.size());
+			metricsRegistry.register(displayName + "." + METRIC_NAME_PREFIX, new StripedTimer(recorder));
+			int cell = 0;
+			for (int idx = 0; idx < bucketCount; idx++) {
+				metricsRegistry.register(getBucketMetricName(displayName, boundaries, idx), new StripedCounter(recorder, cell++));
+			}
+			for (String statusName : defaultMeterNamesByStatusCode.values()) {
+				String key = displayName + "." + STATUS_NAME_PREFIX + "." + statusName;
+				metersByStatusCode.put(key, metricsRegistry.register(key, new StripedMeter(recorder, cell++)));
+			}
+			stripedRecorders.put(displayName, recorder);
+			logger.info("Striped recording enabled for display: " + displayName);
+		}
+		stripedTicker = new StripedTicker(stripedRecorders.values());
+	}
+
+	/**
+	 * Restores counts of metrics from snapshot if configured.<br>
+	 * JVM metrics are not part of snapshot, they describe only the running JVM.<br>
+	 */
+	private void buildSnapshot() {
+		if (webMetricConfig.getSnapshotFile() == null)
+			return;
+		snapshot = new MetricSnapshot(metricsRegistry, new File(webMetricConfig.getSnapshotFile()), webMetricConfig.getMetricNamesVersion(),
+				new MetricFilter() {
+					@Override
+					public boolean matches(String name, Metric metric) {
+						return !name.startsWith(JvmMetrics.JVM_NAME_PREFIX + ".");
+					}
+				}, webMetricConfig.getSnapshotInterval());
+		snapshot.restore();
+	}
+
+	/**
+	 * Creates trackers for displays with configured service level objective, registers their gauges and optional health checks.<br>
+	 */
+	private void buildSloTrackers() {
+		Map<String, SloConfig> slos = webMetricConfig.getSlos();
+		if (slos == null || slos.isEmpty())
+			return;
+		sloTrackers = new HashMap<String, SloTracker>();
+		for (Entry<String, SloConfig> entry : slos.entrySet()) {
+			SloTracker tracker = new SloTracker(entry.getValue());
+			tracker.registerGauges(metricsRegistry, entry.getKey());
+			if (entry.getValue().isHealthCheck()) {
+				HealthCheckManager.addHealthCheck(SloTracker.SLO_NAME_PREFIX + "." + entry.getKey(), tracker.getHealthCheck());
+			}
+			sloTrackers.put(entry.getKey(), tracker);
+			logger.info("Service level objective tracked for display: " + entry.getKey());
+		}
+	}
+
+	/**
+	 * Returns response bucket boundaries for given display: specific to the display if configured, global otherwise.<br>
+	 * 
+	 * @param baseMetricName
+	 * @return
+	 */
+	private Integer[] getResponseBuckets(String baseMetricName) {
+		Map<String, Integer[]> uriResponseBuckets = webMetricConfig.getWhitelistedResponseBuckets();
+		Integer[] uriResponseBucket = null;
+		if (uriResponseBuckets != null) {
+			uriResponseBucket = uriResponseBuckets.get(baseMetricName);
+		}
+		if (uriResponseBucket == null || uriResponseBucket.length == 0) {
+			uriResponseBucket = webMetricConfig.getResponseBuckets();
+		}
+		return uriResponseBucket;
+	}
+
+	/**
+	 * Generates full name of histogram bucket counter, i.e. "display.histogram.50-100".<br>
+	 * 
+	 * @param baseMetricName
+	 * @param boundaries
+	 * @param idx
+	 *            - index of bucket, 0 to boundaries.length
+	 * @return
+	 */
+	private String getBucketMetricName(String baseMetricName, Integer[] boundaries, int idx) {
+		String fullBucketName = baseMetricName + "." + HISTOGRAM_NAME_PREFIX + ".";
+		fullBucketName += idx == 0 ? "0-" : boundaries[idx - 1] + (idx < boundaries.length ? "-" : "");
+		fullBucketName += idx < boundaries.length ? boundaries[idx] : "-UP";
+		return fullBucketName;
 	}
 
 	/**
@@ -194,8 +891,12 @@ public class MetricsManager {
 		String metricName = whitelistManager.getDisplayMetricName(uri);
 		if (metricName == null) {
 			// non white listed URI
+			if (heavyHitters != null)
+				heavyHitters.offer(uri);
 			if (!webMetricConfig.isEnableNonWhiteListedUri())
 				return null;
+			if (uriNormalizer != null)
+				return uriNormalizer.getDisplayMetricName(uri);
 			// return as configured, can be null
 			return webMetricConfig.getNonWhiteListName();
 		}
@@ -215,8 +916,9 @@ public class MetricsManager {
 			return null;
 		Timer timer = metricsRegistry.timer(metricDisplayName + "." + METRIC_NAME_PREFIX);
 		Timer consumerTimer = null;
+		String consumerAlias = null;
 		if (consumer != null) {
-			String consumerAlias = null;
+			countUniqueConsumer(metricDisplayName, consumer);
 			if (webMetricConfig.getConsumers() != null) {
 				consumerAlias = webMetricConfig.getConsumers().get(consumer);
 			}
@@ -226,9 +928,55 @@ public class MetricsManager {
 			}
 		}
 		UriTimer uriTimer = new UriTimer(timer, consumerTimer, uri, metricDisplayName);
+		uriTimer.setConsumerAlias(consumerAlias);
+		// with no white listed URIs at all the whole site is reported as single display which is not tracked as non-white listed
+		uriTimer.setWhiteListed(whitelistedDisplays.isEmpty() || whitelistedDisplays.contains(metricDisplayName));
 		return uriTimer;
 	}
 
+	/**
+	 * Adds raw consumer id to estimate of unique consumers of display.<br>
+	 * 
+	 * @param displayName
+	 * @param consumer
+	 */
+	private void countUniqueConsumer(String displayName, String consumer) {
+		int window = webMetricConfig.getUniqueConsumerWindow();
+		if (window <= 0)
+			return;
+		UniqueConsumers displayConsumers = uniqueConsumers.get(displayName);
+		if (displayConsumers == null) {
+			displayConsumers = new UniqueConsumers(window);
+			UniqueConsumers existing = uniqueConsumers.putIfAbsent(displayName, displayConsumers);
+			if (existing != null)
+				displayConsumers = existing;
+			else
+				displayConsumers.registerGauges(metricsRegistry, displayName);
+		}
+		displayConsumers.add(consumer);
+	}
+
+	/**
+	 * Offers finished request to recorder of slowest requests of its display.<br>
+	 * 
+	 * @param timer
+	 * @param responseStatus
+	 * @param durationNano
+	 */
+	private void recordSlowRequest(UriTimer timer, int responseStatus, long durationNano) {
+		int size = webMetricConfig.getSlowRequestCount();
+		if (size <= 0)
+			return;
+		SlowRequestRecorder recorder = slowRequestRecorders.get(timer.getMetricName());
+		if (recorder == null) {
+			recorder = new SlowRequestRecorder(size, TimeUnit.SECONDS.toNanos(webMetricConfig.getSlowRequestWindow()));
+			SlowRequestRecorder existing = slowRequestRecorders.putIfAbsent(timer.getMetricName(), recorder);
+			if (existing != null)
+				recorder = existing;
+		}
+		recorder.record(timer.getUri(), timer.getConsumerAlias(), responseStatus, durationNano, timer.getStartNano() + durationNano);
+	}
+
 	/**
 	 * Adds duration to proper bucket.<br>
 	 * If URI is not white listed or if buckets are not defined, simply returns
@@ -238,8 +986,10 @@ public class MetricsManager {
 	 * 
 	 * @param baseMetricName
 	 * @param durationNano
+	 * @param traceId
+	 *            - trace id of request kept as exemplar of the bucket, can be null
 	 */
-	private void addToBucket(String baseMetricName, long durationNano) {
+	private void addToBucket(String baseMetricName, long durationNano, String traceId) {
 		try { // a temporary try-catch block to test changes for URI specific
 				// histogram buckets; need to remove when tested
 			if (/* !useBuckets || */!webMetricConfig.isEnableHistogram() || baseMetricName == null)
@@ -249,18 +999,11 @@ public class MetricsManager {
 			if (uriBuckets == null) {
 				synchronized (this) {
 					if (uriBuckets == null)
-						uriBuckets = new HashMap<String, HistogramBuckets>();
+						uriBuckets = new ConcurrentHashMap<String, HistogramBuckets>();
 				}
 			}
 			HistogramBuckets currentUriBuckets = uriBuckets.get(baseMetricName);
-			Map<String, Integer[]> uriResponseBuckets = webMetricConfig.getWhitelistedResponseBuckets();
-			Integer[] uriResponseBucket = null;
-			if (uriResponseBuckets != null) {
-				uriResponseBucket = uriResponseBuckets.get(baseMetricName);
-			}
-			if (uriResponseBucket == null || uriResponseBucket.length == 0) {
-				uriResponseBucket = webMetricConfig.getResponseBuckets();
-			}
+			Integer[] uriResponseBucket = getResponseBuckets(baseMetricName);
 			if (uriResponseBucket == null || uriResponseBucket.length == 0) {
 				return; // no buckets defined: either global or per specific set
 						// of URI/DisplayName
@@ -271,15 +1014,11 @@ public class MetricsManager {
 					if (currentUriBuckets == null) {
 						// generate uri buckets object for current URI
 						currentUriBuckets = new HistogramBuckets();
-						uriBuckets.put(baseMetricName, currentUriBuckets);
 						// total count of all buckets for a URI is count of
 						// boundaries + 1
 						currentUriBuckets.setUriBucket(new HistogramBucket[uriResponseBucket.length + 1]);
 						for (int idx = 0; idx <= uriResponseBucket.length; idx++) {
-							String fullBucketName = baseMetricName + "." + HISTOGRAM_NAME_PREFIX + ".";
-							fullBucketName += idx == 0 ? "0-"
-									: uriResponseBucket[idx - 1] + (idx < uriResponseBucket.length ? "-" : "");
-							fullBucketName += idx < uriResponseBucket.length ? uriResponseBucket[idx] : "-UP";
+							String fullBucketName = getBucketMetricName(baseMetricName, uriResponseBucket, idx);
 							HistogramBucket uriBucket = new HistogramBucket();
 							uriBucket.setMetricName(fullBucketName);
 							uriBucket.setLow(idx == 0 ? 0 : uriResponseBucket[idx - 1]);
@@ -292,6 +1031,8 @@ public class MetricsManager {
 							// empty buckets
 							metricsRegistry.counter(fullBucketName);
 						}
+						// publish only fully built buckets, readers do not synchronize
+						uriBuckets.put(baseMetricName, currentUriBuckets);
 					}
 				}
 			}
@@ -305,6 +1046,8 @@ public class MetricsManager {
 					logger.debug("Bucket Metrics durationMilli: " + durationMilli + ", low/high: " + uriBucket.getLow()
 							+ "/" + uriBucket.getHigh());
 					metricsRegistry.counter(uriBucket.getMetricName()).inc();
+					if (traceId != null && webMetricConfig.isEnableExemplars())
+						uriBucket.setExemplar(new Exemplar(traceId, durationNano, System.currentTimeMillis()));
 					break;
 				}
 			}
@@ -353,17 +1096,175 @@ public class MetricsManager {
 		}
 	}
 
+	/**
+	 * Returns most frequent non-white listed URIs with their counts and time, most frequent first, or null if tracking is disabled.<br>
+	 * 
+	 * @return
+	 */
+	public List<HeavyHitter> getHeavyHitters() {
+		return heavyHitters == null ? null : heavyHitters.getTop();
+	}
+
+	/**
+	 * Returns latest exemplar of every histogram bucket that has one, key is full name of bucket metric (i.e. "display.histogram.50-100").<br>
+	 * 
+	 * @return
+	 */
+	public Map<String, Exemplar> getExemplars() {
+		Map<String, Exemplar> exemplars = new TreeMap<String, Exemplar>();
+		Map<String, HistogramBuckets> buckets = uriBuckets;
+		if (buckets == null)
+			return exemplars;
+		for (HistogramBuckets displayBuckets : buckets.values()) {
+			for (HistogramBucket bucket : displayBuckets.getUriBucket()) {
+				Exemplar exemplar = bucket.getExemplar();
+				if (exemplar != null)
+					exemplars.put(bucket.getMetricName(), exemplar);
+			}
+		}
+		return exemplars;
+	}
+
 	public MetricRegistry getMetricsRegistry() {
 		return metricsRegistry;
 	}
 
+	/**
+	 * Returns recorder of display configured with striped recording or null if display uses direct recording.<br>
+	 * 
+	 * @param displayName
+	 * @return
+	 */
+	public StripedRecorder getStripedRecorder(String displayName) {
+		return stripedRecorders == null ? null : stripedRecorders.get(displayName);
+	}
+
+	/**
+	 * Returns ticker of striped recorders or null if no display uses striped recording.<br>
+	 * Ticker is started and stopped together with JMX reporter, rates of striped displays stay zero while it does not run.<br>
+	 * 
+	 * @return
+	 */
+	public StripedTicker getStripedTicker() {
+		return stripedTicker;
+	}
+
 	public JmxReporter getJmxReporter() {
 		return jmxReporter;
 	}
 
+	/**
+	 * Returns metrics changed since version returned by previous call together with count deltas (see MetricChangeTracker).<br>
+	 * 
+	 * @param since
+	 *            - version token of previous call, null for all metrics
+	 * @param includeGauges
+	 *            - true if all gauges should be exported as well, their values are computed when serialized
+	 * @return
+	 */
+	public ChangeSet getChangedMetrics(String since, boolean includeGauges) {
+		return changeTracker.getChangesSince(since, includeGauges);
+	}
+
+	/**
+	 * Returns evaluator of automatic health checks or null if no display has health element.<br>
+	 * Evaluator is started and stopped together with JMX reporter.<br>
+	 * 
+	 * @return
+	 */
+	public HealthEvaluator getHealthEvaluator() {
+		return healthEvaluator;
+	}
+
+	/**
+	 * Returns JVM metrics or null if they are not enabled.<br>
+	 * GC notifications are listened to while JMX reporter runs.<br>
+	 * 
+	 * @return
+	 */
+	public JvmMetrics getJvmMetrics() {
+		return jvmMetrics;
+	}
+
+	/**
+	 * Returns writer of shared metrics file or null if the file is not configured.<br>
+	 * The file is updated while JMX reporter runs.<br>
+	 * 
+	 * @return
+	 */
+	public SharedMetricsWriter getSharedMetrics() {
+		return sharedMetrics;
+	}
+
+	/**
+	 * Returns snapshot of metric counts or null if snapshot file is not configured.<br>
+	 * Snapshot is written in background while JMX reporter runs and when it stops.<br>
+	 * 
+	 * @return
+	 */
+	public MetricSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns request journal or null if journal file is not configured or cannot be created.<br>
+	 * Journal must be closed when application stops.<br>
+	 * 
+	 * @return
+	 */
+	public RequestJournal getJournal() {
+		return journal;
+	}
+
+	long getRequestCount(String displayName) {
+		// view of registry map, unlike getTimers() nothing is copied or sorted
+		Metric timer = metricsRegistry.getMetrics().get(displayName + "." + METRIC_NAME_PREFIX);
+		return timer instanceof Timer ? ((Timer) timer).getCount() : 0;
+	}
+
+	long getServerErrorCount(String displayName) {
+		Meter meter = metersByStatusCode.get(displayName + "." + STATUS_NAME_PREFIX + "." + defaultMeterNamesByStatusCode.get(SERVER_ERROR));
+		return meter == null ? 0 : meter.getCount();
+	}
+
+	/**
+	 * 
+	 * @param displayName
+	 * @return number of requests in progress, -1 if in-flight requests are not tracked
+	 */
+	long getInFlightCount(String displayName) {
+		return inFlightMetrics == null ? -1 : inFlightMetrics.getCount(displayName);
+	}
+
+	/**
+	 * 
+	 * @param displayName
+	 * @return histogram buckets of display or null if display had no request yet or histogram is not enabled
+	 */
+	HistogramBucket[] getHistogramBuckets(String displayName) {
+		HistogramBuckets buckets = uriBuckets == null ? null : uriBuckets.get(displayName);
+		return buckets == null ? null : buckets.getUriBucket();
+	}
+
 	public MetricConfig getWebMetricConfig() {
 		return webMetricConfig;
 	}
 
+	/**
+	 * Display of handler pattern resolved for Spring naming.<br>
+	 */
+	private static final class PatternHandle {
+		// null if requests of pattern are not measured
+		private final String displayName;
+		private final Timer timer;
+		private final boolean whiteListed;
+
+		private PatternHandle(String displayName, Timer timer, boolean whiteListed) {
+			this.displayName = displayName;
+			this.timer = timer;
+			this.whiteListed = whiteListed;
+		}
+	}
+
 	private static Logger logger = LoggerFactory.getLogger(MetricsManager.class);
 }
@@ -0,0 +1,68 @@
+/**
+ * Records request and response payload sizes per display.<br>
+ * Sizes are reported as "[display].bytes.request" and "[display].bytes.response" histograms, byte rates as "[display].bytes.in" and
+ * "[display].bytes.out" meters.<br>
+ * Bytes are counted by wrappers of request and response streams in MetricsFilter and reported once per request.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+public class PayloadMetrics {
+
+	public static final String BYTES_NAME_PREFIX = "bytes";
+
+	private final MetricRegistry registry;
+	// key is display name
+	private final ConcurrentMap<String, DisplayPayload> displayPayloads = new ConcurrentHashMap<String, DisplayPayload>();
+
+	public PayloadMetrics(MetricRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 *
+	 * @param displayName
+	 *            - display of finished request, required
+	 * @param requestBytes
+	 *            - number of bytes of request body read by application
+	 * @param responseBytes
+	 *            - number of bytes of response body written by application
+	 */
+	public void record(String displayName, long requestBytes, long responseBytes) {
+		DisplayPayload payload = displayPayloads.get(displayName);
+		if (payload == null) {
+			String base = displayName + "." + BYTES_NAME_PREFIX;
+			payload = new DisplayPayload(registry.histogram(base + ".request"), registry.histogram(base + ".response"),
+							registry.meter(base + ".in"), registry.meter(base + ".out"));
+			DisplayPayload existing = displayPayloads.putIfAbsent(displayName, payload);
+			if (existing != null)
+				payload = existing;
+		}
+		payload.requestSize.update(requestBytes);
+		payload.responseSize.update(responseBytes);
+		if (requestBytes > 0)
+			payload.bytesIn.mark(requestBytes);
+		if (responseBytes > 0)
+			payload.bytesOut.mark(responseBytes);
+	}
+
+	private static final class DisplayPayload {
+		private final Histogram requestSize;
+		private final Histogram responseSize;
+		private final Meter bytesIn;
+		private final Meter bytesOut;
+
+		private DisplayPayload(Histogram requestSize, Histogram responseSize, Meter bytesIn, Meter bytesOut) {
+			this.requestSize = requestSize;
+			this.responseSize = responseSize;
+			this.bytesIn = bytesIn;
+			this.bytesOut = bytesOut;
+		}
+	}
+}
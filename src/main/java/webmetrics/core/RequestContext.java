@@ -0,0 +1,95 @@
+/**
+ * Holds context of the request currently processed by the thread: display name and per-request accumulators.<br>
+ * Timers are still passed explicitly between MetricsFilter and MetricsManager, this context only allows other measured actions (executor tasks, DB
+ * access, outbound calls, etc) to attribute their metrics to the display of the request that caused them.<br>
+ * Context can be handed over to other threads (see InstrumentedExecutorService), therefore accumulators are thread-safe.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RequestContext {
+
+	private static final ThreadLocal<RequestContext> current = new ThreadLocal<RequestContext>();
+
+	private final String displayName;
+	// time spent in DB calls and number of DB statements executed for this request
+	private final AtomicLong dbTimeNano = new AtomicLong();
+	private final AtomicInteger dbQueries = new AtomicInteger();
+	// time spent in outbound HTTP calls and number of calls made for this request
+	private final AtomicLong outboundTimeNano = new AtomicLong();
+	private final AtomicInteger outboundCalls = new AtomicInteger();
+
+	RequestContext(String displayName) {
+		this.displayName = displayName;
+	}
+
+	/**
+	 * Returns context of the request processed by current thread or null if thread is not processing measured request.<br>
+	 * 
+	 * @return
+	 */
+	public static RequestContext current() {
+		return current.get();
+	}
+
+	/**
+	 * Returns display name of the request processed by current thread or null if thread is not processing measured request.<br>
+	 * 
+	 * @return
+	 */
+	public static String getCurrentDisplayName() {
+		RequestContext context = current.get();
+		return context == null ? null : context.displayName;
+	}
+
+	/**
+	 * Assigns context to current thread, null clears it.<br>
+	 * Used by MetricsManager when request starts and ends and by components that hand work over to other threads.<br>
+	 * 
+	 * @param context
+	 * @return context previously assigned to current thread, can be null
+	 */
+	public static RequestContext attach(RequestContext context) {
+		RequestContext previous = current.get();
+		if (context == null)
+			current.remove();
+		else
+			current.set(context);
+		return previous;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	public void addDbTime(long durationNano) {
+		dbTimeNano.addAndGet(durationNano);
+	}
+
+	public void addDbQuery() {
+		dbQueries.incrementAndGet();
+	}
+
+	public void addOutboundCall(long durationNano) {
+		outboundTimeNano.addAndGet(durationNano);
+		outboundCalls.incrementAndGet();
+	}
+
+	public long getOutboundTimeNano() {
+		return outboundTimeNano.get();
+	}
+
+	public int getOutboundCalls() {
+		return outboundCalls.get();
+	}
+
+	public long getDbTimeNano() {
+		return dbTimeNano.get();
+	}
+
+	public int getDbQueries() {
+		return dbQueries.get();
+	}
+}
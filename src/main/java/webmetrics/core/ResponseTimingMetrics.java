@@ -0,0 +1,60 @@
+/**
+ * Splits duration of request into server think time, time to first byte and response write time, reported per display as
+ * "[display].response.think", "[display].response.ttfb" and "[display].response.write" timers.<br>
+ * Think time lasts until application writes first byte of response (or commits response without body), time to first byte lasts until response
+ * is committed, write time lasts from commit until end of request. Response committed only by container after request ended is reported with zero write time.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+public class ResponseTimingMetrics {
+
+	public static final String RESPONSE_NAME_PREFIX = "response";
+
+	private static final int THINK = 0;
+	private static final int TTFB = 1;
+	private static final int WRITE = 2;
+
+	private final MetricRegistry registry;
+	// key is display name, value is timers indexed as THINK, TTFB, WRITE
+	private final ConcurrentMap<String, Timer[]> displayTimers = new ConcurrentHashMap<String, Timer[]>();
+
+	public ResponseTimingMetrics(MetricRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * 
+	 * @param displayName
+	 *            - display of finished request, required
+	 * @param startNano
+	 *            - nano time request started
+	 * @param firstWriteNano
+	 *            - nano time of first write of response body, 0 if nothing was written
+	 * @param commitNano
+	 *            - nano time response was committed, 0 if it was not committed before end of request
+	 * @param endNano
+	 *            - nano time request ended
+	 */
+	public void record(String displayName, long startNano, long firstWriteNano, long commitNano, long endNano) {
+		Timer[] timers = displayTimers.get(displayName);
+		if (timers == null) {
+			String base = displayName + "." + RESPONSE_NAME_PREFIX;
+			timers = new Timer[] { registry.timer(base + ".think"), registry.timer(base + ".ttfb"), registry.timer(base + ".write") };
+			Timer[] existing = displayTimers.putIfAbsent(displayName, timers);
+			if (existing != null)
+				timers = existing;
+		}
+		long firstByteNano = commitNano != 0 ? commitNano : endNano;
+		long thinkEndNano = firstWriteNano != 0 && firstWriteNano < firstByteNano ? firstWriteNano : firstByteNano;
+		timers[THINK].update(thinkEndNano - startNano, TimeUnit.NANOSECONDS);
+		timers[TTFB].update(firstByteNano - startNano, TimeUnit.NANOSECONDS);
+		timers[WRITE].update(endNano - firstByteNano, TimeUnit.NANOSECONDS);
+	}
+}
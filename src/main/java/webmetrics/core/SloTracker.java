@@ -0,0 +1,180 @@
+/**
+ * Tracks service level objective of single display: Apdex and error budget burn rates over configured windows.<br>
+ * Requests are counted into per-minute slots of a ring long enough for the longest window, so recording request costs constant time. Windows are
+ * computed only when gauges or health check are read, by summing slots of the last minutes.<br>
+ * Burn rate is share of bad (5xx) requests divided by error budget (1 - target): 1 means budget is spent exactly at the end of SLO period.<br>
+ * When slot is reused for new minute, few requests recorded concurrently with the reset may be lost.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+
+import webmetrics.config.SloConfig;
+
+public class SloTracker {
+
+	public static final String SLO_NAME_PREFIX = "slo";
+
+	private static final long MINUTE_NANO = TimeUnit.MINUTES.toNanos(1);
+
+	// counters of each slot
+	private static final int TOTAL = 0;
+	private static final int BAD = 1;
+	private static final int SATISFIED = 2;
+	private static final int TOLERATING = 3;
+	private static final int FIELDS = 4;
+
+	private final SloConfig slo;
+	private final long thresholdNano;
+	private final long originNano = System.nanoTime();
+	private final int slotCount;
+	// minute (since origin) each slot currently counts
+	private final AtomicLongArray slotMinutes;
+	private final AtomicLongArray counts;
+
+	public SloTracker(SloConfig slo) {
+		if (slo == null)
+			throw new IllegalArgumentException("slo is required parameter");
+		this.slo = slo;
+		this.thresholdNano = TimeUnit.MILLISECONDS.toNanos(slo.getThresholdMillis());
+		int longestWindow = 0;
+		for (int window : slo.getWindowMinutes()) {
+			longestWindow = Math.max(longestWindow, window);
+		}
+		// one more slot so that current partial minute does not overwrite oldest minute of longest window
+		this.slotCount = longestWindow + 1;
+		this.slotMinutes = new AtomicLongArray(slotCount);
+		for (int i = 0; i < slotCount; i++) {
+			slotMinutes.set(i, -1);
+		}
+		this.counts = new AtomicLongArray(slotCount * FIELDS);
+	}
+
+	/**
+	 *
+	 * @param status
+	 *            - response status
+	 * @param durationNano
+	 * @param endNano
+	 *            - nano time request ended
+	 */
+	public void record(int status, long durationNano, long endNano) {
+		long minute = (endNano - originNano) / MINUTE_NANO;
+		int slot = (int) (minute % slotCount);
+		long slotMinute = slotMinutes.get(slot);
+		if (slotMinute != minute) {
+			if (slotMinute > minute)
+				return; // request ended long ago, its minute is gone
+			if (slotMinutes.compareAndSet(slot, slotMinute, minute)) {
+				for (int field = 0; field < FIELDS; field++) {
+					counts.set(slot * FIELDS + field, 0);
+				}
+			}
+		}
+		int base = slot * FIELDS;
+		counts.incrementAndGet(base + TOTAL);
+		if (status >= 500 && status < 600)
+			counts.incrementAndGet(base + BAD);
+		if (durationNano <= thresholdNano)
+			counts.incrementAndGet(base + SATISFIED);
+		else if (durationNano <= 4 * thresholdNano)
+			counts.incrementAndGet(base + TOLERATING);
+	}
+
+	/**
+	 * Sums counters of the last minutes, current minute included.<br>
+	 *
+	 * @param windowMinutes
+	 * @return counters indexed as TOTAL, BAD, SATISFIED, TOLERATING
+	 */
+	private long[] sum(int windowMinutes) {
+		long[] sums = new long[FIELDS];
+		long now = (System.nanoTime() - originNano) / MINUTE_NANO;
+		for (int slot = 0; slot < slotCount; slot++) {
+			long slotMinute = slotMinutes.get(slot);
+			if (slotMinute < 0 || slotMinute > now || now - slotMinute >= windowMinutes)
+				continue;
+			for (int field = 0; field < FIELDS; field++) {
+				sums[field] += counts.get(slot * FIELDS + field);
+			}
+		}
+		return sums;
+	}
+
+	/**
+	 *
+	 * @param windowMinutes
+	 * @return Apdex of the last minutes, 1 if there were no requests
+	 */
+	public double getApdex(int windowMinutes) {
+		long[] sums = sum(windowMinutes);
+		if (sums[TOTAL] == 0)
+			return 1;
+		return (sums[SATISFIED] + sums[TOLERATING] / 2.0) / sums[TOTAL];
+	}
+
+	/**
+	 *
+	 * @param windowMinutes
+	 * @return burn rate of error budget of the last minutes, 0 if there were no requests
+	 */
+	public double getBurnRate(int windowMinutes) {
+		long[] sums = sum(windowMinutes);
+		if (sums[TOTAL] == 0)
+			return 0;
+		return ((double) sums[BAD] / sums[TOTAL]) / (1 - slo.getTarget());
+	}
+
+	/**
+	 * Registers "[display].slo.apdex.[window]m" and "[display].slo.burnRate.[window]m" gauges for every configured window.<br>
+	 *
+	 * @param registry
+	 * @param displayName
+	 */
+	public void registerGauges(MetricRegistry registry, String displayName) {
+		for (final int window : slo.getWindowMinutes()) {
+			String suffix = "." + window + "m";
+			registry.register(displayName + "." + SLO_NAME_PREFIX + ".apdex" + suffix, new Gauge<Double>() {
+				@Override
+				public Double getValue() {
+					return getApdex(window);
+				}
+			});
+			registry.register(displayName + "." + SLO_NAME_PREFIX + ".burnRate" + suffix, new Gauge<Double>() {
+				@Override
+				public Double getValue() {
+					return getBurnRate(window);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns health check failing when burn rates of all windows exceed configured maximum, i.e. short window confirms that long window
+	 * burn is still going on.<br>
+	 *
+	 * @return
+	 */
+	public HealthCheck getHealthCheck() {
+		return new HealthCheck() {
+			@Override
+			protected Result check() throws Exception {
+				StringBuilder rates = new StringBuilder();
+				boolean exceeded = true;
+				for (int window : slo.getWindowMinutes()) {
+					double burnRate = getBurnRate(window);
+					exceeded &= burnRate > slo.getMaxBurnRate();
+					rates.append(rates.length() == 0 ? "" : ", ").append(window).append("m: ").append(String.format("%.2f", burnRate));
+				}
+				if (exceeded)
+					return Result.unhealthy("Error budget burn rates exceed " + slo.getMaxBurnRate() + ": " + rates);
+				return Result.healthy("Error budget burn rates: " + rates);
+			}
+		};
+	}
+}
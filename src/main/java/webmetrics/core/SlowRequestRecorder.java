@@ -0,0 +1,184 @@
+/**
+ * Keeps N slowest requests of single display in current time window and in previous window.<br>
+ * Request is admitted only if it is slower than the fastest of kept requests (admission threshold), so that fast requests pay one comparison of
+ * volatile field and one comparison of end time against end of window, without locking and without allocation. Only admitted requests take the
+ * lock of the recorder and allocate an entry.<br>
+ * Times used for windows are nano times derived from request start and duration, so no clock is read for requests that are not admitted.<br>
+ */
+package webmetrics.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class SlowRequestRecorder {
+
+	private static final Comparator<SlowRequest> SLOWEST_FIRST = new Comparator<SlowRequest>() {
+		@Override
+		public int compare(SlowRequest r1, SlowRequest r2) {
+			return r1.durationNano < r2.durationNano ? 1 : r1.durationNano > r2.durationNano ? -1 : 0;
+		}
+	};
+
+	private final long windowNano;
+	// duration of fastest kept request once all slots are taken, -1 while there are free slots
+	private volatile long threshold = -1;
+	private volatile long windowEndNano;
+	// slots of current window, guarded by this
+	private final SlowRequest[] current;
+	private int count;
+	// slowest requests of previous window sorted slowest first, guarded by this
+	private List<SlowRequest> previous = Collections.emptyList();
+
+	/**
+	 *
+	 * @param size
+	 *            - number of requests to keep per window, must be positive
+	 * @param windowNano
+	 *            - length of window in nanoseconds, must be positive
+	 */
+	public SlowRequestRecorder(int size, long windowNano) {
+		if (size <= 0)
+			throw new IllegalArgumentException("size must be positive: " + size);
+		if (windowNano <= 0)
+			throw new IllegalArgumentException("windowNano must be positive: " + windowNano);
+		this.current = new SlowRequest[size];
+		this.windowNano = windowNano;
+		this.windowEndNano = System.nanoTime() + windowNano;
+	}
+
+	/**
+	 *
+	 * @param uri
+	 *            - actual URI of request
+	 * @param consumer
+	 *            - consumer alias, can be null
+	 * @param status
+	 *            - response status
+	 * @param durationNano
+	 * @param endNano
+	 *            - nano time request ended
+	 */
+	public void record(String uri, String consumer, int status, long durationNano, long endNano) {
+		if (durationNano <= threshold && endNano - windowEndNano < 0)
+			return;
+		admit(uri, consumer, status, durationNano, endNano);
+	}
+
+	private synchronized void admit(String uri, String consumer, int status, long durationNano, long endNano) {
+		rotate(endNano);
+		// threshold could be raised by another thread since it was checked
+		if (durationNano <= threshold)
+			return;
+		SlowRequest request = new SlowRequest(uri, consumer, status, durationNano, System.currentTimeMillis(), Thread.currentThread().getName());
+		if (count < current.length) {
+			current[count++] = request;
+			if (count < current.length)
+				return;
+		} else {
+			current[indexOfFastest()] = request;
+		}
+		threshold = current[indexOfFastest()].durationNano;
+	}
+
+	private int indexOfFastest() {
+		int idx = 0;
+		for (int i = 1; i < count; i++) {
+			if (current[i].durationNano < current[idx].durationNano)
+				idx = i;
+		}
+		return idx;
+	}
+
+	/**
+	 * Starts new window if current one ended before given time.<br>
+	 *
+	 * @param nowNano
+	 */
+	private void rotate(long nowNano) {
+		if (nowNano - windowEndNano < 0)
+			return;
+		long windowsPassed = (nowNano - windowEndNano) / windowNano + 1;
+		// requests of current window become previous only if current window is the one right before new window
+		previous = windowsPassed == 1 ? sorted() : Collections.<SlowRequest> emptyList();
+		Arrays.fill(current, null);
+		count = 0;
+		threshold = -1;
+		windowEndNano += windowsPassed * windowNano;
+	}
+
+	private List<SlowRequest> sorted() {
+		List<SlowRequest> requests = new ArrayList<SlowRequest>(count);
+		for (int i = 0; i < count; i++) {
+			requests.add(current[i]);
+		}
+		Collections.sort(requests, SLOWEST_FIRST);
+		return requests;
+	}
+
+	/**
+	 *
+	 * @return slowest requests of current window, slowest first
+	 */
+	public synchronized List<SlowRequest> getCurrent() {
+		rotate(System.nanoTime());
+		return sorted();
+	}
+
+	/**
+	 *
+	 * @return slowest requests of previous window, slowest first
+	 */
+	public synchronized List<SlowRequest> getPrevious() {
+		rotate(System.nanoTime());
+		return previous;
+	}
+
+	public static class SlowRequest {
+		private final String uri;
+		private final String consumer;
+		private final int status;
+		private final long durationNano;
+		private final long timestamp;
+		private final String thread;
+
+		SlowRequest(String uri, String consumer, int status, long durationNano, long timestamp, String thread) {
+			this.uri = uri;
+			this.consumer = consumer;
+			this.status = status;
+			this.durationNano = durationNano;
+			this.timestamp = timestamp;
+			this.thread = thread;
+		}
+
+		public String getUri() {
+			return uri;
+		}
+
+		public String getConsumer() {
+			return consumer;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public double getDurationMillis() {
+			return durationNano / 1000000.0;
+		}
+
+		/**
+		 *
+		 * @return time request ended, in milliseconds since epoch
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public String getThread() {
+			return thread;
+		}
+	}
+}
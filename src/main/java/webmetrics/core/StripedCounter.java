@@ -0,0 +1,51 @@
+/**
+ * Counter view of single cell of StripedRecorder, used for histogram bucket counters of striped displays.<br>
+ */
+package webmetrics.core;
+
+import com.codahale.metrics.Counter;
+
+public class StripedCounter extends Counter {
+
+	private final StripedRecorder recorder;
+	private final int cell;
+
+	public StripedCounter(StripedRecorder recorder, int cell) {
+		this.recorder = recorder;
+		this.cell = cell;
+	}
+
+	@Override
+	public void inc() {
+		recorder.addToCell(cell, 1);
+	}
+
+	@Override
+	public void inc(long n) {
+		recorder.addToCell(cell, n);
+	}
+
+	@Override
+	public void dec() {
+		recorder.addToCell(cell, -1);
+	}
+
+	@Override
+	public void dec(long n) {
+		recorder.addToCell(cell, -n);
+	}
+
+	/**
+	 * Adds count restored from snapshot.<br>
+	 *
+	 * @param count
+	 */
+	public void restore(long count) {
+		recorder.restoreCell(cell, count);
+	}
+
+	@Override
+	public long getCount() {
+		return recorder.getCellValue(cell);
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Meter view of single cell of StripedRecorder, used for status meters of striped displays.<br>
+ */
+package webmetrics.core;
+
+import com.codahale.metrics.Meter;
+
+public class StripedMeter extends Meter {
+
+	private final StripedRecorder recorder;
+	private final int cell;
+	private final StripedRecorder.MergedRate rate;
+
+	public StripedMeter(StripedRecorder recorder, int cell) {
+		this.recorder = recorder;
+		this.cell = cell;
+		this.rate = recorder.newCellRate(cell);
+	}
+
+	@Override
+	public void mark() {
+		recorder.addToCell(cell, 1);
+	}
+
+	@Override
+	public void mark(long n) {
+		recorder.addToCell(cell, n);
+	}
+
+	/**
+	 * Adds count restored from snapshot, rates are not affected.<br>
+	 *
+	 * @param count
+	 */
+	public void restore(long count) {
+		recorder.restoreCell(cell, count);
+	}
+
+	@Override
+	public long getCount() {
+		return recorder.getCellValue(cell);
+	}
+
+	@Override
+	public double getFifteenMinuteRate() {
+		return rate.getMeter().getFifteenMinuteRate();
+	}
+
+	@Override
+	public double getFiveMinuteRate() {
+		return rate.getMeter().getFiveMinuteRate();
+	}
+
+	@Override
+	public double getMeanRate() {
+		return rate.getMeter().getMeanRate();
+	}
+
+	@Override
+	public double getOneMinuteRate() {
+		return rate.getMeter().getOneMinuteRate();
+	}
+}
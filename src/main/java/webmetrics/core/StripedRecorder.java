@@ -0,0 +1,269 @@
+/**
+ * Recorder used for displays configured with recording="striped".<br>
+ * Every request thread records into its own buffer (count and sum of durations, small sample of durations, histogram bucket and status counters), so
+ * threads serving the same hot display never write to the same memory.<br>
+ * Buffers are merged only when value is read (JMX, reporter or admin endpoint). Merged values are exposed to the registry via StripedTimer,
+ * StripedCounter and StripedMeter under the same names as used for direct recording.<br>
+ * Buffer of a thread is only written by that thread, reader threads may see slightly stale values but never lose updates.<br>
+ * Recorder is ticked on fixed interval (see StripedTicker): buffers of threads that died are folded into retired totals and removed, so threads of
+ * recycled pools do not leak buffers, and merged counts are marked into rates of striped timers and meters.<br>
+ */
+package webmetrics.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformSnapshot;
+
+public class StripedRecorder {
+
+	// number of most recent durations kept by every thread, must be power of 2
+	static final int SAMPLE_SIZE = 128;
+	private static final int SAMPLE_MASK = SAMPLE_SIZE - 1;
+
+	// total number of counters (histogram buckets and status meters) held by every buffer
+	private final int cellCount;
+	// buffers of live threads, appended when new thread records for the first time, removed by tick after the thread died
+	private final List<Buffer> buffers = new CopyOnWriteArrayList<Buffer>();
+	// totals of removed buffers, guarded by this together with removal so merged values never go back
+	private long retiredCount;
+	private long retiredSum;
+	private final long[] retiredCells;
+	private final List<MergedRate> rates = new CopyOnWriteArrayList<MergedRate>();
+	private final ThreadLocal<Buffer> localBuffer = new ThreadLocal<Buffer>() {
+		@Override
+		protected Buffer initialValue() {
+			Buffer buffer = new Buffer(cellCount);
+			buffers.add(buffer);
+			return buffer;
+		}
+	};
+
+	/**
+	 *
+	 * @param cellCount
+	 *            - number of counters to be allocated for StripedCounter and StripedMeter views of this recorder
+	 */
+	public StripedRecorder(int cellCount) {
+		if (cellCount < 0)
+			throw new IllegalArgumentException("cellCount cannot be negative: " + cellCount);
+		this.cellCount = cellCount;
+		this.retiredCells = new long[cellCount];
+	}
+
+	/**
+	 * Records single duration into buffer of current thread.<br>
+	 *
+	 * @param durationNano
+	 */
+	public void recordDuration(long durationNano) {
+		Buffer buffer = localBuffer.get();
+		// single writer per buffer, lazySet is enough to publish values to readers
+		long count = buffer.count.get();
+		buffer.samples.lazySet((int) (count & SAMPLE_MASK), durationNano);
+		buffer.sum.lazySet(buffer.sum.get() + durationNano);
+		buffer.count.lazySet(count + 1);
+	}
+
+	/**
+	 * Adds value to counter identified by index in buffer of current thread.<br>
+	 *
+	 * @param cell
+	 *            - index of counter, 0 to cellCount-1
+	 * @param value
+	 */
+	public void addToCell(int cell, long value) {
+		AtomicLongArray cells = localBuffer.get().cells;
+		cells.lazySet(cell, cells.get(cell) + value);
+	}
+
+	public synchronized long getDurationCount() {
+		long count = retiredCount;
+		for (Buffer buffer : buffers) {
+			count += buffer.count.get();
+		}
+		return count;
+	}
+
+	public synchronized long getDurationSum() {
+		long sum = retiredSum;
+		for (Buffer buffer : buffers) {
+			sum += buffer.sum.get();
+		}
+		return sum;
+	}
+
+	public synchronized long getCellValue(int cell) {
+		long value = retiredCells[cell];
+		for (Buffer buffer : buffers) {
+			value += buffer.cells.get(cell);
+		}
+		return value;
+	}
+
+	/**
+	 * Merges most recent durations of all live threads into single snapshot, durations of threads that died are not part of it.<br>
+	 *
+	 * @return
+	 */
+	public Snapshot getDurationSnapshot() {
+		long[][] perThread = new long[buffers.size()][];
+		int total = 0;
+		int idx = 0;
+		for (Buffer buffer : buffers) {
+			if (idx == perThread.length)
+				break; // thread registered after array was sized, will be seen on next read
+			int size = (int) Math.min(buffer.count.get(), SAMPLE_SIZE);
+			long[] values = new long[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = buffer.samples.get(i);
+			}
+			perThread[idx++] = values;
+			total += size;
+		}
+		long[] merged = new long[total];
+		int pos = 0;
+		for (int i = 0; i < idx; i++) {
+			System.arraycopy(perThread[i], 0, merged, pos, perThread[i].length);
+			pos += perThread[i].length;
+		}
+		return new UniformSnapshot(merged);
+	}
+
+	public int getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * Removes buffers of threads that died and marks counts recorded since previous tick into rates.<br>
+	 */
+	public void tick() {
+		retireDeadBuffers();
+		for (MergedRate rate : rates) {
+			rate.tick();
+		}
+	}
+
+	/**
+	 * Adds count of durations restored from snapshot (see MetricSnapshot) to retired totals. Rates are advanced before the count, so restored
+	 * count is never marked into them as burst of requests.<br>
+	 *
+	 * @param count
+	 */
+	public void restoreDurationCount(long count) {
+		for (MergedRate rate : rates) {
+			if (rate.cell < 0)
+				rate.advance(count);
+		}
+		synchronized (this) {
+			retiredCount += count;
+		}
+	}
+
+	/**
+	 * Adds value restored from snapshot to retired total of counter identified by index, rates are advanced the same way as by
+	 * restoreDurationCount().<br>
+	 *
+	 * @param cell
+	 *            - index of counter, 0 to cellCount-1
+	 * @param value
+	 */
+	public void restoreCell(int cell, long value) {
+		for (MergedRate rate : rates) {
+			if (rate.cell == cell)
+				rate.advance(value);
+		}
+		synchronized (this) {
+			retiredCells[cell] += value;
+		}
+	}
+
+	/**
+	 * 
+	 * @return number of buffers of live threads
+	 */
+	int getBufferCount() {
+		return buffers.size();
+	}
+
+	synchronized void retireDeadBuffers() {
+		for (Buffer buffer : buffers) {
+			// termination of owner happens-before isAlive() returns false, so all its writes are visible
+			if (buffer.owner.isAlive())
+				continue;
+			retiredCount += buffer.count.get();
+			retiredSum += buffer.sum.get();
+			for (int i = 0; i < cellCount; i++) {
+				retiredCells[i] += buffer.cells.get(i);
+			}
+			buffers.remove(buffer);
+		}
+	}
+
+	MergedRate newDurationRate() {
+		MergedRate rate = new MergedRate(this, -1);
+		rates.add(rate);
+		return rate;
+	}
+
+	MergedRate newCellRate(int cell) {
+		MergedRate rate = new MergedRate(this, cell);
+		rates.add(rate);
+		return rate;
+	}
+
+	private static final class Buffer {
+		private final Thread owner = Thread.currentThread();
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLongArray samples = new AtomicLongArray(SAMPLE_SIZE);
+		private final AtomicLongArray cells;
+
+		private Buffer(int cellCount) {
+			cells = new AtomicLongArray(cellCount);
+		}
+	}
+
+	/**
+	 * Keeps EWMA rates for merged count of durations or of single cell.<br>
+	 * Since buffers do not tick rates, the delta of merged count since previous tick is marked into internal meter on every tick of recorder, so
+	 * rates do not depend on how often they are read.<br>
+	 */
+	static final class MergedRate {
+
+		private final StripedRecorder recorder;
+		// -1 for count of durations
+		private final int cell;
+		private final Meter meter = new Meter();
+		private long lastCount;
+
+		private MergedRate(StripedRecorder recorder, int cell) {
+			this.recorder = recorder;
+			this.cell = cell;
+		}
+
+		synchronized void tick() {
+			long currentCount = cell < 0 ? recorder.getDurationCount() : recorder.getCellValue(cell);
+			long delta = currentCount - lastCount;
+			if (delta > 0) {
+				meter.mark(delta);
+				lastCount = currentCount;
+			}
+		}
+
+		/**
+		 * Counts restored value as already marked. Called without lock of recorder, tick() takes that lock while holding lock of this rate.<br>
+		 */
+		synchronized void advance(long restored) {
+			lastCount += restored;
+		}
+
+		Meter getMeter() {
+			return meter;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Ticks striped recorders on fixed interval in background (see StripedRecorder.tick()).<br>
+ * Interval matches tick interval of Meter, so EWMA rates of striped displays follow the same decay as rates of directly recorded displays.<br>
+ */
+package webmetrics.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class StripedTicker {
+
+	static final int TICK_SECONDS = 5;
+
+	private final List<StripedRecorder> recorders;
+	private ScheduledExecutorService executor;
+
+	/**
+	 *
+	 * @param recorders
+	 *            - recorders to tick, required
+	 */
+	public StripedTicker(Collection<StripedRecorder> recorders) {
+		if (recorders == null)
+			throw new IllegalArgumentException("recorders is required parameter");
+		this.recorders = new ArrayList<StripedRecorder>(recorders);
+	}
+
+	/**
+	 * Starts ticking in background, does nothing if already started.<br>
+	 */
+	public synchronized void start() {
+		if (executor != null)
+			return;
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "webmetrics-striped");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				tick();
+			}
+		}, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public synchronized void stop() {
+		if (executor == null)
+			return;
+		executor.shutdownNow();
+		executor = null;
+	}
+
+	void tick() {
+		for (StripedRecorder recorder : recorders) {
+			try {
+				recorder.tick();
+			} catch (RuntimeException e) {
+				// keep the scheduled task alive, other recorders must still be ticked
+				logger.error("Tick of striped recorder failed", e);
+			}
+		}
+	}
+
+	private static Logger logger = LoggerFactory.getLogger(StripedTicker.class);
+}
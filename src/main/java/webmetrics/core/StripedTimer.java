@@ -0,0 +1,71 @@
+/**
+ * Timer view of StripedRecorder.<br>
+ * Durations are recorded into buffer of the calling thread, count, rates and snapshot are merged from all buffers on read.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+public class StripedTimer extends Timer {
+
+	private final StripedRecorder recorder;
+	private final StripedRecorder.MergedRate rate;
+
+	public StripedTimer(StripedRecorder recorder) {
+		this.recorder = recorder;
+		this.rate = recorder.newDurationRate();
+	}
+
+	@Override
+	public void update(long duration, TimeUnit unit) {
+		if (duration >= 0) {
+			recorder.recordDuration(unit.toNanos(duration));
+		}
+	}
+
+	@Override
+	public long getCount() {
+		return recorder.getDurationCount();
+	}
+
+	@Override
+	public double getFifteenMinuteRate() {
+		return rate.getMeter().getFifteenMinuteRate();
+	}
+
+	@Override
+	public double getFiveMinuteRate() {
+		return rate.getMeter().getFiveMinuteRate();
+	}
+
+	@Override
+	public double getMeanRate() {
+		return rate.getMeter().getMeanRate();
+	}
+
+	@Override
+	public double getOneMinuteRate() {
+		return rate.getMeter().getOneMinuteRate();
+	}
+
+	@Override
+	public Snapshot getSnapshot() {
+		return recorder.getDurationSnapshot();
+	}
+
+	/**
+	 * Adds count restored from snapshot, rates are not affected.<br>
+	 *
+	 * @param count
+	 */
+	public void restore(long count) {
+		recorder.restoreDurationCount(count);
+	}
+
+	public StripedRecorder getRecorder() {
+		return recorder;
+	}
+}
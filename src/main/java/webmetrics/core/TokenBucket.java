@@ -0,0 +1,56 @@
+/**
+ * Lock-free token bucket used to rate limit consumers.<br>
+ * Bucket is kept as single atomic value, the time when bucket becomes full again (generic cell rate algorithm), instead of token count and time of
+ * last refill. Every request moves that time forward by interval of one token, request is rejected if it would move it further than burst
+ * intervals ahead of now. Acquiring costs one CAS, no timer thread refills the bucket.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TokenBucket {
+
+	// nano time of one token
+	private final long intervalNano;
+	// how far ahead of now full time may be, burst - 1 tokens so that full bucket allows burst requests at once
+	private final long toleranceNano;
+	// nano time when bucket is full again
+	private final AtomicLong fullNano;
+
+	/**
+	 *
+	 * @param requestsPerSecond
+	 *            - rate of refill, must be positive
+	 * @param burst
+	 *            - capacity of bucket, must be positive
+	 */
+	public TokenBucket(double requestsPerSecond, int burst) {
+		if (requestsPerSecond <= 0)
+			throw new IllegalArgumentException("requestsPerSecond must be positive: " + requestsPerSecond);
+		if (burst <= 0)
+			throw new IllegalArgumentException("burst must be positive: " + burst);
+		this.intervalNano = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+		this.toleranceNano = intervalNano * (burst - 1);
+		this.fullNano = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Takes one token if there is any.<br>
+	 *
+	 * @param nowNano
+	 *            - current nano time
+	 * @return false if request should be rejected
+	 */
+	public boolean tryAcquire(long nowNano) {
+		while (true) {
+			long full = fullNano.get();
+			// bucket that is full does not collect more tokens
+			long base = full - nowNano < 0 ? nowNano : full;
+			if (base - nowNano > toleranceNano)
+				return false;
+			if (fullNano.compareAndSet(full, base + intervalNano))
+				return true;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Estimates number of distinct consumers (raw consumer ids, not only configured ones) of single display with HyperLogLog sketches.<br>
+ * Reported as "[display].uniqueConsumers.1m" (last complete minute) and "[display].uniqueConsumers.[window]m" (rolling window) gauges.<br>
+ * Rolling window is kept as 4 sketches each covering quarter of window, estimate is union of them, so it covers between 3/4 of window and whole
+ * window. Window must be multiple of 4 minutes, so quarters are whole minutes and the gauge name matches the window covered. Memory is fixed: 6
+ * sketches of 2 KB per display.<br>
+ */
+package webmetrics.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+public class UniqueConsumers {
+
+	public static final String UNIQUE_CONSUMERS_NAME = "uniqueConsumers";
+
+	private static final long MINUTE_NANO = TimeUnit.MINUTES.toNanos(1);
+	private static final int WINDOW_SLOTS = 4;
+
+	private final long originNano = System.nanoTime();
+	private final int windowMinutes;
+	private final long slotMinutes;
+	// current and previous minute
+	private final Slot[] minuteSlots = { new Slot(), new Slot() };
+	private final Slot[] windowSlots = new Slot[WINDOW_SLOTS];
+
+	/**
+	 *
+	 * @param windowMinutes
+	 *            - length of rolling window in minutes, must be positive multiple of 4
+	 */
+	public UniqueConsumers(int windowMinutes) {
+		if (windowMinutes <= 0)
+			throw new IllegalArgumentException("windowMinutes must be positive: " + windowMinutes);
+		if (windowMinutes % WINDOW_SLOTS != 0)
+			throw new IllegalArgumentException("windowMinutes must be multiple of " + WINDOW_SLOTS + ": " + windowMinutes);
+		this.windowMinutes = windowMinutes;
+		this.slotMinutes = windowMinutes / WINDOW_SLOTS;
+		for (int i = 0; i < WINDOW_SLOTS; i++) {
+			windowSlots[i] = new Slot();
+		}
+	}
+
+	/**
+	 *
+	 * @param consumer
+	 *            - raw consumer id, required
+	 */
+	public void add(String consumer) {
+		long hash = HyperLogLog.hash(consumer);
+		long minute = (System.nanoTime() - originNano) / MINUTE_NANO;
+		slotFor(minuteSlots, minute).add(hash);
+		slotFor(windowSlots, minute / slotMinutes).add(hash);
+	}
+
+	private HyperLogLog slotFor(Slot[] ring, long period) {
+		Slot slot = ring[(int) (period % ring.length)];
+		long slotPeriod = slot.period.get();
+		// slot is cleared by the thread that moves it to new period, values added concurrently with clearing may be lost
+		if (slotPeriod < period && slot.period.compareAndSet(slotPeriod, period))
+			slot.sketch.clear();
+		return slot.sketch;
+	}
+
+	/**
+	 *
+	 * @return estimated number of distinct consumers in last complete minute
+	 */
+	public long getLastMinute() {
+		long previous = (System.nanoTime() - originNano) / MINUTE_NANO - 1;
+		if (previous < 0)
+			return 0;
+		Slot slot = minuteSlots[(int) (previous % minuteSlots.length)];
+		return slot.period.get() == previous ? slot.sketch.estimate() : 0;
+	}
+
+	/**
+	 *
+	 * @return estimated number of distinct consumers in rolling window
+	 */
+	public long getRolling() {
+		long current = (System.nanoTime() - originNano) / MINUTE_NANO / slotMinutes;
+		List<HyperLogLog> sketches = new ArrayList<HyperLogLog>(WINDOW_SLOTS);
+		for (Slot slot : windowSlots) {
+			long period = slot.period.get();
+			if (period >= 0 && current - period < WINDOW_SLOTS)
+				sketches.add(slot.sketch);
+		}
+		if (sketches.isEmpty())
+			return 0;
+		return HyperLogLog.estimate(sketches.toArray(new HyperLogLog[sketches.size()]));
+	}
+
+	/**
+	 * Registers "[display].uniqueConsumers.1m" and "[display].uniqueConsumers.[window]m" gauges.<br>
+	 *
+	 * @param registry
+	 * @param displayName
+	 */
+	public void registerGauges(MetricRegistry registry, String displayName) {
+		String base = displayName + "." + UNIQUE_CONSUMERS_NAME + ".";
+		registry.register(base + "1m", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return getLastMinute();
+			}
+		});
+		registry.register(base + windowMinutes + "m", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return getRolling();
+			}
+		});
+	}
+
+	private static final class Slot {
+		private final HyperLogLog sketch = new HyperLogLog();
+		// minute or quarter of window this slot counts, -1 if not used yet
+		private final AtomicLong period = new AtomicLong(-1);
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Generates bounded set of metric names for non-white listed URIs.<br>
+ * Path elements that look like identifiers are replaced by placeholders: numbers by _id_, UUIDs by _uuid_, hex hashes by _hex_, long or unusual
+ * elements by _token_. Placeholders have no characters that reporters would have to escape. Context is skipped if configured, elements are
+ * joined by dots and name is prefixed by nonWhiteListName, i.e. /ctx/users/12345/avatar becomes other.users._id_.avatar<br>
+ * Normalized names of actual URIs are cached in two generations: when the current generation is full it becomes the previous one and the
+ * oldest is dropped, URIs found in the previous generation are moved to the current one, so hot URIs stay cached.<br>
+ * Number of distinct names is capped, a slot is reserved by compare and set of the name counter before the name is added, so concurrent new
+ * names never exceed the cap. Once cap is reached URIs with new names are reported under nonWhiteListName.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UriNormalizer {
+
+	static final String ID = "_id_";
+	static final String UUID = "_uuid_";
+	static final String HEX = "_hex_";
+	static final String TOKEN = "_token_";
+
+	// shortest hex element considered hash rather than word
+	private static final int MIN_HEX_LENGTH = 16;
+	// longest element kept AS IS
+	private static final int MAX_ELEMENT_LENGTH = 40;
+	// number of cached actual URIs per allowed name
+	private static final int CACHE_FACTOR = 10;
+
+	private final String prefix;
+	private final boolean skipContextName;
+	private final int maxNames;
+	private final int maxCachedUrisPerGeneration;
+	// key is actual URI, value is normalized name
+	private volatile ConcurrentMap<String, String> cache = new ConcurrentHashMap<String, String>();
+	private volatile ConcurrentMap<String, String> previousCache = new ConcurrentHashMap<String, String>();
+	// all normalized names ever reported, bounded by maxNames
+	private final ConcurrentMap<String, Boolean> names = new ConcurrentHashMap<String, Boolean>();
+	// names added or reserved, never above maxNames
+	private final AtomicInteger nameCount = new AtomicInteger();
+
+	/**
+	 *
+	 * @param prefix
+	 *            - nonWhiteListName, also used when cap is reached, required
+	 * @param skipContextName
+	 *            - true if first path element should not be part of name
+	 * @param maxNames
+	 *            - maximum number of distinct normalized names, must be positive
+	 */
+	public UriNormalizer(String prefix, boolean skipContextName, int maxNames) {
+		if (prefix == null)
+			throw new IllegalArgumentException("prefix is required parameter");
+		if (maxNames <= 0)
+			throw new IllegalArgumentException("maxNames must be positive: " + maxNames);
+		this.prefix = prefix;
+		this.skipContextName = skipContextName;
+		this.maxNames = maxNames;
+		this.maxCachedUrisPerGeneration = maxNames * CACHE_FACTOR / 2;
+	}
+
+	/**
+	 *
+	 * @param uri
+	 *            - actual URI
+	 * @return normalized name or prefix if cap of names was reached
+	 */
+	public String getDisplayMetricName(String uri) {
+		String name = cache.get(uri);
+		if (name != null)
+			return name;
+		name = previousCache.get(uri);
+		if (name == null) {
+			name = normalize(uri);
+			if (!names.containsKey(name) && !addName(name))
+				name = prefix;
+		}
+		cacheName(uri, name);
+		return name;
+	}
+
+	/**
+	 * Reserves slot for new name and adds it.<br>
+	 *
+	 * @param name
+	 * @return false if cap of names was reached
+	 */
+	private boolean addName(String name) {
+		int count;
+		while ((count = nameCount.get()) < maxNames) {
+			if (nameCount.compareAndSet(count, count + 1)) {
+				// another thread may have added the same name meanwhile, its slot is returned
+				if (names.putIfAbsent(name, Boolean.TRUE) != null)
+					nameCount.decrementAndGet();
+				return true;
+			}
+		}
+		return names.containsKey(name);
+	}
+
+	private void cacheName(String uri, String name) {
+		ConcurrentMap<String, String> current = cache;
+		if (current.size() >= maxCachedUrisPerGeneration)
+			current = rotate(current);
+		current.put(uri, name);
+	}
+
+	private synchronized ConcurrentMap<String, String> rotate(ConcurrentMap<String, String> full) {
+		if (cache != full)
+			return cache; // rotated by another thread
+		previousCache = full;
+		cache = new ConcurrentHashMap<String, String>();
+		return cache;
+	}
+
+	/**
+	 *
+	 * @return number of actual URIs in both generations of cache
+	 */
+	int getCachedUriCount() {
+		return cache.size() + previousCache.size();
+	}
+
+	String normalize(String uri) {
+		StringBuilder name = new StringBuilder(prefix);
+		boolean contextSkipped = !skipContextName;
+		int length = uri.length();
+		int start = 0;
+		while (start < length) {
+			int end = uri.indexOf('/', start);
+			if (end < 0)
+				end = length;
+			// path parameters like ;jsessionid= are not part of name
+			int semicolon = uri.indexOf(';', start);
+			int elementEnd = semicolon >= 0 && semicolon < end ? semicolon : end;
+			if (elementEnd > start) {
+				if (contextSkipped) {
+					name.append('.');
+					appendElement(name, uri, start, elementEnd);
+				}
+				contextSkipped = true;
+			}
+			start = end + 1;
+		}
+		return name.toString();
+	}
+
+	private void appendElement(StringBuilder name, String uri, int start, int end) {
+		int length = end - start;
+		int digits = 0;
+		int hexLetters = 0;
+		int dashes = 0;
+		boolean plain = true; // only letters, digits, "_", "-" and "."
+		for (int i = start; i < end; i++) {
+			char c = uri.charAt(i);
+			if (c >= '0' && c <= '9')
+				digits++;
+			else if (c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')
+				hexLetters++;
+			else if (c == '-')
+				dashes++;
+			else if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == '.'))
+				plain = false;
+		}
+		if (digits == length) {
+			name.append(ID);
+		} else if (length == 36 && dashes == 4 && digits + hexLetters == 32 && isUuid(uri, start)) {
+			name.append(UUID);
+		} else if (length >= MIN_HEX_LENGTH && digits > 0 && digits + hexLetters == length) {
+			name.append(HEX);
+		} else if (!plain || length > MAX_ELEMENT_LENGTH) {
+			name.append(TOKEN);
+		} else {
+			// dots would add levels to metric name
+			for (int i = start; i < end; i++) {
+				char c = uri.charAt(i);
+				name.append(c == '.' ? '_' : c);
+			}
+		}
+	}
+
+	private boolean isUuid(String uri, int start) {
+		return uri.charAt(start + 8) == '-' && uri.charAt(start + 13) == '-' && uri.charAt(start + 18) == '-' && uri.charAt(start + 23) == '-';
+	}
+
+	/**
+	 *
+	 * @return number of distinct normalized names
+	 */
+	public int getNameCount() {
+		return names.size();
+	}
+}
@@ -19,6 +19,8 @@ public class UriPatternInfo {
 	private Pattern pattern;
 	// metric name used to report; if left null, actual URI will be used instead
 	private String metricName;
+	// compiled template used by pattern version 3 instead of pattern
+	private UriTemplate template;
 
 	public boolean isSuccess() {
 		return success;
@@ -60,6 +62,14 @@ public class UriPatternInfo {
 		this.pattern = pattern;
 	}
 
+	public UriTemplate getTemplate() {
+		return template;
+	}
+
+	public void setTemplate(UriTemplate template) {
+		this.template = template;
+	}
+
 	public String getMetricName() {
 		return metricName;
 	}
@@ -0,0 +1,81 @@
+/**
+ * This class parses REST style URI templates (pattern version 3) and then tests actual uri for match.<br>
+ */
+//  @formatter:off
+// *** Following documentation is using single line Java comments due to use of character combination */ which would terminate regular @doc style comment ***
+// 
+// General rules for URIs are the same as for version 2 (see UriPatternManagerImpl2): full path URIs are matched first, templates are matched in the order
+// they are registered and the first matched template is applied, trailing slash is not considered.
+// 
+// Rules to create valid URI templates:
+// 
+// 1: A variable {name} matches whole single path element (any non-empty value):
+// /appctx/users/{id}
+// 
+// 2: A variable may restrict value by regex as {name:regex}:
+// /appctx/users/{id}/orders/{orderId:[0-9]+}
+// Single character class with optional quantifier, like [0-9]+, [a-f0-9]{32}, \d{4} or \w+, is matched without java.util.regex,
+// any other regex is also allowed but is slower to match. Regex may contain "/", i.e. {name:[^/]+}, value is still single path element.
+// 
+// 3: A single wild card * matches whole single path element without naming it:
+// /appctx/*/orders
+// 
+// 4: A double wild card ** matches any remaining path elements (including none) and can only be used as the last path element:
+// /appctx/users/{id}/**
+// 
+// Variable or wild card must be the whole path element, following templates would NOT be valid:
+// /appctx/user{id}
+// /appctx/my*Car
+// /appctx/**/orders
+// 
+// If display is not configured for template, display name is generated from template: context is skipped (if skipContextName is true),
+// variables are replaced by their names and path elements are joined by dots, i.e. /appctx/users/{id}/orders/{orderId:[0-9]+} will be reported
+// as users.id.orders.orderId
+// 
+//  @formatter:on
+package webmetrics.core;
+
+import java.util.regex.Pattern;
+
+public class UriPatternManagerImpl3 extends AbstractUriPatternManager implements UriPatternManager {
+
+	@Override
+	public UriPatternInfo parseUriPattern(String uriPattern) {
+		if (uriPattern == null)
+			throw new IllegalArgumentException(ERROR_MSG_URI_PATT_REQUIRED);
+		UriPatternInfo result = new UriPatternInfo();
+		if (!UriTemplate.isTemplate(uriPattern))
+			return result; // full path URI
+		UriTemplate template;
+		try {
+			template = UriTemplate.compile(uriPattern);
+		} catch (IllegalArgumentException e) {
+			String error = ERROR_MSG_WILD_CARD + " " + e.getMessage();
+			if (isExceptionOnInvalidPattern())
+				throw new IllegalArgumentException(error, e);
+			logger.error(error);
+			result.setSuccess(false);
+			return result;
+		}
+		result.setDoubleWildCard(template.isOpenEnded());
+		result.setTemplate(template);
+		// regex is kept to identify pattern, matching is done by template
+		result.setRegex(template.getRegex());
+		result.setPattern(Pattern.compile(result.getRegex()));
+		return result;
+	}
+
+	/**
+	 * Tests given actual URI for match to provided URI template.<br>
+	 * Returns null if not match, otherwise returns actual URI.<br>
+	 */
+	@Override
+	public String matchUri(String uri, UriPatternInfo uriPatternInfo) {
+		if (uri == null)
+			throw new IllegalArgumentException(ERROR_MSG_URI_REQUIRED);
+		if (uriPatternInfo == null || uriPatternInfo.getTemplate() == null)
+			throw new IllegalArgumentException("uriPatternInfo is invalid");
+		uri = textUtil.stripTrailingSlash(uri);
+		return uriPatternInfo.getTemplate().matches(uri) ? uri : null;
+	}
+}
@@ -0,0 +1,397 @@
+/**
+ * Compiled REST style URI template used by URI pattern version 3, i.e. /ctx/users/{id}/orders/{orderId:[0-9]+}/**.<br>
+ * Template is split once into path elements (segments), every segment is either literal, single wild card "*", or variable with optional regex.
+ * Template is split on "/" outside of braces, so regex of variable may contain "/" or braces, i.e. {v:[^/]+} or {x:[a-f0-9]{32}}.
+ * Actual URI is matched segment by segment in place: no Matcher, substring or other object is created per match.<br>
+ * Variable regex of form "[chars]" or "\d", "\w", "." with optional quantifier (+, *, ?, {n}, {n,}, {n,m}) is compiled into character table.
+ * Any other regex is matched by java.util.regex on the segment, which does allocate and should be avoided on hot routes.<br>
+ */
+package webmetrics.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class UriTemplate {
+
+	private static final String DOUBLE_WILD_CARD = "**";
+	private static final String WILD_CARD = "*";
+	private static final Pattern VARIABLE_NAME = Pattern.compile("[a-zA-Z0-9_]+");
+
+	private final String template;
+	private final Segment[] segments;
+	// true if template ends with "/**" and matches any remaining path elements
+	private final boolean openEnded;
+	private final List<String> variableNames;
+	private final String regex;
+
+	private UriTemplate(String template, Segment[] segments, boolean openEnded, List<String> variableNames, String regex) {
+		this.template = template;
+		this.segments = segments;
+		this.openEnded = openEnded;
+		this.variableNames = variableNames;
+		this.regex = regex;
+	}
+
+	/**
+	 * Returns true if template has any variable or wild card, false if it is full path URI.<br>
+	 *
+	 * @param uriPattern
+	 * @return
+	 */
+	public static boolean isTemplate(String uriPattern) {
+		return uriPattern.indexOf('{') >= 0 || uriPattern.indexOf('*') >= 0;
+	}
+
+	/**
+	 *
+	 * @param template
+	 *            - URI template, must start with "/"
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if template is invalid
+	 */
+	public static UriTemplate compile(String template) {
+		if (template == null)
+			throw new IllegalArgumentException("template is required parameter");
+		String path = template.trim();
+		if (!path.startsWith("/"))
+			throw new IllegalArgumentException("URI template must start with \"/\": " + template);
+		while (path.length() > 1 && path.endsWith("/"))
+			path = path.substring(0, path.length() - 1);
+		boolean openEnded = false;
+		if (path.endsWith("/" + DOUBLE_WILD_CARD)) {
+			openEnded = true;
+			path = path.substring(0, path.length() - DOUBLE_WILD_CARD.length() - 1);
+		}
+		List<Segment> segments = new ArrayList<Segment>();
+		List<String> variableNames = new ArrayList<String>();
+		StringBuilder regex = new StringBuilder("(");
+		if (path.length() > 1) {
+			for (String element : splitPath(path.substring(1))) {
+				Segment segment = parseSegment(element, template);
+				if (segment.variableName != null) {
+					if (variableNames.contains(segment.variableName))
+						throw new IllegalArgumentException("Variable is not unique: " + segment.variableName + " in URI template: " + template);
+					variableNames.add(segment.variableName);
+				}
+				segments.add(segment);
+				regex.append('/').append(segment.regex);
+			}
+		}
+		regex.append(')');
+		if (openEnded)
+			regex.append("(/.*)?");
+		return new UriTemplate(template, segments.toArray(new Segment[segments.size()]), openEnded, Collections.unmodifiableList(variableNames),
+						regex.toString());
+	}
+
+	/**
+	 * Splits URI template into path elements on "/" that is not within braces of variable, empty elements are kept.<br>
+	 * Braces of variable regex are counted, escaped character (i.e. "\{") is skipped.<br>
+	 *
+	 * @param path
+	 *            - URI template, leading "/" gives empty first element
+	 * @return
+	 */
+	public static List<String> splitPath(String path) {
+		List<String> elements = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c == '\\' && depth > 0)
+				i++;
+			else if (c == '{')
+				depth++;
+			else if (c == '}' && depth > 0)
+				depth--;
+			else if (c == '/' && depth == 0) {
+				elements.add(path.substring(start, i));
+				start = i + 1;
+			}
+		}
+		elements.add(path.substring(start));
+		return elements;
+	}
+
+	private static Segment parseSegment(String element, String template) {
+		if (element.equals(""))
+			throw new IllegalArgumentException("Empty path element in URI template: " + template);
+		if (element.equals(WILD_CARD))
+			return new Segment(null, null, null, null, "[^/]+");
+		if (element.contains(DOUBLE_WILD_CARD))
+			throw new IllegalArgumentException("Double wild card can only be the last path element of URI template: " + template);
+		if (!element.startsWith("{")) {
+			if (element.indexOf('{') >= 0 || element.indexOf('}') >= 0 || element.indexOf('*') >= 0 || element.indexOf('?') >= 0)
+				throw new IllegalArgumentException("Variable or wild card must be whole path element of URI template: " + template);
+			return new Segment(element, null, null, null, Pattern.quote(element));
+		}
+		if (!element.endsWith("}"))
+			throw new IllegalArgumentException("Variable must be whole path element of URI template: " + template);
+		String body = element.substring(1, element.length() - 1);
+		int colon = body.indexOf(':');
+		String name = colon < 0 ? body : body.substring(0, colon);
+		if (!VARIABLE_NAME.matcher(name).matches())
+			throw new IllegalArgumentException("Invalid variable name \"" + name + "\" in URI template: " + template);
+		if (colon < 0)
+			return new Segment(null, name, null, null, "[^/]+");
+		String variableRegex = body.substring(colon + 1);
+		Pattern pattern;
+		try {
+			pattern = Pattern.compile(variableRegex);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Invalid regex of variable \"" + name + "\" in URI template: " + template, e);
+		}
+		CharClass charClass = CharClass.parse(variableRegex);
+		return new Segment(null, name, charClass, charClass == null ? pattern : null, "(?:" + variableRegex + ")");
+	}
+
+	/**
+	 * Tests actual URI for match.<br>
+	 *
+	 * @param uri
+	 *            - actual URI without trailing slash
+	 * @return
+	 */
+	public boolean matches(String uri) {
+		// root URI "/" has no path elements
+		int length = uri.length() == 1 ? 0 : uri.length();
+		int pos = 0;
+		for (Segment segment : segments) {
+			if (pos >= length || uri.charAt(pos) != '/')
+				return false;
+			int start = pos + 1;
+			int end = uri.indexOf('/', start);
+			if (end < 0)
+				end = length;
+			if (!segment.matches(uri, start, end))
+				return false;
+			pos = end;
+		}
+		return pos == length || openEnded;
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	public List<String> getVariableNames() {
+		return variableNames;
+	}
+
+	public boolean isOpenEnded() {
+		return openEnded;
+	}
+
+	/**
+	 *
+	 * @return number of path elements matched by template, not including elements matched by "/**"
+	 */
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	/**
+	 *
+	 * @return regex equivalent to template, first group matches path elements of template
+	 */
+	public String getRegex() {
+		return regex;
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+
+	private static final class Segment {
+		private final String literal;
+		private final String variableName;
+		private final CharClass charClass;
+		// used only if regex of variable could not be compiled into char class
+		private final Pattern pattern;
+		private final String regex;
+
+		private Segment(String literal, String variableName, CharClass charClass, Pattern pattern, String regex) {
+			this.literal = literal;
+			this.variableName = variableName;
+			this.charClass = charClass;
+			this.pattern = pattern;
+			this.regex = regex;
+		}
+
+		private boolean matches(String uri, int start, int end) {
+			if (literal != null)
+				return end - start == literal.length() && uri.regionMatches(start, literal, 0, literal.length());
+			if (charClass != null)
+				return charClass.matches(uri, start, end);
+			if (end == start)
+				return false;
+			return pattern == null || pattern.matcher(uri.substring(start, end)).matches();
+		}
+	}
+
+	/**
+	 * Single character class with quantifier, i.e. [0-9]+ or \w{2,8}.<br>
+	 */
+	private static final class CharClass {
+		private final boolean[] ascii = new boolean[128];
+		// whether characters outside of ASCII belong to class
+		private boolean nonAscii;
+		private int min = 1;
+		private int max = 1;
+
+		/**
+		 *
+		 * @param regex
+		 * @return compiled class or null if regex is not single character class with optional quantifier
+		 */
+		private static CharClass parse(String regex) {
+			CharClass charClass = new CharClass();
+			int pos;
+			if (regex.startsWith("[")) {
+				pos = charClass.parseBracket(regex);
+			} else if (regex.startsWith("\\") && regex.length() > 1) {
+				if (!charClass.addShorthand(regex.charAt(1)))
+					return null;
+				pos = 2;
+			} else if (regex.startsWith(".")) {
+				for (int c = 0; c < 128; c++) {
+					charClass.ascii[c] = c != '\n' && c != '\r';
+				}
+				charClass.nonAscii = true;
+				pos = 1;
+			} else {
+				return null;
+			}
+			if (pos < 0 || !charClass.parseQuantifier(regex.substring(pos)))
+				return null;
+			// path element is never empty
+			charClass.min = Math.max(charClass.min, 1);
+			return charClass.max >= charClass.min ? charClass : null;
+		}
+
+		private int parseBracket(String regex) {
+			int pos = 1;
+			boolean negated = false;
+			if (pos < regex.length() && regex.charAt(pos) == '^') {
+				negated = true;
+				pos++;
+			}
+			boolean first = true;
+			while (pos < regex.length()) {
+				char c = regex.charAt(pos);
+				if (c == ']' && !first)
+					break;
+				first = false;
+				if (c == '[' || c == '&')
+					return -1; // nested classes and intersections are not supported
+				if (c == '\\') {
+					if (pos + 1 >= regex.length())
+						return -1;
+					char escaped = regex.charAt(pos + 1);
+					pos += 2;
+					if (Character.isLetter(escaped)) {
+						if (!addShorthand(escaped))
+							return -1;
+						continue;
+					}
+					c = escaped;
+				} else {
+					pos++;
+				}
+				if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+					char to = regex.charAt(pos + 1);
+					if (to == '\\' || to == '[' || to < c)
+						return -1;
+					addRange(c, to);
+					pos += 2;
+				} else {
+					addRange(c, c);
+				}
+			}
+			if (pos >= regex.length())
+				return -1; // not closed
+			if (negated) {
+				for (int c = 0; c < 128; c++) {
+					ascii[c] = !ascii[c];
+				}
+				nonAscii = !nonAscii;
+			}
+			return pos + 1;
+		}
+
+		private void addRange(char from, char to) {
+			for (int c = from; c <= to; c++) {
+				if (c < 128)
+					ascii[c] = true;
+				else
+					nonAscii = true; // non-ASCII ranges are approximated by all non-ASCII characters
+			}
+		}
+
+		private boolean addShorthand(char shorthand) {
+			switch (shorthand) {
+			case 'd':
+				addRange('0', '9');
+				return true;
+			case 'w':
+				addRange('a', 'z');
+				addRange('A', 'Z');
+				addRange('0', '9');
+				addRange('_', '_');
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		private boolean parseQuantifier(String quantifier) {
+			if (quantifier.equals("")) {
+				min = 1;
+				max = 1;
+			} else if (quantifier.equals("+")) {
+				min = 1;
+				max = Integer.MAX_VALUE;
+			} else if (quantifier.equals("*")) {
+				min = 0;
+				max = Integer.MAX_VALUE;
+			} else if (quantifier.equals("?")) {
+				min = 0;
+				max = 1;
+			} else if (quantifier.startsWith("{") && quantifier.endsWith("}")) {
+				String bounds = quantifier.substring(1, quantifier.length() - 1);
+				int comma = bounds.indexOf(',');
+				try {
+					if (comma < 0) {
+						min = Integer.parseInt(bounds.trim());
+						max = min;
+					} else {
+						min = Integer.parseInt(bounds.substring(0, comma).trim());
+						String upper = bounds.substring(comma + 1).trim();
+						max = upper.equals("") ? Integer.MAX_VALUE : Integer.parseInt(upper);
+					}
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+		private boolean matches(String uri, int start, int end) {
+			int length = end - start;
+			if (length < min || length > max)
+				return false;
+			for (int i = start; i < end; i++) {
+				char c = uri.charAt(i);
+				if (c < 128 ? !ascii[c] : !nonAscii)
+					return false;
+			}
+			return true;
+		}
+	}
+}
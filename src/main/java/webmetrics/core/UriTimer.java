@@ -1,5 +1,7 @@
 package webmetrics.core;
 
+import java.util.concurrent.TimeUnit;
+
 import com.codahale.metrics.Timer;
 
 public class UriTimer {
@@ -10,6 +12,17 @@ public class UriTimer {
 	private String metricName;
 	private Timer.Context context;
 	private Timer.Context consumerContext;
+	private RequestContext requestContext;
+	private long startNano;
+	private String consumerAlias;
+	private String traceId;
+	private boolean whiteListed;
+	// limiter that admitted request, null if load shedding is not enabled
+	private ConcurrencyLimiter limiter;
+	// bytes of response body, -1 if payload size is not counted
+	private long responseBytes = -1;
+	// raw consumer id, kept for display resolved after start
+	private String consumer;
 
 	public UriTimer(Timer timer, String uri, String metricName) {
 		this.timer = timer;
@@ -48,7 +61,88 @@ public class UriTimer {
 		this.metricName = metricName;
 	}
 
+	public RequestContext getRequestContext() {
+		return requestContext;
+	}
+
+	public void setRequestContext(RequestContext requestContext) {
+		this.requestContext = requestContext;
+	}
+
+	public String getConsumerAlias() {
+		return consumerAlias;
+	}
+
+	public void setConsumerAlias(String consumerAlias) {
+		this.consumerAlias = consumerAlias;
+	}
+
+	public boolean isWhiteListed() {
+		return whiteListed;
+	}
+
+	public void setWhiteListed(boolean whiteListed) {
+		this.whiteListed = whiteListed;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public void setTraceId(String traceId) {
+		this.traceId = traceId;
+	}
+
+	public ConcurrencyLimiter getLimiter() {
+		return limiter;
+	}
+
+	public void setLimiter(ConcurrencyLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	public String getConsumer() {
+		return consumer;
+	}
+
+	public void setConsumer(String consumer) {
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Sets display of request started without one (see MetricsManager.nameTimer).<br>
+	 * Timers of display are updated with duration measured from start when timer stops.<br>
+	 * 
+	 * @param timer
+	 * @param consumerTimer
+	 *            - can be null
+	 * @param metricName
+	 *            - display name
+	 */
+	public void bind(Timer timer, Timer consumerTimer, String metricName) {
+		this.timer = timer;
+		this.consumerTimer = consumerTimer;
+		this.metricName = metricName;
+	}
+
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	public void setResponseBytes(long responseBytes) {
+		this.responseBytes = responseBytes;
+	}
+
+	/**
+	 * 
+	 * @return nano time timer was started
+	 */
+	public long getStartNano() {
+		return startNano;
+	}
+
 	public void start() {
+		startNano = System.nanoTime();
 		if (timer != null) {
 			context = timer.time();
 		}
@@ -58,6 +152,15 @@ public class UriTimer {
 	}
 
 	public long stop() {
+		if (context == null && timer != null) {
+			// bound after start, no context was started
+			long duration = System.nanoTime() - startNano;
+			timer.update(duration, TimeUnit.NANOSECONDS);
+			if (consumerTimer != null) {
+				consumerTimer.update(duration, TimeUnit.NANOSECONDS);
+			}
+			return duration;
+		}
 		if (consumerContext != null) {
 			consumerContext.stop();
 		}
@@ -0,0 +1,95 @@
+/**
+ * This class helps build white-listed collection of URIs and URI templates (pattern version 3).<br>
+ * Unlike versions 1 and 2, actual URIs matched by templates are not cached: REST URIs contain ids and would grow the cache without limit, while
+ * compiled templates are matched without allocation. Templates are grouped by number of path elements, so only templates that can match
+ * given URI are tested.<br>
+ */
+package webmetrics.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class UriWhitelistManagerImpl3 extends AbstractWhitelistURIManager implements WhitelistURIManager {
+
+	private static final UriPatternInfo[] NO_PATTERNS = new UriPatternInfo[0];
+
+	// templates indexed by number of path elements they match, in registration order
+	private UriPatternInfo[][] templatesBySegmentCount = new UriPatternInfo[0][];
+
+	@Override
+	protected UriPatternManager getUriPatternManager() {
+		return new UriPatternManagerImpl3();
+	}
+
+	@Override
+	public void initialize(Map<String, String> uris) {
+		super.initialize(uris);
+		templatesBySegmentCount = new UriPatternInfo[0][];
+		if (uriWhiteListPatterns == null)
+			return;
+		int maxSegments = 0;
+		for (UriPatternInfo patternInfo : uriWhiteListPatterns) {
+			maxSegments = Math.max(maxSegments, patternInfo.getTemplate().getSegmentCount());
+		}
+		// URIs longer than any template can still be matched by open ended templates, last group holds those
+		List<List<UriPatternInfo>> groups = new ArrayList<List<UriPatternInfo>>();
+		for (int count = 0; count <= maxSegments + 1; count++) {
+			groups.add(new ArrayList<UriPatternInfo>());
+		}
+		for (UriPatternInfo patternInfo : uriWhiteListPatterns) {
+			UriTemplate template = patternInfo.getTemplate();
+			if (!template.isOpenEnded()) {
+				groups.get(template.getSegmentCount()).add(patternInfo);
+				continue;
+			}
+			for (int count = template.getSegmentCount(); count <= maxSegments + 1; count++) {
+				groups.get(count).add(patternInfo);
+			}
+		}
+		// keeping registration order within every group
+		UriPatternInfo[][] templates = new UriPatternInfo[groups.size()][];
+		for (int count = 0; count < groups.size(); count++) {
+			List<UriPatternInfo> group = groups.get(count);
+			templates[count] = group.isEmpty() ? NO_PATTERNS : group.toArray(new UriPatternInfo[group.size()]);
+		}
+		templatesBySegmentCount = templates;
+	}
+
+	@Override
+	public String getDisplayMetricName(String uri) {
+		if (uri == null) {
+			logger.error("Passed uri is null");
+			return null;
+		}
+		if (uriWhiteList == null && uriWhiteListPatterns == null)
+			return null; // nothing to match
+		uri = textUtil.stripTrailingSlash(uri);
+		if (uriWhiteList != null) {
+			String displayName = uriWhiteList.get(uri);
+			if (displayName != null)
+				return displayName;
+		}
+		UriPatternInfo[][] templates = templatesBySegmentCount;
+		if (templates.length == 0)
+			return null;
+		int segmentCount = countSegments(uri);
+		for (UriPatternInfo patternInfo : templates[Math.min(segmentCount, templates.length - 1)]) {
+			if (patternInfo.getTemplate().matches(uri))
+				return patternInfo.getMetricName();
+		}
+		// no match found
+		return null;
+	}
+
+	private int countSegments(String uri) {
+		if (uri.length() <= 1)
+			return 0;
+		int count = 0;
+		for (int i = 0; i < uri.length(); i++) {
+			if (uri.charAt(i) == '/')
+				count++;
+		}
+		return count;
+	}
+}
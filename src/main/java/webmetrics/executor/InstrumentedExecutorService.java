@@ -0,0 +1,297 @@
+/**
+ * Executor service wrapper measuring queue wait time, execution time, active count, queue depth and rejections of a named pool.<br>
+ * Every task is tagged with display name of the request that submitted it, so that queue wait and execution time are additionally reported per
+ * display: "executors.[pool].displays.[display].queueWait" and "executors.[pool].displays.[display].execution".<br>
+ * While task runs, the request context of submitting thread is attached to the worker thread (see RequestContext).<br>
+ * Instances are created by MetricsManager.instrumentExecutor().<br>
+ */
+package webmetrics.executor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import webmetrics.core.RequestContext;
+
+public class InstrumentedExecutorService implements ExecutorService {
+
+	private static final String DISPLAYS_PREFIX = "displays";
+
+	private final ExecutorService delegate;
+	private final MetricRegistry registry;
+	private final String baseName;
+	private final Timer queueWait;
+	private final Timer execution;
+	private final Meter submitted;
+	private final Meter rejected;
+	private final AtomicInteger active = new AtomicInteger();
+	// used for queue depth only if delegate does not expose its queue
+	private final AtomicInteger queued = new AtomicInteger();
+	// key is display name, value is pair of timers: queue wait and execution
+	private final ConcurrentMap<String, Timer[]> displayTimers = new ConcurrentHashMap<String, Timer[]>();
+
+	/**
+	 * 
+	 * @param delegate
+	 *            - actual executor service, required
+	 * @param registry
+	 *            - registry to report to, required
+	 * @param baseName
+	 *            - base name of all metrics of the pool, i.e. "executors.myPool"
+	 */
+	public InstrumentedExecutorService(final ExecutorService delegate, MetricRegistry registry, String baseName) {
+		if (delegate == null)
+			throw new IllegalArgumentException("delegate is required parameter");
+		this.delegate = delegate;
+		this.registry = registry;
+		this.baseName = baseName;
+		queueWait = registry.timer(baseName + ".queueWait");
+		execution = registry.timer(baseName + ".execution");
+		submitted = registry.meter(baseName + ".submitted");
+		rejected = registry.meter(baseName + ".rejected");
+		registry.register(baseName + ".active", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return active.get();
+			}
+		});
+		registry.register(baseName + ".queued", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				if (delegate instanceof ThreadPoolExecutor)
+					return ((ThreadPoolExecutor) delegate).getQueue().size();
+				return queued.get();
+			}
+		});
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		InstrumentedTask<Object> task = new InstrumentedTask<Object>(command, null);
+		try {
+			delegate.execute(task);
+		} catch (RejectedExecutionException e) {
+			task.rejected();
+			throw e;
+		}
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		InstrumentedTask<Object> instrumented = new InstrumentedTask<Object>(task, null);
+		try {
+			return delegate.submit((Runnable) instrumented);
+		} catch (RejectedExecutionException e) {
+			instrumented.rejected();
+			throw e;
+		}
+	}
+
+	@Override
+	public <T> Future<T> submit(Runnable task, T result) {
+		InstrumentedTask<T> instrumented = new InstrumentedTask<T>(task, null);
+		try {
+			return delegate.submit((Runnable) instrumented, result);
+		} catch (RejectedExecutionException e) {
+			instrumented.rejected();
+			throw e;
+		}
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		InstrumentedTask<T> instrumented = new InstrumentedTask<T>(null, task);
+		try {
+			return delegate.submit((Callable<T>) instrumented);
+		} catch (RejectedExecutionException e) {
+			instrumented.rejected();
+			throw e;
+		}
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+		List<InstrumentedTask<T>> instrumented = instrument(tasks);
+		try {
+			return delegate.invokeAll(instrumented);
+		} catch (RejectedExecutionException e) {
+			rejected(instrumented);
+			throw e;
+		}
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+		List<InstrumentedTask<T>> instrumented = instrument(tasks);
+		try {
+			return delegate.invokeAll(instrumented, timeout, unit);
+		} catch (RejectedExecutionException e) {
+			rejected(instrumented);
+			throw e;
+		}
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		List<InstrumentedTask<T>> instrumented = instrument(tasks);
+		try {
+			return delegate.invokeAny(instrumented);
+		} catch (RejectedExecutionException e) {
+			rejected(instrumented);
+			throw e;
+		}
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+					TimeoutException {
+		List<InstrumentedTask<T>> instrumented = instrument(tasks);
+		try {
+			return delegate.invokeAny(instrumented, timeout, unit);
+		} catch (RejectedExecutionException e) {
+			rejected(instrumented);
+			throw e;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> notStarted = delegate.shutdownNow();
+		queued.addAndGet(-notStarted.size());
+		return notStarted;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+	private <T> List<InstrumentedTask<T>> instrument(Collection<? extends Callable<T>> tasks) {
+		List<InstrumentedTask<T>> instrumented = new ArrayList<InstrumentedTask<T>>(tasks.size());
+		for (Callable<T> task : tasks) {
+			instrumented.add(new InstrumentedTask<T>(null, task));
+		}
+		return instrumented;
+	}
+
+	private <T> void rejected(List<InstrumentedTask<T>> tasks) {
+		for (InstrumentedTask<T> task : tasks) {
+			task.rejected();
+		}
+	}
+
+	/**
+	 * Returns queue wait and execution timers for given display, timers are created once per display and pool.<br>
+	 * 
+	 * @param displayName
+	 * @return
+	 */
+	private Timer[] getDisplayTimers(String displayName) {
+		Timer[] timers = displayTimers.get(displayName);
+		if (timers == null) {
+			String prefix = baseName + "." + DISPLAYS_PREFIX + "." + displayName;
+			timers = new Timer[] { registry.timer(prefix + ".queueWait"), registry.timer(prefix + ".execution") };
+			Timer[] existing = displayTimers.putIfAbsent(displayName, timers);
+			if (existing != null)
+				timers = existing;
+		}
+		return timers;
+	}
+
+	/**
+	 * Wraps either runnable or callable, captures submitting request display and submit time.<br>
+	 */
+	private class InstrumentedTask<T> implements Runnable, Callable<T> {
+
+		private final Runnable runnable;
+		private final Callable<T> callable;
+		private final RequestContext context;
+		private final long submitTime;
+		private boolean wasRejected;
+
+		InstrumentedTask(Runnable runnable, Callable<T> callable) {
+			this.runnable = runnable;
+			this.callable = callable;
+			this.context = RequestContext.current();
+			submitted.mark();
+			queued.incrementAndGet();
+			this.submitTime = System.nanoTime();
+		}
+
+		void rejected() {
+			if (wasRejected)
+				return;
+			wasRejected = true;
+			queued.decrementAndGet();
+			rejected.mark();
+		}
+
+		@Override
+		public void run() {
+			try {
+				call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				// runnable cannot throw checked exception
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public T call() throws Exception {
+			long start = System.nanoTime();
+			queued.decrementAndGet();
+			active.incrementAndGet();
+			Timer[] timers = context == null ? null : getDisplayTimers(context.getDisplayName());
+			queueWait.update(start - submitTime, TimeUnit.NANOSECONDS);
+			if (timers != null)
+				timers[0].update(start - submitTime, TimeUnit.NANOSECONDS);
+			RequestContext previousContext = RequestContext.attach(context);
+			try {
+				if (callable != null)
+					return callable.call();
+				runnable.run();
+				return null;
+			} finally {
+				RequestContext.attach(previousContext);
+				long duration = System.nanoTime() - start;
+				active.decrementAndGet();
+				execution.update(duration, TimeUnit.NANOSECONDS);
+				if (timers != null)
+					timers[1].update(duration, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Request reader counting bytes that read characters took in request encoding.<br>
+ * All reads go directly to the container reader, nothing is buffered twice. readLine() reads ahead in chunks and returns characters after the line
+ * terminator to the container reader by mark/reset, so terminators ("\n", "\r" or "\r\n") are counted exactly. If the container reader does not
+ * support mark, or the application marked the reader itself, lines are read character by character instead and "\n" following "\r" is skipped by
+ * the next read, as java.io.BufferedReader does.<br>
+ * mark() and reset() of the application are passed to the container reader, reset() restores the count of the mark so that characters read again
+ * are counted once.<br>
+ */
+package webmetrics.filter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+class CountingBufferedReader extends BufferedReader {
+
+	// characters read ahead by single step of readLine()
+	private static final int LINE_CHUNK = 256;
+
+	private final BufferedReader delegate;
+	private final EncodedLength encodedLength;
+	private final char[] chunk = new char[LINE_CHUNK];
+	private long count;
+	// last line ended with "\r", "\n" that follows belongs to it
+	private boolean skipLF;
+	// application marked the reader, readLine() must not move the mark
+	private boolean marked;
+	private long markedCount;
+	private boolean markedSkipLF;
+
+	CountingBufferedReader(BufferedReader delegate, String characterEncoding) {
+		// buffer of super class is never used, every method reads from delegate
+		super(delegate, 1);
+		this.delegate = delegate;
+		this.encodedLength = new EncodedLength(characterEncoding);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int c = delegate.read();
+		if (skipLF) {
+			skipLF = false;
+			if (c == '\n') {
+				count += encodedLength.of(c);
+				c = delegate.read();
+			}
+		}
+		if (c >= 0)
+			count += encodedLength.of(c);
+		return c;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (skipLF && len > 0) {
+			int c = read();
+			if (c < 0)
+				return -1;
+			cbuf[off] = (char) c;
+			// do not block for the rest if one character is already read
+			if (len == 1 || !delegate.ready())
+				return 1;
+			int n = read(cbuf, off + 1, len - 1);
+			return n > 0 ? n + 1 : 1;
+		}
+		int n = delegate.read(cbuf, off, len);
+		if (n > 0)
+			count += encodedLength.of(cbuf, off, n);
+		return n;
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		if (marked || !delegate.markSupported())
+			return readLineByCharacter();
+		if (skipLF) {
+			skipLF = false;
+			delegate.mark(1);
+			int next = delegate.read();
+			if (next == '\n')
+				count += encodedLength.of(next);
+			else if (next >= 0)
+				delegate.reset();
+		}
+		StringBuilder line = null;
+		while (true) {
+			delegate.mark(LINE_CHUNK);
+			int n = delegate.read(chunk, 0, LINE_CHUNK);
+			if (n <= 0)
+				return line == null ? null : line.toString();
+			int end = 0;
+			while (end < n && chunk[end] != '\n' && chunk[end] != '\r')
+				end++;
+			if (end == n) {
+				// no terminator in chunk, all characters belong to the line
+				count += encodedLength.of(chunk, 0, n);
+				if (line == null)
+					line = new StringBuilder(2 * n);
+				line.append(chunk, 0, n);
+				continue;
+			}
+			int consumed = end + 1;
+			if (chunk[end] == '\r' && consumed < n && chunk[consumed] == '\n')
+				consumed++;
+			count += encodedLength.of(chunk, 0, consumed);
+			delegate.reset();
+			delegate.skip(consumed);
+			// "\r" ends the chunk, "\n" may follow and is skipped by the next read
+			skipLF = chunk[end] == '\r' && consumed == n;
+			if (line == null)
+				return new String(chunk, 0, end);
+			return line.append(chunk, 0, end).toString();
+		}
+	}
+
+	private String readLineByCharacter() throws IOException {
+		StringBuilder line = null;
+		while (true) {
+			int c = read();
+			if (c < 0)
+				return line == null ? null : line.toString();
+			if (c == '\n' || c == '\r') {
+				skipLF = c == '\r';
+				return line == null ? "" : line.toString();
+			}
+			if (line == null)
+				line = new StringBuilder();
+			line.append((char) c);
+		}
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n < 0)
+			throw new IllegalArgumentException("skip value is negative: " + n);
+		// skipped characters are read, so their bytes are counted as well
+		long skipped = 0;
+		while (skipped < n) {
+			int read = read(chunk, 0, (int) Math.min(LINE_CHUNK, n - skipped));
+			if (read < 0)
+				break;
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+		return delegate.ready();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return delegate.markSupported();
+	}
+
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+		delegate.mark(readAheadLimit);
+		marked = true;
+		markedCount = count;
+		markedSkipLF = skipLF;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		if (!marked)
+			throw new IOException("Stream not marked");
+		delegate.reset();
+		count = markedCount;
+		skipLF = markedSkipLF;
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	long getCount() {
+		return count;
+	}
+}
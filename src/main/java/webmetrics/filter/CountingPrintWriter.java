@@ -0,0 +1,65 @@
+/**
+ * Response writer counting bytes that written characters take in response encoding and notifying ResponseTiming about writes.<br>
+ * All print/append methods of PrintWriter delegate to the write and println methods overridden here.<br>
+ */
+package webmetrics.filter;
+
+import java.io.PrintWriter;
+
+class CountingPrintWriter extends PrintWriter {
+
+	private static final int LINE_SEPARATOR_LENGTH = System.getProperty("line.separator").length();
+
+	private final EncodedLength encodedLength;
+	private final ResponseTiming timing;
+	private long count;
+
+	CountingPrintWriter(PrintWriter delegate, String characterEncoding, ResponseTiming timing) {
+		super(delegate);
+		this.encodedLength = new EncodedLength(characterEncoding);
+		this.timing = timing;
+	}
+
+	@Override
+	public void write(int c) {
+		timing.beforeWrite();
+		super.write(c);
+		count += encodedLength.of(c);
+		timing.afterWrite();
+	}
+
+	@Override
+	public void write(char[] buf, int off, int len) {
+		timing.beforeWrite();
+		super.write(buf, off, len);
+		count += encodedLength.of(buf, off, len);
+		timing.afterWrite();
+	}
+
+	@Override
+	public void write(String s, int off, int len) {
+		timing.beforeWrite();
+		super.write(s, off, len);
+		count += encodedLength.of(s, off, len);
+		timing.afterWrite();
+	}
+
+	@Override
+	public void println() {
+		// PrintWriter writes line separator directly to underlying writer
+		timing.beforeWrite();
+		super.println();
+		count += LINE_SEPARATOR_LENGTH;
+		timing.afterWrite();
+	}
+
+	@Override
+	public void flush() {
+		super.flush();
+		timing.afterWrite();
+	}
+
+	long getCount() {
+		return count;
+	}
+}
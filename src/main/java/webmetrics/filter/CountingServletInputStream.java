@@ -0,0 +1,80 @@
+/**
+ * Servlet input stream counting bytes of request body read by application.<br>
+ * Counter is a plain field: request is read by one thread at a time, no synchronization per byte is needed.<br>
+ */
+package webmetrics.filter;
+
+import java.io.IOException;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+class CountingServletInputStream extends ServletInputStream {
+
+	private final ServletInputStream delegate;
+	private long count;
+
+	CountingServletInputStream(ServletInputStream delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = delegate.read();
+		if (b >= 0)
+			count++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = delegate.read(b, off, len);
+		if (n > 0)
+			count += n;
+		return n;
+	}
+
+	@Override
+	public int readLine(byte[] b, int off, int len) throws IOException {
+		int n = delegate.readLine(b, off, len);
+		if (n > 0)
+			count += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = delegate.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return delegate.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	@Override
+	public boolean isFinished() {
+		return delegate.isFinished();
+	}
+
+	@Override
+	public boolean isReady() {
+		return delegate.isReady();
+	}
+
+	@Override
+	public void setReadListener(ReadListener readListener) {
+		delegate.setReadListener(readListener);
+	}
+
+	long getCount() {
+		return count;
+	}
+}
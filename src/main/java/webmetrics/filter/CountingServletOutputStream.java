@@ -0,0 +1,63 @@
+/**
+ * Servlet output stream counting bytes written to the response and notifying ResponseTiming about writes.<br>
+ * Counter is a plain field: response is written by one thread at a time, no synchronization per byte is needed.<br>
+ */
+package webmetrics.filter;
+
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+class CountingServletOutputStream extends ServletOutputStream {
+
+	private final ServletOutputStream delegate;
+	private final ResponseTiming timing;
+	private long count;
+
+	CountingServletOutputStream(ServletOutputStream delegate, ResponseTiming timing) {
+		this.delegate = delegate;
+		this.timing = timing;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		timing.beforeWrite();
+		delegate.write(b);
+		count++;
+		timing.afterWrite();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		timing.beforeWrite();
+		delegate.write(b, off, len);
+		count += len;
+		timing.afterWrite();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		delegate.flush();
+		timing.afterWrite();
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	@Override
+	public boolean isReady() {
+		return delegate.isReady();
+	}
+
+	@Override
+	public void setWriteListener(WriteListener writeListener) {
+		delegate.setWriteListener(writeListener);
+	}
+
+	long getCount() {
+		return count;
+	}
+}
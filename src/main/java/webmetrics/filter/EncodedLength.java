@@ -0,0 +1,49 @@
+/**
+ * Computes number of bytes characters take once encoded, without actually encoding them.<br>
+ * Exact for UTF-8 and single byte encodings, for other encodings UTF-8 length is used as estimate.<br>
+ */
+package webmetrics.filter;
+
+class EncodedLength {
+
+	private final boolean singleByte;
+
+	/**
+	 * 
+	 * @param characterEncoding
+	 *            - encoding of request or response, ISO-8859-1 if null as defined by Servlet spec
+	 */
+	EncodedLength(String characterEncoding) {
+		String encoding = characterEncoding == null ? "ISO-8859-1" : characterEncoding.toUpperCase();
+		singleByte = encoding.equals("ISO-8859-1") || encoding.equals("US-ASCII") || encoding.startsWith("WINDOWS-125")
+						|| encoding.startsWith("ISO-8859-");
+	}
+
+	int of(int c) {
+		if (singleByte || c < 0x80)
+			return 1;
+		if (c < 0x800 || Character.isSurrogate((char) c))
+			return 2; // surrogate pair takes 4 bytes, 2 per char
+		return 3;
+	}
+
+	long of(char[] buf, int off, int len) {
+		if (singleByte)
+			return len;
+		long bytes = 0;
+		for (int i = off; i < off + len; i++) {
+			bytes += of(buf[i]);
+		}
+		return bytes;
+	}
+
+	long of(String s, int off, int len) {
+		if (singleByte)
+			return len;
+		long bytes = 0;
+		for (int i = off; i < off + len; i++) {
+			bytes += of(s.charAt(i));
+		}
+		return bytes;
+	}
+}
@@ -3,15 +3,23 @@
  */
 package webmetrics.filter;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 import org.slf4j.Logger;
@@ -19,10 +27,24 @@ import org.slf4j.LoggerFactory;
 
 import webmetrics.config.MetricConfig;
 import webmetrics.core.MetricsManager;
+import webmetrics.core.RequestContext;
 import webmetrics.core.UriTimer;
 
 public class MetricsFilter implements Filter {
 
+	/**
+	 * Name of request attribute holding trace id of measured request (see metrics-param traceIdHeader).<br>
+	 */
+	public static final String TRACE_ID_ATTRIBUTE = "webmetrics.traceId";
+	/**
+	 * Name of request attribute holding timer of measured request when metrics are named by Spring handler pattern (see metrics-param
+	 * springNaming).<br>
+	 */
+	public static final String TIMER_ATTRIBUTE = "webmetrics.timer";
+	// concurrency limit adapts every 100 ms and tokens are refilled continuously, so clients may retry soon
+	private static final String RETRY_AFTER_SECONDS = "1";
+	private static final int TOO_MANY_REQUESTS = 429;
+
 	private MetricsManager webMetricManager;
 
 	@Override
@@ -58,6 +80,16 @@ public class MetricsFilter implements Filter {
 		}
 		if (webMetricManager.isEnabled()) {
 			webMetricManager.getJmxReporter().start();
+			if (webMetricManager.getStripedTicker() != null)
+				webMetricManager.getStripedTicker().start();
+			if (webMetricManager.getHealthEvaluator() != null)
+				webMetricManager.getHealthEvaluator().start();
+			if (webMetricManager.getJvmMetrics() != null)
+				webMetricManager.getJvmMetrics().start();
+			if (webMetricManager.getSharedMetrics() != null)
+				webMetricManager.getSharedMetrics().start();
+			if (webMetricManager.getSnapshot() != null)
+				webMetricManager.getSnapshot().start();
 		} else {
 			logger.warn(" Web Metrics is not enabled");
 		}
@@ -68,6 +100,18 @@ public class MetricsFilter implements Filter {
 		logger.info("Destroying WebMetricsFilter");
 		if (webMetricManager.isEnabled()) {
 			webMetricManager.getJmxReporter().stop();
+			if (webMetricManager.getStripedTicker() != null)
+				webMetricManager.getStripedTicker().stop();
+			if (webMetricManager.getHealthEvaluator() != null)
+				webMetricManager.getHealthEvaluator().stop();
+			if (webMetricManager.getJvmMetrics() != null)
+				webMetricManager.getJvmMetrics().stop();
+			if (webMetricManager.getSharedMetrics() != null)
+				webMetricManager.getSharedMetrics().stop();
+			if (webMetricManager.getSnapshot() != null)
+				webMetricManager.getSnapshot().stop();
+			if (webMetricManager.getJournal() != null)
+				webMetricManager.getJournal().close();
 		}
 	}
 
@@ -78,13 +122,96 @@ public class MetricsFilter implements Filter {
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
 		String uri = ((HttpServletRequest) request).getRequestURI().toString();
 		System.out.println("doFilter  WebMetricsFilter" +uri);
-		final StatusExposingServletResponse wrappedResponse = new StatusExposingServletResponse((HttpServletResponse) response);
-		UriTimer timer = webMetricManager.startTimerForUri(uri, getConsumer((HttpServletRequest) request));
+		final UriTimer timer = webMetricManager.startTimerForUri(uri, getConsumer((HttpServletRequest) request));
+		if (timer != null && webMetricManager.getWebMetricConfig().isEnableExemplars()) {
+			timer.setTraceId(getTraceId((HttpServletRequest) request, (HttpServletResponse) response));
+		}
+		if (timer != null && webMetricManager.getWebMetricConfig().isSpringNaming()) {
+			// MetricsHandlerInterceptor names the timer once handler is known
+			request.setAttribute(TIMER_ATTRIBUTE, timer);
+		}
+		if (webMetricManager.isThrottled(timer)) {
+			((HttpServletResponse) response).setHeader("Retry-After", RETRY_AFTER_SECONDS);
+			((HttpServletResponse) response).sendError(TOO_MANY_REQUESTS);
+			return;
+		}
+		if (!webMetricManager.tryAcquire(timer)) {
+			// shed before the application spends any time on request
+			((HttpServletResponse) response).setHeader("Retry-After", RETRY_AFTER_SECONDS);
+			((HttpServletResponse) response).sendError(webMetricManager.getWebMetricConfig().getLoadSheddingStatus());
+			return;
+		}
+		// payload and response timing are tracked only for measured requests
+		boolean countPayload = timer != null && webMetricManager.isPayloadSizeEnabled();
+		boolean instrumentStreams = countPayload || timer != null && webMetricManager.isResponseTimingEnabled();
+		final PayloadCountingServletRequest wrappedRequest = countPayload ? new PayloadCountingServletRequest((HttpServletRequest) request) : null;
+		final StatusExposingServletResponse wrappedResponse = new StatusExposingServletResponse((HttpServletResponse) response, instrumentStreams);
+		final ServletRequest chainRequest = wrappedRequest != null ? wrappedRequest : request;
+		boolean async = false;
 		try {
-			chain.doFilter(request, wrappedResponse);
+			chain.doFilter(chainRequest, wrappedResponse);
+			if (timer != null && chainRequest.isAsyncStarted()) {
+				// response is written after this dispatch returns (i.e. by WriteListener), request ends when async processing completes
+				chainRequest.getAsyncContext().addListener(new AsyncListener() {
+					@Override
+					public void onComplete(AsyncEvent event) throws IOException {
+						stopTimer(timer, wrappedRequest, wrappedResponse);
+					}
+
+					@Override
+					public void onStartAsync(AsyncEvent event) throws IOException {
+						// listeners are removed when async processing is restarted
+						event.getAsyncContext().addListener(this, chainRequest, wrappedResponse);
+					}
+
+					@Override
+					public void onTimeout(AsyncEvent event) throws IOException {
+					}
+
+					@Override
+					public void onError(AsyncEvent event) throws IOException {
+					}
+				}, chainRequest, wrappedResponse);
+				async = true;
+			}
 		} finally {
-			webMetricManager.stopTimer(wrappedResponse.getStatus(), timer);
+			if (async) {
+				// request continues on another thread, context of this thread is no longer needed
+				RequestContext.attach(null);
+			} else {
+				stopTimer(timer, wrappedRequest, wrappedResponse);
+			}
+		}
+	}
+
+	private void stopTimer(UriTimer timer, PayloadCountingServletRequest request, StatusExposingServletResponse response) {
+		if (request != null) {
+			webMetricManager.recordPayload(timer, request.getByteCount(), response.getByteCount());
 		}
+		webMetricManager.recordResponseTiming(timer, response.getTiming().getFirstWriteNano(), response.getTiming().getCommitNano());
+		webMetricManager.stopTimer(response.getStatus(), timer);
+	}
+
+	/**
+	 * Returns trace id from configured request header.<br>
+	 * If request has no trace id, new id is generated and returned to client in the same header.<br>
+	 * Trace id is also stored as request attribute TRACE_ID_ATTRIBUTE so that application can log it.<br>
+	 * 
+	 * @param request
+	 * @param response
+	 * @return
+	 */
+	private String getTraceId(HttpServletRequest request, HttpServletResponse response) {
+		String header = webMetricManager.getWebMetricConfig().getTraceIdHeader();
+		String traceId = request.getHeader(header);
+		if (traceId == null || traceId.trim().equals("")) {
+			traceId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+			response.setHeader(header, traceId);
+		} else {
+			traceId = traceId.trim();
+		}
+		request.setAttribute(TRACE_ID_ATTRIBUTE, traceId);
+		return traceId;
 	}
 
 	private String getConsumer(HttpServletRequest request) {
@@ -118,25 +245,102 @@ public class MetricsFilter implements Filter {
 		return null;
 	}
 
+	/**
+	 * Counts bytes of request body read by application through either input stream or reader.<br>
+	 */
+	private static class PayloadCountingServletRequest extends HttpServletRequestWrapper {
+		private CountingServletInputStream inputStream;
+		private CountingBufferedReader reader;
+
+		public PayloadCountingServletRequest(HttpServletRequest request) {
+			super(request);
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			if (inputStream == null)
+				inputStream = new CountingServletInputStream(super.getInputStream());
+			return inputStream;
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException {
+			if (reader == null)
+				reader = new CountingBufferedReader(super.getReader(), getCharacterEncoding());
+			return reader;
+		}
+
+		public long getByteCount() {
+			return (inputStream != null ? inputStream.getCount() : 0) + (reader != null ? reader.getCount() : 0);
+		}
+	}
+
 	private static class StatusExposingServletResponse extends HttpServletResponseWrapper {
 		// The Servlet spec says: calling setStatus is optional, if no status is
 		// set, the default is 200.
 		private int httpStatus = 200;
+		// if false, streams of response are returned AS IS
+		private final boolean instrumentStreams;
+		private final ResponseTiming timing;
+		private CountingServletOutputStream outputStream;
+		private CountingPrintWriter writer;
 
-		public StatusExposingServletResponse(HttpServletResponse response) {
+		public StatusExposingServletResponse(HttpServletResponse response, boolean instrumentStreams) {
 			super(response);
+			this.instrumentStreams = instrumentStreams;
+			this.timing = new ResponseTiming(response);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (!instrumentStreams)
+				return super.getOutputStream();
+			if (outputStream == null)
+				outputStream = new CountingServletOutputStream(super.getOutputStream(), timing);
+			return outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (!instrumentStreams)
+				return super.getWriter();
+			if (writer == null)
+				writer = new CountingPrintWriter(super.getWriter(), getCharacterEncoding(), timing);
+			return writer;
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			super.flushBuffer();
+			timing.afterWrite();
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			super.sendRedirect(location);
+			timing.afterWrite();
+		}
+
+		public ResponseTiming getTiming() {
+			return timing;
+		}
+
+		public long getByteCount() {
+			return (outputStream != null ? outputStream.getCount() : 0) + (writer != null ? writer.getCount() : 0);
 		}
 
 		@Override
 		public void sendError(int sc) throws IOException {
 			httpStatus = sc;
 			super.sendError(sc);
+			timing.afterWrite();
 		}
 
 		@Override
 		public void sendError(int sc, String msg) throws IOException {
 			httpStatus = sc;
 			super.sendError(sc, msg);
+			timing.afterWrite();
 		}
 
 		@Override
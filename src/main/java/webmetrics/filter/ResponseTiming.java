@@ -0,0 +1,44 @@
+/**
+ * Tracks moments of first write of response body and of response commit (first flush or first write past response buffer).<br>
+ * Notified by stream and writer wrappers of MetricsFilter around every write, commit is checked only until it is observed.<br>
+ */
+package webmetrics.filter;
+
+import javax.servlet.ServletResponse;
+
+class ResponseTiming {
+
+	private final ServletResponse response;
+	private long firstWriteNano;
+	private long commitNano;
+
+	ResponseTiming(ServletResponse response) {
+		this.response = response;
+	}
+
+	void beforeWrite() {
+		if (firstWriteNano == 0)
+			firstWriteNano = System.nanoTime();
+	}
+
+	void afterWrite() {
+		if (commitNano == 0 && response.isCommitted())
+			commitNano = System.nanoTime();
+	}
+
+	/**
+	 * 
+	 * @return nano time of first write or 0 if nothing was written
+	 */
+	long getFirstWriteNano() {
+		return firstWriteNano;
+	}
+
+	/**
+	 * 
+	 * @return nano time of commit or 0 if response was not committed yet
+	 */
+	long getCommitNano() {
+		return commitNano;
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Input stream counting bytes read, notifies owner once when stream reaches end or is closed.<br>
+ */
+package webmetrics.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+class CountingInputStream extends FilterInputStream {
+
+	private final InstrumentedHttpURLConnection owner;
+	private long count;
+
+	CountingInputStream(InputStream in, InstrumentedHttpURLConnection owner) {
+		super(in);
+		this.owner = owner;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0)
+			count++;
+		else
+			owner.end();
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0)
+			count += n;
+		else if (n < 0)
+			owner.end();
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			owner.end();
+		}
+	}
+
+	long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Records metrics of outbound HTTP calls per downstream host alias.<br>
+ * Global metrics are reported under "http.[alias]" and, if the call is made while a measured request is processed (see RequestContext), under
+ * "[display].http.[alias]": "latency" timer, "status.1xx" - "status.5xx" and "status.error" meters recorded when response is received, "bytesOut"
+ * and "bytesIn" histograms recorded when call ends.<br>
+ * Total downstream time of each request is reported as "[display].http.time" when request ends, so it can be compared with local time of the
+ * display.<br>
+ * HttpURLConnection is supported by InstrumentedHttpURLConnection. Any other client can be instrumented by interceptor (filter, handler) that uses
+ * this class as SPI:<br>
+ * 
+ * <pre>
+ * OutboundCall call = httpClientMetrics.begin(alias);
+ * try {
+ * 	// send request, read response
+ * 	call.responseReceived(status);
+ * } catch (IOException e) {
+ * 	call.failed();
+ * 	throw e;
+ * } finally {
+ * 	call.end(bytesSent, bytesReceived);
+ * }
+ * </pre>
+ */
+package webmetrics.http;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import webmetrics.core.RequestContext;
+
+public class HttpClientMetrics {
+
+	public static final String HTTP_NAME_PREFIX = "http";
+
+	private static final String[] STATUS_NAMES = { "error", "1xx", "2xx", "3xx", "4xx", "5xx" };
+
+	private final MetricRegistry registry;
+	// key is metric prefix: "http.[alias]" or "[display].http.[alias]"
+	private final ConcurrentMap<String, DownstreamMetrics> downstreams = new ConcurrentHashMap<String, DownstreamMetrics>();
+	// key is display name
+	private final ConcurrentMap<String, Timer> displayTimes = new ConcurrentHashMap<String, Timer>();
+
+	public HttpClientMetrics(MetricRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Starts measuring outbound call to downstream identified by alias.<br>
+	 * 
+	 * @param hostAlias
+	 *            - short name of downstream service, used as part of metric name, required
+	 * @return
+	 */
+	public OutboundCall begin(String hostAlias) {
+		if (hostAlias == null)
+			throw new IllegalArgumentException("hostAlias is required parameter");
+		return new OutboundCall(this, hostAlias, RequestContext.current());
+	}
+
+	/**
+	 * Derives alias from host name, i.e. "api.example.com" becomes "api_example_com".<br>
+	 * 
+	 * @param host
+	 * @return
+	 */
+	public static String getHostAlias(String host) {
+		if (host == null || host.equals(""))
+			return "unknown";
+		StringBuilder sb = new StringBuilder(host.length());
+		for (int i = 0; i < host.length(); i++) {
+			char c = host.charAt(i);
+			sb.append(Character.isLetterOrDigit(c) || c == '_' ? c : '_');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reports accumulated downstream time of finished request.<br>
+	 * Called by MetricsManager, does nothing if request did not make outbound calls.<br>
+	 * 
+	 * @param context
+	 */
+	public void recordRequest(RequestContext context) {
+		if (context == null || context.getOutboundCalls() == 0)
+			return;
+		Timer timer = displayTimes.get(context.getDisplayName());
+		if (timer == null) {
+			timer = registry.timer(context.getDisplayName() + "." + HTTP_NAME_PREFIX + ".time");
+			displayTimes.putIfAbsent(context.getDisplayName(), timer);
+		}
+		timer.update(context.getOutboundTimeNano(), TimeUnit.NANOSECONDS);
+	}
+
+	void recordResponse(OutboundCall call, long latencyNano, int status) {
+		int statusIdx = status < 100 || status >= 600 ? 0 : status / 100;
+		getDownstreamMetrics(HTTP_NAME_PREFIX + "." + call.getHostAlias()).recordResponse(latencyNano, statusIdx);
+		RequestContext context = call.getRequestContext();
+		if (context == null)
+			return;
+		getDownstreamMetrics(context.getDisplayName() + "." + HTTP_NAME_PREFIX + "." + call.getHostAlias()).recordResponse(latencyNano, statusIdx);
+		context.addOutboundCall(latencyNano);
+	}
+
+	void recordBytes(OutboundCall call, long bytesSent, long bytesReceived) {
+		getDownstreamMetrics(HTTP_NAME_PREFIX + "." + call.getHostAlias()).recordBytes(bytesSent, bytesReceived);
+		RequestContext context = call.getRequestContext();
+		if (context != null)
+			getDownstreamMetrics(context.getDisplayName() + "." + HTTP_NAME_PREFIX + "." + call.getHostAlias()).recordBytes(bytesSent, bytesReceived);
+	}
+
+	private DownstreamMetrics getDownstreamMetrics(String prefix) {
+		DownstreamMetrics metrics = downstreams.get(prefix);
+		if (metrics == null) {
+			metrics = new DownstreamMetrics(registry, prefix);
+			DownstreamMetrics existing = downstreams.putIfAbsent(prefix, metrics);
+			if (existing != null)
+				metrics = existing;
+		}
+		return metrics;
+	}
+
+	private static class DownstreamMetrics {
+		private final Timer latency;
+		private final Meter[] statuses = new Meter[STATUS_NAMES.length];
+		private final Histogram bytesOut;
+		private final Histogram bytesIn;
+
+		DownstreamMetrics(MetricRegistry registry, String prefix) {
+			latency = registry.timer(prefix + ".latency");
+			for (int i = 0; i < STATUS_NAMES.length; i++) {
+				statuses[i] = registry.meter(prefix + ".status." + STATUS_NAMES[i]);
+			}
+			bytesOut = registry.histogram(prefix + ".bytesOut");
+			bytesIn = registry.histogram(prefix + ".bytesIn");
+		}
+
+		void recordResponse(long latencyNano, int statusIdx) {
+			latency.update(latencyNano, TimeUnit.NANOSECONDS);
+			statuses[statusIdx].mark();
+		}
+
+		void recordBytes(long bytesSent, long bytesReceived) {
+			bytesOut.update(bytesSent);
+			bytesIn.update(bytesReceived);
+		}
+	}
+}
@@ -0,0 +1,376 @@
+/**
+ * HttpURLConnection wrapper measuring outbound call (see HttpClientMetrics).<br>
+ * Call starts when connection is created. Latency and status are recorded as soon as any response data (status, headers, body) is requested,
+ * also when getInputStream() throws for 4xx/5xx status, so calls that only check status (i.e. HEAD) and failures whose error stream is never read
+ * are reported. Bytes are recorded when response body is fully read or closed, or connection is disconnected.<br>
+ * Instances are created by MetricsManager.instrumentConnection().<br>
+ */
+package webmetrics.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.security.Permission;
+import java.util.List;
+import java.util.Map;
+
+public class InstrumentedHttpURLConnection extends HttpURLConnection {
+
+	private final HttpURLConnection delegate;
+	private final OutboundCall call;
+	private CountingOutputStream outputStream;
+	private CountingInputStream inputStream;
+
+	public InstrumentedHttpURLConnection(HttpURLConnection delegate, OutboundCall call) {
+		super(delegate.getURL());
+		this.delegate = delegate;
+		this.call = call;
+	}
+
+	/**
+	 * Marks response once status is available, marks failure if status cannot be obtained.<br>
+	 */
+	private void response() {
+		if (call.isResponded())
+			return;
+		try {
+			call.responseReceived(delegate.getResponseCode());
+		} catch (IOException e) {
+			call.failed();
+		}
+	}
+
+	/**
+	 * Ends call, invoked by response stream or disconnect.<br>
+	 */
+	void end() {
+		if (call.isEnded())
+			return;
+		response();
+		call.end(outputStream == null ? 0 : outputStream.getCount(), inputStream == null ? 0 : inputStream.getCount());
+	}
+
+	@Override
+	public void connect() throws IOException {
+		try {
+			delegate.connect();
+		} catch (IOException e) {
+			call.failed();
+			end();
+			throw e;
+		}
+	}
+
+	@Override
+	public void disconnect() {
+		end();
+		delegate.disconnect();
+	}
+
+	@Override
+	public boolean usingProxy() {
+		return delegate.usingProxy();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		if (outputStream == null) {
+			try {
+				outputStream = new CountingOutputStream(delegate.getOutputStream());
+			} catch (IOException e) {
+				call.failed();
+				end();
+				throw e;
+			}
+		}
+		return outputStream;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		if (inputStream == null) {
+			InputStream in;
+			try {
+				in = delegate.getInputStream();
+			} finally {
+				response();
+			}
+			inputStream = new CountingInputStream(in, this);
+		}
+		return inputStream;
+	}
+
+	@Override
+	public InputStream getErrorStream() {
+		InputStream in = delegate.getErrorStream();
+		if (in == null)
+			return null;
+		response();
+		if (inputStream == null)
+			inputStream = new CountingInputStream(in, this);
+		return inputStream;
+	}
+
+	@Override
+	public int getResponseCode() throws IOException {
+		try {
+			return delegate.getResponseCode();
+		} finally {
+			response();
+		}
+	}
+
+	@Override
+	public String getResponseMessage() throws IOException {
+		try {
+			return delegate.getResponseMessage();
+		} finally {
+			response();
+		}
+	}
+
+	@Override
+	public String getHeaderField(String name) {
+		String value = delegate.getHeaderField(name);
+		response();
+		return value;
+	}
+
+	@Override
+	public String getHeaderField(int n) {
+		String value = delegate.getHeaderField(n);
+		response();
+		return value;
+	}
+
+	@Override
+	public String getHeaderFieldKey(int n) {
+		String value = delegate.getHeaderFieldKey(n);
+		response();
+		return value;
+	}
+
+	@Override
+	public Map<String, List<String>> getHeaderFields() {
+		Map<String, List<String>> value = delegate.getHeaderFields();
+		response();
+		return value;
+	}
+
+	@Override
+	public long getHeaderFieldDate(String name, long defaultValue) {
+		long value = delegate.getHeaderFieldDate(name, defaultValue);
+		response();
+		return value;
+	}
+
+	@Override
+	public int getHeaderFieldInt(String name, int defaultValue) {
+		int value = delegate.getHeaderFieldInt(name, defaultValue);
+		response();
+		return value;
+	}
+
+	@Override
+	public long getHeaderFieldLong(String name, long defaultValue) {
+		long value = delegate.getHeaderFieldLong(name, defaultValue);
+		response();
+		return value;
+	}
+
+	@Override
+	public String getContentType() {
+		String value = delegate.getContentType();
+		response();
+		return value;
+	}
+
+	@Override
+	public String getContentEncoding() {
+		String value = delegate.getContentEncoding();
+		response();
+		return value;
+	}
+
+	@Override
+	public int getContentLength() {
+		int value = delegate.getContentLength();
+		response();
+		return value;
+	}
+
+	@Override
+	public long getContentLengthLong() {
+		long value = delegate.getContentLengthLong();
+		response();
+		return value;
+	}
+
+	@Override
+	public long getDate() {
+		long value = delegate.getDate();
+		response();
+		return value;
+	}
+
+	@Override
+	public long getExpiration() {
+		long value = delegate.getExpiration();
+		response();
+		return value;
+	}
+
+	@Override
+	public long getLastModified() {
+		long value = delegate.getLastModified();
+		response();
+		return value;
+	}
+
+	@Override
+	public Permission getPermission() throws IOException {
+		return delegate.getPermission();
+	}
+
+	@Override
+	public void setFixedLengthStreamingMode(int contentLength) {
+		delegate.setFixedLengthStreamingMode(contentLength);
+	}
+
+	@Override
+	public void setFixedLengthStreamingMode(long contentLength) {
+		delegate.setFixedLengthStreamingMode(contentLength);
+	}
+
+	@Override
+	public void setChunkedStreamingMode(int chunklen) {
+		delegate.setChunkedStreamingMode(chunklen);
+	}
+
+	@Override
+	public void setInstanceFollowRedirects(boolean followRedirects) {
+		delegate.setInstanceFollowRedirects(followRedirects);
+	}
+
+	@Override
+	public boolean getInstanceFollowRedirects() {
+		return delegate.getInstanceFollowRedirects();
+	}
+
+	@Override
+	public void setRequestMethod(String method) throws ProtocolException {
+		delegate.setRequestMethod(method);
+	}
+
+	@Override
+	public String getRequestMethod() {
+		return delegate.getRequestMethod();
+	}
+
+	@Override
+	public void setConnectTimeout(int timeout) {
+		delegate.setConnectTimeout(timeout);
+	}
+
+	@Override
+	public int getConnectTimeout() {
+		return delegate.getConnectTimeout();
+	}
+
+	@Override
+	public void setReadTimeout(int timeout) {
+		delegate.setReadTimeout(timeout);
+	}
+
+	@Override
+	public int getReadTimeout() {
+		return delegate.getReadTimeout();
+	}
+
+	@Override
+	public void setDoInput(boolean doinput) {
+		delegate.setDoInput(doinput);
+	}
+
+	@Override
+	public boolean getDoInput() {
+		return delegate.getDoInput();
+	}
+
+	@Override
+	public void setDoOutput(boolean dooutput) {
+		delegate.setDoOutput(dooutput);
+	}
+
+	@Override
+	public boolean getDoOutput() {
+		return delegate.getDoOutput();
+	}
+
+	@Override
+	public void setAllowUserInteraction(boolean allowuserinteraction) {
+		delegate.setAllowUserInteraction(allowuserinteraction);
+	}
+
+	@Override
+	public boolean getAllowUserInteraction() {
+		return delegate.getAllowUserInteraction();
+	}
+
+	@Override
+	public void setUseCaches(boolean usecaches) {
+		delegate.setUseCaches(usecaches);
+	}
+
+	@Override
+	public boolean getUseCaches() {
+		return delegate.getUseCaches();
+	}
+
+	@Override
+	public void setIfModifiedSince(long ifmodifiedsince) {
+		delegate.setIfModifiedSince(ifmodifiedsince);
+	}
+
+	@Override
+	public long getIfModifiedSince() {
+		return delegate.getIfModifiedSince();
+	}
+
+	@Override
+	public boolean getDefaultUseCaches() {
+		return delegate.getDefaultUseCaches();
+	}
+
+	@Override
+	public void setDefaultUseCaches(boolean defaultusecaches) {
+		delegate.setDefaultUseCaches(defaultusecaches);
+	}
+
+	@Override
+	public void setRequestProperty(String key, String value) {
+		delegate.setRequestProperty(key, value);
+	}
+
+	@Override
+	public void addRequestProperty(String key, String value) {
+		delegate.addRequestProperty(key, value);
+	}
+
+	@Override
+	public String getRequestProperty(String key) {
+		return delegate.getRequestProperty(key);
+	}
+
+	@Override
+	public Map<String, List<String>> getRequestProperties() {
+		return delegate.getRequestProperties();
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Handle of single outbound HTTP call, see HttpClientMetrics for usage.<br>
+ * Latency is measured from creation until response is received or call fails, latency and status are recorded at that moment, so calls whose
+ * response body is never read are still reported. Bytes are recorded once at end, end without response or failure records the call as failed.<br>
+ * Instances are not thread-safe, a call is expected to be handled by single thread at a time.<br>
+ */
+package webmetrics.http;
+
+import webmetrics.core.RequestContext;
+
+public class OutboundCall {
+
+	// status reported for calls that failed before any response was received
+	public static final int STATUS_ERROR = -1;
+
+	private final HttpClientMetrics httpClientMetrics;
+	private final String hostAlias;
+	private final RequestContext requestContext;
+	private final long startNano;
+	private long latencyNano = -1;
+	private int status = STATUS_ERROR;
+	private boolean ended;
+
+	OutboundCall(HttpClientMetrics httpClientMetrics, String hostAlias, RequestContext requestContext) {
+		this.httpClientMetrics = httpClientMetrics;
+		this.hostAlias = hostAlias;
+		this.requestContext = requestContext;
+		this.startNano = System.nanoTime();
+	}
+
+	/**
+	 * Marks the moment response status is known.<br>
+	 * 
+	 * @param status
+	 *            - HTTP status code
+	 */
+	public void responseReceived(int status) {
+		if (latencyNano >= 0)
+			return;
+		latencyNano = System.nanoTime() - startNano;
+		this.status = status;
+		httpClientMetrics.recordResponse(this, latencyNano, status);
+	}
+
+	/**
+	 * Marks call as failed without response (connection refused, timeout, etc).<br>
+	 */
+	public void failed() {
+		if (latencyNano >= 0)
+			return;
+		latencyNano = System.nanoTime() - startNano;
+		this.status = STATUS_ERROR;
+		httpClientMetrics.recordResponse(this, latencyNano, status);
+	}
+
+	/**
+	 * Records bytes of the call, subsequent calls are ignored.<br>
+	 * 
+	 * @param bytesSent
+	 *            - size of request body
+	 * @param bytesReceived
+	 *            - size of response body
+	 */
+	public void end(long bytesSent, long bytesReceived) {
+		if (ended)
+			return;
+		ended = true;
+		failed();
+		httpClientMetrics.recordBytes(this, bytesSent, bytesReceived);
+	}
+
+	/**
+	 * 
+	 * @return true if response was received or call failed
+	 */
+	public boolean isResponded() {
+		return latencyNano >= 0;
+	}
+
+	public boolean isEnded() {
+		return ended;
+	}
+
+	public String getHostAlias() {
+		return hostAlias;
+	}
+
+	RequestContext getRequestContext() {
+		return requestContext;
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * Connection proxy handler, wraps created statements.<br>
+ */
+package webmetrics.jdbc;
+
+import java.lang.reflect.Method;
+import java.sql.Statement;
+
+class ConnectionHandler extends JdbcHandler {
+
+	ConnectionHandler(Object connection, JdbcMetrics jdbcMetrics) {
+		super(connection, jdbcMetrics);
+	}
+
+	@Override
+	protected Object invokeJdbc(Object proxy, Method method, Object[] args) throws Throwable {
+		Object result = invokeTarget(method, args);
+		if (result instanceof Statement) {
+			// createStatement, prepareStatement and prepareCall, proxy implements declared return type
+			String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+			return newProxy(method.getReturnType(), new StatementHandler(result, jdbcMetrics, proxy, sql));
+		}
+		return result;
+	}
+}
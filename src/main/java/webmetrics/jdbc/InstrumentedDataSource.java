@@ -0,0 +1,86 @@
+/**
+ * Data source wrapper timing connection acquisition, statement execution and result set iteration (see JdbcMetrics).<br>
+ * Connections, statements and result sets are wrapped by dynamic proxies, so any JDBC driver can be used.<br>
+ * Instances are created by MetricsManager.instrumentDataSource().<br>
+ */
+package webmetrics.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+public class InstrumentedDataSource implements DataSource {
+
+	private final DataSource delegate;
+	private final JdbcMetrics jdbcMetrics;
+
+	public InstrumentedDataSource(DataSource delegate, JdbcMetrics jdbcMetrics) {
+		if (delegate == null)
+			throw new IllegalArgumentException("delegate is required parameter");
+		this.delegate = delegate;
+		this.jdbcMetrics = jdbcMetrics;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = delegate.getConnection();
+		jdbcMetrics.recordAcquire(System.nanoTime() - start);
+		return wrap(connection);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = delegate.getConnection(username, password);
+		jdbcMetrics.recordAcquire(System.nanoTime() - start);
+		return wrap(connection);
+	}
+
+	private Connection wrap(Connection connection) {
+		if (connection == null)
+			return null;
+		return (Connection) JdbcHandler.newProxy(Connection.class, new ConnectionHandler(connection, jdbcMetrics));
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return delegate.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		delegate.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		delegate.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return delegate.getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return delegate.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return iface.cast(this);
+		return delegate.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || delegate.isWrapperFor(iface);
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Base of dynamic proxy handlers for JDBC objects.<br>
+ * Unwraps InvocationTargetException so that callers see original SQLException and handles java.sql.Wrapper methods.<br>
+ * equals, hashCode and toString are answered by the proxy itself, so proxy equals only itself as pools tracking connections in sets expect.<br>
+ */
+package webmetrics.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+abstract class JdbcHandler implements InvocationHandler {
+
+	protected final Object target;
+	protected final JdbcMetrics jdbcMetrics;
+
+	JdbcHandler(Object target, JdbcMetrics jdbcMetrics) {
+		this.target = target;
+		this.jdbcMetrics = jdbcMetrics;
+	}
+
+	@Override
+	public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class)
+			return invokeObject(proxy, method, args);
+		if (isWrapperMethod(method))
+			return invokeWrapper(method, args);
+		return invokeJdbc(proxy, method, args);
+	}
+
+	/**
+	 * Handles methods of proxied JDBC interface other than java.sql.Wrapper methods.<br>
+	 * 
+	 * @param proxy
+	 * @param method
+	 * @param args
+	 * @return
+	 */
+	protected abstract Object invokeJdbc(Object proxy, Method method, Object[] args) throws Throwable;
+
+	/**
+	 * Handles equals, hashCode and toString, the only methods of Object dispatched to proxy handlers.<br>
+	 * 
+	 * @param proxy
+	 * @param method
+	 * @param args
+	 * @return
+	 */
+	private Object invokeObject(Object proxy, Method method, Object[] args) {
+		String name = method.getName();
+		if ("equals".equals(name))
+			return proxy == args[0];
+		if ("hashCode".equals(name))
+			return System.identityHashCode(proxy);
+		return "Instrumented[" + target + "]";
+	}
+
+	protected Object invokeTarget(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Returns true if method is unwrap or isWrapperFor of java.sql.Wrapper.<br>
+	 * 
+	 * @param method
+	 * @return
+	 */
+	protected boolean isWrapperMethod(Method method) {
+		return method.getParameterTypes().length == 1 && ("unwrap".equals(method.getName()) || "isWrapperFor".equals(method.getName()));
+	}
+
+	/**
+	 * Handles methods of java.sql.Wrapper, proxied object is considered as wrapped.<br>
+	 * 
+	 * @param method
+	 * @param args
+	 * @return
+	 */
+	protected Object invokeWrapper(Method method, Object[] args) throws Throwable {
+		Class<?> iface = (Class<?>) args[0];
+		if (iface.isInstance(target))
+			return "unwrap".equals(method.getName()) ? iface.cast(target) : Boolean.TRUE;
+		return invokeTarget(method, args);
+	}
+
+	protected static Object newProxy(Class<?> iface, JdbcHandler handler) {
+		return Proxy.newProxyInstance(JdbcHandler.class.getClassLoader(), new Class<?>[] { iface }, handler);
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Records DB metrics produced by instrumented data source.<br>
+ * Global metrics are reported as "db.acquire", "db.execute" and "db.fetch" timers. If DB access happens while a measured request is processed (see
+ * RequestContext) the same timers are reported per display as "[display].db.acquire", "[display].db.execute", "[display].db.fetch", and time and
+ * number of statements are accumulated for the request, so that MetricsManager can report "[display].db.time" and "[display].db.queries" when
+ * request ends.<br>
+ */
+package webmetrics.jdbc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import webmetrics.core.RequestContext;
+
+public class JdbcMetrics {
+
+	public static final String DB_NAME_PREFIX = "db";
+
+	private static final int ACQUIRE = 0;
+	private static final int EXECUTE = 1;
+	private static final int FETCH = 2;
+	private static final int TIME = 3;
+
+	private final MetricRegistry registry;
+	private final SqlStatistics sqlStatistics;
+	private final Timer[] globalTimers;
+	// key is display name, value is timers indexed as ACQUIRE, EXECUTE, FETCH, TIME
+	private final ConcurrentMap<String, Timer[]> displayTimers = new ConcurrentHashMap<String, Timer[]>();
+	// key is display name, histogram of statements per request
+	private final ConcurrentMap<String, Histogram> displayQueries = new ConcurrentHashMap<String, Histogram>();
+
+	public JdbcMetrics(MetricRegistry registry, int maxSqlStatements) {
+		this.registry = registry;
+		this.sqlStatistics = new SqlStatistics(maxSqlStatements);
+		this.globalTimers = new Timer[] { registry.timer(DB_NAME_PREFIX + ".acquire"), registry.timer(DB_NAME_PREFIX + ".execute"),
+						registry.timer(DB_NAME_PREFIX + ".fetch") };
+	}
+
+	public void recordAcquire(long durationNano) {
+		record(ACQUIRE, durationNano);
+	}
+
+	/**
+	 * Records execution of single statement (or batch).<br>
+	 * 
+	 * @param sql
+	 *            - raw SQL, can be null
+	 * @param durationNano
+	 */
+	public void recordExecute(String sql, long durationNano) {
+		record(EXECUTE, durationNano);
+		sqlStatistics.record(sql, durationNano);
+		RequestContext context = RequestContext.current();
+		if (context != null)
+			context.addDbQuery();
+	}
+
+	/**
+	 * Records time spent iterating single result set.<br>
+	 * 
+	 * @param durationNano
+	 */
+	public void recordFetch(long durationNano) {
+		record(FETCH, durationNano);
+	}
+
+	/**
+	 * Reports accumulated DB time and number of statements of finished request.<br>
+	 * Called by MetricsManager, does nothing if request did not access DB. Request that only waited for connection is reported with 0 statements.<br>
+	 * 
+	 * @param context
+	 */
+	public void recordRequest(RequestContext context) {
+		if (context == null || context.getDbQueries() == 0 && context.getDbTimeNano() == 0)
+			return;
+		getDisplayTimers(context.getDisplayName())[TIME].update(context.getDbTimeNano(), TimeUnit.NANOSECONDS);
+		Histogram queries = displayQueries.get(context.getDisplayName());
+		if (queries == null) {
+			queries = registry.histogram(context.getDisplayName() + "." + DB_NAME_PREFIX + ".queries");
+			displayQueries.putIfAbsent(context.getDisplayName(), queries);
+		}
+		queries.update(context.getDbQueries());
+	}
+
+	public SqlStatistics getSqlStatistics() {
+		return sqlStatistics;
+	}
+
+	private void record(int type, long durationNano) {
+		globalTimers[type].update(durationNano, TimeUnit.NANOSECONDS);
+		RequestContext context = RequestContext.current();
+		if (context == null)
+			return;
+		getDisplayTimers(context.getDisplayName())[type].update(durationNano, TimeUnit.NANOSECONDS);
+		context.addDbTime(durationNano);
+	}
+
+	private Timer[] getDisplayTimers(String displayName) {
+		Timer[] timers = displayTimers.get(displayName);
+		if (timers == null) {
+			String prefix = displayName + "." + DB_NAME_PREFIX;
+			timers = new Timer[] { registry.timer(prefix + ".acquire"), registry.timer(prefix + ".execute"), registry.timer(prefix + ".fetch"),
+							registry.timer(prefix + ".time") };
+			Timer[] existing = displayTimers.putIfAbsent(displayName, timers);
+			if (existing != null)
+				timers = existing;
+		}
+		return timers;
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * Result set proxy handler, accumulates time spent in next() and records it once when iteration ends or result set is closed.<br>
+ */
+package webmetrics.jdbc;
+
+import java.lang.reflect.Method;
+
+class ResultSetHandler extends JdbcHandler {
+
+	private final Object statementProxy;
+	private long fetchTimeNano;
+	private boolean fetched;
+	private boolean recorded;
+
+	ResultSetHandler(Object resultSet, JdbcMetrics jdbcMetrics, Object statementProxy) {
+		super(resultSet, jdbcMetrics);
+		this.statementProxy = statementProxy;
+	}
+
+	@Override
+	protected Object invokeJdbc(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if ("next".equals(name)) {
+			long start = System.nanoTime();
+			Object result = invokeTarget(method, args);
+			fetchTimeNano += System.nanoTime() - start;
+			fetched = true;
+			if (Boolean.FALSE.equals(result))
+				recordFetch();
+			return result;
+		}
+		if ("close".equals(name)) {
+			recordFetch();
+		} else if ("getStatement".equals(name)) {
+			return statementProxy;
+		}
+		return invokeTarget(method, args);
+	}
+
+	private void recordFetch() {
+		if (recorded || !fetched)
+			return;
+		recorded = true;
+		jdbcMetrics.recordFetch(fetchTimeNano);
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Groups executed SQL by normalized statement: literals are replaced by "?", IN lists are collapsed and white space is compacted, so statements that
+ * differ only by parameter values share the same entry.<br>
+ * Both the cache of normalized forms and the set of tracked statements are bounded by maxStatements. When cache is full, raw SQL is normalized on
+ * every call without being cached; when set of statements is full, new statements are counted under OTHER_STATEMENT.<br>
+ */
+package webmetrics.jdbc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SqlStatistics {
+
+	public static final String OTHER_STATEMENT = "(other)";
+
+	private final int maxStatements;
+	// key is raw SQL, value is normalized SQL
+	private final ConcurrentMap<String, String> normalizedCache = new ConcurrentHashMap<String, String>();
+	private final AtomicInteger normalizedCacheSize = new AtomicInteger();
+	// key is normalized SQL
+	private final ConcurrentMap<String, StatementStats> statements = new ConcurrentHashMap<String, StatementStats>();
+	private final AtomicInteger statementsSize = new AtomicInteger();
+
+	public SqlStatistics(int maxStatements) {
+		if (maxStatements <= 0)
+			throw new IllegalArgumentException("maxStatements must be greater than 0: " + maxStatements);
+		this.maxStatements = maxStatements;
+	}
+
+	/**
+	 * Adds execution of given raw SQL to statistics of its normalized statement.<br>
+	 * 
+	 * @param sql
+	 *            - raw SQL, can be null for statements executed without SQL (i.e. batch)
+	 * @param durationNano
+	 */
+	public void record(String sql, long durationNano) {
+		String normalized = sql == null ? OTHER_STATEMENT : getNormalized(sql);
+		StatementStats stats = statements.get(normalized);
+		if (stats == null) {
+			if (statementsSize.get() >= maxStatements) {
+				normalized = OTHER_STATEMENT;
+				stats = statements.get(normalized);
+			}
+			if (stats == null) {
+				stats = new StatementStats();
+				StatementStats existing = statements.putIfAbsent(normalized, stats);
+				if (existing != null)
+					stats = existing;
+				else
+					statementsSize.incrementAndGet();
+			}
+		}
+		stats.record(durationNano);
+	}
+
+	/**
+	 * Returns normalized form of given SQL, using bounded cache.<br>
+	 * 
+	 * @param sql
+	 * @return
+	 */
+	public String getNormalized(String sql) {
+		String normalized = normalizedCache.get(sql);
+		if (normalized != null)
+			return normalized;
+		normalized = normalize(sql);
+		if (normalizedCacheSize.get() < maxStatements && normalizedCache.putIfAbsent(sql, normalized) == null)
+			normalizedCacheSize.incrementAndGet();
+		return normalized;
+	}
+
+	/**
+	 * Returns copy of statistics: key is normalized SQL, value is map with "count", "totalMillis" and "maxMillis".<br>
+	 * 
+	 * @return
+	 */
+	public Map<String, Map<String, Number>> getStatistics() {
+		Map<String, Map<String, Number>> result = new HashMap<String, Map<String, Number>>();
+		for (Entry<String, StatementStats> entry : statements.entrySet()) {
+			Map<String, Number> values = new HashMap<String, Number>(4);
+			values.put("count", entry.getValue().count.get());
+			values.put("totalMillis", entry.getValue().totalNano.get() / 1000 / 1000);
+			values.put("maxMillis", entry.getValue().maxNano.get() / 1000 / 1000);
+			result.put(entry.getKey(), values);
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Single pass normalization: string literals and numbers become "?", comments are removed, white space is compacted, lists of placeholders such
+	 * as "in (?, ?, ?)" become "in (?)" and keywords are lower-cased.<br>
+	 * 
+	 * @param sql
+	 * @return
+	 */
+	static String normalize(String sql) {
+		StringBuilder sb = new StringBuilder(sql.length());
+		int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				// string literal, '' is escaped quote
+				i++;
+				while (i < length) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+				appendPlaceholder(sb);
+			} else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				// line comment
+				while (i < length && sql.charAt(i) != '\n')
+					i++;
+			} else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				// block comment
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+			} else if (Character.isDigit(c) && !isIdentifierPart(sb)) {
+				// numeric literal, not part of identifier like "table1"
+				while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.'))
+					i++;
+				appendPlaceholder(sb);
+			} else if (Character.isWhitespace(c)) {
+				if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ')
+					sb.append(' ');
+				i++;
+			} else if (c == '?') {
+				appendPlaceholder(sb);
+				i++;
+			} else {
+				sb.append(Character.toLowerCase(c));
+				i++;
+			}
+		}
+		int end = sb.length();
+		while (end > 0 && sb.charAt(end - 1) == ' ')
+			end--;
+		sb.setLength(end);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends "?" unless it continues list of placeholders ("?, ?"), in which case the list is kept as single "?".<br>
+	 * 
+	 * @param sb
+	 */
+	private static void appendPlaceholder(StringBuilder sb) {
+		int idx = sb.length() - 1;
+		while (idx >= 0 && sb.charAt(idx) == ' ')
+			idx--;
+		if (idx >= 1 && sb.charAt(idx) == ',') {
+			int prev = idx - 1;
+			while (prev >= 0 && sb.charAt(prev) == ' ')
+				prev--;
+			if (prev >= 0 && sb.charAt(prev) == '?') {
+				sb.setLength(prev + 1);
+				return;
+			}
+		}
+		sb.append('?');
+	}
+
+	private static boolean isIdentifierPart(StringBuilder sb) {
+		if (sb.length() == 0)
+			return false;
+		char last = sb.charAt(sb.length() - 1);
+		return Character.isLetterOrDigit(last) || last == '_';
+	}
+
+	private static class StatementStats {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNano = new AtomicLong();
+		private final AtomicLong maxNano = new AtomicLong();
+
+		void record(long durationNano) {
+			count.incrementAndGet();
+			totalNano.addAndGet(durationNano);
+			long max = maxNano.get();
+			while (durationNano > max && !maxNano.compareAndSet(max, durationNano)) {
+				max = maxNano.get();
+			}
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * Statement proxy handler (also used for prepared and callable statements), times execute methods and wraps returned result sets.<br>
+ */
+package webmetrics.jdbc;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+
+class StatementHandler extends JdbcHandler {
+
+	private final Object connectionProxy;
+	// SQL of prepared or callable statement, null for plain statement
+	private final String preparedSql;
+
+	StatementHandler(Object statement, JdbcMetrics jdbcMetrics, Object connectionProxy, String preparedSql) {
+		super(statement, jdbcMetrics);
+		this.connectionProxy = connectionProxy;
+		this.preparedSql = preparedSql;
+	}
+
+	@Override
+	protected Object invokeJdbc(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if ("getConnection".equals(name))
+			return connectionProxy;
+		Object result;
+		if (name.startsWith("execute")) {
+			String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+			long start = System.nanoTime();
+			try {
+				result = invokeTarget(method, args);
+			} finally {
+				jdbcMetrics.recordExecute(sql, System.nanoTime() - start);
+			}
+		} else {
+			result = invokeTarget(method, args);
+		}
+		if (result instanceof ResultSet) {
+			// executeQuery, getResultSet, getGeneratedKeys
+			return newProxy(ResultSet.class, new ResultSetHandler(result, jdbcMetrics, proxy));
+		}
+		return result;
+	}
+}
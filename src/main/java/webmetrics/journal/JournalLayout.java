@@ -0,0 +1,63 @@
+/**
+ * Layout of journal file, shared by RequestJournal and JournalReader.<br>
+ * All numbers are little endian. The file starts with fixed header followed by ring of fixed size records. Record number N (counted from 0 since
+ * the journal was created) is stored in slot N modulo capacity.<br>
+ *
+ * <pre>
+ * header (64 bytes)
+ *   0 int   magic "WMJR"
+ *   4 int   layout version
+ *   8 int   capacity, number of records
+ *  12 int   size of record
+ *  16 long  creation time, milliseconds since epoch
+ * record (32 bytes)
+ *   0 long  record number + 1, 0 while record is written or if slot was never written
+ *   8 long  end of request, milliseconds since epoch
+ *  16 int   duration in microseconds
+ *  20 short display id, -1 if unknown
+ *  22 short response status
+ *  24 int   consumer id, -1 if consumer has no alias
+ *  28 int   bytes of response body, -1 if not counted
+ * </pre>
+ *
+ * Names of display and consumer ids are kept in dictionary file next to the journal ([journal].dict), one "display|consumer [tab] id [tab]
+ * name" line per id.<br>
+ */
+package webmetrics.journal;
+
+final class JournalLayout {
+
+	static final int MAGIC = 0x524A4D57;
+	static final int VERSION = 1;
+
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int CAPACITY_OFFSET = 8;
+	static final int RECORD_SIZE_OFFSET = 12;
+	static final int CREATED_OFFSET = 16;
+	static final int HEADER_SIZE = 64;
+
+	static final int NUMBER_OFFSET = 0;
+	static final int TIMESTAMP_OFFSET = 8;
+	static final int DURATION_OFFSET = 16;
+	static final int DISPLAY_OFFSET = 20;
+	static final int STATUS_OFFSET = 22;
+	static final int CONSUMER_OFFSET = 24;
+	static final int BYTES_OFFSET = 28;
+	static final int RECORD_SIZE = 32;
+
+	static final String DICTIONARY_SUFFIX = ".dict";
+	static final String DISPLAY = "display";
+	static final String CONSUMER = "consumer";
+
+	private JournalLayout() {
+	}
+
+	static int recordOffset(long number, int capacity) {
+		return HEADER_SIZE + (int) (number % capacity) * RECORD_SIZE;
+	}
+
+	static long fileSize(int capacity) {
+		return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Reads journal file written by RequestJournal together with its dictionary. Depends only on JDK and webmetrics.util.Fences, so it can run
+ * anywhere the file is copied to.<br>
+ * Journal can be read while application still appends to it, records being written at that moment are skipped.<br>
+ */
+package webmetrics.journal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import webmetrics.util.Fences;
+
+public class JournalReader {
+
+	private final File file;
+
+	/**
+	 *
+	 * @param file
+	 *            - journal file, its dictionary must be next to it
+	 */
+	public JournalReader(File file) {
+		if (file == null)
+			throw new IllegalArgumentException("file is required parameter");
+		this.file = file;
+	}
+
+	/**
+	 * Reads all records between given times.<br>
+	 *
+	 * @param fromMillis
+	 *            - earliest end of request, inclusive
+	 * @param toMillis
+	 *            - latest end of request, exclusive
+	 * @return records ordered by end of request
+	 * @throws IOException
+	 *             if files cannot be read or are not journal
+	 */
+	public List<JournalRecord> read(long fromMillis, long toMillis) throws IOException {
+		Map<Integer, String> displays = new HashMap<Integer, String>();
+		Map<Integer, String> consumers = new HashMap<Integer, String>();
+		readDictionary(displays, consumers);
+		MappedByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.capacity() < JournalLayout.HEADER_SIZE || buffer.getInt(JournalLayout.MAGIC_OFFSET) != JournalLayout.MAGIC)
+			throw new IOException("Not a journal file: " + file);
+		if (buffer.getInt(JournalLayout.VERSION_OFFSET) != JournalLayout.VERSION)
+			throw new IOException("Unsupported version " + buffer.getInt(JournalLayout.VERSION_OFFSET) + " of journal file: " + file);
+		int capacity = buffer.getInt(JournalLayout.CAPACITY_OFFSET);
+		if (JournalLayout.fileSize(capacity) > buffer.capacity())
+			throw new IOException("Journal file is truncated: " + file);
+		List<JournalRecord> records = new ArrayList<JournalRecord>();
+		for (int slot = 0; slot < capacity; slot++) {
+			int offset = JournalLayout.recordOffset(slot, capacity);
+			long number = buffer.getLong(offset + JournalLayout.NUMBER_OFFSET);
+			if (number == 0)
+				continue;
+			// data is read after the number
+			Fences.loadLoad();
+			long timestamp = buffer.getLong(offset + JournalLayout.TIMESTAMP_OFFSET);
+			int duration = buffer.getInt(offset + JournalLayout.DURATION_OFFSET);
+			short display = buffer.getShort(offset + JournalLayout.DISPLAY_OFFSET);
+			short status = buffer.getShort(offset + JournalLayout.STATUS_OFFSET);
+			int consumer = buffer.getInt(offset + JournalLayout.CONSUMER_OFFSET);
+			int bytes = buffer.getInt(offset + JournalLayout.BYTES_OFFSET);
+			Fences.loadLoad();
+			// record was rewritten while reading
+			if (buffer.getLong(offset + JournalLayout.NUMBER_OFFSET) != number)
+				continue;
+			if (timestamp < fromMillis || timestamp >= toMillis)
+				continue;
+			records.add(new JournalRecord(timestamp, duration, displays.get((int) display), consumers.get(consumer), status, bytes));
+		}
+		Collections.sort(records, new Comparator<JournalRecord>() {
+			@Override
+			public int compare(JournalRecord r1, JournalRecord r2) {
+				return r1.getTimestampMillis() < r2.getTimestampMillis() ? -1 : r1.getTimestampMillis() == r2.getTimestampMillis() ? 0 : 1;
+			}
+		});
+		return records;
+	}
+
+	private void readDictionary(Map<Integer, String> displays, Map<Integer, String> consumers) throws IOException {
+		File dictionary = new File(file.getPath() + JournalLayout.DICTIONARY_SUFFIX);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(dictionary), Charset.forName("UTF-8")));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t", 3);
+				// last line can be incomplete while application writes it
+				if (parts.length < 3)
+					continue;
+				Map<Integer, String> names = JournalLayout.DISPLAY.equals(parts[0]) ? displays : consumers;
+				names.put(Integer.valueOf(parts[1]), parts[2]);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
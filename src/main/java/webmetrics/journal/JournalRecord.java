@@ -0,0 +1,63 @@
+/**
+ * Single request read from journal file.<br>
+ */
+package webmetrics.journal;
+
+public class JournalRecord {
+
+	private final long timestampMillis;
+	private final long durationMicros;
+	private final String displayName;
+	private final String consumerAlias;
+	private final int status;
+	private final int responseBytes;
+
+	JournalRecord(long timestampMillis, long durationMicros, String displayName, String consumerAlias, int status, int responseBytes) {
+		this.timestampMillis = timestampMillis;
+		this.durationMicros = durationMicros;
+		this.displayName = displayName;
+		this.consumerAlias = consumerAlias;
+		this.status = status;
+		this.responseBytes = responseBytes;
+	}
+
+	/**
+	 *
+	 * @return end of request, milliseconds since epoch
+	 */
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	public long getDurationMicros() {
+		return durationMicros;
+	}
+
+	/**
+	 *
+	 * @return display name, null if display id is unknown
+	 */
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	/**
+	 *
+	 * @return consumer alias, null if consumer has no alias
+	 */
+	public String getConsumerAlias() {
+		return consumerAlias;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 *
+	 * @return bytes of response body, -1 if not counted
+	 */
+	public int getResponseBytes() {
+		return responseBytes;
+	}
+}
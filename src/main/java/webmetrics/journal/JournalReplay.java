@@ -0,0 +1,112 @@
+/**
+ * Replays journal file and prints statistics of requests grouped by display, consumer, status, display and status, or minute.<br>
+ * Usage: java -cp webmetrics.jar webmetrics.journal.JournalReplay file [display|consumer|status|displayStatus|minute] [fromMillis] [toMillis]
+ * <br>
+ * Percentiles are exact, computed from all durations of the group.<br>
+ */
+package webmetrics.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+public class JournalReplay {
+
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final String[] PERCENTILE_NAMES = { "p50 ms", "p90 ms", "p99 ms", "p99.9 ms" };
+	private static final String[] GROUPS = { "display", "consumer", "status", "displayStatus", "minute" };
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 4 || (args.length > 1 && !Arrays.asList(GROUPS).contains(args[1]))) {
+			System.err.println("Usage: " + JournalReplay.class.getName() + " file [" + join(GROUPS, "|") + "] [fromMillis] [toMillis]");
+			System.exit(2);
+		}
+		String group = args.length > 1 ? args[1] : GROUPS[0];
+		long fromMillis = args.length > 2 ? Long.parseLong(args[2]) : Long.MIN_VALUE;
+		long toMillis = args.length > 3 ? Long.parseLong(args[3]) : Long.MAX_VALUE;
+		List<JournalRecord> records = new JournalReader(new File(args[0])).read(fromMillis, toMillis);
+		Map<String, Statistics> groups = new TreeMap<String, Statistics>();
+		SimpleDateFormat minute = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		for (JournalRecord record : records) {
+			String key;
+			if ("consumer".equals(group))
+				key = String.valueOf(record.getConsumerAlias());
+			else if ("status".equals(group))
+				key = String.valueOf(record.getStatus());
+			else if ("displayStatus".equals(group))
+				key = record.getDisplayName() + " " + record.getStatus();
+			else if ("minute".equals(group))
+				key = minute.format(new Date(record.getTimestampMillis()));
+			else
+				key = String.valueOf(record.getDisplayName());
+			Statistics statistics = groups.get(key);
+			if (statistics == null) {
+				statistics = new Statistics();
+				groups.put(key, statistics);
+			}
+			statistics.add(record);
+		}
+		System.out.println(records.size() + " requests" + (records.isEmpty() ? "" : ", "
+						+ new Date(records.get(0).getTimestampMillis()) + " - " + new Date(records.get(records.size() - 1).getTimestampMillis())));
+		StringBuilder header = new StringBuilder(String.format("%-40s %10s %8s %10s", group, "count", "5xx", "mean ms"));
+		for (String percentile : PERCENTILE_NAMES) {
+			header.append(String.format(" %10s", percentile));
+		}
+		header.append(String.format(" %10s %12s", "max ms", "mean bytes"));
+		System.out.println(header);
+		for (Entry<String, Statistics> entry : groups.entrySet()) {
+			System.out.println(entry.getValue().format(entry.getKey()));
+		}
+	}
+
+	private static String join(String[] values, String separator) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			joined.append(joined.length() == 0 ? "" : separator).append(value);
+		}
+		return joined.toString();
+	}
+
+	private static final class Statistics {
+		private long[] durations = new long[16];
+		private int count;
+		private int serverErrors;
+		private long bytes;
+		private int bytesCount;
+
+		private void add(JournalRecord record) {
+			if (count == durations.length)
+				durations = Arrays.copyOf(durations, count * 2);
+			durations[count++] = record.getDurationMicros();
+			if (record.getStatus() >= 500 && record.getStatus() < 600)
+				serverErrors++;
+			if (record.getResponseBytes() >= 0) {
+				bytes += record.getResponseBytes();
+				bytesCount++;
+			}
+		}
+
+		private String format(String key) {
+			long[] sorted = Arrays.copyOf(durations, count);
+			Arrays.sort(sorted);
+			long sum = 0;
+			for (long duration : sorted) {
+				sum += duration;
+			}
+			StringBuilder line = new StringBuilder(String.format("%-40s %10d %8d %10.3f", key, count, serverErrors, sum / 1000.0 / count));
+			for (double percentile : PERCENTILES) {
+				// nearest rank
+				int rank = (int) Math.ceil(percentile * count);
+				line.append(String.format(" %10.3f", sorted[Math.max(0, rank - 1)] / 1000.0));
+			}
+			line.append(String.format(" %10.3f %12s", sorted[count - 1] / 1000.0, bytesCount == 0 ? "-" : String.valueOf(bytes / bytesCount)));
+			return line.toString();
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * Appends record of every finished request (see JournalLayout) to memory-mapped ring file, so that any percentile or breakdown can be computed
+ * offline after the fact (see JournalReplay).<br>
+ * Appending takes no lock: every thread claims chunk of CHUNK_RECORDS consecutive slots with single atomic increment and fills it alone, so request
+ * threads do not write to the same memory. Record number is cleared first and written last, separated from the data by store fences (see Fences),
+ * reader skips records being written. A thread that was idle while the
+ * ring went around leaves the rest of its chunk and claims a new one instead of overwriting newer records; records in file are therefore not
+ * ordered and readers sort them by time.<br>
+ * Display and consumer names are replaced by small ids, new id is written to dictionary file before it is used in any record.<br>
+ * The oldest records are overwritten once the ring is full. Existing journal is replaced when application starts.<br>
+ * close() must be called when application stops, requests finishing after that are not journaled.<br>
+ */
+package webmetrics.journal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import webmetrics.util.Fences;
+
+public class RequestJournal {
+
+	static final int CHUNK_RECORDS = 64;
+	public static final int MIN_CAPACITY = 16 * CHUNK_RECORDS;
+	// the whole file is mapped by single buffer, its size is limited to int
+	public static final int MAX_CAPACITY = (Integer.MAX_VALUE - JournalLayout.HEADER_SIZE) / JournalLayout.RECORD_SIZE / CHUNK_RECORDS
+			* CHUNK_RECORDS;
+	private static final int NO_ID = -1;
+
+	private final File file;
+	private final int capacity;
+	private final MappedByteBuffer buffer;
+	// number of the first record not claimed by any thread
+	private final AtomicLong claimed = new AtomicLong();
+	private final ThreadLocal<Chunk> chunks = new ThreadLocal<Chunk>() {
+		@Override
+		protected Chunk initialValue() {
+			return new Chunk();
+		}
+	};
+	// key is display name, guarded by this for writes
+	private final ConcurrentMap<String, Integer> displayIds = new ConcurrentHashMap<String, Integer>();
+	// key is consumer alias, guarded by this for writes
+	private final ConcurrentMap<String, Integer> consumerIds = new ConcurrentHashMap<String, Integer>();
+	private final Writer dictionary;
+	private volatile boolean closed;
+
+	/**
+	 * Creates journal file and its dictionary, replacing existing ones.<br>
+	 *
+	 * @param file
+	 *            - path of journal file, required
+	 * @param capacity
+	 *            - number of records kept, rounded up to whole chunks, MIN_CAPACITY to MAX_CAPACITY
+	 * @throws IOException
+	 *             if files cannot be created
+	 */
+	public RequestJournal(File file, int capacity) throws IOException {
+		if (file == null)
+			throw new IllegalArgumentException("file is required parameter");
+		if (capacity < MIN_CAPACITY || capacity > MAX_CAPACITY)
+			throw new IllegalArgumentException("Journal capacity must be from " + MIN_CAPACITY + " to " + MAX_CAPACITY + ": " + capacity);
+		this.file = file;
+		this.capacity = (capacity + CHUNK_RECORDS - 1) / CHUNK_RECORDS * CHUNK_RECORDS;
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		// new file instead of rewriting the old one, readers of old file must not see it change size
+		if (file.exists() && !file.delete())
+			throw new IOException("Cannot delete old journal " + file);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(JournalLayout.fileSize(this.capacity));
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, JournalLayout.fileSize(this.capacity));
+		} finally {
+			// mapping stays valid after the channel is closed
+			raf.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(JournalLayout.MAGIC_OFFSET, JournalLayout.MAGIC);
+		buffer.putInt(JournalLayout.VERSION_OFFSET, JournalLayout.VERSION);
+		buffer.putInt(JournalLayout.CAPACITY_OFFSET, this.capacity);
+		buffer.putInt(JournalLayout.RECORD_SIZE_OFFSET, JournalLayout.RECORD_SIZE);
+		buffer.putLong(JournalLayout.CREATED_OFFSET, System.currentTimeMillis());
+		dictionary = new OutputStreamWriter(new FileOutputStream(new File(file.getPath() + JournalLayout.DICTIONARY_SUFFIX)), Charset.forName("UTF-8"));
+		logger.info("Request journal: " + file.getAbsolutePath() + ", capacity " + this.capacity);
+	}
+
+	/**
+	 * Appends record of finished request.<br>
+	 *
+	 * @param displayName
+	 *            - display of request, required
+	 * @param consumerAlias
+	 *            - alias of consumer, null if consumer has no alias
+	 * @param status
+	 *            - response status
+	 * @param durationNano
+	 * @param responseBytes
+	 *            - bytes of response body, -1 if not counted
+	 */
+	public void append(String displayName, String consumerAlias, int status, long durationNano, long responseBytes) {
+		if (closed)
+			return;
+		int displayId = getId(displayIds, JournalLayout.DISPLAY, displayName);
+		int consumerId = consumerAlias == null ? NO_ID : getId(consumerIds, JournalLayout.CONSUMER, consumerAlias);
+		Chunk chunk = chunks.get();
+		// chunk is used up, or the ring went around while thread was idle and chunk is about to be claimed again
+		if (chunk.next == chunk.end || claimed.get() - chunk.next > capacity - CHUNK_RECORDS) {
+			chunk.next = claimed.getAndAdd(CHUNK_RECORDS);
+			chunk.end = chunk.next + CHUNK_RECORDS;
+		}
+		long number = chunk.next++;
+		int offset = JournalLayout.recordOffset(number, capacity);
+		buffer.putLong(offset + JournalLayout.NUMBER_OFFSET, 0);
+		// cleared number is visible before data of the new record
+		Fences.storeStore();
+		buffer.putLong(offset + JournalLayout.TIMESTAMP_OFFSET, System.currentTimeMillis());
+		buffer.putInt(offset + JournalLayout.DURATION_OFFSET, (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(durationNano)));
+		buffer.putShort(offset + JournalLayout.DISPLAY_OFFSET, (short) displayId);
+		buffer.putShort(offset + JournalLayout.STATUS_OFFSET, (short) status);
+		buffer.putInt(offset + JournalLayout.CONSUMER_OFFSET, consumerId);
+		buffer.putInt(offset + JournalLayout.BYTES_OFFSET, (int) Math.min(Integer.MAX_VALUE, responseBytes));
+		// data is visible before the number
+		Fences.storeStore();
+		buffer.putLong(offset + JournalLayout.NUMBER_OFFSET, number + 1);
+	}
+
+	/**
+	 *
+	 * @param ids
+	 * @param kind
+	 * @param name
+	 * @return id of name, written to dictionary when assigned, -1 if ids of display are exhausted or dictionary cannot be written
+	 */
+	private int getId(ConcurrentMap<String, Integer> ids, String kind, String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		synchronized (this) {
+			id = ids.get(name);
+			if (id != null)
+				return id;
+			// dictionary is closed, name is not stored so that it does not get an id missing in dictionary
+			if (closed)
+				return NO_ID;
+			id = ids.size();
+			// display id has only two bytes
+			if (JournalLayout.DISPLAY.equals(kind) && id > Short.MAX_VALUE) {
+				id = NO_ID;
+			} else {
+				try {
+					dictionary.write(kind + "\t" + id + "\t" + name + "\n");
+					dictionary.flush();
+				} catch (IOException e) {
+					logger.error("Cannot write journal dictionary, " + kind + " journaled as unknown: " + name, e);
+					id = NO_ID;
+				}
+			}
+			ids.put(name, id);
+			return id;
+		}
+	}
+
+	/**
+	 * Closes dictionary and writes records to disk, does nothing if already closed. Mapping of the journal file is released when the journal is
+	 * garbage collected, JDK has no API to unmap it earlier.<br>
+	 */
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			dictionary.close();
+		} catch (IOException e) {
+			logger.error("Cannot close journal dictionary of " + file, e);
+		}
+		buffer.force();
+		logger.info("Request journal closed: " + file.getAbsolutePath());
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Slots claimed by one thread.<br>
+	 */
+	private static final class Chunk {
+		private long next;
+		private long end;
+	}
+
+	private static Logger logger = LoggerFactory.getLogger(RequestJournal.class);
+}
@@ -0,0 +1,293 @@
+/**
+ * JVM runtime metrics registered under "jvm".<br>
+ * GC pauses are recorded from GC notifications as they happen ("jvm.gc.[collector].pause" timers), together with allocated bytes
+ * ("jvm.memory.allocated" meter, its rates are allocation rate): young generation usage before each GC minus its usage after previous GC. Durations of
+ * concurrent collectors are durations of their cycles, not pauses.<br>
+ * Gauges cover heap and non-heap memory, memory pools, direct and mapped buffer pools, threads by state and class loading. Values that need MXBean
+ * call are cached for configured interval, so frequent reads (JMX, scrapes) do not call MXBeans more often than once per interval. Thread states
+ * need info of all threads, which is the most expensive read.<br>
+ */
+package webmetrics.jvm;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationFilterSupport;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+public class JvmMetrics implements MetricSet {
+
+	public static final String JVM_NAME_PREFIX = "jvm";
+
+	// pool names contain spaces and quotes, i.e. "CodeHeap 'non-nmethods'"
+	private static final Pattern NON_WORD = Pattern.compile("[^a-zA-Z0-9_]+");
+
+	private final long cacheNano;
+	private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private final ClassLoadingMXBean classLoadingBean = ManagementFactory.getClassLoadingMXBean();
+	private final Map<String, Timer> gcPauses = new HashMap<String, Timer>();
+	private final Meter allocated = new Meter();
+	private final GcListener gcListener = new GcListener();
+	// delivers only GC notifications to listener
+	private final NotificationFilterSupport gcFilter = new NotificationFilterSupport();
+	private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+	// names of pools allocation is measured on: eden pools, or all heap pools if collector has no eden (objects are allocated into whole heap)
+	private final List<String> youngPools = new ArrayList<String>();
+
+	/**
+	 *
+	 * @param cacheNano
+	 *            - how long values read from MXBeans are cached, in nanoseconds
+	 */
+	public JvmMetrics(long cacheNano) {
+		this.cacheNano = cacheNano;
+		gcFilter.enableType(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION);
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcPauses.put(gc.getName(), new Timer());
+		}
+		List<String> heapPools = new ArrayList<String>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP)
+				continue;
+			heapPools.add(pool.getName());
+			if (pool.getName().contains("Eden"))
+				youngPools.add(pool.getName());
+		}
+		if (youngPools.isEmpty())
+			youngPools.addAll(heapPools);
+	}
+
+	private static String name(String name) {
+		String word = NON_WORD.matcher(name).replaceAll("-");
+		int start = word.startsWith("-") ? 1 : 0;
+		int end = word.endsWith("-") ? word.length() - 1 : word.length();
+		return start < end ? word.substring(start, end) : word;
+	}
+
+	@Override
+	public Map<String, Metric> getMetrics() {
+		Map<String, Metric> metrics = new HashMap<String, Metric>();
+		for (Map.Entry<String, Timer> entry : gcPauses.entrySet()) {
+			metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "gc", name(entry.getKey()), "pause"), entry.getValue());
+		}
+		metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "memory", "allocated"), allocated);
+		addUsage(metrics, MetricRegistry.name(JVM_NAME_PREFIX, "memory", "heap"), new CachedGauge<MemoryUsage>(cacheNano, TimeUnit.NANOSECONDS) {
+			@Override
+			protected MemoryUsage loadValue() {
+				return memoryBean.getHeapMemoryUsage();
+			}
+		});
+		addUsage(metrics, MetricRegistry.name(JVM_NAME_PREFIX, "memory", "nonHeap"), new CachedGauge<MemoryUsage>(cacheNano, TimeUnit.NANOSECONDS) {
+			@Override
+			protected MemoryUsage loadValue() {
+				return memoryBean.getNonHeapMemoryUsage();
+			}
+		});
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			addUsage(metrics, MetricRegistry.name(JVM_NAME_PREFIX, "memory", "pools", name(pool.getName())),
+							new CachedGauge<MemoryUsage>(cacheNano, TimeUnit.NANOSECONDS) {
+								@Override
+								protected MemoryUsage loadValue() {
+									return pool.getUsage();
+								}
+							});
+		}
+		for (final BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			String prefix = MetricRegistry.name(JVM_NAME_PREFIX, "buffers", name(pool.getName()));
+			// buffer pool values are plain fields of NIO classes, no need to cache them
+			metrics.put(MetricRegistry.name(prefix, "count"), new Gauge<Long>() {
+				@Override
+				public Long getValue() {
+					return pool.getCount();
+				}
+			});
+			metrics.put(MetricRegistry.name(prefix, "used"), new Gauge<Long>() {
+				@Override
+				public Long getValue() {
+					return pool.getMemoryUsed();
+				}
+			});
+			metrics.put(MetricRegistry.name(prefix, "capacity"), new Gauge<Long>() {
+				@Override
+				public Long getValue() {
+					return pool.getTotalCapacity();
+				}
+			});
+		}
+		addThreads(metrics);
+		addClassLoading(metrics);
+		return Collections.unmodifiableMap(metrics);
+	}
+
+	private void addUsage(Map<String, Metric> metrics, String prefix, final CachedGauge<MemoryUsage> usage) {
+		metrics.put(MetricRegistry.name(prefix, "used"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return usage.getValue().getUsed();
+			}
+		});
+		metrics.put(MetricRegistry.name(prefix, "committed"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return usage.getValue().getCommitted();
+			}
+		});
+		metrics.put(MetricRegistry.name(prefix, "max"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return usage.getValue().getMax();
+			}
+		});
+	}
+
+	private void addThreads(Map<String, Metric> metrics) {
+		metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "threads", "count"), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return threadBean.getThreadCount();
+			}
+		});
+		metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "threads", "daemon"), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return threadBean.getDaemonThreadCount();
+			}
+		});
+		metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "threads", "peak"), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return threadBean.getPeakThreadCount();
+			}
+		});
+		final CachedGauge<int[]> states = new CachedGauge<int[]>(cacheNano, TimeUnit.NANOSECONDS) {
+			@Override
+			protected int[] loadValue() {
+				int[] counts = new int[Thread.State.values().length];
+				// without stack traces and locks, state is all that is needed
+				for (ThreadInfo info : threadBean.getThreadInfo(threadBean.getAllThreadIds(), 0)) {
+					if (info != null)
+						counts[info.getThreadState().ordinal()]++;
+				}
+				return counts;
+			}
+		};
+		for (final Thread.State state : Thread.State.values()) {
+			metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "threads", state.name().toLowerCase()), new Gauge<Integer>() {
+				@Override
+				public Integer getValue() {
+					return states.getValue()[state.ordinal()];
+				}
+			});
+		}
+	}
+
+	private void addClassLoading(Map<String, Metric> metrics) {
+		metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "classes", "loaded"), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return classLoadingBean.getLoadedClassCount();
+			}
+		});
+		metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "classes", "totalLoaded"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return classLoadingBean.getTotalLoadedClassCount();
+			}
+		});
+		metrics.put(MetricRegistry.name(JVM_NAME_PREFIX, "classes", "unloaded"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return classLoadingBean.getUnloadedClassCount();
+			}
+		});
+	}
+
+	/**
+	 * Starts listening to GC notifications, does nothing if already started.<br>
+	 */
+	public synchronized void start() {
+		if (!emitters.isEmpty())
+			return;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gc instanceof NotificationEmitter) {
+				NotificationEmitter emitter = (NotificationEmitter) gc;
+				emitter.addNotificationListener(gcListener, gcFilter, null);
+				emitters.add(emitter);
+			}
+		}
+	}
+
+	public synchronized void stop() {
+		for (NotificationEmitter emitter : emitters) {
+			try {
+				emitter.removeNotificationListener(gcListener, gcFilter, null);
+			} catch (Exception e) {
+				logger.warn("Cannot remove GC notification listener", e);
+			}
+		}
+		emitters.clear();
+	}
+
+	private final class GcListener implements NotificationListener {
+		// young generation usage after previous GC, guarded by this
+		private long youngAfterPreviousGc;
+
+		@Override
+		public void handleNotification(Notification notification, Object handback) {
+			GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+			Timer pause = gcPauses.get(info.getGcName());
+			if (pause != null)
+				pause.update(info.getGcInfo().getDuration(), TimeUnit.MILLISECONDS);
+			long before = youngUsage(info.getGcInfo().getMemoryUsageBeforeGc());
+			long after = youngUsage(info.getGcInfo().getMemoryUsageAfterGc());
+			synchronized (this) {
+				if (before > youngAfterPreviousGc)
+					allocated.mark(before - youngAfterPreviousGc);
+				youngAfterPreviousGc = after;
+			}
+		}
+
+		private long youngUsage(Map<String, MemoryUsage> usage) {
+			long used = 0;
+			for (String pool : youngPools) {
+				MemoryUsage poolUsage = usage.get(pool);
+				if (poolUsage != null)
+					used += poolUsage.getUsed();
+			}
+			return used;
+		}
+	}
+
+	private static Logger logger = LoggerFactory.getLogger(JvmMetrics.class);
+}
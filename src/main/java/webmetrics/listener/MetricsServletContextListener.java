@@ -3,16 +3,22 @@
  */
 package webmetrics.listener;
 
+import java.io.IOException;
+
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import webmetrics.admin.AdminServer;
 import webmetrics.config.MetricConfig;
 import webmetrics.core.MetricsManager;
 
 public class MetricsServletContextListener implements ServletContextListener {
 
+	// null if admin server is not configured or not started
+	private AdminServer adminServer;
+
 	@Override
 	public void contextInitialized(ServletContextEvent event) {
 		logger.info("Servlet context initializing: " + MetricsManager.class.getSimpleName());
@@ -37,6 +43,17 @@ public class MetricsServletContextListener implements ServletContextListener {
 		}
 		if (webMetricManager.isEnabled()) {
 			webMetricManager.getJmxReporter().start();
+			if (webMetricManager.getStripedTicker() != null)
+				webMetricManager.getStripedTicker().start();
+			if (webMetricManager.getHealthEvaluator() != null)
+				webMetricManager.getHealthEvaluator().start();
+			if (webMetricManager.getJvmMetrics() != null)
+				webMetricManager.getJvmMetrics().start();
+			if (webMetricManager.getSharedMetrics() != null)
+				webMetricManager.getSharedMetrics().start();
+			if (webMetricManager.getSnapshot() != null)
+				webMetricManager.getSnapshot().start();
+			startAdminServer(webMetricManager);
 		} else {
 			logger.warn("Web Metrics is not enabled");
 		}
@@ -49,6 +66,37 @@ public class MetricsServletContextListener implements ServletContextListener {
 						MetricsManager.class.getSimpleName()));
 		if (webMetricManager.isEnabled()) {
 			webMetricManager.getJmxReporter().stop();
+			if (webMetricManager.getStripedTicker() != null)
+				webMetricManager.getStripedTicker().stop();
+			if (webMetricManager.getHealthEvaluator() != null)
+				webMetricManager.getHealthEvaluator().stop();
+			if (webMetricManager.getJvmMetrics() != null)
+				webMetricManager.getJvmMetrics().stop();
+			if (webMetricManager.getSharedMetrics() != null)
+				webMetricManager.getSharedMetrics().stop();
+			if (webMetricManager.getSnapshot() != null)
+				webMetricManager.getSnapshot().stop();
+			if (webMetricManager.getJournal() != null)
+				webMetricManager.getJournal().close();
+		}
+		if (adminServer != null) {
+			adminServer.stop();
+			adminServer = null;
+		}
+	}
+
+	private void startAdminServer(MetricsManager webMetricManager) {
+		Integer adminPort = webMetricManager.getWebMetricConfig().getAdminPort();
+		if (adminPort == null)
+			return;
+		adminServer = new AdminServer(webMetricManager.getMetricsRegistry(), webMetricManager.getWebMetricConfig().getAdminBindAddress(), adminPort,
+						webMetricManager.getWebMetricConfig().getAdminCache());
+		try {
+			adminServer.start();
+		} catch (IOException e) {
+			// application can run without admin server, metrics are still available through JMX
+			logger.error("Cannot start admin server on port " + adminPort, e);
+			adminServer = null;
 		}
 	}
 
@@ -0,0 +1,61 @@
+/**
+ * Prints metrics of shared metrics file, one "name value" line per metric.<br>
+ * Usage: java -cp webmetrics.jar webmetrics.shm.SharedMetricsCli file [intervalMillis] [prefix]<br>
+ * With interval prints repeatedly, separated by empty line, and opens the file again if application restarted. Prefix limits printed metrics,
+ * i.e. "display.".<br>
+ */
+package webmetrics.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Map.Entry;
+
+public class SharedMetricsCli {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("Usage: " + SharedMetricsCli.class.getName() + " file [intervalMillis] [prefix]");
+			System.exit(2);
+		}
+		File file = new File(args[0]);
+		long intervalMillis = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		String prefix = args.length > 2 ? args[2] : "";
+		SharedMetricsReader reader = new SharedMetricsReader(file);
+		PrintStream out = System.out;
+		while (true) {
+			print(reader.read(), prefix, out);
+			if (intervalMillis <= 0)
+				return;
+			Thread.sleep(intervalMillis);
+			if (!reader.isLive())
+				reader = reopen(file, reader);
+			out.println();
+		}
+	}
+
+	private static void print(Map<String, Number> metrics, String prefix, PrintStream out) {
+		for (Entry<String, Number> entry : metrics.entrySet()) {
+			if (entry.getKey().startsWith(prefix))
+				out.println(entry.getKey() + " " + entry.getValue());
+		}
+		out.flush();
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param current
+	 * @return reader of new file if application restarted, current reader otherwise
+	 */
+	private static SharedMetricsReader reopen(File file, SharedMetricsReader current) {
+		try {
+			SharedMetricsReader reader = new SharedMetricsReader(file);
+			return reader.getStartMillis() != current.getStartMillis() ? reader : current;
+		} catch (IOException e) {
+			// application is being restarted, try next time
+			return current;
+		}
+	}
+}
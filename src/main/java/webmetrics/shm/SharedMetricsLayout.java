@@ -0,0 +1,62 @@
+/**
+ * Layout of shared metrics file, shared by writer and reader.<br>
+ * All numbers are little endian. The file starts with fixed header followed by directory of fixed size entries, each entry holds the value of one
+ * metric and its name. Entries are only appended, once written the name and the slot of a metric never change.<br>
+ *
+ * <pre>
+ * header (64 bytes)
+ *   0 int   magic "WMSH"
+ *   4 int   layout version
+ *   8 int   capacity, maximum number of entries
+ *  12 int   count of entries
+ *  16 long  sequence, odd while writer updates values
+ *  24 long  time of last update, milliseconds since epoch
+ *  32 long  start time of writer, milliseconds since epoch
+ *  40 int   update interval in milliseconds
+ *  44 int   1 while writer runs, 0 after it stopped
+ * entry (128 bytes)
+ *   0 long  value, long or bits of double depending on type
+ *   8 byte  type, 0 long, 1 double (not written by current writer, which writes only counts)
+ *  10 short length of name
+ *  12       name in UTF-8, at most 116 bytes
+ * </pre>
+ */
+package webmetrics.shm;
+
+final class SharedMetricsLayout {
+
+	static final int MAGIC = 0x484D5357;
+	static final int VERSION = 1;
+
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int CAPACITY_OFFSET = 8;
+	static final int COUNT_OFFSET = 12;
+	static final int SEQUENCE_OFFSET = 16;
+	static final int UPDATE_OFFSET = 24;
+	static final int START_OFFSET = 32;
+	static final int INTERVAL_OFFSET = 40;
+	static final int LIVE_OFFSET = 44;
+	static final int HEADER_SIZE = 64;
+
+	static final int VALUE_OFFSET = 0;
+	static final int TYPE_OFFSET = 8;
+	static final int NAME_LENGTH_OFFSET = 10;
+	static final int NAME_OFFSET = 12;
+	static final int ENTRY_SIZE = 128;
+	static final int MAX_NAME_LENGTH = ENTRY_SIZE - NAME_OFFSET;
+
+	static final byte TYPE_LONG = 0;
+	static final byte TYPE_DOUBLE = 1;
+
+	private SharedMetricsLayout() {
+	}
+
+	static int entryOffset(int slot) {
+		return HEADER_SIZE + slot * ENTRY_SIZE;
+	}
+
+	static long fileSize(int capacity) {
+		return HEADER_SIZE + (long) capacity * ENTRY_SIZE;
+	}
+}
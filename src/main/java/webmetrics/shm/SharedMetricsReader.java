@@ -0,0 +1,158 @@
+/**
+ * Reads shared metrics file written by SharedMetricsWriter of another process. Depends only on JDK, so sidecars need only classes of this
+ * package and webmetrics.util.Fences.<br>
+ * Reading maps the file once and copies values, nothing is called in the writing JVM. Reader retries while writer updates values, so returned
+ * values always come from one update. Names are read once per metric, later reads copy only values.<br>
+ * If writing application restarts it creates new file, reader of old file sees it stopped (see isLive()) and should open the file again.<br>
+ */
+package webmetrics.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import webmetrics.util.Fences;
+
+public class SharedMetricsReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	// writer holds the odd sequence only while copying values, few retries are enough
+	private static final int MAX_RETRIES = 1000;
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	// names of entries read so far, index is slot
+	private String[] names = new String[0];
+
+	/**
+	 *
+	 * @param file
+	 *            - shared metrics file, required
+	 * @throws IOException
+	 *             if file cannot be read or is not shared metrics file
+	 */
+	public SharedMetricsReader(File file) throws IOException {
+		if (file == null)
+			throw new IllegalArgumentException("file is required parameter");
+		this.file = file;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() < SharedMetricsLayout.HEADER_SIZE)
+				throw new IOException("Not a shared metrics file: " + file);
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt(SharedMetricsLayout.MAGIC_OFFSET) != SharedMetricsLayout.MAGIC)
+			throw new IOException("Not a shared metrics file: " + file);
+		// magic is written last, header is read after it
+		Fences.loadLoad();
+		if (buffer.getInt(SharedMetricsLayout.VERSION_OFFSET) != SharedMetricsLayout.VERSION)
+			throw new IOException("Unsupported version " + buffer.getInt(SharedMetricsLayout.VERSION_OFFSET) + " of shared metrics file: " + file);
+		capacity = buffer.getInt(SharedMetricsLayout.CAPACITY_OFFSET);
+		if (SharedMetricsLayout.fileSize(capacity) > buffer.capacity())
+			throw new IOException("Shared metrics file is truncated: " + file);
+	}
+
+	/**
+	 * Reads values of all metrics from one update.<br>
+	 *
+	 * @return values by metric name in order metrics were added, Long or Double
+	 * @throws IllegalStateException
+	 *             if writer keeps updating during all retries
+	 */
+	public synchronized Map<String, Number> read() {
+		for (int retry = 0; retry < MAX_RETRIES; retry++) {
+			long sequence = buffer.getLong(SharedMetricsLayout.SEQUENCE_OFFSET);
+			if ((sequence & 1) != 0) {
+				Thread.yield();
+				continue;
+			}
+			// values are read after the even sequence
+			Fences.loadLoad();
+			int count = Math.min(buffer.getInt(SharedMetricsLayout.COUNT_OFFSET), capacity);
+			// entries are complete before count includes them
+			Fences.loadLoad();
+			readNames(count);
+			long[] values = new long[count];
+			byte[] types = new byte[count];
+			for (int slot = 0; slot < count; slot++) {
+				int offset = SharedMetricsLayout.entryOffset(slot);
+				values[slot] = buffer.getLong(offset + SharedMetricsLayout.VALUE_OFFSET);
+				types[slot] = buffer.get(offset + SharedMetricsLayout.TYPE_OFFSET);
+			}
+			// sequence is read again after the values
+			Fences.loadLoad();
+			if (buffer.getLong(SharedMetricsLayout.SEQUENCE_OFFSET) != sequence)
+				continue;
+			Map<String, Number> metrics = new LinkedHashMap<String, Number>(count * 2);
+			for (int slot = 0; slot < count; slot++) {
+				Number value = types[slot] == SharedMetricsLayout.TYPE_DOUBLE ? (Number) Double.longBitsToDouble(values[slot]) : (Number) values[slot];
+				metrics.put(names[slot], value);
+			}
+			return metrics;
+		}
+		throw new IllegalStateException("Shared metrics file keeps changing: " + file);
+	}
+
+	private void readNames(int count) {
+		if (count <= names.length)
+			return;
+		int known = names.length;
+		names = Arrays.copyOf(names, count);
+		byte[] nameBytes = new byte[SharedMetricsLayout.MAX_NAME_LENGTH];
+		for (int slot = known; slot < count; slot++) {
+			int offset = SharedMetricsLayout.entryOffset(slot);
+			int length = Math.min(buffer.getShort(offset + SharedMetricsLayout.NAME_LENGTH_OFFSET), SharedMetricsLayout.MAX_NAME_LENGTH);
+			for (int i = 0; i < length; i++) {
+				nameBytes[i] = buffer.get(offset + SharedMetricsLayout.NAME_OFFSET + i);
+			}
+			names[slot] = new String(nameBytes, 0, length, UTF8);
+		}
+	}
+
+	/**
+	 *
+	 * @return false after writer stopped, also if application restarted with new file
+	 */
+	public boolean isLive() {
+		return buffer.getInt(SharedMetricsLayout.LIVE_OFFSET) == 1;
+	}
+
+	/**
+	 *
+	 * @return time of last update, milliseconds since epoch
+	 */
+	public long getUpdateMillis() {
+		return buffer.getLong(SharedMetricsLayout.UPDATE_OFFSET);
+	}
+
+	/**
+	 *
+	 * @return time writer started, milliseconds since epoch, changes when application restarts
+	 */
+	public long getStartMillis() {
+		return buffer.getLong(SharedMetricsLayout.START_OFFSET);
+	}
+
+	/**
+	 *
+	 * @return interval of updates in milliseconds, values older than that are stale
+	 */
+	public int getIntervalMillis() {
+		return buffer.getInt(SharedMetricsLayout.INTERVAL_OFFSET);
+	}
+
+	public File getFile() {
+		return file;
+	}
+}
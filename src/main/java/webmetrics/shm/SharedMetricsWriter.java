@@ -0,0 +1,221 @@
+/**
+ * Copies values of metrics into memory-mapped file (see SharedMetricsLayout), so that other processes can read them without any call into this
+ * JVM, similar to hsperfdata of HotSpot.<br>
+ * Single background thread updates values in place every interval: counts of counters, meters, timers and histograms (request counts, status
+ * meters and histogram buckets of displays). Gauges are not written, many of them compute their value (snapshots, estimates, JVM beans) and would
+ * be computed every interval whether anybody reads the file or not. The cost for the application is reading one count per counting metric per
+ * interval no matter how often the file is read.<br>
+ * Values are written between two writes of sequence number, odd while writing, so reader that sees the same even sequence before and after reading
+ * values has consistent snapshot of one update. Writes of the sequence and of values are separated by store fences (see Fences).<br>
+ * Existing file is deleted on start, so readers that still map the old file see it stopped instead of values of different layout.<br>
+ */
+package webmetrics.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+import webmetrics.util.Fences;
+
+public class SharedMetricsWriter {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final MetricRegistry registry;
+	private final File file;
+	private final int capacity;
+	private final int intervalMillis;
+	// slots of metrics already in directory, key is metric name, used only by writer thread
+	private final Map<String, Integer> slots = new HashMap<String, Integer>();
+	// metrics that do not fit, logged once
+	private final Set<String> skipped = new HashSet<String>();
+	private MappedByteBuffer buffer;
+	private long sequence;
+	private ScheduledExecutorService executor;
+
+	/**
+	 *
+	 * @param registry
+	 *            - registry to copy, required
+	 * @param file
+	 *            - path of the file, required
+	 * @param capacity
+	 *            - maximum number of metrics, must be positive
+	 * @param intervalMillis
+	 *            - interval of updates, must be positive
+	 */
+	public SharedMetricsWriter(MetricRegistry registry, File file, int capacity, int intervalMillis) {
+		if (registry == null || file == null)
+			throw new IllegalArgumentException("registry and file are required parameters");
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		if (intervalMillis <= 0)
+			throw new IllegalArgumentException("intervalMillis must be positive: " + intervalMillis);
+		this.registry = registry;
+		this.file = file;
+		this.capacity = capacity;
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * Creates the file and starts background updates, does nothing if already started.<br>
+	 * If the file cannot be created, error is logged and the application runs without it.<br>
+	 */
+	public synchronized void start() {
+		if (executor != null)
+			return;
+		if (buffer == null) {
+			try {
+				buffer = create();
+			} catch (IOException e) {
+				logger.error("Cannot create shared metrics file " + file, e);
+				return;
+			}
+			if (!Fences.isAvailable())
+				logger.warn("Memory fences not available on this JDK, readers of shared metrics file may see torn values on CPUs other than x86");
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "webmetrics-shared-metrics");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		buffer.putInt(SharedMetricsLayout.LIVE_OFFSET, 1);
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					update();
+				} catch (RuntimeException e) {
+					// keep the scheduled task alive
+					logger.error("Cannot update shared metrics file " + file, e);
+				}
+			}
+		}, 0, intervalMillis, TimeUnit.MILLISECONDS);
+		logger.info("Shared metrics file: " + file.getAbsolutePath());
+	}
+
+	/**
+	 * Stops background updates, writes final values and marks the file stopped. The file is kept for readers.<br>
+	 */
+	public synchronized void stop() {
+		if (executor == null)
+			return;
+		executor.shutdown();
+		try {
+			executor.awaitTermination(intervalMillis + TimeUnit.SECONDS.toMillis(1), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		update();
+		buffer.putInt(SharedMetricsLayout.LIVE_OFFSET, 0);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	private MappedByteBuffer create() throws IOException {
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		// new file instead of rewriting the old one, readers of old file must not see it change size
+		if (file.exists() && !file.delete())
+			throw new IOException("Cannot delete old shared metrics file " + file);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(SharedMetricsLayout.fileSize(capacity));
+			MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SharedMetricsLayout.fileSize(capacity));
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			mapped.putInt(SharedMetricsLayout.VERSION_OFFSET, SharedMetricsLayout.VERSION);
+			mapped.putInt(SharedMetricsLayout.CAPACITY_OFFSET, capacity);
+			mapped.putLong(SharedMetricsLayout.START_OFFSET, System.currentTimeMillis());
+			mapped.putInt(SharedMetricsLayout.INTERVAL_OFFSET, intervalMillis);
+			Fences.storeStore();
+			// readers check magic last
+			mapped.putInt(SharedMetricsLayout.MAGIC_OFFSET, SharedMetricsLayout.MAGIC);
+			return mapped;
+		} finally {
+			// mapping stays valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Copies current counts of all counting metrics into the file.<br>
+	 */
+	synchronized void update() {
+		buffer.putLong(SharedMetricsLayout.SEQUENCE_OFFSET, ++sequence);
+		// odd sequence is visible before any value changes
+		Fences.storeStore();
+		for (Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+			Metric metric = entry.getValue();
+			if (!(metric instanceof Counting))
+				continue;
+			long value = ((Counting) metric).getCount();
+			int slot = getSlot(entry.getKey());
+			if (slot < 0)
+				continue;
+			buffer.putLong(SharedMetricsLayout.entryOffset(slot) + SharedMetricsLayout.VALUE_OFFSET, value);
+		}
+		buffer.putLong(SharedMetricsLayout.UPDATE_OFFSET, System.currentTimeMillis());
+		// all values are visible before even sequence
+		Fences.storeStore();
+		buffer.putLong(SharedMetricsLayout.SEQUENCE_OFFSET, ++sequence);
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return slot of metric, appended to directory if new, -1 if it does not fit
+	 */
+	private int getSlot(String name) {
+		Integer slot = slots.get(name);
+		if (slot != null)
+			return slot;
+		if (skipped.contains(name))
+			return -1;
+		byte[] nameBytes = name.getBytes(UTF8);
+		if (nameBytes.length > SharedMetricsLayout.MAX_NAME_LENGTH || slots.size() >= capacity) {
+			logger.warn("Metric not written to shared metrics file, name too long or capacity " + capacity + " reached: " + name);
+			skipped.add(name);
+			return -1;
+		}
+		int newSlot = slots.size();
+		int offset = SharedMetricsLayout.entryOffset(newSlot);
+		buffer.putShort(offset + SharedMetricsLayout.NAME_LENGTH_OFFSET, (short) nameBytes.length);
+		for (int i = 0; i < nameBytes.length; i++) {
+			buffer.put(offset + SharedMetricsLayout.NAME_OFFSET + i, nameBytes[i]);
+		}
+		buffer.put(offset + SharedMetricsLayout.TYPE_OFFSET, SharedMetricsLayout.TYPE_LONG);
+		Fences.storeStore();
+		// entry is complete before readers can see it
+		buffer.putInt(SharedMetricsLayout.COUNT_OFFSET, newSlot + 1);
+		slots.put(name, newSlot);
+		return newSlot;
+	}
+
+	private static Logger logger = LoggerFactory.getLogger(SharedMetricsWriter.class);
+}
@@ -0,0 +1,311 @@
+/**
+ * Keeps counts of counters, meters and timers (histogram buckets, status meters, request counts of displays) across restarts of the
+ * application.<br>
+ * Counts are written to compact binary snapshot periodically in background and when the application stops, and restored when MetricsManager is
+ * created: every metric of the snapshot is registered before the first request with its count as starting value. Restored meters and timers
+ * count from the restored value, their rates start from zero, so rate based alerts see neither a drop nor a burst.<br>
+ * Snapshot is written with version of configuration metric names depend on (see MetricConfig.getMetricNamesVersion()). Snapshot of different
+ * version is ignored, restoring it would create metrics the current configuration never updates. Metrics of striped displays are registered
+ * before restore, their restored counts are added to the striped recorder. Other metrics registered before restore are not restored, metrics that
+ * describe only the running JVM should be excluded by filter.<br>
+ * Snapshot is written into temporary file first and then moved over the old one, so crash while writing leaves the previous snapshot.<br>
+ */
+package webmetrics.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import webmetrics.core.StripedCounter;
+import webmetrics.core.StripedMeter;
+import webmetrics.core.StripedTimer;
+
+public class MetricSnapshot {
+
+	private static final int MAGIC = 0x4E534D57;
+	private static final int FORMAT_VERSION = 1;
+	private static final byte COUNTER = 0;
+	private static final byte METER = 1;
+	private static final byte TIMER = 2;
+
+	private final MetricRegistry registry;
+	private final File file;
+	private final String configVersion;
+	private final MetricFilter filter;
+	private final int intervalSeconds;
+	private ScheduledExecutorService executor;
+
+	/**
+	 *
+	 * @param registry
+	 *            - registry to write and restore, required
+	 * @param file
+	 *            - snapshot file, required
+	 * @param configVersion
+	 *            - version of configuration, snapshot of different version is not restored
+	 * @param filter
+	 *            - metrics written to snapshot, required
+	 * @param intervalSeconds
+	 *            - interval of writing snapshot in background, must be positive
+	 */
+	public MetricSnapshot(MetricRegistry registry, File file, String configVersion, MetricFilter filter, int intervalSeconds) {
+		if (registry == null || file == null || filter == null)
+			throw new IllegalArgumentException("registry, file and filter are required parameters");
+		if (intervalSeconds <= 0)
+			throw new IllegalArgumentException("intervalSeconds must be positive: " + intervalSeconds);
+		this.registry = registry;
+		this.file = file;
+		this.configVersion = String.valueOf(configVersion);
+		this.filter = filter;
+		this.intervalSeconds = intervalSeconds;
+	}
+
+	/**
+	 * Registers metrics of snapshot with their counts. Missing, unreadable or snapshot of different configuration is logged and ignored.<br>
+	 *
+	 * @return number of restored metrics
+	 */
+	public int restore() {
+		if (!file.exists()) {
+			logger.info("No metric snapshot to restore: " + file);
+			return 0;
+		}
+		int restored = 0;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+					logger.warn("Not a metric snapshot or unsupported format, not restored: " + file);
+					return 0;
+				}
+				String version = in.readUTF();
+				long writtenMillis = in.readLong();
+				if (!configVersion.equals(version)) {
+					logger.info("Metric snapshot of different configuration version " + version + " (current " + configVersion + "), not restored");
+					return 0;
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					byte type = in.readByte();
+					String name = in.readUTF();
+					long value = in.readLong();
+					if (restore(type, name, value))
+						restored++;
+				}
+				logger.info("Restored " + restored + " metrics from snapshot written at " + new Date(writtenMillis));
+			} finally {
+				in.close();
+			}
+		} catch (EOFException e) {
+			logger.warn("Metric snapshot is truncated, restored " + restored + " metrics: " + file);
+		} catch (IOException e) {
+			logger.error("Cannot read metric snapshot " + file, e);
+		}
+		return restored;
+	}
+
+	private boolean restore(byte type, String name, long value) {
+		Metric registered = registry.getMetrics().get(name);
+		if (registered != null)
+			return restoreRegistered(type, name, value, registered);
+		switch (type) {
+		case COUNTER:
+			Counter counter = new Counter();
+			counter.inc(value);
+			registry.register(name, counter);
+			return true;
+		case METER:
+			registry.register(name, new RestoredMeter(value));
+			return true;
+		case TIMER:
+			registry.register(name, new RestoredTimer(value));
+			return true;
+		default:
+			logger.warn("Unknown metric type " + type + " in snapshot, not restored: " + name);
+			return false;
+		}
+	}
+
+	/**
+	 * Adds restored count to metric of striped display.<br>
+	 *
+	 * @return false if registered metric is not striped or is of different type than in snapshot
+	 */
+	private boolean restoreRegistered(byte type, String name, long value, Metric registered) {
+		if (type == TIMER && registered instanceof StripedTimer) {
+			((StripedTimer) registered).restore(value);
+			return true;
+		}
+		if (type == METER && registered instanceof StripedMeter) {
+			((StripedMeter) registered).restore(value);
+			return true;
+		}
+		if (type == COUNTER && registered instanceof StripedCounter) {
+			((StripedCounter) registered).restore(value);
+			return true;
+		}
+		logger.debug("Metric already registered, not restored: " + name);
+		return false;
+	}
+
+	/**
+	 * Writes counts of all counters, meters and timers.<br>
+	 *
+	 * @throws IOException
+	 *             if snapshot cannot be written, previous snapshot is kept
+	 */
+	public synchronized void write() throws IOException {
+		File temporary = new File(file.getPath() + ".tmp");
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		// registry returns copies, so size written upfront matches entries written even if metrics are added meanwhile
+		SortedMap<String, Counter> counters = registry.getCounters(filter);
+		SortedMap<String, Meter> meters = registry.getMeters(filter);
+		SortedMap<String, Timer> timers = registry.getTimers(filter);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(configVersion);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(counters.size() + meters.size() + timers.size());
+			for (Entry<String, Counter> entry : counters.entrySet()) {
+				write(out, COUNTER, entry.getKey(), entry.getValue().getCount());
+			}
+			for (Entry<String, Meter> entry : meters.entrySet()) {
+				write(out, METER, entry.getKey(), entry.getValue().getCount());
+			}
+			for (Entry<String, Timer> entry : timers.entrySet()) {
+				write(out, TIMER, entry.getKey(), entry.getValue().getCount());
+			}
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private void write(DataOutputStream out, byte type, String name, long count) throws IOException {
+		out.writeByte(type);
+		out.writeUTF(name);
+		out.writeLong(count);
+	}
+
+	/**
+	 * Starts writing snapshot in background, does nothing if already started.<br>
+	 */
+	public synchronized void start() {
+		if (executor != null)
+			return;
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "webmetrics-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				writeAndLog();
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops background writing and writes final snapshot, does nothing if not started.<br>
+	 */
+	public synchronized void stop() {
+		if (executor == null)
+			return;
+		executor.shutdownNow();
+		executor = null;
+		writeAndLog();
+	}
+
+	private void writeAndLog() {
+		try {
+			write();
+		} catch (Exception e) {
+			// keep the scheduled task alive, next snapshot may succeed
+			logger.error("Cannot write metric snapshot " + file, e);
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Meter continuing from restored count. Mean rate is computed only from marks since restore.<br>
+	 */
+	static final class RestoredMeter extends Meter {
+		private final long restored;
+		private final long startNano = System.nanoTime();
+
+		RestoredMeter(long restored) {
+			this.restored = restored;
+		}
+
+		@Override
+		public long getCount() {
+			return restored + super.getCount();
+		}
+
+		@Override
+		public double getMeanRate() {
+			long count = super.getCount();
+			if (count == 0)
+				return 0;
+			return count / ((double) (System.nanoTime() - startNano) / TimeUnit.SECONDS.toNanos(1));
+		}
+	}
+
+	/**
+	 * Timer continuing from restored count. Rates and durations come only from requests since restore.<br>
+	 */
+	static final class RestoredTimer extends Timer {
+		private final long restored;
+
+		RestoredTimer(long restored) {
+			this.restored = restored;
+		}
+
+		@Override
+		public long getCount() {
+			return restored + super.getCount();
+		}
+	}
+
+	private static Logger logger = LoggerFactory.getLogger(MetricSnapshot.class);
+}
@@ -1,10 +1,16 @@
 package webmetrics.spring;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.codahale.metrics.health.HealthCheck;
@@ -17,7 +23,12 @@ import webmetrics.admin.HealthCheckManager;
 import webmetrics.admin.ThreadDumpManager;
 import webmetrics.admin.HealthCheckManager.HealthCheckResponse;
 import webmetrics.admin.ThreadDumpManager.ThreadDump;
+import webmetrics.core.Exemplar;
+import webmetrics.core.HeavyHitters.HeavyHitter;
 import webmetrics.core.MetricsManager;
+import webmetrics.core.SlowRequestRecorder;
+import webmetrics.core.SlowRequestRecorder.SlowRequest;
+import webmetrics.jdbc.SqlStatistics;
 
 @RestController
 public class MetricsAdminController {
@@ -47,6 +58,22 @@ public class MetricsAdminController {
 		return metrics;
 	}
 	
+	/**
+	 * Returns only metrics changed since given version, with count deltas and version to ask with next time.<br>
+	 * Gauges are exported only with gauges=true.<br>
+	 */
+	@RequestMapping(value = "/admin/metrics/changes")
+	public String getChangedMetrics(@RequestParam(value = "since", required = false) String since,
+			@RequestParam(value = "gauges", defaultValue = "false") boolean gauges)  {
+		String metrics="";
+		try {
+			metrics =  mapper.writerWithDefaultPrettyPrinter().writeValueAsString(wManager.getChangedMetrics(since, gauges));
+		} catch (JsonProcessingException e) {
+			e.printStackTrace();
+		}
+		return metrics;
+	}
+	
 	@RequestMapping(value = "/admin/dump")
 	public ThreadDump getThreadDump()  {
 		if( tManager == null) {
@@ -55,6 +82,46 @@ public class MetricsAdminController {
 		return tManager.dumpThreads();
 	}
 	
+	@RequestMapping(value = "/admin/sql")
+	public Map<String, Map<String, Number>> getSqlStatistics()  {
+		SqlStatistics sqlStatistics = wManager.getSqlStatistics();
+		if (sqlStatistics == null) {
+			return Collections.emptyMap();
+		}
+		return sqlStatistics.getStatistics();
+	}
+	
+	@RequestMapping(value = "/admin/inflight")
+	public Map<String, Map<String, Number>> getInFlight()  {
+		return wManager.getInFlightStatistics();
+	}
+	
+	@RequestMapping(value = "/admin/exemplars")
+	public Map<String, Exemplar> getExemplars()  {
+		return wManager.getExemplars();
+	}
+	
+	@RequestMapping(value = "/admin/other")
+	public List<HeavyHitter> getHeavyHitters()  {
+		List<HeavyHitter> heavyHitters = wManager.getHeavyHitters();
+		if (heavyHitters == null) {
+			return Collections.emptyList();
+		}
+		return heavyHitters;
+	}
+	
+	@RequestMapping(value = "/admin/slow")
+	public Map<String, Map<String, List<SlowRequest>>> getSlowRequests()  {
+		Map<String, Map<String, List<SlowRequest>>> slowRequests = new TreeMap<String, Map<String, List<SlowRequest>>>();
+		for (Entry<String, SlowRequestRecorder> entry : wManager.getSlowRequestRecorders().entrySet()) {
+			Map<String, List<SlowRequest>> windows = new LinkedHashMap<String, List<SlowRequest>>();
+			windows.put("current", entry.getValue().getCurrent());
+			windows.put("previous", entry.getValue().getPrevious());
+			slowRequests.put(entry.getKey(), windows);
+		}
+		return slowRequests;
+	}
+	
 	/*@RequestMapping(value = "/admin/health")
 	public SortedMap<String, HealthCheck.Result> checkHealth()  {
 		return hReg.runHealthChecks();
@@ -0,0 +1,30 @@
+/**
+ * Names timer of request by pattern of Spring MVC handler that matched it (HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE), used when
+ * metrics-param springNaming is enabled. Handler mapping already matched the request, so MetricsManager does not match its URI again (see
+ * MetricsManager.nameTimer).<br>
+ * Registered by MetricsSpringBootConfiguration. Requests that reach no handler are named when their timer stops.<br>
+ */
+package webmetrics.spring;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import webmetrics.core.MetricsManager;
+import webmetrics.core.UriTimer;
+import webmetrics.filter.MetricsFilter;
+
+public class MetricsHandlerInterceptor extends HandlerInterceptorAdapter {
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+		Object timer = request.getAttribute(MetricsFilter.TIMER_ATTRIBUTE);
+		MetricsManager manager = MetricsManager.getInstance();
+		if (timer instanceof UriTimer && manager != null) {
+			manager.nameTimer((UriTimer) timer, (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+		}
+		return true;
+	}
+}
@@ -6,6 +6,8 @@ import java.util.Map;
 import org.springframework.boot.context.embedded.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
 import webmetrics.filter.MetricsFilter;
 
@@ -24,4 +26,27 @@ public class MetricsSpringBootConfiguration {
         registration.setInitParameters(initParam);
         return registration;
     }
+
+	/**
+	 * Names metrics of requests by matched handler pattern if metrics-param springNaming is enabled, otherwise interceptor finds no timer and does
+	 * nothing.<br>
+	 */
+	@Bean
+	public WebMvcConfigurerAdapter metricsWebMvcConfigurer() {
+		return new WebMvcConfigurerAdapter() {
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new MetricsHandlerInterceptor());
+			}
+		};
+	}
+
+	/**
+	 * Enables method level metrics for beans annotated with Timed or Metered.<br>
+	 * Declared static so that post processor does not force early initialization of this configuration.<br>
+	 */
+	@Bean
+	public static TimedAnnotationBeanPostProcessor timedAnnotationBeanPostProcessor() {
+		return new TimedAnnotationBeanPostProcessor();
+	}
 }
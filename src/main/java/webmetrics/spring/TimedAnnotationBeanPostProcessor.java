@@ -0,0 +1,28 @@
+/**
+ * Bean post processor that proxies beans having methods (or classes) annotated with Timed or Metered, see TimedMethodInterceptor.<br>
+ * Uses plain Spring AOP proxies, AspectJ is not required.<br>
+ */
+package webmetrics.spring;
+
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+
+import webmetrics.annotation.Metered;
+import webmetrics.annotation.Timed;
+
+public class TimedAnnotationBeanPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+	private static final long serialVersionUID = 1L;
+
+	public TimedAnnotationBeanPostProcessor() {
+		ComposablePointcut pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(Timed.class, true))
+						.union(AnnotationMatchingPointcut.forMethodAnnotation(Timed.class))
+						.union(new AnnotationMatchingPointcut(Metered.class, true))
+						.union(AnnotationMatchingPointcut.forMethodAnnotation(Metered.class));
+		this.advisor = new DefaultPointcutAdvisor(pointcut, new TimedMethodInterceptor());
+		// apply before other advisors (i.e. transactions), so that their time is included
+		setBeforeExistingAdvisors(true);
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Records timers and meters for methods annotated with Timed or Metered.<br>
+ * Metrics are resolved once per join point (target class and method) and cached, so an invocation only does two map lookups and, if nested,
+ * one lookup by display name.<br>
+ * Annotation of the method takes precedence over annotation of its class, Timed takes precedence over Metered on the same level.<br>
+ */
+package webmetrics.spring;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import webmetrics.annotation.Metered;
+import webmetrics.annotation.Timed;
+import webmetrics.core.MetricsManager;
+import webmetrics.core.RequestContext;
+
+public class TimedMethodInterceptor implements MethodInterceptor {
+
+	private static final String METHODS_NAME_PREFIX = "methods";
+
+	// key is target class, then invoked method
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Method, JoinPointMetrics>> cache = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, JoinPointMetrics>>();
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		MetricRegistry registry = getRegistry();
+		if (registry == null) {
+			return invocation.proceed();
+		}
+		JoinPointMetrics metrics = getJoinPointMetrics(registry, invocation);
+		if (metrics.timer == null) {
+			if (metrics.meter != null) {
+				metrics.mark(registry);
+			}
+			return invocation.proceed();
+		}
+		long start = System.nanoTime();
+		try {
+			return invocation.proceed();
+		} finally {
+			long duration = System.nanoTime() - start;
+			metrics.timer.update(duration, TimeUnit.NANOSECONDS);
+			if (metrics.nested) {
+				Timer displayTimer = metrics.getDisplayTimer(registry);
+				if (displayTimer != null)
+					displayTimer.update(duration, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	private MetricRegistry getRegistry() {
+		MetricsManager manager = MetricsManager.getInstance();
+		if (manager == null || !manager.isEnabled())
+			return null;
+		return manager.getMetricsRegistry();
+	}
+
+	private JoinPointMetrics getJoinPointMetrics(MetricRegistry registry, MethodInvocation invocation) {
+		Class<?> targetClass = invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : invocation.getMethod()
+						.getDeclaringClass();
+		ConcurrentMap<Method, JoinPointMetrics> classCache = cache.get(targetClass);
+		if (classCache == null) {
+			classCache = new ConcurrentHashMap<Method, JoinPointMetrics>();
+			ConcurrentMap<Method, JoinPointMetrics> existing = cache.putIfAbsent(targetClass, classCache);
+			if (existing != null)
+				classCache = existing;
+		}
+		JoinPointMetrics metrics = classCache.get(invocation.getMethod());
+		if (metrics == null) {
+			metrics = new JoinPointMetrics(registry, targetClass, invocation.getMethod());
+			JoinPointMetrics existing = classCache.putIfAbsent(invocation.getMethod(), metrics);
+			if (existing != null)
+				metrics = existing;
+		}
+		return metrics;
+	}
+
+	/**
+	 * Metrics resolved for single join point.<br>
+	 */
+	private static class JoinPointMetrics {
+		private final String name;
+		private final Timer timer;
+		private final Meter meter;
+		private final boolean nested;
+		// key is display name
+		private final ConcurrentMap<String, Timer> displayTimers;
+		private final ConcurrentMap<String, Meter> displayMeters;
+
+		JoinPointMetrics(MetricRegistry registry, Class<?> targetClass, Method method) {
+			Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+			Timed timed = AnnotationUtils.findAnnotation(specificMethod, Timed.class);
+			Metered metered = timed != null ? null : AnnotationUtils.findAnnotation(specificMethod, Metered.class);
+			if (timed == null && metered == null) {
+				timed = AnnotationUtils.findAnnotation(targetClass, Timed.class);
+				if (timed == null)
+					metered = AnnotationUtils.findAnnotation(targetClass, Metered.class);
+			}
+			String annotatedName = timed != null ? timed.name() : metered != null ? metered.name() : "";
+			name = annotatedName.trim().equals("") ? METHODS_NAME_PREFIX + "." + targetClass.getSimpleName() + "." + method.getName() : annotatedName
+							.trim();
+			timer = timed != null ? registry.timer(name) : null;
+			meter = metered != null ? registry.meter(name) : null;
+			nested = timed != null ? timed.nested() : metered != null && metered.nested();
+			displayTimers = nested && timer != null ? new ConcurrentHashMap<String, Timer>() : null;
+			displayMeters = nested && meter != null ? new ConcurrentHashMap<String, Meter>() : null;
+		}
+
+		Timer getDisplayTimer(MetricRegistry registry) {
+			String displayName = RequestContext.getCurrentDisplayName();
+			if (displayName == null)
+				return null;
+			Timer displayTimer = displayTimers.get(displayName);
+			if (displayTimer == null) {
+				displayTimer = registry.timer(displayName + "." + name);
+				displayTimers.putIfAbsent(displayName, displayTimer);
+			}
+			return displayTimer;
+		}
+
+		void mark(MetricRegistry registry) {
+			meter.mark();
+			if (!nested)
+				return;
+			String displayName = RequestContext.getCurrentDisplayName();
+			if (displayName == null)
+				return;
+			Meter displayMeter = displayMeters.get(displayName);
+			if (displayMeter == null) {
+				displayMeter = registry.meter(displayName + "." + name);
+				displayMeters.putIfAbsent(displayName, displayMeter);
+			}
+			displayMeter.mark();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Memory barriers for memory-mapped files shared with other threads or processes, where a reader must never see data written after a flag
+ * (sequence or record number) before the flag itself.<br>
+ * Volatile write is only a release: plain writes that follow it can become visible before it on weakly-ordered CPUs (AArch64, POWER). Fences of
+ * sun.misc.Unsafe (JDK 8 and later) are used when available. On older JDK the fallback is volatile write followed by volatile read of the same
+ * field: it stops reordering by the compiler, which is enough only on x86, where the CPU keeps order of stores and order of loads.<br>
+ * Depends only on JDK, so readers using it can run anywhere the file is copied to.<br>
+ */
+package webmetrics.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+public final class Fences {
+
+	// bound to instance of Unsafe, null if not available
+	private static final MethodHandle STORE_FENCE;
+	private static final MethodHandle LOAD_FENCE;
+	private static volatile int fallback;
+
+	static {
+		MethodHandle storeFence = null;
+		MethodHandle loadFence = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			MethodType type = MethodType.methodType(void.class);
+			storeFence = MethodHandles.lookup().findVirtual(unsafeClass, "storeFence", type).bindTo(unsafe);
+			loadFence = MethodHandles.lookup().findVirtual(unsafeClass, "loadFence", type).bindTo(unsafe);
+		} catch (Exception e) {
+			// JDK 7 or Unsafe not accessible
+			storeFence = null;
+			loadFence = null;
+		}
+		STORE_FENCE = storeFence;
+		LOAD_FENCE = loadFence;
+	}
+
+	private Fences() {
+	}
+
+	/**
+	 * 
+	 * @return false if only the fallback is available, see class description
+	 */
+	public static boolean isAvailable() {
+		return STORE_FENCE != null;
+	}
+
+	/**
+	 * Writes before the fence become visible before writes after it.<br>
+	 */
+	public static void storeStore() {
+		if (STORE_FENCE == null) {
+			compilerFence();
+			return;
+		}
+		try {
+			STORE_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Store fence failed", e);
+		}
+	}
+
+	/**
+	 * Reads before the fence are done before reads after it.<br>
+	 */
+	public static void loadLoad() {
+		if (LOAD_FENCE == null) {
+			compilerFence();
+			return;
+		}
+		try {
+			LOAD_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Load fence failed", e);
+		}
+	}
+
+	/**
+	 * Volatile write followed by volatile read, neither compiler moves plain accesses of mapped buffer across both.<br>
+	 */
+	private static int compilerFence() {
+		fallback = 0;
+		return fallback;
+	}
+}
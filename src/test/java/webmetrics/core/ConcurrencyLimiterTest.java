@@ -0,0 +1,137 @@
+/**
+ * Adaptive concurrency limit: never admits more requests than the limit under concurrent use, grows while latency stays at no-load level and
+ * shrinks when requests queue up. Time is simulated by passing end times of requests.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ConcurrencyLimiterTest extends TestCase {
+
+	private static final long WINDOW_NANO = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long FAST_NANO = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW_NANO = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private long nowNano;
+
+	@Override
+	protected void setUp() {
+		nowNano = System.nanoTime();
+	}
+
+	public void testNeverAdmitsMoreThanLimitConcurrently() throws InterruptedException {
+		// initial limit equals the highest limit, so limit never exceeds it while adapting
+		final ConcurrencyLimiter limiter = new ConcurrencyLimiter(20);
+		final AtomicInteger processing = new AtomicInteger();
+		final AtomicInteger maxProcessing = new AtomicInteger();
+		final AtomicInteger rejected = new AtomicInteger();
+		Thread[] threads = new Thread[32];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						if (!limiter.tryAcquire()) {
+							rejected.incrementAndGet();
+							continue;
+						}
+						int current = processing.incrementAndGet();
+						int max;
+						while (current > (max = maxProcessing.get()) && !maxProcessing.compareAndSet(max, current))
+							;
+						Thread.yield();
+						processing.decrementAndGet();
+						limiter.release(FAST_NANO, System.nanoTime());
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue("max " + maxProcessing.get(), maxProcessing.get() <= 20);
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	public void testRejectsWhenLimitIsTaken() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(5);
+		for (int i = 0; i < 5; i++) {
+			assertTrue(limiter.tryAcquire());
+		}
+		assertFalse(limiter.tryAcquire());
+		limiter.release(FAST_NANO, nowNano);
+		assertTrue(limiter.tryAcquire());
+	}
+
+	public void testLimitGrowsWhileLatencyStaysAtNoLoadLevel() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(100);
+		int initial = limiter.getLimit();
+		runWindows(limiter, 90, FAST_NANO);
+		assertTrue("limit " + limiter.getLimit(), limiter.getLimit() > initial * 2);
+		assertTrue(limiter.getLimit() <= 100);
+		runWindows(limiter, 500, FAST_NANO);
+		assertEquals(100, limiter.getLimit());
+	}
+
+	public void testLimitShrinksWhenRequestsQueueUp() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(100);
+		runWindows(limiter, 40, FAST_NANO);
+		int grown = limiter.getLimit();
+		runWindows(limiter, 20, SLOW_NANO);
+		int shrunk = limiter.getLimit();
+		assertTrue("grown " + grown + ", shrunk " + shrunk, shrunk < grown / 2);
+		// converges to the lowest limit while no-load latency is still the fast one
+		runWindows(limiter, 35, SLOW_NANO);
+		assertTrue("limit " + limiter.getLimit(), limiter.getLimit() <= 2 * ConcurrencyLimiter.MIN_LIMIT);
+		assertTrue(limiter.getLimit() >= ConcurrencyLimiter.MIN_LIMIT);
+	}
+
+	public void testNoLoadLatencyFollowsSlowerService() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(100);
+		runWindows(limiter, 10, FAST_NANO);
+		runWindows(limiter, 90, SLOW_NANO);
+		int shrunk = limiter.getLimit();
+		// no-load latency is measured again, slow latency becomes the normal one
+		runWindows(limiter, 50, SLOW_NANO);
+		assertTrue("shrunk " + shrunk + ", now " + limiter.getLimit(), limiter.getLimit() > shrunk * 2);
+	}
+
+	public void testUnusedLimitIsNotRaised() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(100);
+		int initial = limiter.getLimit();
+		for (int window = 0; window < 50; window++) {
+			nowNano += WINDOW_NANO;
+			// one request at a time, far below half of the limit
+			for (int i = 0; i < 20; i++) {
+				assertTrue(limiter.tryAcquire());
+				limiter.release(FAST_NANO, nowNano);
+			}
+		}
+		assertEquals(initial, limiter.getLimit());
+	}
+
+	/**
+	 * Every window takes all slots of current limit and releases them with given latency at the end of the window.<br>
+	 */
+	private void runWindows(ConcurrencyLimiter limiter, int windows, long latencyNano) {
+		for (int window = 0; window < windows; window++) {
+			nowNano += WINDOW_NANO;
+			int acquired = 0;
+			while (limiter.tryAcquire()) {
+				acquired++;
+			}
+			// at least minimum window samples, so every window is evaluated
+			for (int i = 0; i < acquired; i++) {
+				limiter.release(latencyNano, nowNano);
+			}
+			for (int i = acquired; i < 10; i++) {
+				limiter.tryAcquire();
+				limiter.release(latencyNano, nowNano);
+			}
+		}
+	}
+}
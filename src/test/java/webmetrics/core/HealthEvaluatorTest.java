@@ -0,0 +1,37 @@
+/**
+ * Automatic health checks: error ratio of window from sampled counts, inFlight threshold requires in-flight tracking.<br>
+ */
+package webmetrics.core;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.health.HealthCheck.Result;
+
+import webmetrics.admin.HealthCheckManager;
+
+public class HealthEvaluatorTest extends TestCase {
+
+	public void testErrorRatioOfWindow() {
+		MetricsManager manager = new MetricsManager("webmetrics-health.xml");
+		HealthEvaluator evaluator = manager.getHealthEvaluator();
+		evaluator.evaluate();
+		for (int i = 0; i < 20; i++) {
+			UriTimer timer = manager.startTimerForUri("/payments", null);
+			manager.stopTimer(i % 2 == 0 ? 500 : 200, timer);
+		}
+		assertEquals(20, manager.getRequestCount("payments"));
+		evaluator.evaluate();
+		Result result = HealthCheckManager.getRegistry().runHealthCheck(HealthEvaluator.HEALTH_NAME_PREFIX + ".payments");
+		assertFalse(result.toString(), result.isHealthy());
+		assertTrue(result.getMessage(), result.getMessage().contains("errorRatio"));
+	}
+
+	public void testInFlightThresholdRequiresInFlightTracking() {
+		try {
+			new MetricsManager("webmetrics-health-in-flight.xml");
+			fail("inFlight threshold without enableInFlight");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("enableInFlight"));
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Space-Saving guarantees of HeavyHitters under concurrent offers: no lost updates, frequent URIs monitored and counts never underestimated.<br>
+ */
+package webmetrics.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import webmetrics.core.HeavyHitters.HeavyHitter;
+
+public class HeavyHittersTest extends TestCase {
+
+	public void testExactCountsWithinCapacity() {
+		HeavyHitters heavyHitters = new HeavyHitters(16);
+		for (int i = 0; i < 3; i++) {
+			heavyHitters.offer("/a");
+		}
+		heavyHitters.offer("/b");
+		List<HeavyHitter> top = heavyHitters.getTop();
+		assertEquals(2, top.size());
+		assertEquals("/a", top.get(0).getUri());
+		assertEquals(3, top.get(0).getCount());
+		assertEquals(0, top.get(0).getError());
+		assertEquals(1, top.get(1).getCount());
+	}
+
+	public void testFrequentUrisAreMonitoredUnderConcurrentOffers() throws InterruptedException {
+		final int threads = 8;
+		final int perThread = 50000;
+		final HeavyHitters heavyHitters = new HeavyHitters(64);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int seed = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						// 30% /hot1, 20% /hot2, the rest distinct cold URIs
+						int bucket = i % 10;
+						if (bucket < 3)
+							heavyHitters.offer("/hot1");
+						else if (bucket < 5)
+							heavyHitters.offer("/hot2");
+						else
+							heavyHitters.offer("/cold/" + seed + "/" + i);
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		List<HeavyHitter> top = heavyHitters.getTop();
+		assertTrue(top.size() <= 64);
+		long total = 0;
+		Map<String, HeavyHitter> byUri = new HashMap<String, HeavyHitter>();
+		for (HeavyHitter hitter : top) {
+			total += hitter.getCount();
+			byUri.put(hitter.getUri(), hitter);
+		}
+		// every offer increments exactly one counter, taken over counters keep their count
+		assertEquals(threads * perThread, total);
+		assertEquals("/hot1", top.get(0).getUri());
+		assertEquals("/hot2", top.get(1).getUri());
+		assertBounds(byUri.get("/hot1"), threads * perThread * 3 / 10);
+		assertBounds(byUri.get("/hot2"), threads * perThread * 2 / 10);
+	}
+
+	public void testTimeIsAddedOnlyToMonitoredUris() {
+		HeavyHitters heavyHitters = new HeavyHitters(1);
+		heavyHitters.offer("/a");
+		heavyHitters.addTime("/a", 2000000);
+		heavyHitters.addTime("/b", 5000000);
+		assertEquals(2.0, heavyHitters.getTop().get(0).getTotalMillis(), 0.0001);
+		// /b takes over the only counter, inherits count as error and starts without time
+		heavyHitters.offer("/b");
+		HeavyHitter hitter = heavyHitters.getTop().get(0);
+		assertEquals("/b", hitter.getUri());
+		assertEquals(2, hitter.getCount());
+		assertEquals(1, hitter.getError());
+		assertEquals(0.0, hitter.getTotalMillis(), 0.0001);
+	}
+
+	public void testRejectsNonPositiveCapacity() {
+		try {
+			new HeavyHitters(0);
+			fail("capacity must be positive");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static void assertBounds(HeavyHitter hitter, long actual) {
+		assertNotNull(hitter);
+		assertTrue(hitter.getCount() >= actual);
+		assertTrue(hitter.getCount() - hitter.getError() <= actual);
+	}
+}
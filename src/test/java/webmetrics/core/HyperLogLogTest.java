@@ -0,0 +1,106 @@
+/**
+ * Accuracy of HyperLogLog estimates, union without merging and lock-free concurrent adds.<br>
+ */
+package webmetrics.core;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class HyperLogLogTest extends TestCase {
+
+	public void testEmptySketchEstimatesZero() {
+		assertEquals(0, new HyperLogLog().estimate());
+	}
+
+	public void testEstimatesWithinErrorBounds() {
+		for (int cardinality : new int[] { 10, 1000, 20000, 200000 }) {
+			HyperLogLog sketch = new HyperLogLog();
+			for (int i = 0; i < cardinality; i++) {
+				// duplicates must not change estimate
+				sketch.add(HyperLogLog.hash("consumer-" + i));
+				sketch.add(HyperLogLog.hash("consumer-" + i));
+			}
+			// 3 standard errors
+			assertEquals("cardinality " + cardinality, cardinality, sketch.estimate(), Math.max(1, cardinality * 0.07));
+		}
+	}
+
+	public void testUnionEstimateWithoutMerging() {
+		HyperLogLog first = new HyperLogLog();
+		HyperLogLog second = new HyperLogLog();
+		HyperLogLog both = new HyperLogLog();
+		for (int i = 0; i < 30000; i++) {
+			// half of values is shared
+			long hash = HyperLogLog.hash("id" + i);
+			(i % 2 == 0 ? first : second).add(hash);
+			first.add(HyperLogLog.hash("shared" + i));
+			second.add(HyperLogLog.hash("shared" + i));
+			both.add(hash);
+			both.add(HyperLogLog.hash("shared" + i));
+		}
+		assertEquals(both.estimate(), HyperLogLog.estimate(first, second));
+	}
+
+	public void testConcurrentAddsKeepEveryRegister() throws InterruptedException {
+		final int threads = 8;
+		final int values = 50000;
+		final HyperLogLog concurrent = new HyperLogLog();
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					// every thread adds all values in different order, so threads race on the same registers
+					for (int i = 0; i < values; i++) {
+						concurrent.add(HyperLogLog.hash("v" + (i + offset * 7919) % values));
+					}
+				}
+			};
+			workers[t].start();
+		}
+		HyperLogLog sequential = new HyperLogLog();
+		for (int i = 0; i < values; i++) {
+			sequential.add(HyperLogLog.hash("v" + i));
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		// registers keep maximum rank, result does not depend on order, so a lost CAS update would show as different register
+		for (int register = 0; register < HyperLogLog.REGISTERS; register++) {
+			assertEquals(sequential.get(register), concurrent.get(register));
+		}
+	}
+
+	public void testClear() {
+		HyperLogLog sketch = new HyperLogLog();
+		sketch.add(HyperLogLog.hash("a"));
+		sketch.clear();
+		assertEquals(0, sketch.estimate());
+	}
+
+	public void testUniqueConsumersWindowMustBeMultipleOfQuarters() {
+		for (int window : new int[] { 0, 1, 5, 30 }) {
+			try {
+				new UniqueConsumers(window);
+				fail("window " + window + " is not positive multiple of 4");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testUniqueConsumersGauges() {
+		UniqueConsumers consumers = new UniqueConsumers(8);
+		for (int i = 0; i < 100; i++) {
+			consumers.add("consumer" + (i % 40));
+		}
+		MetricRegistry registry = new MetricRegistry();
+		consumers.registerGauges(registry, "orders");
+		assertTrue(registry.getGauges().containsKey("orders.uniqueConsumers.1m"));
+		assertEquals(40, (Long) registry.getGauges().get("orders.uniqueConsumers.8m").getValue(), 2);
+		// first minute is not complete yet
+		assertEquals(0, consumers.getLastMinute());
+	}
+}
@@ -0,0 +1,41 @@
+package webmetrics.core;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class InFlightMetricsTest extends TestCase {
+
+	private static final long INTERVAL = TimeUnit.SECONDS.toNanos(60);
+
+	public void testMeanOfCurrentIntervalUntilFirstCompletes() {
+		InFlightMetrics.MeanDuration duration = new InFlightMetrics.MeanDuration(INTERVAL);
+		// interval ends at most INTERVAL after start
+		long start = System.nanoTime();
+		assertEquals(0.0, duration.getMean(start));
+		duration.add(100, start);
+		duration.add(300, start);
+		assertEquals(200.0, duration.getMean(start));
+	}
+
+	public void testMeanOfLastCompleteInterval() {
+		InFlightMetrics.MeanDuration duration = new InFlightMetrics.MeanDuration(INTERVAL);
+		// interval ends at most INTERVAL after start
+		long start = System.nanoTime();
+		duration.add(100, start);
+		duration.add(300, start);
+		// rotated by first add of next interval, which counts to the new interval
+		duration.add(1000, start + INTERVAL + 1);
+		assertEquals(200.0, duration.getMean(start + INTERVAL + 1));
+		assertEquals(1000.0, duration.getMean(start + 2 * INTERVAL + 1));
+	}
+
+	public void testMeanKeptWhenNoRequestEnded() {
+		InFlightMetrics.MeanDuration duration = new InFlightMetrics.MeanDuration(INTERVAL);
+		// interval ends at most INTERVAL after start
+		long start = System.nanoTime();
+		duration.add(500, start);
+		assertEquals(500.0, duration.getMean(start + INTERVAL + 1));
+		assertEquals(500.0, duration.getMean(start + 5 * INTERVAL + 1));
+	}
+}
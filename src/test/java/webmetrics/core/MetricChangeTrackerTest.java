@@ -0,0 +1,89 @@
+/**
+ * Change tracking export: only changed counting metrics with exact deltas, gauges only on request, full export for versions of another epoch or
+ * too old versions.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import webmetrics.core.MetricChangeTracker.ChangeSet;
+
+public class MetricChangeTrackerTest extends TestCase {
+
+	private MetricRegistry registry;
+	private MetricChangeTracker tracker;
+	private final AtomicInteger gaugeReads = new AtomicInteger();
+
+	@Override
+	protected void setUp() {
+		registry = new MetricRegistry();
+		tracker = new MetricChangeTracker(registry);
+		registry.counter("idle").inc(3);
+		registry.meter("busy").mark(5);
+		registry.register("gauge", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return gaugeReads.incrementAndGet();
+			}
+		});
+	}
+
+	public void testOnlyChangedMetricsWithDeltas() {
+		ChangeSet all = tracker.getChangesSince(null, false);
+		assertTrue(all.isExact());
+		assertEquals(2, all.getMetrics().size());
+		assertEquals(Long.valueOf(5), all.getDeltas().get("busy"));
+
+		registry.meter("busy").mark(2);
+		ChangeSet changes = tracker.getChangesSince(all.getVersion(), false);
+		assertTrue(changes.isExact());
+		assertEquals(1, changes.getMetrics().size());
+		assertEquals(Long.valueOf(2), changes.getDeltas().get("busy"));
+
+		ChangeSet none = tracker.getChangesSince(changes.getVersion(), false);
+		assertTrue(none.getMetrics().isEmpty());
+		// delta from any of the recent versions is exact
+		ChangeSet sinceFirst = tracker.getChangesSince(all.getVersion(), false);
+		assertEquals(Long.valueOf(2), sinceFirst.getDeltas().get("busy"));
+	}
+
+	public void testGaugesAreReadOnlyOnRequest() {
+		for (int i = 0; i < 5; i++) {
+			assertFalse(tracker.getChangesSince(null, false).getMetrics().containsKey("gauge"));
+		}
+		assertEquals(0, gaugeReads.get());
+		ChangeSet withGauges = tracker.getChangesSince(null, true);
+		assertTrue(withGauges.getMetrics().containsKey("gauge"));
+		// value is computed when change set is serialized, not by the tracker
+		assertEquals(0, gaugeReads.get());
+	}
+
+	public void testVersionOfAnotherEpochGetsFullExport() {
+		ChangeSet first = tracker.getChangesSince(null, false);
+		tracker.getChangesSince(first.getVersion(), false);
+		// application restarted, new tracker counts versions from 1 again
+		MetricChangeTracker restarted = new MetricChangeTracker(registry);
+		restarted.getChangesSince(null, false);
+		ChangeSet changes = restarted.getChangesSince(first.getVersion(), false);
+		assertFalse(changes.isExact());
+		assertEquals(2, changes.getMetrics().size());
+		assertEquals(Long.valueOf(3), changes.getDeltas().get("idle"));
+		assertFalse(restarted.getChangesSince("garbage", false).isExact());
+	}
+
+	public void testTooOldVersionGetsFullExport() {
+		String old = tracker.getChangesSince(null, false).getVersion();
+		for (int i = 0; i < MetricChangeTracker.HISTORY; i++) {
+			tracker.getChangesSince(null, false);
+		}
+		ChangeSet changes = tracker.getChangesSince(old, false);
+		assertFalse(changes.isExact());
+		assertEquals(2, changes.getMetrics().size());
+		assertEquals(Long.valueOf(5), changes.getDeltas().get("busy"));
+	}
+}
@@ -0,0 +1,19 @@
+/**
+ * Creates request contexts for tests of components outside of core package, as MetricsManager does when measured request starts.<br>
+ */
+package webmetrics.core;
+
+public class RequestContexts {
+
+	/**
+	 * Assigns new context of given display to current thread.<br>
+	 * 
+	 * @param displayName
+	 * @return assigned context, detach with RequestContext.attach(null)
+	 */
+	public static RequestContext attach(String displayName) {
+		RequestContext context = new RequestContext(displayName);
+		RequestContext.attach(context);
+		return context;
+	}
+}
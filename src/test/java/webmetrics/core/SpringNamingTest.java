@@ -0,0 +1,59 @@
+/**
+ * Spring naming: display of handler pattern is generated as dotted name, requests that reach no handler get their display when payload and
+ * response timing are recorded, before stopTimer.<br>
+ */
+package webmetrics.core;
+
+import junit.framework.TestCase;
+
+public class SpringNamingTest extends TestCase {
+
+	private MetricsManager manager;
+
+	@Override
+	protected void setUp() {
+		// own manager for every test, registry starts empty
+		manager = new MetricsManager("webmetrics-spring-naming.xml");
+	}
+
+	public void testRequestWithoutHandlerIsRecordedAsNonWhiteListed() {
+		assertTrue(manager.isPayloadSizeEnabled());
+		assertTrue(manager.isResponseTimingEnabled());
+		UriTimer timer = manager.startTimerForUri("/missing", null);
+		assertNull(timer.getMetricName());
+		long now = System.nanoTime();
+		manager.recordPayload(timer, 10, 20);
+		manager.recordResponseTiming(timer, now, now);
+		manager.stopTimer(404, timer);
+		assertEquals("other", timer.getMetricName());
+		assertEquals(1, manager.getMetricsRegistry().histogram("other." + PayloadMetrics.BYTES_NAME_PREFIX + ".response").getCount());
+		assertEquals(1, manager.getRequestCount("other"));
+	}
+
+	public void testPatternIsMeasuredAsDottedDisplay() {
+		UriTimer timer = manager.startTimerForUri("/orders/1/items/7", null);
+		manager.nameTimer(timer, "/orders/{id}/items/{item:[0-9]+}");
+		manager.recordPayload(timer, 0, 0);
+		manager.stopTimer(200, timer);
+		assertEquals("orders.id.items.item", timer.getMetricName());
+		assertEquals(1, manager.getRequestCount("orders.id.items.item"));
+		for (String name : manager.getMetricsRegistry().getNames()) {
+			assertTrue(name, name.indexOf('/') < 0 && name.indexOf('{') < 0);
+		}
+	}
+
+	public void testNamedTimerIsNotRenamed() {
+		UriTimer timer = manager.startTimerForUri("/orders/1", null);
+		manager.nameTimer(timer, "/orders/{id}");
+		manager.nameTimer(timer, "/**");
+		manager.stopTimer(200, timer);
+		assertEquals("orders.id", timer.getMetricName());
+	}
+
+	public void testPatternWithoutElementIsNonWhiteListed() {
+		UriTimer timer = manager.startTimerForUri("/", null);
+		manager.nameTimer(timer, "/");
+		manager.stopTimer(200, timer);
+		assertEquals("other", timer.getMetricName());
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Multi-threaded benchmark of striped recording against direct updates of Dropwizard Timer and Meter, as done for every request of a display.<br>
+ * Not run by the build, run main method with test classpath and arguments [threads] [seconds], default is number of processors and 5 seconds per
+ * round.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+public class StripedRecorderBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		final Timer directTimer = new Timer();
+		final Meter directMeter = new Meter();
+		final Counter directBucket = new Counter();
+		StripedRecorder recorder = new StripedRecorder(2);
+		final Timer stripedTimer = new StripedTimer(recorder);
+		final Meter stripedMeter = new StripedMeter(recorder, 0);
+		final Counter stripedBucket = new StripedCounter(recorder, 1);
+		// warm up both paths before measuring
+		for (int round = 0; round < 2; round++) {
+			boolean measured = round == 1;
+			report("direct", threads, run(threads, measured ? seconds : 1, directTimer, directMeter, directBucket), measured);
+			report("striped", threads, run(threads, measured ? seconds : 1, stripedTimer, stripedMeter, stripedBucket), measured);
+		}
+		System.out.println("merged count " + stripedTimer.getCount() + ", p99 " + stripedTimer.getSnapshot().get99thPercentile() + "ns");
+	}
+
+	private static long run(int threadCount, int seconds, final Timer timer, final Meter meter, final Counter bucket)
+			throws InterruptedException {
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong operations = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		for (int t = 0; t < threadCount; t++) {
+			new Thread() {
+				@Override
+				public void run() {
+					long count = 0;
+					while (running.get()) {
+						timer.update(count & 1023, TimeUnit.NANOSECONDS);
+						meter.mark();
+						bucket.inc();
+						count++;
+					}
+					operations.addAndGet(count);
+					done.countDown();
+				}
+			}.start();
+		}
+		TimeUnit.SECONDS.sleep(seconds);
+		running.set(false);
+		done.await();
+		return operations.get() / seconds;
+	}
+
+	private static void report(String name, int threads, long perSecond, boolean measured) {
+		if (measured)
+			System.out.println(String.format("%-8s %3d threads %,15d requests/s", name, threads, perSecond));
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * Merging of per-thread buffers, retirement of buffers of dead threads and fixed tick rates of StripedRecorder.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.Snapshot;
+
+public class StripedRecorderTest extends TestCase {
+
+	private static final int THREADS = 8;
+	private static final int PER_THREAD = 20000;
+
+	public void testMergesBuffersOfAllThreads() throws Exception {
+		final StripedRecorder recorder = new StripedRecorder(2);
+		runThreads(recorder, THREADS, PER_THREAD);
+		assertEquals(THREADS * PER_THREAD, recorder.getDurationCount());
+		assertEquals(3L * THREADS * PER_THREAD, recorder.getDurationSum());
+		assertEquals(THREADS * PER_THREAD, recorder.getCellValue(0));
+		assertEquals(2L * THREADS * PER_THREAD, recorder.getCellValue(1));
+	}
+
+	public void testRetiresBuffersOfDeadThreadsKeepingCounts() throws Exception {
+		StripedRecorder recorder = new StripedRecorder(2);
+		runThreads(recorder, THREADS, PER_THREAD);
+		assertEquals(THREADS, recorder.getBufferCount());
+		recorder.tick();
+		assertEquals(0, recorder.getBufferCount());
+		assertEquals(THREADS * PER_THREAD, recorder.getDurationCount());
+		assertEquals(3L * THREADS * PER_THREAD, recorder.getDurationSum());
+		assertEquals(2L * THREADS * PER_THREAD, recorder.getCellValue(1));
+		// new threads add to retired totals
+		runThreads(recorder, 2, 10);
+		assertEquals(THREADS * PER_THREAD + 20, recorder.getDurationCount());
+	}
+
+	public void testKeepsBufferOfLiveThread() throws Exception {
+		final StripedRecorder recorder = new StripedRecorder(0);
+		final CountDownLatch recorded = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				recorder.recordDuration(5);
+				recorded.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		thread.start();
+		assertTrue(recorded.await(10, TimeUnit.SECONDS));
+		recorder.tick();
+		assertEquals(1, recorder.getBufferCount());
+		release.countDown();
+		thread.join();
+		recorder.tick();
+		assertEquals(0, recorder.getBufferCount());
+		assertEquals(1, recorder.getDurationCount());
+	}
+
+	public void testRatesAreMarkedOnlyOnTick() throws Exception {
+		StripedRecorder recorder = new StripedRecorder(1);
+		StripedRecorder.MergedRate durations = recorder.newDurationRate();
+		StripedRecorder.MergedRate cell = recorder.newCellRate(0);
+		runThreads(recorder, 2, 100);
+		// reading does not feed rates, so they do not depend on how often JMX polls
+		durations.getMeter().getOneMinuteRate();
+		assertEquals(0, durations.getMeter().getCount());
+		recorder.tick();
+		assertEquals(200, durations.getMeter().getCount());
+		assertEquals(200, cell.getMeter().getCount());
+		recorder.tick();
+		assertEquals(200, durations.getMeter().getCount());
+		runThreads(recorder, 1, 50);
+		recorder.tick();
+		assertEquals(250, durations.getMeter().getCount());
+	}
+
+	public void testSnapshotKeepsMostRecentDurationsOfThread() {
+		StripedRecorder recorder = new StripedRecorder(0);
+		for (int i = 1; i <= 200; i++) {
+			recorder.recordDuration(i);
+		}
+		Snapshot snapshot = recorder.getDurationSnapshot();
+		assertEquals(StripedRecorder.SAMPLE_SIZE, snapshot.size());
+		assertEquals(200 - StripedRecorder.SAMPLE_SIZE + 1, snapshot.getMin());
+		assertEquals(200, snapshot.getMax());
+	}
+
+	public void testTimerMeterAndCounterViewsShareRecorder() {
+		StripedRecorder recorder = new StripedRecorder(2);
+		StripedTimer timer = new StripedTimer(recorder);
+		StripedCounter counter = new StripedCounter(recorder, 0);
+		StripedMeter meter = new StripedMeter(recorder, 1);
+		timer.update(2, TimeUnit.MILLISECONDS);
+		timer.update(-1, TimeUnit.MILLISECONDS);
+		counter.inc(3);
+		counter.dec();
+		meter.mark();
+		assertEquals(1, timer.getCount());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(2), timer.getSnapshot().getMax());
+		assertEquals(2, counter.getCount());
+		assertEquals(1, meter.getCount());
+		assertEquals(0, meter.getCount() - recorder.getCellValue(1));
+	}
+
+	/**
+	 * Every thread records given number of durations of 3 nanoseconds, adds 1 to cell 0 and 2 to cell 1 (if present) per duration.<br>
+	 */
+	private static void runThreads(final StripedRecorder recorder, int threadCount, final int perThread) throws InterruptedException {
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						recorder.recordDuration(3);
+						if (recorder.getCellCount() > 0)
+							recorder.addToCell(0, 1);
+						if (recorder.getCellCount() > 1)
+							recorder.addToCell(1, 2);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+}
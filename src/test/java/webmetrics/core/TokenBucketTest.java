@@ -0,0 +1,96 @@
+/**
+ * Token bucket: burst at once, refill at configured rate, no accumulation over burst and exact token count under concurrent acquiring.<br>
+ */
+package webmetrics.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TokenBucketTest extends TestCase {
+
+	private static final long SECOND_NANO = TimeUnit.SECONDS.toNanos(1);
+
+	public void testBurstThenRefillAtRate() {
+		TokenBucket bucket = new TokenBucket(10, 5);
+		long now = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			assertTrue("token " + i, bucket.tryAcquire(now));
+		}
+		assertFalse(bucket.tryAcquire(now));
+		// one token per 100 ms
+		assertFalse(bucket.tryAcquire(now + SECOND_NANO / 10 - 1000));
+		assertTrue(bucket.tryAcquire(now + SECOND_NANO / 10));
+		assertFalse(bucket.tryAcquire(now + SECOND_NANO / 10));
+	}
+
+	public void testIdleBucketHoldsOnlyBurst() {
+		TokenBucket bucket = new TokenBucket(10, 5);
+		long later = System.nanoTime() + 60 * SECOND_NANO;
+		int acquired = 0;
+		while (bucket.tryAcquire(later)) {
+			acquired++;
+		}
+		assertEquals(5, acquired);
+	}
+
+	public void testSustainedRate() {
+		TokenBucket bucket = new TokenBucket(50, 10);
+		long start = System.nanoTime();
+		int acquired = 0;
+		// a request every millisecond for 10 seconds
+		for (long t = 0; t < 10 * SECOND_NANO; t += TimeUnit.MILLISECONDS.toNanos(1)) {
+			if (bucket.tryAcquire(start + t))
+				acquired++;
+		}
+		assertEquals(10 + 50 * 10, acquired, 2);
+	}
+
+	public void testConcurrentAcquiringTakesExactlyAvailableTokens() throws InterruptedException {
+		final TokenBucket bucket = new TokenBucket(1, 1000);
+		final long now = System.nanoTime();
+		final AtomicInteger acquired = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					// time does not move, so no token is refilled
+					for (int i = 0; i < 1000; i++) {
+						if (bucket.tryAcquire(now))
+							acquired.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1000, acquired.get());
+	}
+
+	public void testRejectsInvalidParameters() {
+		try {
+			new TokenBucket(0, 1);
+			fail("rate must be positive");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new TokenBucket(1, 0);
+			fail("burst must be positive");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
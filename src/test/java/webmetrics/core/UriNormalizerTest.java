@@ -0,0 +1,79 @@
+package webmetrics.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+public class UriNormalizerTest extends TestCase {
+
+	public void testPlaceholders() {
+		UriNormalizer normalizer = new UriNormalizer("other", true, 100);
+		assertEquals("other.users._id_.avatar", normalizer.getDisplayMetricName("/ctx/users/12345/avatar"));
+		assertEquals("other.files._uuid_", normalizer.getDisplayMetricName("/ctx/files/123e4567-e89b-12d3-a456-426614174000"));
+		assertEquals("other.blobs._hex_", normalizer.getDisplayMetricName("/ctx/blobs/0123456789abcdef0123"));
+		assertEquals("other.search._token_", normalizer.getDisplayMetricName("/ctx/search/a%20b"));
+		assertEquals("other.static.app_js", normalizer.getDisplayMetricName("/ctx/static/app.js;jsessionid=1"));
+		assertEquals("other.ctx.users", new UriNormalizer("other", false, 100).getDisplayMetricName("/ctx/users"));
+	}
+
+	public void testNamesOverCapUsePrefix() {
+		UriNormalizer normalizer = new UriNormalizer("other", false, 2);
+		assertEquals("other.a", normalizer.getDisplayMetricName("/a"));
+		assertEquals("other.b._id_", normalizer.getDisplayMetricName("/b/1"));
+		assertEquals("other.b._id_", normalizer.getDisplayMetricName("/b/2"));
+		assertEquals("other", normalizer.getDisplayMetricName("/c"));
+		// known names are still reported after cap is reached
+		assertEquals("other.a", normalizer.getDisplayMetricName("/a/"));
+		assertEquals(2, normalizer.getNameCount());
+	}
+
+	public void testConcurrentNamesDoNotExceedCap() throws Exception {
+		final int maxNames = 50;
+		final UriNormalizer normalizer = new UriNormalizer("other", false, maxNames);
+		final Set<String> reported = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					// every thread walks the same names in different order, so that misses race
+					for (int i = 0; i < 500; i++) {
+						reported.add(normalizer.getDisplayMetricName("/name" + (i + offset * 61) % 500));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(maxNames, normalizer.getNameCount());
+		Set<String> expected = new HashSet<String>(reported);
+		expected.remove("other");
+		assertEquals(maxNames, expected.size());
+	}
+
+	public void testCacheKeepsHotUris() {
+		// 10 cached URIs per name, 5 per generation
+		UriNormalizer normalizer = new UriNormalizer("other", false, 1);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("other.hot", normalizer.getDisplayMetricName("/hot"));
+			normalizer.getDisplayMetricName("/cold" + i);
+			assertTrue(normalizer.getCachedUriCount() <= 10);
+		}
+		assertEquals("other.hot", normalizer.getDisplayMetricName("/hot"));
+		assertEquals(1, normalizer.getNameCount());
+	}
+}
@@ -0,0 +1,119 @@
+package webmetrics.core;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import webmetrics.config.ConfigReader;
+
+public class UriTemplateTest extends TestCase {
+
+	public void testVariable() {
+		UriTemplate template = UriTemplate.compile("/ctx/users/{id}");
+		assertTrue(template.matches("/ctx/users/42"));
+		assertTrue(template.matches("/ctx/users/abc"));
+		assertFalse(template.matches("/ctx/users"));
+		assertFalse(template.matches("/ctx/users/42/orders"));
+		assertFalse(template.matches("/ctx/customers/42"));
+		assertEquals(Arrays.asList("id"), template.getVariableNames());
+		assertEquals(3, template.getSegmentCount());
+	}
+
+	public void testCharClassRegex() {
+		UriTemplate template = UriTemplate.compile("/ctx/orders/{x:[0-9]+}");
+		assertTrue(template.matches("/ctx/orders/1"));
+		assertTrue(template.matches("/ctx/orders/12345"));
+		assertFalse(template.matches("/ctx/orders/12a"));
+		assertFalse(template.matches("/ctx/orders/"));
+	}
+
+	public void testBoundedQuantifier() {
+		UriTemplate template = UriTemplate.compile("/ctx/files/{hash:[a-f0-9]{32}}");
+		assertTrue(template.matches("/ctx/files/0123456789abcdef0123456789abcdef"));
+		assertFalse(template.matches("/ctx/files/0123456789abcdef0123456789abcde"));
+		assertFalse(template.matches("/ctx/files/0123456789abcdef0123456789abcdef0"));
+		assertFalse(template.matches("/ctx/files/0123456789ABCDEF0123456789abcdef"));
+	}
+
+	public void testShorthand() {
+		UriTemplate template = UriTemplate.compile("/ctx/reports/{year:\\d{4}}");
+		assertTrue(template.matches("/ctx/reports/2016"));
+		assertFalse(template.matches("/ctx/reports/16"));
+		assertFalse(template.matches("/ctx/reports/20x6"));
+	}
+
+	public void testWildCard() {
+		UriTemplate template = UriTemplate.compile("/ctx/*/orders");
+		assertTrue(template.matches("/ctx/users/orders"));
+		assertFalse(template.matches("/ctx/orders"));
+		assertFalse(template.matches("/ctx/a/b/orders"));
+		assertTrue(template.getVariableNames().isEmpty());
+	}
+
+	public void testDoubleWildCard() {
+		UriTemplate template = UriTemplate.compile("/ctx/users/{id}/**");
+		assertTrue(template.isOpenEnded());
+		assertTrue(template.matches("/ctx/users/42"));
+		assertTrue(template.matches("/ctx/users/42/orders"));
+		assertTrue(template.matches("/ctx/users/42/orders/7/items"));
+		assertFalse(template.matches("/ctx/users"));
+		assertEquals(3, template.getSegmentCount());
+	}
+
+	public void testRegexFallback() {
+		// alternation is not a single character class, matched by java.util.regex
+		UriTemplate template = UriTemplate.compile("/ctx/{format:(json|xml)}");
+		assertTrue(template.matches("/ctx/json"));
+		assertTrue(template.matches("/ctx/xml"));
+		assertFalse(template.matches("/ctx/csv"));
+		assertFalse(template.matches("/ctx/jsonx"));
+	}
+
+	public void testSlashInVariableRegex() {
+		UriTemplate template = UriTemplate.compile("/ctx/items/{v:[^/]+}/details");
+		assertEquals(4, template.getSegmentCount());
+		assertTrue(template.matches("/ctx/items/a.b/details"));
+		assertFalse(template.matches("/ctx/items/a/b/details"));
+		assertEquals(Arrays.asList("", "ctx", "{v:[^/]+}", "{x:[a-f0-9]{32}}"), UriTemplate.splitPath("/ctx/{v:[^/]+}/{x:[a-f0-9]{32}}"));
+		assertEquals("items.v.details", ConfigReader.generateDisplayName("/ctx/items/{v:[^/]+}/details", true));
+	}
+
+	public void testRootAndTrailingSlash() {
+		assertTrue(UriTemplate.compile("/**").matches("/"));
+		assertTrue(UriTemplate.compile("/**").matches("/anything/at/all"));
+		assertTrue(UriTemplate.compile("/ctx/{id}/").matches("/ctx/1"));
+	}
+
+	public void testInvalidTemplates() {
+		String[] invalid = { "ctx/{id}", "/ctx/user{id}", "/ctx/my*Car", "/ctx/**/orders", "/ctx//orders", "/ctx/{id}/{id}", "/ctx/{a-b}",
+						"/ctx/{id:[0-9}", "/ctx/{id" };
+		for (String template : invalid) {
+			try {
+				UriTemplate.compile(template);
+				fail("Expected IllegalArgumentException for " + template);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testWhitelistMatchesInRegistrationOrder() {
+		Map<String, String> uris = new LinkedHashMap<String, String>();
+		uris.put("/ctx/users/me", "me");
+		uris.put("/ctx/users/{id:\\d+}", "userById");
+		uris.put("/ctx/users/{name}", "userByName");
+		uris.put("/ctx/users/{id}/**", "userTree");
+		uris.put("/ctx/{format:(json|xml)}", "format");
+		UriWhitelistManagerImpl3 whitelist = new UriWhitelistManagerImpl3();
+		whitelist.initialize(uris);
+		assertEquals("me", whitelist.getDisplayMetricName("/ctx/users/me"));
+		assertEquals("userById", whitelist.getDisplayMetricName("/ctx/users/42/"));
+		assertEquals("userByName", whitelist.getDisplayMetricName("/ctx/users/joe"));
+		assertEquals("userTree", whitelist.getDisplayMetricName("/ctx/users/42/orders/7/items/3/notes"));
+		assertEquals("format", whitelist.getDisplayMetricName("/ctx/json"));
+		assertNull(whitelist.getDisplayMetricName("/ctx/csv"));
+		assertNull(whitelist.getDisplayMetricName("/other"));
+	}
+}
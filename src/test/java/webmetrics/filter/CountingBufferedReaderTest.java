@@ -0,0 +1,141 @@
+/**
+ * Counting of request reader: exact line terminators, multi-byte characters and lines longer than read ahead chunk.<br>
+ */
+package webmetrics.filter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+public class CountingBufferedReaderTest extends TestCase {
+
+	public void testCountsEveryLineTerminator() throws IOException {
+		String body = "a\r\nbb\nccc\rdddd\r\n\r\n\r";
+		CountingBufferedReader reader = reader(body, "UTF-8");
+		assertEquals("a", reader.readLine());
+		assertEquals("bb", reader.readLine());
+		assertEquals("ccc", reader.readLine());
+		assertEquals("dddd", reader.readLine());
+		assertEquals("", reader.readLine());
+		assertEquals("", reader.readLine());
+		assertNull(reader.readLine());
+		assertEquals(body.length(), reader.getCount());
+	}
+
+	public void testLastLineWithoutTerminator() throws IOException {
+		CountingBufferedReader reader = reader("first\nlast", "ISO-8859-1");
+		assertEquals("first", reader.readLine());
+		assertEquals("last", reader.readLine());
+		assertNull(reader.readLine());
+		assertEquals(10, reader.getCount());
+	}
+
+	public void testLinesLongerThanChunk() throws IOException {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			longLine.append((char) ('a' + i % 26));
+		}
+		// "\r" at every possible position relative to chunk boundary
+		StringBuilder body = new StringBuilder();
+		for (int i = 250; i < 260; i++) {
+			body.append(longLine, 0, i).append("\r\n");
+		}
+		body.append(longLine).append('\n');
+		CountingBufferedReader reader = reader(body.toString(), "UTF-8");
+		for (int i = 250; i < 260; i++) {
+			assertEquals(longLine.substring(0, i), reader.readLine());
+		}
+		assertEquals(longLine.toString(), reader.readLine());
+		assertNull(reader.readLine());
+		assertEquals(body.length(), reader.getCount());
+	}
+
+	public void testCountsEncodedBytes() throws IOException {
+		// 2 bytes, 3 bytes and surrogate pair of 4 bytes in UTF-8
+		String body = "é€😀\n";
+		CountingBufferedReader reader = reader(body, "UTF-8");
+		assertEquals("é€😀", reader.readLine());
+		assertEquals(body.getBytes("UTF-8").length, reader.getCount());
+	}
+
+	public void testMixedReadsAndSkip() throws IOException {
+		CountingBufferedReader reader = reader("xy\r\nline\r\nrest", "UTF-8");
+		assertEquals('x', reader.read());
+		assertEquals("y", reader.readLine());
+		assertEquals(2, reader.skip(2));
+		assertEquals("ne", reader.readLine());
+		char[] buf = new char[10];
+		assertEquals(4, reader.read(buf, 0, 10));
+		assertEquals(-1, reader.read());
+		assertEquals(14, reader.getCount());
+	}
+
+	public void testApplicationMarkAndReset() throws IOException {
+		String body = "head\r\nbody line\r\nlast";
+		CountingBufferedReader reader = reader(body, "UTF-8");
+		assertTrue(reader.markSupported());
+		assertEquals("head", reader.readLine());
+		reader.mark(100);
+		assertEquals("body line", reader.readLine());
+		assertEquals('l', reader.read());
+		// characters read again after reset are counted once
+		reader.reset();
+		assertEquals("body line", reader.readLine());
+		assertEquals("last", reader.readLine());
+		assertNull(reader.readLine());
+		assertEquals(body.length(), reader.getCount());
+	}
+
+	public void testResetWithoutMark() {
+		try {
+			reader("a", "UTF-8").reset();
+			fail("reset without mark");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testContainerReaderWithoutMark() throws IOException {
+		String body = "a\r\nbb\rccc\n\r";
+		CountingBufferedReader reader = new CountingBufferedReader(new BufferedReader(new StringReader(body)) {
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+
+			@Override
+			public void mark(int readAheadLimit) throws IOException {
+				throw new IOException("mark() not supported");
+			}
+		}, "UTF-8");
+		assertFalse(reader.markSupported());
+		assertEquals("a", reader.readLine());
+		assertEquals("bb", reader.readLine());
+		assertEquals('c', reader.read());
+		assertEquals("cc", reader.readLine());
+		assertEquals("", reader.readLine());
+		assertNull(reader.readLine());
+		assertEquals(body.length(), reader.getCount());
+	}
+
+	public void testLineFeedAfterCarriageReturnAtChunkEndIsSkippedByRead() throws IOException {
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 255; i++) {
+			body.append('a');
+		}
+		body.append("\r\nz");
+		CountingBufferedReader reader = reader(body.toString(), "UTF-8");
+		assertEquals(255, reader.readLine().length());
+		char[] buf = new char[4];
+		assertEquals(1, reader.read(buf, 0, 4));
+		assertEquals('z', buf[0]);
+		assertEquals(body.length(), reader.getCount());
+	}
+
+	private static CountingBufferedReader reader(String body, String encoding) {
+		// small buffer of container reader, so chunks of readLine() span refills
+		return new CountingBufferedReader(new BufferedReader(new StringReader(body), 300), encoding);
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * Outbound call metrics of InstrumentedHttpURLConnection against embedded stub HTTP server.<br>
+ */
+package webmetrics.http;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import webmetrics.core.RequestContext;
+import webmetrics.core.RequestContexts;
+
+public class InstrumentedHttpURLConnectionTest extends TestCase {
+
+	private static final byte[] BODY = "hello downstream".getBytes();
+
+	private HttpServer server;
+	private MetricRegistry registry;
+	private HttpClientMetrics clientMetrics;
+
+	@Override
+	protected void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				InputStream in = exchange.getRequestBody();
+				while (in.read() >= 0) {
+				}
+				// path is the status to respond with, i.e. "/404"
+				int status = Integer.parseInt(exchange.getRequestURI().getPath().substring(1));
+				boolean head = "HEAD".equals(exchange.getRequestMethod());
+				exchange.sendResponseHeaders(status, head ? -1 : BODY.length);
+				if (!head) {
+					OutputStream out = exchange.getResponseBody();
+					out.write(BODY);
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		registry = new MetricRegistry();
+		clientMetrics = new HttpClientMetrics(registry);
+	}
+
+	@Override
+	protected void tearDown() {
+		server.stop(0);
+		RequestContext.attach(null);
+	}
+
+	public void testRecordsReadResponseUnderDisplay() throws IOException {
+		RequestContext context = RequestContexts.attach("orders");
+		HttpURLConnection connection = open("/200");
+		assertEquals(BODY.length, readFully(connection.getInputStream()));
+		clientMetrics.recordRequest(context);
+
+		assertEquals(1, registry.timer("http.stub.latency").getCount());
+		assertEquals(1, registry.meter("http.stub.status.2xx").getCount());
+		assertEquals(BODY.length, registry.histogram("http.stub.bytesIn").getSnapshot().getMax());
+		assertEquals(1, registry.timer("orders.http.stub.latency").getCount());
+		assertEquals(1, registry.meter("orders.http.stub.status.2xx").getCount());
+		assertEquals(1, registry.timer("orders.http.time").getCount());
+		assertEquals(1, context.getOutboundCalls());
+	}
+
+	public void testRecordsCallThatOnlyReadsStatus() throws IOException {
+		HttpURLConnection connection = open("/204");
+		connection.setRequestMethod("HEAD");
+		assertEquals(204, connection.getResponseCode());
+		assertEquals(1, registry.meter("http.stub.status.2xx").getCount());
+		assertEquals(1, registry.timer("http.stub.latency").getCount());
+		// bytes are recorded when call ends
+		assertEquals(0, registry.histogram("http.stub.bytesIn").getCount());
+		connection.disconnect();
+		assertEquals(1, registry.histogram("http.stub.bytesIn").getCount());
+		assertEquals(1, registry.timer("http.stub.latency").getCount());
+	}
+
+	public void testRecordsClientErrorWhenInputStreamThrows() throws IOException {
+		HttpURLConnection connection = open("/404");
+		try {
+			connection.getInputStream();
+			fail("HttpURLConnection throws for 404");
+		} catch (FileNotFoundException e) {
+			// expected, caller never touches error stream
+		}
+		assertEquals(1, registry.meter("http.stub.status.4xx").getCount());
+		assertEquals(1, registry.timer("http.stub.latency").getCount());
+	}
+
+	public void testRecordsServerErrorOnceWhenErrorStreamIsRead() throws IOException {
+		HttpURLConnection connection = open("/503");
+		try {
+			connection.getInputStream();
+			fail("HttpURLConnection throws for 503");
+		} catch (IOException e) {
+			assertEquals(BODY.length, readFully(connection.getErrorStream()));
+		}
+		assertEquals(1, registry.meter("http.stub.status.5xx").getCount());
+		assertEquals(1, registry.timer("http.stub.latency").getCount());
+		assertEquals(BODY.length, registry.histogram("http.stub.bytesIn").getSnapshot().getMax());
+	}
+
+	public void testRecordsRequestBody() throws IOException {
+		HttpURLConnection connection = open("/201");
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		OutputStream out = connection.getOutputStream();
+		out.write(new byte[100]);
+		out.close();
+		assertEquals(201, connection.getResponseCode());
+		connection.getInputStream().close();
+		assertEquals(100, registry.histogram("http.stub.bytesOut").getSnapshot().getMax());
+		assertEquals(1, registry.meter("http.stub.status.2xx").getCount());
+	}
+
+	public void testRecordsConnectionFailure() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		int closedPort = socket.getLocalPort();
+		socket.close();
+		HttpURLConnection connection = new InstrumentedHttpURLConnection((HttpURLConnection) new URL("http://127.0.0.1:" + closedPort + "/")
+						.openConnection(), clientMetrics.begin("stub"));
+		try {
+			connection.getResponseCode();
+			fail("nothing listens on closed port");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(1, registry.meter("http.stub.status.error").getCount());
+		assertEquals(1, registry.timer("http.stub.latency").getCount());
+	}
+
+	private HttpURLConnection open(String path) throws IOException {
+		URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+		return new InstrumentedHttpURLConnection((HttpURLConnection) url.openConnection(), clientMetrics.begin("stub"));
+	}
+
+	private static int readFully(InputStream in) throws IOException {
+		int count = 0;
+		while (in.read() >= 0) {
+			count++;
+		}
+		in.close();
+		return count;
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Instrumented data source over stub JDBC driver: per-display DB timers, per-request DB time and statements, SQL statistics and proxy identity.<br>
+ */
+package webmetrics.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.MetricRegistry;
+
+import webmetrics.core.RequestContext;
+import webmetrics.core.RequestContexts;
+
+public class InstrumentedDataSourceTest extends TestCase {
+
+	private MetricRegistry registry;
+	private JdbcMetrics jdbcMetrics;
+
+	@Override
+	protected void setUp() {
+		registry = new MetricRegistry();
+		jdbcMetrics = new JdbcMetrics(registry, 10);
+	}
+
+	@Override
+	protected void tearDown() {
+		RequestContext.attach(null);
+	}
+
+	public void testRecordsStatementsAndFetchUnderDisplay() throws SQLException {
+		InstrumentedDataSource dataSource = new InstrumentedDataSource(new StubDataSource(3, 0), jdbcMetrics);
+		RequestContext context = RequestContexts.attach("orders");
+		Connection connection = dataSource.getConnection();
+		PreparedStatement statement = connection.prepareStatement("select * from orders where id = 5");
+		ResultSet resultSet = statement.executeQuery();
+		int rows = 0;
+		while (resultSet.next()) {
+			rows++;
+		}
+		resultSet.close();
+		connection.createStatement().executeUpdate("update orders set state = 'done' where id = 7");
+		connection.close();
+		jdbcMetrics.recordRequest(context);
+
+		assertEquals(3, rows);
+		assertEquals(1, registry.timer("db.acquire").getCount());
+		assertEquals(2, registry.timer("db.execute").getCount());
+		assertEquals(1, registry.timer("db.fetch").getCount());
+		assertEquals(1, registry.timer("orders.db.acquire").getCount());
+		assertEquals(2, registry.timer("orders.db.execute").getCount());
+		assertEquals(1, registry.timer("orders.db.fetch").getCount());
+		assertEquals(1, registry.timer("orders.db.time").getCount());
+		assertEquals(2, registry.histogram("orders.db.queries").getSnapshot().getMax());
+		assertEquals(2, context.getDbQueries());
+		assertTrue(context.getDbTimeNano() > 0);
+
+		Map<String, Map<String, Number>> statistics = jdbcMetrics.getSqlStatistics().getStatistics();
+		assertEquals(1L, statistics.get("select * from orders where id = ?").get("count"));
+		assertEquals(1L, statistics.get("update orders set state = ? where id = ?").get("count"));
+	}
+
+	public void testRecordsRequestThatOnlyAcquiredConnection() throws SQLException {
+		InstrumentedDataSource dataSource = new InstrumentedDataSource(new StubDataSource(0, 5), jdbcMetrics);
+		RequestContext context = RequestContexts.attach("pool");
+		dataSource.getConnection().close();
+		jdbcMetrics.recordRequest(context);
+
+		assertEquals(1, registry.timer("pool.db.acquire").getCount());
+		assertEquals(1, registry.timer("pool.db.time").getCount());
+		assertTrue(registry.timer("pool.db.time").getSnapshot().getMax() >= 4000000);
+		assertEquals(1, registry.histogram("pool.db.queries").getCount());
+		assertEquals(0, registry.histogram("pool.db.queries").getSnapshot().getMax());
+	}
+
+	public void testDoesNotRecordRequestWithoutDbAccess() {
+		RequestContext context = RequestContexts.attach("nodb");
+		jdbcMetrics.recordRequest(context);
+		assertFalse(registry.getTimers().containsKey("nodb.db.time"));
+	}
+
+	public void testOutsideRequestOnlyGlobalTimers() throws SQLException {
+		InstrumentedDataSource dataSource = new InstrumentedDataSource(new StubDataSource(1, 0), jdbcMetrics);
+		dataSource.getConnection().createStatement().execute("delete from orders");
+		assertEquals(1, registry.timer("db.execute").getCount());
+		assertEquals(3, registry.getTimers().size());
+	}
+
+	public void testProxiesEqualOnlyThemselves() throws SQLException {
+		InstrumentedDataSource dataSource = new InstrumentedDataSource(new StubDataSource(1, 0), jdbcMetrics);
+		Connection first = dataSource.getConnection();
+		Connection second = dataSource.getConnection();
+		Set<Connection> pool = new HashSet<Connection>();
+		pool.add(first);
+		pool.add(second);
+
+		assertTrue(first.equals(first));
+		assertFalse(first.equals(second));
+		assertTrue(pool.contains(first));
+		assertTrue(pool.remove(second));
+		assertEquals(1, pool.size());
+		assertEquals(first.hashCode(), first.hashCode());
+		assertTrue(first.toString().contains("connection"));
+
+		Statement statement = first.createStatement();
+		assertTrue(statement.equals(statement));
+		assertSame(first, statement.getConnection());
+		ResultSet resultSet = statement.executeQuery("select 1");
+		assertSame(statement, resultSet.getStatement());
+	}
+
+	public void testUnwrapsDriverObjects() throws SQLException {
+		InstrumentedDataSource dataSource = new InstrumentedDataSource(new StubDataSource(1, 0), jdbcMetrics);
+		Connection connection = dataSource.getConnection();
+		assertTrue(connection.isWrapperFor(Connection.class));
+		Connection driverConnection = connection.unwrap(Connection.class);
+		assertNotSame(connection, driverConnection);
+		assertEquals("connection1", driverConnection.toString());
+	}
+
+	public void testFailedStatementIsRecordedAndThrowsOriginalException() throws SQLException {
+		InstrumentedDataSource dataSource = new InstrumentedDataSource(new StubDataSource(1, 0), jdbcMetrics);
+		RequestContext context = RequestContexts.attach("orders");
+		try {
+			dataSource.getConnection().createStatement().executeQuery("select fail");
+			fail("stub driver throws for SQL containing fail");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("stub failure"));
+		}
+		assertEquals(1, registry.timer("orders.db.execute").getCount());
+		assertEquals(1, context.getDbQueries());
+	}
+
+	public void testNormalizesLiteralsAndInLists() {
+		assertEquals("select a from t where id in (?) and name = ?", SqlStatistics.normalize("SELECT a FROM t\n WHERE id IN (1, 2,3) AND name = 'x''y'"));
+		assertEquals("select * from table1 where x = ?", SqlStatistics.normalize("select * from table1 where x = ? -- comment"));
+	}
+
+	public void testBoundsTrackedStatements() {
+		SqlStatistics statistics = new SqlStatistics(2);
+		statistics.record("select a from t", 1);
+		statistics.record("select b from t", 1);
+		statistics.record("select c from t", 1);
+		statistics.record("select d from t", 1);
+		Map<String, Map<String, Number>> values = statistics.getStatistics();
+		assertEquals(3, values.size());
+		assertEquals(2L, values.get(SqlStatistics.OTHER_STATEMENT).get("count"));
+	}
+}
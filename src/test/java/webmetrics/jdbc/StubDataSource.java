@@ -0,0 +1,172 @@
+/**
+ * Stub JDBC driver exposed as data source, no database is involved.<br>
+ * Connections, statements and result sets are dynamic proxies: queries return configured number of rows, updates return 1 and SQL containing "fail"
+ * throws SQLException.<br>
+ */
+package webmetrics.jdbc;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+class StubDataSource implements DataSource {
+
+	private final int rows;
+	private final long acquireMillis;
+	private final AtomicInteger connections = new AtomicInteger();
+
+	StubDataSource(int rows, long acquireMillis) {
+		this.rows = rows;
+		this.acquireMillis = acquireMillis;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (acquireMillis > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(acquireMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return (Connection) stub(Connection.class, "connection" + connections.incrementAndGet(), new Handler() {
+			@Override
+			Object handle(Object proxy, String name, Object[] args) {
+				if (name.equals("createStatement"))
+					return stub(Statement.class, "statement", new StatementHandler(proxy, null));
+				if (name.startsWith("prepare"))
+					return stub(name.equals("prepareCall") ? CallableStatement.class : PreparedStatement.class, "statement",
+									new StatementHandler(proxy, (String) args[0]));
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getConnection();
+	}
+
+	@Override
+	public PrintWriter getLogWriter() {
+		return null;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) {
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) {
+	}
+
+	@Override
+	public int getLoginTimeout() {
+		return 0;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new SQLException("not a wrapper");
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) {
+		return false;
+	}
+
+	private static Object stub(Class<?> iface, final String description, final Handler handler) {
+		return Proxy.newProxyInstance(StubDataSource.class.getClassLoader(), new Class<?>[] { iface }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.equals("equals"))
+					return proxy == args[0];
+				if (name.equals("hashCode"))
+					return System.identityHashCode(proxy);
+				if (name.equals("toString"))
+					return description;
+				if (name.equals("isWrapperFor"))
+					return false;
+				Object result = handler.handle(proxy, name, args);
+				if (result != null)
+					return result;
+				// defaults of primitive return types
+				Class<?> type = method.getReturnType();
+				if (type == boolean.class)
+					return false;
+				if (type == int.class)
+					return 0;
+				if (type == long.class)
+					return 0L;
+				return null;
+			}
+		});
+	}
+
+	private abstract static class Handler {
+		abstract Object handle(Object proxy, String name, Object[] args) throws SQLException;
+	}
+
+	private class StatementHandler extends Handler {
+		private final Object connection;
+		private final String preparedSql;
+
+		private StatementHandler(Object connection, String preparedSql) {
+			this.connection = connection;
+			this.preparedSql = preparedSql;
+		}
+
+		@Override
+		Object handle(Object proxy, String name, Object[] args) throws SQLException {
+			String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+			if (name.startsWith("execute") && sql != null && sql.contains("fail"))
+				throw new SQLException("stub failure: " + sql);
+			if (name.equals("executeQuery"))
+				return stub(ResultSet.class, "resultSet", new ResultSetHandler(proxy));
+			if (name.equals("executeUpdate"))
+				return 1;
+			if (name.equals("getConnection"))
+				return connection;
+			return null;
+		}
+	}
+
+	private class ResultSetHandler extends Handler {
+		private final Object statement;
+		private int row;
+
+		private ResultSetHandler(Object statement) {
+			this.statement = statement;
+		}
+
+		@Override
+		Object handle(Object proxy, String name, Object[] args) {
+			if (name.equals("next"))
+				return ++row <= rows;
+			if (name.equals("getInt"))
+				return row;
+			if (name.equals("getStatement"))
+				return statement;
+			return null;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Records appended by RequestJournal are read back by JournalReader with their names, also when appended concurrently and after the ring went
+ * around.<br>
+ */
+package webmetrics.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import webmetrics.config.ConfigReader;
+
+public class RequestJournalTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("journal", ".bin");
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+		new File(file.getPath() + JournalLayout.DICTIONARY_SUFFIX).delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		RequestJournal journal = new RequestJournal(file, 1024);
+		long before = System.currentTimeMillis();
+		journal.append("orders", "shop", 200, TimeUnit.MILLISECONDS.toNanos(12), 340);
+		journal.append("payments", null, 503, TimeUnit.MICROSECONDS.toNanos(750), -1);
+		journal.append("orders", "shop", 404, TimeUnit.MILLISECONDS.toNanos(3), 0);
+		journal.close();
+		List<JournalRecord> records = new JournalReader(file).read(0, Long.MAX_VALUE);
+		assertEquals(3, records.size());
+		int found = 0;
+		for (JournalRecord record : records) {
+			assertTrue(record.getTimestampMillis() >= before);
+			if (record.getStatus() == 200) {
+				assertEquals("orders", record.getDisplayName());
+				assertEquals("shop", record.getConsumerAlias());
+				assertEquals(12000, record.getDurationMicros());
+				assertEquals(340, record.getResponseBytes());
+				found++;
+			} else if (record.getStatus() == 503) {
+				assertEquals("payments", record.getDisplayName());
+				assertNull(record.getConsumerAlias());
+				assertEquals(750, record.getDurationMicros());
+				assertEquals(-1, record.getResponseBytes());
+				found++;
+			} else {
+				assertEquals(404, record.getStatus());
+				assertEquals("orders", record.getDisplayName());
+				found++;
+			}
+		}
+		assertEquals(3, found);
+		assertTrue(new JournalReader(file).read(0, before).isEmpty());
+	}
+
+	public void testConcurrentAppendsAreAllRead() throws Exception {
+		final RequestJournal journal = new RequestJournal(file, 64 * 1024);
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final String display = "display" + t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 5000; i++) {
+						journal.append(display, "consumer" + (i % 3), 200, i, i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		journal.close();
+		List<JournalRecord> records = new JournalReader(file).read(0, Long.MAX_VALUE);
+		assertEquals(8 * 5000, records.size());
+		Set<String> displays = new HashSet<String>();
+		for (JournalRecord record : records) {
+			assertNotNull(record.getDisplayName());
+			assertNotNull(record.getConsumerAlias());
+			displays.add(record.getDisplayName());
+		}
+		assertEquals(8, displays.size());
+	}
+
+	public void testRingKeepsNewestRecords() throws IOException {
+		RequestJournal journal = new RequestJournal(file, 1024);
+		for (int i = 0; i < 3000; i++) {
+			journal.append("display", null, 200, 0, i);
+		}
+		journal.close();
+		List<JournalRecord> records = new JournalReader(file).read(0, Long.MAX_VALUE);
+		assertEquals(journal.getCapacity(), records.size());
+		for (JournalRecord record : records) {
+			assertTrue("overwritten record " + record.getResponseBytes(), record.getResponseBytes() >= 3000 - journal.getCapacity());
+		}
+	}
+
+	public void testAppendAfterCloseIsIgnored() throws IOException {
+		RequestJournal journal = new RequestJournal(file, 1024);
+		journal.append("display", null, 200, 0, 0);
+		journal.close();
+		journal.append("display", null, 200, 0, 0);
+		journal.append("other", "consumer", 200, 0, 0);
+		// closing twice does nothing
+		journal.close();
+		assertEquals(1, new JournalReader(file).read(0, Long.MAX_VALUE).size());
+	}
+
+	public void testRejectsCapacityOutOfRange() throws IOException {
+		try {
+			new RequestJournal(file, RequestJournal.MIN_CAPACITY - 1);
+			fail("capacity below 16 chunks");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new RequestJournal(file, RequestJournal.MAX_CAPACITY + 1);
+			fail("file larger than single mapped buffer");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testConfigurationRejectsTooLargeCapacity() {
+		try {
+			new ConfigReader("webmetrics.xsd", "webmetrics-journal-too-large.xml");
+			fail("journal capacity over maximum");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("journalCapacity"));
+		}
+	}
+}
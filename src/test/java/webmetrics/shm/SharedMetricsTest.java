@@ -0,0 +1,99 @@
+/**
+ * Counts written by SharedMetricsWriter are read by SharedMetricsReader, gauges are never evaluated.<br>
+ */
+package webmetrics.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+public class SharedMetricsTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("shared", ".bin");
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testCountsAreSharedAndGaugesAreNotRead() throws IOException {
+		MetricRegistry registry = new MetricRegistry();
+		final AtomicInteger gaugeReads = new AtomicInteger();
+		registry.counter("orders.bucket").inc(4);
+		registry.timer("orders.metrics");
+		registry.register("jvm.threads", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return gaugeReads.incrementAndGet();
+			}
+		});
+		SharedMetricsWriter writer = new SharedMetricsWriter(registry, file, 16, 60000);
+		writer.start();
+		try {
+			SharedMetricsReader reader = new SharedMetricsReader(file);
+			registry.counter("orders.bucket").inc();
+			registry.meter("orders.status.ok").mark(3);
+			writer.update();
+			Map<String, Number> values = reader.read();
+			assertEquals(5L, values.get("orders.bucket"));
+			assertEquals(0L, values.get("orders.metrics"));
+			assertEquals(3L, values.get("orders.status.ok"));
+			assertFalse(values.containsKey("jvm.threads"));
+			assertEquals(0, gaugeReads.get());
+			assertTrue(reader.isLive());
+		} finally {
+			writer.stop();
+		}
+		assertFalse(new SharedMetricsReader(file).isLive());
+	}
+
+	public void testConcurrentReadsSeeConsistentUpdates() throws Exception {
+		final MetricRegistry registry = new MetricRegistry();
+		for (int i = 0; i < 50; i++) {
+			registry.counter("counter" + i);
+		}
+		final SharedMetricsWriter writer = new SharedMetricsWriter(registry, file, 64, 60000);
+		writer.start();
+		SharedMetricsReader reader = new SharedMetricsReader(file);
+		// first update of background thread is done, the next one comes after the interval
+		while (reader.read().size() < 50) {
+			Thread.sleep(1);
+		}
+		Thread updater = new Thread() {
+			@Override
+			public void run() {
+				for (int round = 0; round < 2000; round++) {
+					// all counters have the same count after every update
+					for (int i = 0; i < 50; i++) {
+						registry.counter("counter" + i).inc();
+					}
+					writer.update();
+				}
+			}
+		};
+		updater.start();
+		try {
+			while (updater.isAlive()) {
+				Map<String, Number> values = reader.read();
+				Number first = values.get("counter0");
+				for (Number value : values.values()) {
+					assertEquals(first, value);
+				}
+			}
+		} finally {
+			updater.join();
+			writer.stop();
+		}
+	}
+}
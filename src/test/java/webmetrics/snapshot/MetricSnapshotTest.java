@@ -0,0 +1,119 @@
+/**
+ * Counts written by MetricSnapshot are restored into new registry, including metrics of striped displays registered before restore.<br>
+ */
+package webmetrics.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+import webmetrics.core.StripedCounter;
+import webmetrics.core.StripedMeter;
+import webmetrics.core.StripedRecorder;
+import webmetrics.core.StripedTimer;
+
+public class MetricSnapshotTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("snapshot", ".bin");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		MetricRegistry written = new MetricRegistry();
+		written.counter("orders.bucket").inc(5);
+		written.meter("orders.status.ok").mark(7);
+		written.timer("orders.timer").update(10, TimeUnit.MILLISECONDS);
+		written.timer("orders.timer").update(20, TimeUnit.MILLISECONDS);
+		new MetricSnapshot(written, file, "1", MetricFilter.ALL, 60).write();
+
+		MetricRegistry restored = new MetricRegistry();
+		assertEquals(3, new MetricSnapshot(restored, file, "1", MetricFilter.ALL, 60).restore());
+		assertEquals(5, restored.counter("orders.bucket").getCount());
+		assertEquals(7, restored.meter("orders.status.ok").getCount());
+		assertEquals(0.0, restored.meter("orders.status.ok").getMeanRate());
+		assertEquals(2, restored.timer("orders.timer").getCount());
+		// restored metrics keep counting
+		restored.timer("orders.timer").update(5, TimeUnit.MILLISECONDS);
+		assertEquals(3, restored.timer("orders.timer").getCount());
+	}
+
+	public void testFilterAndVersion() throws IOException {
+		MetricRegistry written = new MetricRegistry();
+		written.counter("jvm.threads").inc(3);
+		written.counter("orders.bucket").inc(5);
+		new MetricSnapshot(written, file, "1", new MetricFilter() {
+			@Override
+			public boolean matches(String name, Metric metric) {
+				return !name.startsWith("jvm.");
+			}
+		}, 60).write();
+
+		MetricRegistry otherVersion = new MetricRegistry();
+		assertEquals(0, new MetricSnapshot(otherVersion, file, "2", MetricFilter.ALL, 60).restore());
+		assertTrue(otherVersion.getMetrics().isEmpty());
+
+		MetricRegistry restored = new MetricRegistry();
+		assertEquals(1, new MetricSnapshot(restored, file, "1", MetricFilter.ALL, 60).restore());
+		assertFalse(restored.getMetrics().containsKey("jvm.threads"));
+	}
+
+	public void testMissingOrForeignFile() throws IOException {
+		MetricRegistry registry = new MetricRegistry();
+		assertEquals(0, new MetricSnapshot(registry, file, "1", MetricFilter.ALL, 60).restore());
+		Files.write(file.toPath(), "not a snapshot".getBytes("UTF-8"));
+		assertEquals(0, new MetricSnapshot(registry, file, "1", MetricFilter.ALL, 60).restore());
+		assertTrue(registry.getMetrics().isEmpty());
+	}
+
+	public void testStripedMetricsAreSeeded() throws IOException {
+		MetricRegistry written = new MetricRegistry();
+		written.counter("hot.bucket").inc(11);
+		written.meter("hot.status.ok").mark(13);
+		written.timer("hot.timer").update(1, TimeUnit.MILLISECONDS);
+		written.counter("plain.counter").inc(2);
+		new MetricSnapshot(written, file, "1", MetricFilter.ALL, 60).write();
+
+		// striped displays are registered before snapshot is restored
+		MetricRegistry restored = new MetricRegistry();
+		StripedRecorder recorder = new StripedRecorder(2);
+		StripedCounter bucket = restored.register("hot.bucket", new StripedCounter(recorder, 0));
+		StripedMeter status = restored.register("hot.status.ok", new StripedMeter(recorder, 1));
+		StripedTimer timer = restored.register("hot.timer", new StripedTimer(recorder));
+		// registered metric that is not striped keeps its value
+		restored.counter("plain.counter").inc(1);
+		assertEquals(3, new MetricSnapshot(restored, file, "1", MetricFilter.ALL, 60).restore());
+		assertEquals(11, bucket.getCount());
+		assertEquals(13, status.getCount());
+		assertEquals(1, timer.getCount());
+		assertEquals(1, restored.counter("plain.counter").getCount());
+
+		// restored counts are not marked into rates
+		recorder.tick();
+		assertEquals(0.0, status.getMeanRate());
+		assertEquals(0.0, timer.getMeanRate());
+
+		status.mark();
+		timer.update(1, TimeUnit.MILLISECONDS);
+		recorder.tick();
+		assertEquals(14, status.getCount());
+		assertEquals(2, timer.getCount());
+		assertTrue(status.getMeanRate() > 0);
+		assertTrue(timer.getMeanRate() > 0);
+	}
+}